@@ -0,0 +1,47 @@
+/**
+ * Copyright (C) 2020 VanillaSource
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.vanillasource.gerec.benchmarks;
+
+import org.openjdk.jmh.Main;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs the benchmarks with the normal JMH command line, but writes the results as JSON
+ * to <code>benchmarks.json</code> by default, so results of different releases can be compared.
+ * Give <code>-rf</code> or <code>-rff</code> explicitly to override.
+ */
+public final class Benchmarks {
+   private Benchmarks() {
+   }
+
+   public static void main(String[] args) throws Exception {
+      List<String> arguments = new ArrayList<>(Arrays.asList(args));
+      if (!arguments.contains("-rf")) {
+         arguments.add("-rf");
+         arguments.add("json");
+      }
+      if (!arguments.contains("-rff")) {
+         arguments.add("-rff");
+         arguments.add("benchmarks.json");
+      }
+      Main.main(arguments.toArray(new String[arguments.size()]));
+   }
+}
@@ -0,0 +1,70 @@
+/**
+ * Copyright (C) 2020 VanillaSource
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.vanillasource.gerec.benchmarks;
+
+import com.vanillasource.gerec.HttpResponse;
+import com.vanillasource.gerec.HttpStatusCode;
+import com.vanillasource.gerec.Header;
+import com.vanillasource.aio.AioSlave;
+import com.vanillasource.aio.channel.ReadableByteChannelMaster;
+import com.vanillasource.aio.channel.InputStreamReadableByteChannelMaster;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.List;
+import java.util.Collections;
+import java.util.function.Function;
+import java.util.concurrent.CompletableFuture;
+import java.io.ByteArrayInputStream;
+
+/**
+ * A response that is completely in memory, and can be consumed any number of times. Used
+ * to drive media types without any network involved.
+ */
+public final class InMemoryHttpResponse implements HttpResponse {
+   private final Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+   private final byte[] content;
+
+   public InMemoryHttpResponse(String contentType, byte[] content) {
+      this.content = content;
+      headers.put("Content-Type", Collections.singletonList(contentType));
+      headers.put("Content-Length", Collections.singletonList(Integer.toString(content.length)));
+   }
+
+   @Override
+   public HttpStatusCode getStatusCode() {
+      return HttpStatusCode.OK;
+   }
+
+   @Override
+   public boolean hasHeader(Header<?> header) {
+      return headers.containsKey(header.getName());
+   }
+
+   @Override
+   public <T> T getHeader(Header<T> header) {
+      return header.deserialize(headers.get(header.getName()));
+   }
+
+   @Override
+   public <R> CompletableFuture<R> consumeContent(Function<ReadableByteChannelMaster, AioSlave<R>> consumerFactory) {
+      InputStreamReadableByteChannelMaster master = new InputStreamReadableByteChannelMaster(new ByteArrayInputStream(content));
+      AioSlave<R> slave = consumerFactory.apply(master);
+      return master.execute(slave, Runnable::run);
+   }
+}
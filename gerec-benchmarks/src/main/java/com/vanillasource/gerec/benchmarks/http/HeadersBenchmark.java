@@ -0,0 +1,76 @@
+/**
+ * Copyright (C) 2020 VanillaSource
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.vanillasource.gerec.benchmarks.http;
+
+import com.vanillasource.gerec.Header;
+import com.vanillasource.gerec.http.Headers;
+import com.vanillasource.gerec.http.ValueWithParameter;
+import org.openjdk.jmh.annotations.*;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures parsing and serializing header values, as done for each request and response.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HeadersBenchmark {
+   private static final String CONTENT_TYPE = "application/vnd.vanillasource.person+json; charset=UTF-8; q=0.9";
+   private static final String JSON_CONTENT_TYPE = "application/json; charset=utf-8";
+   private static final String QUOTED_CONTENT_TYPE = "multipart/form-data; boundary=\"simple; boundary=1\"";
+   private static final List<String> ACCEPT = Collections.singletonList(
+         "application/vnd.vanillasource.person+json, application/json; q=0.8, text/plain; charset=UTF-8; q=0.5, */*; q=0.1");
+   private final Header<List<ValueWithParameter>> acceptHeader = Headers.ACCEPT;
+   private ValueWithParameter contentType;
+
+   @Setup
+   public void setUp() {
+      contentType = ValueWithParameter.FORMAT.deserialize(CONTENT_TYPE);
+   }
+
+   @Benchmark
+   public ValueWithParameter parseValueWithParameter() {
+      return ValueWithParameter.FORMAT.deserialize(CONTENT_TYPE);
+   }
+
+   @Benchmark
+   public ValueWithParameter parseCommonValueWithParameter() {
+      return ValueWithParameter.FORMAT.deserialize(JSON_CONTENT_TYPE);
+   }
+
+   @Benchmark
+   public ValueWithParameter parseQuotedValueWithParameter() {
+      return ValueWithParameter.FORMAT.deserialize(QUOTED_CONTENT_TYPE);
+   }
+
+   @Benchmark
+   public String serializeValueWithParameter() {
+      return ValueWithParameter.FORMAT.serialize(contentType);
+   }
+
+   @Benchmark
+   public List<ValueWithParameter> deserializeCsvValueHeader() {
+      return acceptHeader.deserialize(ACCEPT);
+   }
+}
@@ -0,0 +1,68 @@
+/**
+ * Copyright (C) 2020 VanillaSource
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.vanillasource.gerec.benchmarks.http;
+
+import com.vanillasource.gerec.HttpRequest;
+import com.vanillasource.gerec.http.RecordingHttpRequest;
+import com.vanillasource.gerec.http.HeaderTemplate;
+import static com.vanillasource.gerec.http.Headers.*;
+import org.openjdk.jmh.annotations.*;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures applying a chain of request changes combined with <code>and()</code>, the way
+ * media types, conditional headers and links add their changes to a request. This is compared to
+ * applying the same chain compiled into a header template.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HttpRequestChangeBenchmark {
+   @Param({"10"})
+   public int changes;
+   private HttpRequest.HttpRequestChange chain;
+   private HeaderTemplate template;
+
+   @Setup
+   public void setUp() {
+      chain = HttpRequest.HttpRequestChange.NO_CHANGE;
+      for (int i=0; i<changes; i++) {
+         String headerName = "X-Header-"+i;
+         List<String> headerValue = Collections.singletonList("value-"+i);
+         chain = chain.and(request -> request.setHeader(csvStringHeader(headerName), headerValue));
+      }
+      template = HeaderTemplate.compile(chain);
+   }
+
+   @Benchmark
+   public Map<String, List<String>> applyChain() {
+      return RecordingHttpRequest.recordHeaders(chain);
+   }
+
+   @Benchmark
+   public Map<String, List<String>> applyTemplate() {
+      return RecordingHttpRequest.recordHeaders(template);
+   }
+}
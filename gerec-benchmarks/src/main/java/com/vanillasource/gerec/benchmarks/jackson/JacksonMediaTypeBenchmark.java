@@ -0,0 +1,107 @@
+/**
+ * Copyright (C) 2020 VanillaSource
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.vanillasource.gerec.benchmarks.jackson;
+
+import com.vanillasource.gerec.ResourceReference;
+import com.vanillasource.gerec.DeserializationContext;
+import com.vanillasource.gerec.mediatype.jackson.JacksonMediaType;
+import com.vanillasource.gerec.benchmarks.InMemoryHttpResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import org.openjdk.jmh.annotations.*;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares deserializing with the shared object mapper of <code>JacksonMediaType</code>
+ * to creating a new, fully configured object mapper for each message.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JacksonMediaTypeBenchmark {
+   private static final String MEDIA_TYPE = "application/vnd.vanillasource.person+json";
+   private static final byte[] CONTENT = ("{\"name\":\"John\",\"age\":34,\"emails\":[\"john@example.com\",\"j@example.com\"],"+
+         "\"self\":{\"href\":\"/people/1\"},\"friend\":{\"href\":\"/people/2\"}}").getBytes(StandardCharsets.UTF_8);
+   private final DeserializationContext context = uri -> null;
+   private InMemoryHttpResponse response;
+   private JacksonMediaType<Person> sharedMediaType;
+
+   @Setup
+   public void setUp() {
+      response = new InMemoryHttpResponse(MEDIA_TYPE, CONTENT);
+      sharedMediaType = new JacksonMediaType<>(Person.class, MEDIA_TYPE);
+   }
+
+   @Benchmark
+   public Person sharedMapper() {
+      return sharedMediaType.deserialize(response, context).join();
+   }
+
+   @Benchmark
+   public Person mapperPerMessage() throws IOException {
+      ObjectMapper mapper = new ObjectMapper();
+      mapper.setVisibility(mapper.getSerializationConfig().getDefaultVisibilityChecker()
+            .withFieldVisibility(JsonAutoDetect.Visibility.ANY)
+            .withGetterVisibility(JsonAutoDetect.Visibility.NONE)
+            .withSetterVisibility(JsonAutoDetect.Visibility.NONE)
+            .withCreatorVisibility(JsonAutoDetect.Visibility.NONE));
+      SimpleModule module = new SimpleModule();
+      module.addDeserializer(ResourceReference.class, new LinkDeserializer(context));
+      mapper.registerModule(module);
+      return mapper.readValue(CONTENT, Person.class);
+   }
+
+   private static final class LinkDeserializer extends JsonDeserializer<ResourceReference> {
+      private final DeserializationContext context;
+
+      private LinkDeserializer(DeserializationContext context) {
+         this.context = context;
+      }
+
+      @Override
+      public ResourceReference deserialize(JsonParser jp, com.fasterxml.jackson.databind.DeserializationContext jacksonContext) throws IOException {
+         String uri = null;
+         for (JsonToken token = jp.nextToken(); token != JsonToken.END_OBJECT; token = jp.nextToken()) {
+            if (token == JsonToken.VALUE_STRING && "href".equals(jp.getCurrentName())) {
+               uri = jp.getText();
+            }
+         }
+         return context.resolve(URI.create(uri));
+      }
+   }
+
+   public static final class Person {
+      private String name;
+      private int age;
+      private List<String> emails;
+      private ResourceReference self;
+      private ResourceReference friend;
+   }
+}
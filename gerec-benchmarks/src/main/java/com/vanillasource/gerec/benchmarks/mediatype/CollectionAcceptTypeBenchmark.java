@@ -0,0 +1,87 @@
+/**
+ * Copyright (C) 2020 VanillaSource
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.vanillasource.gerec.benchmarks.mediatype;
+
+import com.vanillasource.gerec.DeserializationContext;
+import com.vanillasource.gerec.mediatype.LineBasedCollectionAcceptType;
+import com.vanillasource.gerec.mediatype.PacketBasedCollectionAcceptType;
+import com.vanillasource.gerec.mediatype.MediaTypes;
+import com.vanillasource.gerec.benchmarks.InMemoryHttpResponse;
+import static com.vanillasource.gerec.mediatype.MediaTypeSpecification.*;
+import org.openjdk.jmh.annotations.*;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures splitting a stream of items with the line based and packet based collection types.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CollectionAcceptTypeBenchmark {
+   private static final String LINES_MEDIA_TYPE = "application/vnd.vanillasource.lines";
+   private static final String PACKETS_MEDIA_TYPE = "application/vnd.vanillasource.packets";
+   @Param({"1000"})
+   public int items;
+   private final DeserializationContext context = uri -> null;
+   private InMemoryHttpResponse linesResponse;
+   private InMemoryHttpResponse packetsResponse;
+   private LineBasedCollectionAcceptType<String> linesType;
+   private PacketBasedCollectionAcceptType<String> packetsType;
+   private int consumed;
+
+   @Setup
+   public void setUp() {
+      StringBuilder lines = new StringBuilder();
+      ByteArrayOutputStream packets = new ByteArrayOutputStream();
+      try (DataOutputStream output = new DataOutputStream(packets)) {
+         for (int i=0; i<items; i++) {
+            byte[] item = ("{\"id\":"+i+",\"name\":\"Item number "+i+"\"}").getBytes(StandardCharsets.US_ASCII);
+            lines.append(new String(item, StandardCharsets.US_ASCII)).append('\n');
+            output.writeInt(item.length);
+            output.write(item);
+         }
+      } catch (IOException e) {
+         throw new UncheckedIOException(e);
+      }
+      linesResponse = new InMemoryHttpResponse(LINES_MEDIA_TYPE, lines.toString().getBytes(StandardCharsets.US_ASCII));
+      packetsResponse = new InMemoryHttpResponse(PACKETS_MEDIA_TYPE, packets.toByteArray());
+      linesType = new LineBasedCollectionAcceptType<>(mediaType(LINES_MEDIA_TYPE), MediaTypes.textPlain(), item -> consumed++);
+      packetsType = new PacketBasedCollectionAcceptType<>(mediaType(PACKETS_MEDIA_TYPE), MediaTypes.textPlain(), item -> consumed++);
+   }
+
+   @Benchmark
+   public int lines() {
+      linesType.deserialize(linesResponse, context).join();
+      return consumed;
+   }
+
+   @Benchmark
+   public int packets() {
+      packetsType.deserialize(packetsResponse, context).join();
+      return consumed;
+   }
+}
@@ -0,0 +1,155 @@
+/**
+ * Copyright (C) 2020 VanillaSource
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.vanillasource.gerec.benchmarks.mediatype;
+
+import com.vanillasource.gerec.mediatype.ShutdownTimer;
+import org.openjdk.jmh.annotations.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the timeouts of many concurrent long-polling streams, where each stream resets its
+ * timer on every read. Compares the <code>ShutdownTimer</code> on the shared timing wheel to a scheduled
+ * executor (and thread) per stream, as <code>ShutdownTimer</code> was implemented before.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ShutdownTimerBenchmark {
+   private static final long TIMEOUT = 60000L;
+
+   @State(Scope.Benchmark)
+   public static class Streams {
+      @Param({"10000"})
+      public int streams;
+   }
+
+   @State(Scope.Benchmark)
+   public static class SharedWheelTimers {
+      private ShutdownTimer[] timers;
+
+      @Setup
+      public void setUp(Streams streams) {
+         timers = new ShutdownTimer[streams.streams];
+         for (int i=0; i<timers.length; i++) {
+            timers[i] = new ShutdownTimer(() -> {}, TIMEOUT);
+         }
+      }
+
+      @TearDown
+      public void tearDown() {
+         for (ShutdownTimer timer: timers) {
+            timer.cancel();
+         }
+      }
+   }
+
+   @State(Scope.Benchmark)
+   public static class ExecutorPerStreamTimers {
+      private ExecutorShutdownTimer[] timers;
+
+      @Setup
+      public void setUp(Streams streams) {
+         timers = new ExecutorShutdownTimer[streams.streams];
+         for (int i=0; i<timers.length; i++) {
+            timers[i] = new ExecutorShutdownTimer(() -> {}, TIMEOUT);
+         }
+      }
+
+      @TearDown
+      public void tearDown() {
+         for (ExecutorShutdownTimer timer: timers) {
+            timer.cancel();
+         }
+      }
+   }
+
+   @Benchmark
+   public void resetAllSharedWheelTimers(SharedWheelTimers timers) {
+      for (ShutdownTimer timer: timers.timers) {
+         timer.reset();
+      }
+   }
+
+   @Benchmark
+   public void resetAllExecutorPerStreamTimers(ExecutorPerStreamTimers timers) {
+      for (ExecutorShutdownTimer timer: timers.timers) {
+         timer.reset();
+      }
+   }
+
+   @Benchmark
+   public void createAndCancelSharedWheelTimers(Streams streams) {
+      ShutdownTimer[] timers = new ShutdownTimer[streams.streams];
+      for (int i=0; i<timers.length; i++) {
+         timers[i] = new ShutdownTimer(() -> {}, TIMEOUT);
+      }
+      for (ShutdownTimer timer: timers) {
+         timer.cancel();
+      }
+   }
+
+   @Benchmark
+   public void createAndCancelExecutorPerStreamTimers(Streams streams) {
+      ExecutorShutdownTimer[] timers = new ExecutorShutdownTimer[streams.streams];
+      for (int i=0; i<timers.length; i++) {
+         timers[i] = new ExecutorShutdownTimer(() -> {}, TIMEOUT);
+      }
+      for (ExecutorShutdownTimer timer: timers) {
+         timer.cancel();
+      }
+   }
+
+   /**
+    * The timer with its own scheduled executor, as it was before the timing wheel.
+    */
+   private static final class ExecutorShutdownTimer {
+      private final ScheduledExecutorService executor = Executors.newScheduledThreadPool(1, runnable -> {
+         Thread thread = Executors.defaultThreadFactory().newThread(runnable);
+         thread.setDaemon(true);
+         return thread;
+      });
+      private final Runnable action;
+      private final long timeout;
+      private ScheduledFuture<?> future;
+
+      private ExecutorShutdownTimer(Runnable action, long timeout) {
+         this.action = action;
+         this.timeout = timeout;
+         reset();
+      }
+
+      private void reset() {
+         if (future != null) {
+            future.cancel(false);
+         }
+         if (!executor.isShutdown()) {
+            future = executor.schedule(action, timeout, TimeUnit.MILLISECONDS);
+         }
+      }
+
+      private void cancel() {
+         executor.shutdownNow();
+      }
+   }
+}
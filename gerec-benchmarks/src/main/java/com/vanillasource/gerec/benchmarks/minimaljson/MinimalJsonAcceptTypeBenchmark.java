@@ -0,0 +1,81 @@
+/**
+ * Copyright (C) 2020 VanillaSource
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.vanillasource.gerec.benchmarks.minimaljson;
+
+import com.vanillasource.gerec.ResourceReference;
+import com.vanillasource.gerec.DeserializationContext;
+import com.vanillasource.gerec.mediatype.minimaljson.MinimalJsonAcceptType;
+import com.vanillasource.gerec.benchmarks.InMemoryHttpResponse;
+import static com.vanillasource.gerec.mediatype.MediaTypeSpecification.*;
+import com.eclipsesource.json.JsonObject;
+import com.eclipsesource.json.JsonValue;
+import org.openjdk.jmh.annotations.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures deserializing the same message as the jackson benchmark with minimal-json.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MinimalJsonAcceptTypeBenchmark {
+   private static final String MEDIA_TYPE = "application/vnd.vanillasource.person+json";
+   private static final byte[] CONTENT = ("{\"name\":\"John\",\"age\":34,\"emails\":[\"john@example.com\",\"j@example.com\"],"+
+         "\"self\":{\"href\":\"/people/1\"},\"friend\":{\"href\":\"/people/2\"}}").getBytes(StandardCharsets.UTF_8);
+   private final DeserializationContext context = uri -> null;
+   private InMemoryHttpResponse response;
+   private MinimalJsonAcceptType<Person> acceptType;
+
+   @Setup
+   public void setUp() {
+      response = new InMemoryHttpResponse(MEDIA_TYPE, CONTENT);
+      acceptType = new MinimalJsonAcceptType<>(mediaType(MEDIA_TYPE), (json, jsonContext) -> {
+         JsonObject object = json.asObject();
+         Person person = new Person();
+         person.name = object.getString("name", null);
+         person.age = object.getInt("age", 0);
+         person.emails = new ArrayList<>();
+         for (JsonValue email: object.get("emails").asArray()) {
+            person.emails.add(email.asString());
+         }
+         person.self = jsonContext.parseLink(object.get("self").asObject());
+         person.friend = jsonContext.parseLink(object.get("friend").asObject());
+         return person;
+      });
+   }
+
+   @Benchmark
+   public Person deserialize() {
+      return acceptType.deserialize(response, context).join();
+   }
+
+   public static final class Person {
+      private String name;
+      private int age;
+      private List<String> emails;
+      private ResourceReference self;
+      private ResourceReference friend;
+   }
+}
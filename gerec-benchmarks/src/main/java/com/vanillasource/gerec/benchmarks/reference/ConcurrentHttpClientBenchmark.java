@@ -0,0 +1,106 @@
+/**
+ * Copyright (C) 2020 VanillaSource
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.vanillasource.gerec.benchmarks.reference;
+
+import com.vanillasource.gerec.ResourceReference;
+import com.vanillasource.gerec.mediatype.MediaTypes;
+import com.vanillasource.gerec.reference.HttpClientResourceReference;
+import com.vanillasource.gerec.javanet.AsyncJavanetHttpClient;
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.*;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long it takes the java.net client to complete a given number of concurrently started
+ * GET requests, once with a fixed thread pool and once running on virtual threads with a concurrency limit.
+ * Run with <code>-prof gc</code> to compare the memory allocated for each batch.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Dsun.net.httpserver.nodelay=true", "-Dhttp.maxConnections=256"})
+public class ConcurrentHttpClientBenchmark {
+   private static final byte[] CONTENT = "Hello World!".getBytes(StandardCharsets.US_ASCII);
+   private static final int MAX_CONCURRENCY = 256;
+   @Param({"pool", "virtual"})
+   public String threads;
+   @Param({"1000", "10000"})
+   public int requests;
+   private HttpServer server;
+   private ExecutorService serverExecutor;
+   private ExecutorService clientExecutor;
+   private ResourceReference reference;
+
+   @Setup
+   public void setUp() throws IOException {
+      serverExecutor = Executors.newFixedThreadPool(8);
+      server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), MAX_CONCURRENCY);
+      server.setExecutor(serverExecutor);
+      server.createContext("/", exchange -> {
+         exchange.getResponseHeaders().set("Content-Type", "text/plain");
+         exchange.sendResponseHeaders(200, CONTENT.length);
+         try (OutputStream output = exchange.getResponseBody()) {
+            output.write(CONTENT);
+         }
+      });
+      server.start();
+      URI uri = URI.create("http://localhost:"+server.getAddress().getPort()+"/hello");
+      reference = new HttpClientResourceReference(createClient(), uri);
+   }
+
+   private AsyncJavanetHttpClient createClient() {
+      if ("pool".equals(threads)) {
+         clientExecutor = Executors.newFixedThreadPool(MAX_CONCURRENCY);
+         return new AsyncJavanetHttpClient(clientExecutor);
+      } else if ("virtual".equals(threads)) {
+         return AsyncJavanetHttpClient.withVirtualThreads(MAX_CONCURRENCY);
+      } else {
+         throw new IllegalArgumentException("unknown threads "+threads);
+      }
+   }
+
+   @TearDown
+   public void tearDown() {
+      if (clientExecutor != null) {
+         clientExecutor.shutdownNow();
+      }
+      server.stop(0);
+      serverExecutor.shutdownNow();
+   }
+
+   @Benchmark
+   public void getConcurrently() {
+      CompletableFuture<?>[] results = new CompletableFuture<?>[requests];
+      for (int i=0; i<requests; i++) {
+         results[i] = reference.get(MediaTypes.textPlain());
+      }
+      CompletableFuture.allOf(results).join();
+   }
+}
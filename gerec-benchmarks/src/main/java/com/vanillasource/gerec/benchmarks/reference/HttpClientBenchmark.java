@@ -0,0 +1,108 @@
+/**
+ * Copyright (C) 2020 VanillaSource
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.vanillasource.gerec.benchmarks.reference;
+
+import com.vanillasource.gerec.ResourceReference;
+import com.vanillasource.gerec.mediatype.MediaTypes;
+import com.vanillasource.gerec.reference.HttpClient;
+import com.vanillasource.gerec.reference.HttpClientResourceReference;
+import com.vanillasource.gerec.httpclient.AsyncApacheHttpClient;
+import com.vanillasource.gerec.javanet.AsyncJavanetHttpClient;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.openjdk.jmh.annotations.*;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a complete GET through the client adapters against a local in-process server. The server
+ * runs with TCP no-delay, otherwise each call would mostly measure the delayed acknowledgement of the
+ * separately written response body.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dsun.net.httpserver.nodelay=true")
+public class HttpClientBenchmark {
+   private static final byte[] CONTENT = "Hello World!".getBytes(StandardCharsets.US_ASCII);
+   @Param({"apache", "javanet"})
+   public String client;
+   private HttpServer server;
+   private ExecutorService serverExecutor;
+   private ExecutorService clientExecutor;
+   private CloseableHttpAsyncClient apacheClient;
+   private ResourceReference reference;
+
+   @Setup
+   public void setUp() throws IOException {
+      serverExecutor = Executors.newFixedThreadPool(4);
+      server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 100);
+      server.setExecutor(serverExecutor);
+      server.createContext("/", exchange -> {
+         exchange.getResponseHeaders().set("Content-Type", "text/plain");
+         exchange.sendResponseHeaders(200, CONTENT.length);
+         try (OutputStream output = exchange.getResponseBody()) {
+            output.write(CONTENT);
+         }
+      });
+      server.start();
+      URI uri = URI.create("http://localhost:"+server.getAddress().getPort()+"/hello");
+      reference = new HttpClientResourceReference(createClient(), uri);
+   }
+
+   private HttpClient createClient() {
+      if ("apache".equals(client)) {
+         apacheClient = HttpAsyncClients.createDefault();
+         apacheClient.start();
+         return new AsyncApacheHttpClient(apacheClient);
+      } else if ("javanet".equals(client)) {
+         clientExecutor = Executors.newFixedThreadPool(4);
+         return new AsyncJavanetHttpClient(clientExecutor);
+      } else {
+         throw new IllegalArgumentException("unknown client "+client);
+      }
+   }
+
+   @TearDown
+   public void tearDown() throws IOException {
+      if (apacheClient != null) {
+         apacheClient.close();
+      }
+      if (clientExecutor != null) {
+         clientExecutor.shutdownNow();
+      }
+      server.stop(0);
+      serverExecutor.shutdownNow();
+   }
+
+   @Benchmark
+   public String get() {
+      return reference.get(MediaTypes.textPlain()).join();
+   }
+}
@@ -107,7 +107,7 @@ public final class AsyncApacheHttpClient implements HttpClient {
 
    private CompletableFuture<HttpResponse> execute(AsyncHttpRequest request) {
       CompletableFuture<HttpResponse> result = new CompletableFuture<>();
-      logger.debug("making the async http request "+request);
+      logger.debug("making the async http request {}", request);
       httpClientSupplier.get().execute(
             request.getProducer(result),
             AsyncHttpResponse.getConsumer(request, result),
@@ -166,6 +166,14 @@ public final class AsyncApacheHttpClient implements HttpClient {
          this.request = request;
       }
 
+      @Override
+      public void setHeaderValues(String name, List<String> values) {
+         request.removeHeaders(name);
+         for (String headerValue: values) {
+            request.addHeader(name, headerValue);
+         }
+      }
+
       @Override
       public String toString() {
          return request.toString();
@@ -218,15 +226,13 @@ public final class AsyncApacheHttpClient implements HttpClient {
                      @Override
                      public int write(ByteBuffer buffer) throws IOException {
                         int length = contentEncoder.write(buffer);
-                        if (logger.isDebugEnabled()) {
-                           logger.debug("written "+length+" bytes of request");
-                        }
+                        logger.debug("written {} bytes of request", length);
                         return length;
                      }
 
                      @Override
                      public void close() {
-                        logger.debug("completing request "+request);
+                        logger.debug("completing request {}", request);
                         try {
                            contentEncoder.complete();
                         } catch (IOException e) {
@@ -245,7 +251,7 @@ public final class AsyncApacheHttpClient implements HttpClient {
 
             @Override
             public void requestCompleted(HttpContext context) {
-               logger.debug("request "+request+" completed");
+               logger.debug("request {} completed", request);
                if (follower != null) {
                   follower.onCompleted();
                }
@@ -0,0 +1,197 @@
+/**
+ * Copyright (C) 2020 VanillaSource
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.vanillasource.gerec.httpclient5;
+
+import com.vanillasource.aio.AioSlave;
+import com.vanillasource.aio.channel.ReadableByteChannelMaster;
+import com.vanillasource.aio.channel.WritableByteChannelMaster;
+import com.vanillasource.gerec.reference.HttpClient;
+import com.vanillasource.gerec.*;
+import org.apache.hc.client5.http.async.HttpAsyncClient;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.core5.http.HttpMessage;
+import org.apache.hc.core5.http.message.BasicHttpRequest;
+import org.apache.hc.core5.http.nio.support.BasicRequestProducer;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Implement the <code>AsyncHttpClient</code> with the asynchronous Apache HttpClient 5. Request and response
+ * bodies are streamed with the flow control of the client, a paused response consumer stops granting capacity
+ * to its stream. When the given client uses HTTP/2, for example one created with
+ * <code>HttpAsyncClients.customHttp2()</code>, concurrent requests to the same server share a single multiplexed
+ * connection, h2c with prior knowledge is used for plain http, h2 is negotiated for https.
+ */
+public final class AsyncApacheHttpClient5 implements HttpClient {
+   private static final Logger logger = LoggerFactory.getLogger(AsyncApacheHttpClient5.class);
+   private final Supplier<HttpAsyncClient> httpClientSupplier;
+
+   /**
+    * Create an instance that references the real http client only indirectly, useful for
+    * serialization.
+    */
+   public AsyncApacheHttpClient5(Supplier<HttpAsyncClient> httpClientSupplier) {
+      this.httpClientSupplier = httpClientSupplier;
+   }
+
+   /**
+    * Create an instance which directly references the http client. This is normally non-serializable.
+    */
+   public AsyncApacheHttpClient5(HttpAsyncClient httpClient) {
+      this(() -> httpClient);
+   }
+
+   @Override
+   public CompletableFuture<HttpResponse> doHead(URI uri, HttpRequest.HttpRequestChange change) {
+      return execute("HEAD", uri, change);
+   }
+
+   @Override
+   public CompletableFuture<HttpResponse> doGet(URI uri, HttpRequest.HttpRequestChange change) {
+      return execute("GET", uri, change);
+   }
+
+   @Override
+   public CompletableFuture<HttpResponse> doPost(URI uri, HttpRequest.HttpRequestChange change) {
+      return execute("POST", uri, change);
+   }
+
+   @Override
+   public CompletableFuture<HttpResponse> doPut(URI uri, HttpRequest.HttpRequestChange change) {
+      return execute("PUT", uri, change);
+   }
+
+   @Override
+   public CompletableFuture<HttpResponse> doDelete(URI uri, HttpRequest.HttpRequestChange change) {
+      return execute("DELETE", uri, change);
+   }
+
+   @Override
+   public CompletableFuture<HttpResponse> doOptions(URI uri, HttpRequest.HttpRequestChange change) {
+      return execute("OPTIONS", uri, change);
+   }
+
+   private CompletableFuture<HttpResponse> execute(String method, URI uri, HttpRequest.HttpRequestChange change) {
+      AsyncHttpRequest request = new AsyncHttpRequest(new BasicHttpRequest(method, uri));
+      change.applyTo(request);
+      ChannelResponseConsumer consumer = new ChannelResponseConsumer();
+      CompletableFuture<HttpResponse> result = consumer.getResponse()
+         .handle((response, exception) -> {
+            if (exception != null) {
+               throw new IllegalStateException("failed to make request to URI: "+uri, exception);
+            }
+            return new AsyncHttpResponse(response, consumer);
+         });
+      logger.debug("making the async http request {} {}", method, uri);
+      consumer.setExchange(httpClientSupplier.get().execute(
+            request.getProducer(),
+            consumer,
+            null,
+            HttpClientContext.create(),
+            null));
+      return result;
+   }
+
+   private static class HeaderAwareMessage {
+      private final HttpMessage message;
+
+      public HeaderAwareMessage(HttpMessage message) {
+         this.message = message;
+      }
+
+      public boolean hasHeader(Header<?> header) {
+         return message.containsHeader(header.getName());
+      }
+
+      public <T> T getHeader(Header<T> header) {
+         org.apache.hc.core5.http.Header[] httpHeaders = message.getHeaders(header.getName());
+         List<String> headerValues = new ArrayList<>(httpHeaders.length);
+         for (org.apache.hc.core5.http.Header httpHeader: httpHeaders) {
+            headerValues.add(httpHeader.getValue());
+         }
+         return header.deserialize(headerValues);
+      }
+
+      public <T> void setHeader(Header<T> header, T value) {
+         message.removeHeaders(header.getName());
+         for (String headerValue: header.serialize(value)) {
+            message.addHeader(header.getName(), headerValue);
+         }
+      }
+   }
+
+   private static final class AsyncHttpRequest extends HeaderAwareMessage implements HttpRequest {
+      private final BasicHttpRequest request;
+      private ChannelEntityProducer entityProducer;
+
+      private AsyncHttpRequest(BasicHttpRequest request) {
+         super(request);
+         this.request = request;
+      }
+
+      private BasicRequestProducer getProducer() {
+         return new BasicRequestProducer(request, entityProducer);
+      }
+
+      @Override
+      public void setHeaderValues(String name, List<String> values) {
+         request.removeHeaders(name);
+         for (String headerValue: values) {
+            request.addHeader(name, headerValue);
+         }
+      }
+
+      @Override
+      public void setByteProducer(Function<WritableByteChannelMaster, AioSlave<Void>> producerFactory) {
+         this.entityProducer = new ChannelEntityProducer(producerFactory, -1);
+      }
+
+      @Override
+      public void setByteProducer(Function<WritableByteChannelMaster, AioSlave<Void>> producerFactory, long length) {
+         this.entityProducer = new ChannelEntityProducer(producerFactory, length);
+      }
+   }
+
+   private static final class AsyncHttpResponse extends HeaderAwareMessage implements HttpResponse {
+      private final org.apache.hc.core5.http.HttpResponse response;
+      private final ChannelResponseConsumer consumer;
+
+      private AsyncHttpResponse(org.apache.hc.core5.http.HttpResponse response, ChannelResponseConsumer consumer) {
+         super(response);
+         this.response = response;
+         this.consumer = consumer;
+      }
+
+      @Override
+      public HttpStatusCode getStatusCode() {
+         return HttpStatusCode.valueOf(response.getCode());
+      }
+
+      @Override
+      public <R> CompletableFuture<R> consumeContent(Function<ReadableByteChannelMaster, AioSlave<R>> consumerFactory) {
+         return consumer.consume(consumerFactory);
+      }
+   }
+}
@@ -0,0 +1,152 @@
+/**
+ * Copyright (C) 2020 VanillaSource
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.vanillasource.gerec.httpclient5;
+
+import com.vanillasource.aio.AioSlave;
+import com.vanillasource.aio.channel.WritableByteChannelMaster;
+import org.apache.hc.core5.http.nio.AsyncEntityProducer;
+import org.apache.hc.core5.http.nio.DataStreamChannel;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Set;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Produces the body of a request by a slave writing to the data channel of the exchange. The slave
+ * is only called when the channel is ready for more data, and writes only write as much as the channel
+ * can take, which is limited by the flow control window of the stream in case of HTTP/2.
+ */
+final class ChannelEntityProducer implements AsyncEntityProducer, WritableByteChannelMaster {
+   private static final Logger logger = LoggerFactory.getLogger(ChannelEntityProducer.class);
+   private final Function<WritableByteChannelMaster, AioSlave<Void>> slaveFactory;
+   private final long length;
+   private volatile DataStreamChannel channel;
+   private volatile boolean paused = false;
+   private volatile boolean closed = false;
+   private AioSlave<Void> slave;
+   private boolean done = false;
+
+   /**
+    * @param length The exact length of the body if known, negative if not known.
+    */
+   ChannelEntityProducer(Function<WritableByteChannelMaster, AioSlave<Void>> slaveFactory, long length) {
+      this.slaveFactory = slaveFactory;
+      this.length = length;
+   }
+
+   @Override
+   public int available() {
+      return paused || done ? 0 : Integer.MAX_VALUE;
+   }
+
+   @Override
+   public void produce(DataStreamChannel channel) throws IOException {
+      this.channel = channel;
+      if (done) {
+         return;
+      }
+      if (slave == null) {
+         slave = slaveFactory.apply(this);
+      }
+      if (!paused && !closed) {
+         slave.onReady();
+      }
+      if (closed) {
+         done = true;
+         logger.debug("request body completed");
+         channel.endStream();
+         slave.onCompleted();
+      }
+   }
+
+   @Override
+   public int write(ByteBuffer buffer) throws IOException {
+      return channel.write(buffer);
+   }
+
+   @Override
+   public void pause() {
+      paused = true;
+   }
+
+   @Override
+   public void resume() {
+      paused = false;
+      requestOutput();
+   }
+
+   @Override
+   public void close() {
+      closed = true;
+      requestOutput();
+   }
+
+   private void requestOutput() {
+      DataStreamChannel currentChannel = channel;
+      if (currentChannel != null) {
+         currentChannel.requestOutput();
+      }
+   }
+
+   @Override
+   public boolean isOpen() {
+      return !closed;
+   }
+
+   @Override
+   public long getContentLength() {
+      return length;
+   }
+
+   @Override
+   public String getContentType() {
+      return null;
+   }
+
+   @Override
+   public String getContentEncoding() {
+      return null;
+   }
+
+   @Override
+   public boolean isChunked() {
+      return length < 0;
+   }
+
+   @Override
+   public Set<String> getTrailerNames() {
+      return null;
+   }
+
+   @Override
+   public boolean isRepeatable() {
+      return false;
+   }
+
+   @Override
+   public void failed(Exception e) {
+      logger.debug("request body failed", e);
+   }
+
+   @Override
+   public void releaseResources() {
+   }
+}
@@ -0,0 +1,301 @@
+/**
+ * Copyright (C) 2020 VanillaSource
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.vanillasource.gerec.httpclient5;
+
+import com.vanillasource.aio.AioSlave;
+import com.vanillasource.aio.channel.ReadableByteChannelMaster;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.EntityDetails;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.nio.AsyncResponseConsumer;
+import org.apache.hc.core5.http.nio.CapacityChannel;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Consumes a response and supplies its body to a slave as a readable channel. Data is given to
+ * the slave directly from the buffers of the connection. Only data the slave does not read, because it is
+ * paused or did not start to consume the content yet, is copied.
+ * <p>
+ * Capacity for more data is only granted when all data received so far was read and the slave is not
+ * paused, so a paused slave stops the flow of data on its own stream, without affecting other streams
+ * multiplexed on the same connection. A slave that does not read anything when it is ready is not called
+ * again until it is resumed or more data arrives.
+ * <p>
+ * All calls to the slave are serialized, they happen on whichever thread delivers new data,
+ * resumes the slave or consumes the content first.
+ */
+final class ChannelResponseConsumer implements AsyncResponseConsumer<Void>, ReadableByteChannelMaster {
+   private static final Logger logger = LoggerFactory.getLogger(ChannelResponseConsumer.class);
+   private static final int CAPACITY_INCREMENT = 65536;
+   private final CompletableFuture<HttpResponse> response = new CompletableFuture<>();
+   private final Queue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+   private final AtomicInteger work = new AtomicInteger();
+   private final CompletableFuture<Object> result = new CompletableFuture<>();
+   private volatile Function<ReadableByteChannelMaster, AioSlave<Object>> slaveFactory;
+   private volatile Future<?> exchange;
+   private volatile FutureCallback<Void> resultCallback;
+   private volatile CapacityChannel capacityChannel;
+   private volatile boolean capacityRequested = false;
+   private volatile boolean paused = false;
+   private volatile boolean closed = false;
+   private volatile boolean completed = false;
+   private volatile Exception error;
+   private ByteBuffer current;
+   private AioSlave<Object> slave;
+   private boolean done = false;
+   private long readLength = 0;
+
+   /**
+    * @return The future response, which is completed when the headers of the response arrive.
+    */
+   CompletableFuture<HttpResponse> getResponse() {
+      return response;
+   }
+
+   /**
+    * Set the exchange this consumer is part of, so it can be cancelled if the slave closes the channel.
+    */
+   void setExchange(Future<?> exchange) {
+      this.exchange = exchange;
+   }
+
+   /**
+    * Start consuming the body with a slave. This may be called before or after the body started to arrive.
+    */
+   @SuppressWarnings("unchecked")
+   <R> CompletableFuture<R> consume(Function<ReadableByteChannelMaster, AioSlave<R>> slaveFactory) {
+      if (this.slaveFactory != null) {
+         throw new IllegalStateException("can only consume response once");
+      }
+      this.slaveFactory = (Function<ReadableByteChannelMaster, AioSlave<Object>>)(Object) slaveFactory;
+      drain();
+      return (CompletableFuture<R>) result;
+   }
+
+   @Override
+   public void consumeResponse(HttpResponse httpResponse, EntityDetails entityDetails, HttpContext context, FutureCallback<Void> resultCallback) {
+      this.resultCallback = resultCallback;
+      if (entityDetails == null) {
+         completed = true;
+         resultCallback.completed(null);
+      }
+      response.complete(httpResponse);
+   }
+
+   @Override
+   public void informationResponse(HttpResponse httpResponse, HttpContext context) {
+   }
+
+   @Override
+   public void updateCapacity(CapacityChannel capacityChannel) {
+      this.capacityChannel = capacityChannel;
+      capacityRequested = true;
+      drain();
+   }
+
+   @Override
+   public void consume(ByteBuffer src) {
+      if (work.compareAndSet(0, 1)) {
+         current = src;
+         step();
+         current = null;
+         queueRemaining(src);
+         // Only work signaled while the slave was reading needs another step, the kept data is not new to the slave
+         int missed = work.decrementAndGet();
+         if (missed != 0) {
+            drainLoop(missed);
+         }
+      } else {
+         queueRemaining(src);
+         drain();
+      }
+   }
+
+   private void queueRemaining(ByteBuffer src) {
+      if (src.hasRemaining()) {
+         ByteBuffer copy = ByteBuffer.allocate(src.remaining());
+         copy.put(src).flip();
+         buffers.add(copy);
+      }
+   }
+
+   @Override
+   public void streamEnd(List<? extends Header> trailers) {
+      logger.debug("response body completed");
+      completed = true;
+      resultCallback.completed(null);
+      drain();
+   }
+
+   @Override
+   public void failed(Exception e) {
+      logger.debug("response failed", e);
+      if (!response.completeExceptionally(e)) {
+         error = e;
+         drain();
+      }
+   }
+
+   @Override
+   public void releaseResources() {
+   }
+
+   @Override
+   public void pause() {
+      paused = true;
+   }
+
+   @Override
+   public void resume() {
+      paused = false;
+      drain();
+   }
+
+   @Override
+   public void close() {
+      logger.debug("closing response body");
+      closed = true;
+      drain();
+   }
+
+   @Override
+   public boolean isOpen() {
+      return !closed;
+   }
+
+   @Override
+   public int read(ByteBuffer target) {
+      int length = 0;
+      ByteBuffer buffer;
+      while (target.hasRemaining() && (buffer = nextBuffer()) != null) {
+         int partLength = Math.min(buffer.remaining(), target.remaining());
+         ByteBuffer part = buffer.duplicate();
+         part.limit(part.position() + partLength);
+         target.put(part);
+         buffer.position(buffer.position() + partLength);
+         length += partLength;
+         if (!buffer.hasRemaining() && buffer != current) {
+            buffers.poll();
+         }
+      }
+      if (length == 0 && (closed || (completed && !hasData()))) {
+         return -1;
+      }
+      readLength += length;
+      return length;
+   }
+
+   private ByteBuffer nextBuffer() {
+      ByteBuffer buffer = buffers.peek();
+      if (buffer != null) {
+         return buffer;
+      }
+      if (current != null && current.hasRemaining()) {
+         return current;
+      }
+      return null;
+   }
+
+   private boolean hasData() {
+      return nextBuffer() != null;
+   }
+
+   /**
+    * Do all outstanding work on the current thread, unless another thread is already doing it, in
+    * which case that thread will pick up the work signaled here too.
+    */
+   private void drain() {
+      if (work.getAndIncrement() == 0) {
+         drainLoop(1);
+      }
+   }
+
+   private void drainLoop(int missed) {
+      do {
+         step();
+         missed = work.addAndGet(-missed);
+      } while (missed != 0);
+   }
+
+   private void step() {
+      try {
+         if (done || slaveFactory == null) {
+            return;
+         }
+         if (slave == null) {
+            slave = slaveFactory.apply(this);
+         }
+         if (error != null) {
+            fail(error);
+            return;
+         }
+         while (!paused && !closed && hasData()) {
+            long readLengthBefore = readLength;
+            slave.onReady();
+            if (readLength == readLengthBefore) {
+               break;
+            }
+         }
+         if (closed || (completed && !hasData())) {
+            done = true;
+            if (!completed) {
+               cancelExchange();
+            }
+            buffers.clear();
+            result.complete(slave.onCompleted());
+         } else if (!paused && buffers.isEmpty() && capacityRequested) {
+            capacityRequested = false;
+            capacityChannel.update(CAPACITY_INCREMENT);
+         }
+      } catch (IOException e) {
+         fail(new UncheckedIOException(e));
+      } catch (RuntimeException e) {
+         fail(e);
+      }
+   }
+
+   private void fail(Throwable e) {
+      done = true;
+      buffers.clear();
+      if (!completed) {
+         cancelExchange();
+      }
+      result.completeExceptionally(e);
+   }
+
+   private void cancelExchange() {
+      Future<?> currentExchange = exchange;
+      if (currentExchange != null) {
+         currentExchange.cancel(true);
+      }
+   }
+}
@@ -0,0 +1,148 @@
+/**
+ * Copyright (C) 2020 VanillaSource
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.vanillasource.gerec.httpclient5;
+
+import com.vanillasource.gerec.reference.HttpClientResourceReference;
+import com.vanillasource.gerec.mediatype.MediaTypes;
+import org.testng.annotations.*;
+import static org.testng.Assert.*;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.EntityDetails;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpConnection;
+import org.apache.hc.core5.http.HttpRequest;
+import org.apache.hc.core5.http.Message;
+import org.apache.hc.core5.http.URIScheme;
+import org.apache.hc.core5.http.impl.bootstrap.HttpAsyncServer;
+import org.apache.hc.core5.http.nio.AsyncRequestConsumer;
+import org.apache.hc.core5.http.nio.AsyncServerRequestHandler;
+import org.apache.hc.core5.http.nio.entity.StringAsyncEntityConsumer;
+import org.apache.hc.core5.http.nio.support.AsyncResponseBuilder;
+import org.apache.hc.core5.http.nio.support.BasicRequestConsumer;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.http2.HttpVersionPolicy;
+import org.apache.hc.core5.http2.frame.RawFrame;
+import org.apache.hc.core5.http2.impl.nio.H2StreamListener;
+import org.apache.hc.core5.http2.impl.nio.bootstrap.H2ServerBootstrap;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.reactor.ListenerEndpoint;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Test
+public class AsyncApacheHttpClient5Http2ITTests {
+   private final Set<HttpConnection> connections = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+   private final AtomicInteger streams = new AtomicInteger();
+   private HttpAsyncServer server;
+   private CloseableHttpAsyncClient httpClient;
+   private URI requestURI;
+
+   public void testContentIsReadOverHttp2() throws Exception {
+      HttpClientResourceReference reference = new HttpClientResourceReference(new AsyncApacheHttpClient5(httpClient), requestURI);
+
+      assertEquals(reference.get(MediaTypes.textPlain()).get(5, TimeUnit.SECONDS), "ABC");
+      assertEquals(streams.get(), 1);
+   }
+
+   public void testConcurrentRequestsAreMultiplexedOnOneConnection() throws Exception {
+      HttpClientResourceReference reference = new HttpClientResourceReference(new AsyncApacheHttpClient5(httpClient), requestURI);
+      List<CompletableFuture<String>> results = new ArrayList<>();
+
+      for (int i=0; i<20; i++) {
+         results.add(reference.get(MediaTypes.textPlain()));
+      }
+
+      for (CompletableFuture<String> result: results) {
+         assertEquals(result.get(5, TimeUnit.SECONDS), "ABC");
+      }
+      assertEquals(streams.get(), 20);
+      assertEquals(connections.size(), 1);
+   }
+
+   @BeforeMethod
+   protected void setUp() throws Exception {
+      connections.clear();
+      streams.set(0);
+      server = H2ServerBootstrap.bootstrap()
+         .setVersionPolicy(HttpVersionPolicy.FORCE_HTTP_2)
+         .setStreamListener(new ConnectionRecordingListener())
+         .register("*", new AsyncServerRequestHandler<Message<HttpRequest, String>>() {
+            @Override
+            public AsyncRequestConsumer<Message<HttpRequest, String>> prepare(HttpRequest request, EntityDetails entityDetails, HttpContext context) {
+               return new BasicRequestConsumer<>(entityDetails != null ? new StringAsyncEntityConsumer() : null);
+            }
+
+            @Override
+            public void handle(Message<HttpRequest, String> request, ResponseTrigger responseTrigger, HttpContext context) throws org.apache.hc.core5.http.HttpException, IOException {
+               responseTrigger.submitResponse(AsyncResponseBuilder.create(200).setEntity("ABC", ContentType.TEXT_PLAIN).build(), context);
+            }
+         })
+         .create();
+      server.start();
+      ListenerEndpoint endpoint = server.listen(new InetSocketAddress("localhost", 0), URIScheme.HTTP).get();
+      requestURI = URI.create("http://localhost:"+((InetSocketAddress) endpoint.getAddress()).getPort()+"/nini");
+      httpClient = HttpAsyncClients.customHttp2().build();
+      httpClient.start();
+   }
+
+   @AfterMethod
+   protected void tearDown() {
+      httpClient.close(CloseMode.IMMEDIATE);
+      server.close(CloseMode.IMMEDIATE);
+   }
+
+   private final class ConnectionRecordingListener implements H2StreamListener {
+      @Override
+      public void onHeaderInput(HttpConnection connection, int streamId, List<? extends Header> headers) {
+         connections.add(connection);
+         streams.incrementAndGet();
+      }
+
+      @Override
+      public void onHeaderOutput(HttpConnection connection, int streamId, List<? extends Header> headers) {
+      }
+
+      @Override
+      public void onFrameInput(HttpConnection connection, int streamId, RawFrame frame) {
+      }
+
+      @Override
+      public void onFrameOutput(HttpConnection connection, int streamId, RawFrame frame) {
+      }
+
+      @Override
+      public void onInputFlowControl(HttpConnection connection, int streamId, int delta, int actualSize) {
+      }
+
+      @Override
+      public void onOutputFlowControl(HttpConnection connection, int streamId, int delta, int actualSize) {
+      }
+   }
+}
@@ -0,0 +1,119 @@
+/**
+ * Copyright (C) 2020 VanillaSource
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.vanillasource.gerec.httpclient5;
+
+import org.testng.annotations.*;
+import static org.testng.Assert.*;
+import static org.mockito.Mockito.*;
+import com.vanillasource.aio.AioSlave;
+import com.vanillasource.aio.channel.ByteArrayWritableByteChannelSlave;
+import com.vanillasource.aio.channel.WritableByteChannelMaster;
+import org.apache.hc.core5.http.nio.DataStreamChannel;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.ArrayList;
+
+@Test
+public class ChannelEntityProducerTests {
+   private DataStreamChannel channel;
+
+   public void testLengthIsReported() {
+      ChannelEntityProducer producer = new ChannelEntityProducer(output -> new ByteArrayWritableByteChannelSlave(output, "abc".getBytes()), 3);
+
+      assertEquals(producer.getContentLength(), 3);
+      assertFalse(producer.isChunked());
+   }
+
+   public void testUnknownLengthIsChunked() {
+      ChannelEntityProducer producer = new ChannelEntityProducer(output -> new ByteArrayWritableByteChannelSlave(output, "abc".getBytes()), -1);
+
+      assertTrue(producer.isChunked());
+   }
+
+   public void testContentIsWrittenAndStreamEnded() throws Exception {
+      when(channel.write(any(ByteBuffer.class))).thenAnswer(invocation -> {
+         ByteBuffer buffer = (ByteBuffer) invocation.getArguments()[0];
+         int length = buffer.remaining();
+         buffer.position(buffer.limit());
+         return length;
+      });
+      ChannelEntityProducer producer = new ChannelEntityProducer(output -> new ByteArrayWritableByteChannelSlave(output, "abc".getBytes()), 3);
+
+      producer.produce(channel);
+
+      verify(channel).write(any(ByteBuffer.class));
+      verify(channel).endStream();
+      assertEquals(producer.available(), 0);
+   }
+
+   public void testStreamIsNotEndedIfChannelTookNothing() throws Exception {
+      when(channel.write(any(ByteBuffer.class))).thenReturn(0);
+      ChannelEntityProducer producer = new ChannelEntityProducer(output -> new ByteArrayWritableByteChannelSlave(output, "abc".getBytes()), 3);
+
+      producer.produce(channel);
+
+      verify(channel, never()).endStream();
+      assertTrue(producer.available() > 0);
+   }
+
+   public void testPausedProducerHasNothingAvailable() throws Exception {
+      ChannelEntityProducer producer = new ChannelEntityProducer(PausingSlave::new, -1);
+
+      producer.produce(channel);
+
+      assertEquals(producer.available(), 0);
+   }
+
+   public void testResumeRequestsOutput() throws Exception {
+      List<WritableByteChannelMaster> masters = new ArrayList<>();
+      ChannelEntityProducer producer = new ChannelEntityProducer(output -> {
+         masters.add(output);
+         return new PausingSlave(output);
+      }, -1);
+      producer.produce(channel);
+
+      masters.get(0).resume();
+
+      verify(channel).requestOutput();
+      assertTrue(producer.available() > 0);
+   }
+
+   private static final class PausingSlave implements AioSlave<Void> {
+      private final WritableByteChannelMaster master;
+
+      private PausingSlave(WritableByteChannelMaster master) {
+         this.master = master;
+      }
+
+      @Override
+      public void onReady() {
+         master.pause();
+      }
+
+      @Override
+      public Void onCompleted() {
+         return null;
+      }
+   }
+
+   @BeforeMethod
+   protected void setUp() {
+      channel = mock(DataStreamChannel.class);
+   }
+}
@@ -0,0 +1,250 @@
+/**
+ * Copyright (C) 2020 VanillaSource
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.vanillasource.gerec.httpclient5;
+
+import org.testng.annotations.*;
+import static org.testng.Assert.*;
+import static org.mockito.Mockito.*;
+import com.vanillasource.aio.AioSlave;
+import com.vanillasource.aio.channel.ByteArrayReadableByteChannelSlave;
+import com.vanillasource.aio.channel.ReadableByteChannelMaster;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.EntityDetails;
+import org.apache.hc.core5.http.message.BasicHttpResponse;
+import org.apache.hc.core5.http.nio.CapacityChannel;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+
+@Test
+public class ChannelResponseConsumerTests {
+   private ChannelResponseConsumer consumer;
+   private CapacityChannel capacityChannel;
+   private FutureCallback<Void> resultCallback;
+   private Future<?> exchange;
+
+   public void testResponseIsCompletedWhenHeadersArrive() throws Exception {
+      BasicHttpResponse response = new BasicHttpResponse(200);
+
+      consumer.consumeResponse(response, mock(EntityDetails.class), null, resultCallback);
+
+      assertSame(consumer.getResponse().join(), response);
+   }
+
+   public void testResponseWithoutEntityCompletesConsumption() throws Exception {
+      consumer.consumeResponse(new BasicHttpResponse(200), null, null, resultCallback);
+
+      CompletableFuture<byte[]> result = consumer.consume(ByteArrayReadableByteChannelSlave::new);
+
+      assertEquals(result.join().length, 0);
+      verify(resultCallback).completed(null);
+   }
+
+   public void testDataIsGivenToSlaveDirectly() throws Exception {
+      startResponse();
+      CompletableFuture<byte[]> result = consumer.consume(ByteArrayReadableByteChannelSlave::new);
+
+      consumer.consume(buffer("abc"));
+      consumer.consume(buffer("de"));
+      consumer.streamEnd(null);
+
+      assertEquals(new String(result.join()), "abcde");
+   }
+
+   public void testDataArrivingBeforeConsumptionIsKept() throws Exception {
+      startResponse();
+      ByteBuffer data = buffer("abc");
+      consumer.consume(data);
+      data.clear();
+      data.put("xxx".getBytes());
+      consumer.streamEnd(null);
+
+      CompletableFuture<byte[]> result = consumer.consume(ByteArrayReadableByteChannelSlave::new);
+
+      assertEquals(new String(result.join()), "abc");
+   }
+
+   public void testNoCapacityIsGrantedBeforeContentIsConsumed() throws Exception {
+      startResponse();
+
+      consumer.updateCapacity(capacityChannel);
+
+      verify(capacityChannel, never()).update(anyInt());
+   }
+
+   public void testCapacityIsGrantedWhenConsuming() throws Exception {
+      startResponse();
+      consumer.updateCapacity(capacityChannel);
+
+      consumer.consume(ByteArrayReadableByteChannelSlave::new);
+
+      verify(capacityChannel).update(anyInt());
+   }
+
+   public void testPausedSlaveDoesNotGrantCapacity() throws Exception {
+      startResponse();
+      consumer.consume(PausingSlave::new);
+      consumer.consume(buffer("abc"));
+
+      consumer.updateCapacity(capacityChannel);
+
+      verify(capacityChannel, never()).update(anyInt());
+   }
+
+   public void testResumedSlaveReadsKeptDataAndGrantsCapacity() throws Exception {
+      startResponse();
+      CompletableFuture<Integer> result = consumer.consume(PausingSlave::new);
+      consumer.consume(buffer("abc"));
+      consumer.updateCapacity(capacityChannel);
+
+      consumer.resume();
+
+      verify(capacityChannel).update(anyInt());
+      consumer.streamEnd(null);
+      assertEquals(result.join().intValue(), 3);
+   }
+
+   public void testClosingCancelsExchange() throws Exception {
+      startResponse();
+      CompletableFuture<byte[]> result = consumer.consume(ByteArrayReadableByteChannelSlave::new);
+
+      consumer.close();
+
+      verify(exchange).cancel(true);
+      assertTrue(result.isDone());
+   }
+
+   public void testFailureBeforeResponseFailsResponse() {
+      consumer.failed(new IOException("test"));
+
+      assertTrue(consumer.getResponse().isCompletedExceptionally());
+   }
+
+   public void testFailureDuringContentFailsConsumption() throws Exception {
+      startResponse();
+      CompletableFuture<byte[]> result = consumer.consume(ByteArrayReadableByteChannelSlave::new);
+
+      consumer.failed(new IOException("test"));
+
+      assertTrue(result.isCompletedExceptionally());
+   }
+
+   @Test(expectedExceptions = IllegalStateException.class)
+   public void testContentCanOnlyBeConsumedOnce() throws Exception {
+      startResponse();
+      consumer.consume(ByteArrayReadableByteChannelSlave::new);
+      consumer.consume(ByteArrayReadableByteChannelSlave::new);
+   }
+
+   public void testSlaveNotReadingIsNotCalledAgainUntilResumed() throws Exception {
+      startResponse();
+      IdleSlave slave = new IdleSlave(consumer);
+      CompletableFuture<Integer> result = consumer.consume(master -> slave);
+
+      consumer.consume(buffer("abc"));
+
+      assertEquals(slave.readyCount, 1);
+      consumer.resume();
+      assertEquals(slave.readyCount, 2);
+      consumer.streamEnd(null);
+      assertEquals(result.join().intValue(), 3);
+   }
+
+   private void startResponse() throws Exception {
+      consumer.consumeResponse(new BasicHttpResponse(200), mock(EntityDetails.class), null, resultCallback);
+   }
+
+   private ByteBuffer buffer(String content) {
+      return ByteBuffer.wrap(content.getBytes());
+   }
+
+   /**
+    * Pauses the first time it is ready, reads everything afterwards.
+    */
+   private static final class PausingSlave implements AioSlave<Integer> {
+      private final ReadableByteChannelMaster master;
+      private final ByteBuffer buffer = ByteBuffer.allocate(100);
+      private boolean pausedOnce = false;
+
+      private PausingSlave(ReadableByteChannelMaster master) {
+         this.master = master;
+      }
+
+      @Override
+      public void onReady() {
+         if (!pausedOnce) {
+            pausedOnce = true;
+            master.pause();
+         } else {
+            try {
+               master.read(buffer);
+            } catch (IOException e) {
+               throw new UncheckedIOException(e);
+            }
+         }
+      }
+
+      @Override
+      public Integer onCompleted() {
+         return buffer.position();
+      }
+   }
+
+   /**
+    * Reads nothing the first time it is ready, reads everything afterwards.
+    */
+   private static final class IdleSlave implements AioSlave<Integer> {
+      private final ReadableByteChannelMaster master;
+      private final ByteBuffer buffer = ByteBuffer.allocate(100);
+      private int readyCount = 0;
+
+      private IdleSlave(ReadableByteChannelMaster master) {
+         this.master = master;
+      }
+
+      @Override
+      public void onReady() {
+         readyCount++;
+         if (readyCount > 1) {
+            try {
+               master.read(buffer);
+            } catch (IOException e) {
+               throw new UncheckedIOException(e);
+            }
+         }
+      }
+
+      @Override
+      public Integer onCompleted() {
+         return buffer.position();
+      }
+   }
+
+   @BeforeMethod
+   @SuppressWarnings("unchecked")
+   protected void setUp() {
+      consumer = new ChannelResponseConsumer();
+      capacityChannel = mock(CapacityChannel.class);
+      resultCallback = mock(FutureCallback.class);
+      exchange = mock(Future.class);
+      consumer.setExchange(exchange);
+   }
+}
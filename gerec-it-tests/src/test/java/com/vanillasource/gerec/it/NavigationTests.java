@@ -21,6 +21,7 @@ package com.vanillasource.gerec.it;
 import org.testng.annotations.Test;
 import static org.testng.Assert.*;
 import static org.mockito.Mockito.*;
+import com.github.tomakehurst.wiremock.client.WireMock;
 import static com.github.tomakehurst.wiremock.client.WireMock.*;
 import com.vanillasource.gerec.mediatype.MediaTypes;
 import com.vanillasource.gerec.navigation.Navigation;
@@ -57,5 +58,46 @@ public class NavigationTests extends HttpTestsBase {
       assertTrue(personMaybe.isPresent());
       assertEquals(personMaybe.get(), new Person("John", 49));
    }
-}
 
+   public void testSearchForAnyAdultInParallel() {
+      stubGet("/", "application/vnd.test.searchpage",
+            "{\"greetingMessage\":\"Hello!\", \"searchForm\": {\"href\":\"/1\"}}");
+      stubGet("/1?q=all+persons", "application/vnd.test.resultspage",
+            "{\"hit1\": {\"href\":\"/person1\"}, \"hit2\": {\"href\":\"/person2\"}}");
+      stubGet("/person1", "application/vnd.test.person", "{\"name\":\"Jack\", \"age\": 15}");
+      stubGet("/person2", "application/vnd.test.person", "{\"name\":\"John\", \"age\": 49}");
+
+      Optional<Person> personMaybe = new Navigation<Person>(reference("/"))
+         .navigate(SearchPage.MEDIA_TYPE, follow(searchPage -> searchPage.search("all persons")))
+         .navigate(ResultsPage.MEDIA_TYPE, any(ResultsPage::iterate, 2))
+         .navigate(Person.MEDIA_TYPE, (person, context) -> {
+            if (person.isAdult()) {
+               return context.finish(person);
+            } else {
+               return context.back();
+            }
+         })
+         .execute()
+         .join();
+
+      assertEquals(personMaybe, Optional.of(new Person("John", 49)));
+   }
+
+   public void testMemoizedPerExecutionFetchesSameResourceOncePerExecution() {
+      stubGet("/", "application/vnd.test.searchpage",
+            "{\"greetingMessage\":\"Hello!\", \"searchForm\": {\"href\":\"/1\"}}");
+      stubGet("/1?q=all+persons", "application/vnd.test.resultspage",
+            "{\"hit1\": {\"href\":\"/person1\"}, \"hit2\": {\"href\":\"/person1\"}}");
+      stubGet("/person1", "application/vnd.test.person", "{\"name\":\"Jack\", \"age\": 15}");
+      Navigation<Person> navigation = new Navigation<Person>(reference("/"))
+         .navigate(SearchPage.MEDIA_TYPE, follow(searchPage -> searchPage.search("all persons")))
+         .navigate(ResultsPage.MEDIA_TYPE, first(ResultsPage::iterate))
+         .navigate(Person.MEDIA_TYPE, (person, context) -> context.back())
+         .memoizePerExecution();
+
+      navigation.execute().join();
+      navigation.execute().join();
+
+      WireMock.verify(2, getRequestedFor(urlEqualTo("/person1")));
+   }
+}
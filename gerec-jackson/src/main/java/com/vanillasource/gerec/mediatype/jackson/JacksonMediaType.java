@@ -18,10 +18,6 @@
 
 package com.vanillasource.gerec.mediatype.jackson;
 
-import com.vanillasource.gerec.form.Form;
-import com.vanillasource.gerec.form.GetForm;
-import com.vanillasource.gerec.form.PostForm;
-import com.vanillasource.gerec.ResourceReference;
 import com.vanillasource.gerec.MediaType;
 import com.vanillasource.gerec.HttpRequest;
 import com.vanillasource.gerec.HttpResponse;
@@ -30,35 +26,66 @@ import com.vanillasource.gerec.mediatype.ByteArrayAcceptType;
 import com.vanillasource.gerec.mediatype.ByteArrayContentType;
 import com.vanillasource.gerec.mediatype.MediaTypeSpecification;
 import java.util.function.Consumer;
-import java.net.URI;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.module.SimpleModule;
-import com.fasterxml.jackson.databind.JsonDeserializer;
-import com.fasterxml.jackson.core.JsonParser;
-import com.fasterxml.jackson.core.JsonToken;
-import com.fasterxml.jackson.core.io.SerializedString;
-import com.fasterxml.jackson.core.JsonParseException;
 import java.util.concurrent.CompletableFuture;
-import com.fasterxml.jackson.annotation.JsonAutoDetect;
 
+/**
+ * A media type that serializes and deserializes objects with Jackson. The object mapper
+ * is created and customized only once, when this media type is created, and is shared
+ * by all messages. Therefore the customizer must not depend on the individual messages.
+ * <p>
+ * By default the whole content is collected first and parsed afterwards. See {@link #streaming()}
+ * for parsing the content while it is being received. The size of the content is not limited
+ * by default, see {@link #withMaxContentSize(int)}.
+ */
 public class JacksonMediaType<T> implements MediaType<T> {
-   private final Class<T> type;
-   private final Consumer<ObjectMapper> mapperCustomizer;
    private final MediaTypeSpecification mediaType;
+   private final ObjectMapperEngine<T> engine;
+   private final boolean streaming;
+   private final int maxContentSize;
 
    public JacksonMediaType(Class<T> type, String mediaTypeName) {
       this(type, MediaTypeSpecification.mediaType(mediaTypeName), mapper -> {});
    }
 
    /**
-    * @param mapperCustomizer A consumer that can customize object mappers created by this media type.
+    * @param mapperCustomizer A consumer that can customize the object mapper created by this media type.
     */
    public JacksonMediaType(Class<T> type, MediaTypeSpecification mediaType, Consumer<ObjectMapper> mapperCustomizer) {
-      this.type = type;
+      this(mediaType, new ObjectMapperEngine<>(type, mapperCustomizer), false, Integer.MAX_VALUE);
+   }
+
+   private JacksonMediaType(MediaTypeSpecification mediaType, ObjectMapperEngine<T> engine, boolean streaming, int maxContentSize) {
       this.mediaType = mediaType;
-      this.mapperCustomizer = mapperCustomizer;
+      this.engine = engine;
+      this.streaming = streaming;
+      this.maxContentSize = maxContentSize;
+   }
+
+   /**
+    * Get the non-blocking version of this media type, which parses json tokens as soon
+    * as the bytes arrive, instead of collecting the whole content first. The object is
+    * complete shortly after the last bytes are received, and the raw content is never held
+    * in memory as a whole. The parsed tokens are still held until the object is created.
+    */
+   public JacksonMediaType<T> streaming() {
+      return new JacksonMediaType<>(mediaType, engine, true, maxContentSize);
+   }
+
+   /**
+    * Get a version of this media type that does not accept content larger than the given
+    * size. Larger content fails with {@link com.vanillasource.aio.channel.ContentTooLargeException}
+    * as soon as the size is known, without reading all of the content.
+    * @param maxContentSize The maximum size of the content in bytes.
+    */
+   public JacksonMediaType<T> withMaxContentSize(int maxContentSize) {
+      return new JacksonMediaType<>(mediaType, engine, streaming, maxContentSize);
+   }
+
+   ObjectMapperEngine<T> getEngine() {
+      return engine;
    }
 
    @Override
@@ -78,108 +105,33 @@ public class JacksonMediaType<T> implements MediaType<T> {
 
    @Override
    public CompletableFuture<T> deserialize(HttpResponse response, DeserializationContext context) {
-      return new ByteArrayAcceptType(MediaTypeSpecification.WILDCARD).deserialize(response, context)
+      if (streaming) {
+         return response.consumeContent(channel -> new TokenBufferReadableByteChannelSlave(channel, engine, maxContentSize))
+            .thenApply(tokens -> {
+               try {
+                  return engine.read(tokens, context);
+               } catch (IOException e) {
+                  throw new UncheckedIOException(e);
+               }
+            });
+      }
+      return new ByteArrayAcceptType(MediaTypeSpecification.WILDCARD, maxContentSize).deserialize(response, context)
          .thenApply(content -> {
             try {
-               return createDeserializerObjectMapper(context).readValue(content, type);
+               return engine.read(content, context);
             } catch (IOException e) {
                throw new UncheckedIOException(e);
             }
          });
    }
 
-   private ObjectMapper createDeserializerObjectMapper(DeserializationContext context) {
-      ObjectMapper mapper = new ObjectMapper();
-      mapper.setVisibility(mapper.getSerializationConfig().getDefaultVisibilityChecker()
-            .withFieldVisibility(JsonAutoDetect.Visibility.ANY)
-            .withGetterVisibility(JsonAutoDetect.Visibility.NONE)
-            .withSetterVisibility(JsonAutoDetect.Visibility.NONE)
-            .withCreatorVisibility(JsonAutoDetect.Visibility.NONE));
-      mapperCustomizer.accept(mapper);
-      SimpleModule module = new SimpleModule();
-      module.addDeserializer(ResourceReference.class, new ResourceReferenceDeserializer(context));
-      module.addDeserializer(Form.class, new FormDeserializer(context));
-      mapper.registerModule(module);
-      return mapper;
-   }
-
    @Override
    public void serialize(T object, HttpRequest request) {
       try {
-         byte[] objectAsBytes = createSerializerObjectMapper().writeValueAsBytes(object);
+         byte[] objectAsBytes = engine.write(object);
          new ByteArrayContentType(MediaTypeSpecification.WILDCARD).serialize(objectAsBytes, request);
       } catch (IOException e) {
          throw new UncheckedIOException(e);
       }
    }
-
-   private ObjectMapper createSerializerObjectMapper() {
-      ObjectMapper mapper = new ObjectMapper();
-      mapper.setVisibility(mapper.getSerializationConfig().getDefaultVisibilityChecker()
-            .withFieldVisibility(JsonAutoDetect.Visibility.ANY)
-            .withGetterVisibility(JsonAutoDetect.Visibility.NONE)
-            .withSetterVisibility(JsonAutoDetect.Visibility.NONE)
-            .withCreatorVisibility(JsonAutoDetect.Visibility.NONE));
-      mapperCustomizer.accept(mapper);
-      return mapper;
-   }
-
-   private static class ResourceReferenceDeserializer extends JsonDeserializer<ResourceReference> {
-      private final DeserializationContext context;
-
-      public ResourceReferenceDeserializer(DeserializationContext context) {
-         this.context = context;
-      }
-
-      @Override
-      public ResourceReference deserialize(JsonParser jp, com.fasterxml.jackson.databind.DeserializationContext jacksonContext) throws IOException {
-         // Parse { "href": "<uri>" }, current token is the start of the object
-         if (jp.getCurrentToken() != JsonToken.START_OBJECT) {
-            throw new JsonParseException("tried to read a link, but it was not an object", jp.getCurrentLocation());
-         }
-         jp.nextFieldName(new SerializedString("href"));
-         String uri = jp.nextTextValue();
-         skipToObjectEnd(jp, jp.nextToken());
-         return context.resolve(URI.create(uri));
-      }
-   }
-
-   private static void skipToObjectEnd(JsonParser jp, JsonToken prereadToken) throws IOException {
-      JsonToken token = prereadToken;
-      while (token != null && token != JsonToken.END_OBJECT) {
-         token = jp.nextToken();
-      }
-   }
-
-   private static class FormDeserializer extends JsonDeserializer<Form> {
-      private final DeserializationContext context;
-
-      public FormDeserializer(DeserializationContext context) {
-         this.context = context;
-      }
-
-      @Override
-      public Form deserialize(JsonParser jp, com.fasterxml.jackson.databind.DeserializationContext jacksonContext) throws IOException {
-         // Parse { "href": "<uri>", "method": "GET" }, current token is the start of the object
-         if (jp.getCurrentToken() != JsonToken.START_OBJECT) {
-            throw new JsonParseException("tried to read a form, but it was not an object", jp.getCurrentLocation());
-         }
-         jp.nextFieldName(new SerializedString("href"));
-         String target = jp.nextTextValue();
-         JsonToken nextToken = jp.nextToken();
-         String method = "GET";
-         if (nextToken == JsonToken.FIELD_NAME && jp.getCurrentName().equals("method")) {
-            method = jp.nextTextValue();
-         }
-         skipToObjectEnd(jp, nextToken);
-         if (method.equals("GET")) {
-            return new GetForm(URI.create(target), context::resolve);
-         } else if (method.equals("POST")) {
-            return new PostForm(context.resolve(URI.create(target)));
-         } else {
-            throw new JsonParseException("unknown method for form '"+method+"'", jp.getCurrentLocation());
-         }
-      }
-   }
 }
-
@@ -0,0 +1,250 @@
+/**
+ * Copyright (C) 2020 VanillaSource
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.vanillasource.gerec.mediatype.jackson;
+
+import com.vanillasource.gerec.HttpResponse;
+import com.vanillasource.gerec.HttpRequest;
+import com.vanillasource.gerec.AcceptMediaType;
+import com.vanillasource.gerec.DeserializationContext;
+import com.vanillasource.gerec.mediatype.MediaTypeSpecification;
+import com.vanillasource.aio.AioSlave;
+import com.vanillasource.aio.ByteBufferPools;
+import com.vanillasource.aio.channel.ReadableByteChannelMaster;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import java.util.function.Consumer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.nio.ByteBuffer;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * An accept type for json content that consists of a single top-level array. The array
+ * is parsed as the bytes arrive, and each element is deserialized with the given element type and
+ * handed to the consumer as soon as the element is complete. Only the tokens of the elements
+ * not yet consumed are held in memory, so arbitrarily large arrays can be processed.
+ * <p>
+ * If an executor is given, elements are consumed in order on that executor, while the
+ * content is still being parsed. When the given number of elements are waiting
+ * to be consumed, the response is paused until the consumer catches up, so no more than that
+ * many elements are ever pending.
+ */
+public class JsonArrayCollectionAcceptType<T> implements AcceptMediaType<Void> {
+   private static final int READ_BUFFER_SIZE = 8192;
+   private final MediaTypeSpecification mediaType;
+   private final JacksonMediaType<T> elementType;
+   private final Consumer<T> consumer;
+   private final Executor executor;
+   private final int maxPendingElements;
+
+   /**
+    * @param elementType The type of the array elements, only its object mapper is used.
+    * @param executor The executor to consume the elements on.
+    * @param maxPendingElements The maximum number of elements parsed but not yet consumed. The
+    * response is paused when this many elements are pending.
+    */
+   public JsonArrayCollectionAcceptType(MediaTypeSpecification mediaType, JacksonMediaType<T> elementType, Consumer<T> consumer,
+         Executor executor, int maxPendingElements) {
+      if (maxPendingElements < 1) {
+         throw new IllegalArgumentException("max pending elements must be at least 1, but was "+maxPendingElements);
+      }
+      this.mediaType = mediaType;
+      this.elementType = elementType;
+      this.consumer = consumer;
+      this.executor = executor;
+      this.maxPendingElements = maxPendingElements;
+   }
+
+   /**
+    * Consume each element on the thread that reads the response. The response
+    * is not read while the consumer is running.
+    */
+   public JsonArrayCollectionAcceptType(MediaTypeSpecification mediaType, JacksonMediaType<T> elementType, Consumer<T> consumer) {
+      this(mediaType, elementType, consumer, Runnable::run, 1);
+   }
+
+   @Override
+   public void applyAsOption(HttpRequest request) {
+      mediaType.addAsAcceptedTo(request);
+   }
+
+   @Override
+   public boolean isHandling(HttpResponse response) {
+      return mediaType.isIn(response);
+   }
+
+   @Override
+   public CompletableFuture<Void> deserialize(HttpResponse response, DeserializationContext context) {
+      return response.consumeContent(input -> new ElementsSlave(input, context))
+         .thenCompose(elementsConsumed -> elementsConsumed);
+   }
+
+   private final class ElementsSlave implements AioSlave<CompletableFuture<Void>> {
+      private final ReadableByteChannelMaster input;
+      private final DeserializationContext context;
+      private final ObjectMapperEngine<T> engine;
+      private final JsonParser parser;
+      private final ByteArrayFeeder feeder;
+      private final ByteBuffer inputBuffer = ByteBufferPools.heap().acquire(READ_BUFFER_SIZE);
+      private boolean arrayStarted = false;
+      private boolean arrayEnded = false;
+      private int depth = 0;
+      private TokenBuffer elementTokens;
+      private CompletableFuture<Void> elementsConsumed = CompletableFuture.completedFuture(null);
+      private int pendingElements = 0;
+      private volatile boolean paused = false;
+      private volatile boolean failed = false;
+      private boolean released = false;
+
+      private ElementsSlave(ReadableByteChannelMaster input, DeserializationContext context) {
+         this.input = input;
+         this.context = context;
+         this.engine = elementType.getEngine();
+         try {
+            this.parser = engine.createNonBlockingParser();
+         } catch (IOException e) {
+            throw new UncheckedIOException(e);
+         }
+         this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+      }
+
+      @Override
+      public void onReady() {
+         try {
+            // Tokens left in the parser from before a pause must be processed before new input is fed
+            processAvailableTokens(true);
+            int readLength;
+            while (!paused && !failed && feeder.needMoreInput() && (readLength = input.read(inputBuffer)) > 0) {
+               feeder.feedInput(inputBuffer.array(), inputBuffer.arrayOffset(), inputBuffer.arrayOffset() + readLength);
+               processAvailableTokens(true);
+               inputBuffer.clear();
+            }
+         } catch (IOException e) {
+            release();
+            throw new UncheckedIOException(e);
+         } catch (RuntimeException e) {
+            release();
+            throw e;
+         }
+      }
+
+      @Override
+      public CompletableFuture<Void> onCompleted() {
+         try {
+            if (!failed) {
+               feeder.endOfInput();
+               processAvailableTokens(false);
+               if (!arrayEnded) {
+                  throw new IllegalStateException("content ended before the json array was complete");
+               }
+            }
+            return elementsConsumed;
+         } catch (IOException e) {
+            throw new UncheckedIOException(e);
+         } finally {
+            release();
+         }
+      }
+
+      /**
+       * Close the parser and give back the buffer, both on completion and on failure.
+       */
+      private void release() {
+         if (released) {
+            return;
+         }
+         released = true;
+         try {
+            parser.close();
+         } catch (IOException e) {
+            throw new UncheckedIOException(e);
+         } finally {
+            ByteBufferPools.heap().release(inputBuffer);
+         }
+      }
+
+      private void processAvailableTokens(boolean respectPause) throws IOException {
+         JsonToken token;
+         while (!(respectPause && paused) && !failed &&
+               (token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+            processToken(token);
+         }
+      }
+
+      private void processToken(JsonToken token) throws IOException {
+         if (!arrayStarted) {
+            if (token != JsonToken.START_ARRAY) {
+               throw new IllegalStateException("content is not a json array, but starts with "+token);
+            }
+            arrayStarted = true;
+         } else if (arrayEnded) {
+            throw new IllegalStateException("content continues after the json array with "+token);
+         } else if (depth == 0 && token == JsonToken.END_ARRAY) {
+            arrayEnded = true;
+         } else {
+            if (depth == 0) {
+               elementTokens = engine.createTokenBuffer(parser);
+            }
+            elementTokens.copyCurrentEvent(parser);
+            if (token.isStructStart()) {
+               depth++;
+            } else if (token.isStructEnd()) {
+               depth--;
+            }
+            if (depth == 0) {
+               consume(elementTokens);
+               elementTokens = null;
+            }
+         }
+      }
+
+      private void consume(TokenBuffer tokens) {
+         synchronized (this) {
+            pendingElements++;
+            if (pendingElements >= maxPendingElements && !paused) {
+               paused = true;
+               input.pause();
+            }
+         }
+         elementsConsumed = elementsConsumed.thenRunAsync(() -> {
+            try {
+               consumer.accept(engine.read(tokens, context));
+            } catch (IOException e) {
+               throw new UncheckedIOException(e);
+            }
+         }, executor);
+         elementsConsumed.whenComplete((result, exception) -> elementDone(exception));
+      }
+
+      private synchronized void elementDone(Throwable exception) {
+         pendingElements--;
+         if (exception != null && !failed) {
+            failed = true;
+            input.close();
+         }
+         if (paused && (failed || pendingElements <= maxPendingElements / 2)) {
+            paused = false;
+            input.resume();
+         }
+      }
+   }
+}
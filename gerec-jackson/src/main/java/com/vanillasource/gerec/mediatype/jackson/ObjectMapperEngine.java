@@ -0,0 +1,164 @@
+/**
+ * Copyright (C) 2020 VanillaSource
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.vanillasource.gerec.mediatype.jackson;
+
+import com.vanillasource.gerec.form.Form;
+import com.vanillasource.gerec.form.GetForm;
+import com.vanillasource.gerec.form.PostForm;
+import com.vanillasource.gerec.ResourceReference;
+import com.vanillasource.gerec.DeserializationContext;
+import java.util.function.Consumer;
+import java.net.URI;
+import java.io.IOException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+
+/**
+ * Holds a fully configured object mapper together with the reader for a given type and
+ * a writer. The writer serializes objects according to their runtime type, so properties of subclasses
+ * are written too. This is built only once per media type, so the serializer and deserializer
+ * caches of the mapper are kept between messages. The per-response <code>DeserializationContext</code>
+ * is passed to the link and form deserializers as a reader attribute.
+ */
+final class ObjectMapperEngine<T> {
+   private static final Object CONTEXT_ATTRIBUTE = DeserializationContext.class;
+   private final ObjectReader reader;
+   private final ObjectWriter writer;
+
+   ObjectMapperEngine(Class<T> type, Consumer<ObjectMapper> mapperCustomizer) {
+      ObjectMapper mapper = new ObjectMapper();
+      mapper.setVisibility(mapper.getSerializationConfig().getDefaultVisibilityChecker()
+            .withFieldVisibility(JsonAutoDetect.Visibility.ANY)
+            .withGetterVisibility(JsonAutoDetect.Visibility.NONE)
+            .withSetterVisibility(JsonAutoDetect.Visibility.NONE)
+            .withCreatorVisibility(JsonAutoDetect.Visibility.NONE));
+      mapperCustomizer.accept(mapper);
+      SimpleModule module = new SimpleModule();
+      module.addDeserializer(ResourceReference.class, new ResourceReferenceDeserializer());
+      module.addDeserializer(Form.class, new FormDeserializer());
+      mapper.registerModule(module);
+      this.reader = mapper.readerFor(type);
+      this.writer = mapper.writer();
+   }
+
+   /**
+    * Get a reader that resolves links with the given context.
+    */
+   ObjectReader reader(DeserializationContext context) {
+      return reader.withAttribute(CONTEXT_ATTRIBUTE, context);
+   }
+
+   T read(byte[] content, DeserializationContext context) throws IOException {
+      return reader(context).readValue(content);
+   }
+
+   /**
+    * Read the given already parsed tokens into the object.
+    */
+   T read(TokenBuffer tokens, DeserializationContext context) throws IOException {
+      return reader(context).readValue(tokens.asParser());
+   }
+
+   /**
+    * Create a parser that can be fed with bytes as they arrive, and does not block
+    * waiting for more input.
+    */
+   JsonParser createNonBlockingParser() throws IOException {
+      return reader.getFactory().createNonBlockingByteArrayParser();
+   }
+
+   /**
+    * Create a buffer to copy the tokens of the given parser into, consistent
+    * with how the mapper would read those tokens directly.
+    */
+   TokenBuffer createTokenBuffer(JsonParser parser) {
+      return new TokenBuffer(parser)
+         .forceUseOfBigDecimal(reader.isEnabled(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS));
+   }
+
+   byte[] write(T object) throws IOException {
+      return writer.writeValueAsBytes(object);
+   }
+
+   private static DeserializationContext context(JsonParser jp, com.fasterxml.jackson.databind.DeserializationContext jacksonContext) throws IOException {
+      DeserializationContext context = (DeserializationContext) jacksonContext.getAttribute(CONTEXT_ATTRIBUTE);
+      if (context == null) {
+         throw JsonMappingException.from(jp, "no deserialization context available to resolve links");
+      }
+      return context;
+   }
+
+   private static final class ResourceReferenceDeserializer extends JsonDeserializer<ResourceReference> {
+      @Override
+      public ResourceReference deserialize(JsonParser jp, com.fasterxml.jackson.databind.DeserializationContext jacksonContext) throws IOException {
+         // Parse { "href": "<uri>" }, current token is the start of the object
+         if (jp.getCurrentToken() != JsonToken.START_OBJECT) {
+            throw new JsonParseException("tried to read a link, but it was not an object", jp.getCurrentLocation());
+         }
+         jp.nextFieldName(new SerializedString("href"));
+         String uri = jp.nextTextValue();
+         skipToObjectEnd(jp, jp.nextToken());
+         return context(jp, jacksonContext).resolve(URI.create(uri));
+      }
+   }
+
+   private static void skipToObjectEnd(JsonParser jp, JsonToken prereadToken) throws IOException {
+      JsonToken token = prereadToken;
+      while (token != null && token != JsonToken.END_OBJECT) {
+         token = jp.nextToken();
+      }
+   }
+
+   private static final class FormDeserializer extends JsonDeserializer<Form> {
+      @Override
+      public Form deserialize(JsonParser jp, com.fasterxml.jackson.databind.DeserializationContext jacksonContext) throws IOException {
+         // Parse { "href": "<uri>", "method": "GET" }, current token is the start of the object
+         if (jp.getCurrentToken() != JsonToken.START_OBJECT) {
+            throw new JsonParseException("tried to read a form, but it was not an object", jp.getCurrentLocation());
+         }
+         jp.nextFieldName(new SerializedString("href"));
+         String target = jp.nextTextValue();
+         JsonToken nextToken = jp.nextToken();
+         String method = "GET";
+         if (nextToken == JsonToken.FIELD_NAME && jp.getCurrentName().equals("method")) {
+            method = jp.nextTextValue();
+         }
+         skipToObjectEnd(jp, nextToken);
+         DeserializationContext context = context(jp, jacksonContext);
+         if (method.equals("GET")) {
+            return new GetForm(URI.create(target), context::resolve);
+         } else if (method.equals("POST")) {
+            return new PostForm(context.resolve(URI.create(target)));
+         } else {
+            throw new JsonParseException("unknown method for form '"+method+"'", jp.getCurrentLocation());
+         }
+      }
+   }
+}
@@ -0,0 +1,122 @@
+/**
+ * Copyright (C) 2020 VanillaSource
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.vanillasource.gerec.mediatype.jackson;
+
+import com.vanillasource.aio.AioSlave;
+import com.vanillasource.aio.ByteBufferPools;
+import com.vanillasource.aio.channel.ContentTooLargeException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Parses json tokens from a channel as the bytes become available, without
+ * ever blocking or collecting the bytes of the whole content. The parsed tokens are collected
+ * into a token buffer, which can be read into objects when all the content is parsed.
+ */
+final class TokenBufferReadableByteChannelSlave implements AioSlave<TokenBuffer> {
+   private static final int BUFFER_SIZE = 8192;
+   private final ReadableByteChannel channel;
+   private final JsonParser parser;
+   private final ByteArrayFeeder feeder;
+   private final TokenBuffer tokens;
+   private final ByteBuffer buffer = ByteBufferPools.heap().acquire(BUFFER_SIZE);
+   private final int maxSize;
+   private long size = 0;
+   private boolean released = false;
+
+   TokenBufferReadableByteChannelSlave(ReadableByteChannel channel, ObjectMapperEngine<?> engine, int maxSize) {
+      this.channel = channel;
+      this.maxSize = maxSize;
+      try {
+         this.parser = engine.createNonBlockingParser();
+      } catch (IOException e) {
+         throw new UncheckedIOException(e);
+      }
+      this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+      this.tokens = engine.createTokenBuffer(parser);
+   }
+
+   @Override
+   public void onReady() {
+      try {
+         buffer.clear();
+         int readLength;
+         while ((readLength = channel.read(buffer)) > 0) {
+            size += readLength;
+            if (size > maxSize) {
+               channel.close();
+               throw new ContentTooLargeException(maxSize);
+            }
+            // Parser references the bytes directly, so buffer can only be reused after all tokens are consumed
+            feeder.feedInput(buffer.array(), buffer.arrayOffset(), buffer.arrayOffset() + readLength);
+            copyAvailableTokens();
+            buffer.clear();
+         }
+      } catch (IOException e) {
+         release();
+         throw new UncheckedIOException(e);
+      } catch (RuntimeException e) {
+         release();
+         throw e;
+      }
+   }
+
+   private void copyAvailableTokens() throws IOException {
+      JsonToken token;
+      while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+         tokens.copyCurrentEvent(parser);
+      }
+   }
+
+   @Override
+   public TokenBuffer onCompleted() {
+      try {
+         feeder.endOfInput();
+         copyAvailableTokens();
+         return tokens;
+      } catch (IOException e) {
+         throw new UncheckedIOException(e);
+      } finally {
+         release();
+      }
+   }
+
+   /**
+    * Close the parser and give back the buffer, both on completion and on failure.
+    */
+   private void release() {
+      if (released) {
+         return;
+      }
+      released = true;
+      try {
+         parser.close();
+      } catch (IOException e) {
+         throw new UncheckedIOException(e);
+      } finally {
+         ByteBufferPools.heap().release(buffer);
+      }
+   }
+}
@@ -26,16 +26,27 @@ import com.vanillasource.gerec.HttpRequest;
 import com.vanillasource.gerec.HttpResponse;
 import com.vanillasource.gerec.ResourceReference;
 import com.vanillasource.gerec.DeserializationContext;
+import com.vanillasource.gerec.form.Form;
+import static com.vanillasource.gerec.mediatype.MediaTypeSpecification.mediaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.function.Consumer;
 import com.vanillasource.aio.channel.WritableByteChannelMaster;
 import com.vanillasource.aio.AioSlave;
+import com.vanillasource.aio.ByteBufferPool;
+import com.vanillasource.aio.ByteBufferPools;
 import com.vanillasource.aio.channel.ReadableByteChannelMaster;
 import com.vanillasource.aio.channel.InputStreamReadableByteChannelMaster;
+import com.vanillasource.aio.channel.ContentTooLargeException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.net.URI;
 import java.util.function.Function;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.Channels;
 import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
 import java.io.*;
 
 @Test
@@ -62,6 +73,17 @@ public class JacksonMediaTypeTests {
       assertEquals(object.getAge(), 34);
    }
 
+   public void testSubclassOfTypeIsSerializedWithItsOwnProperties() throws Exception {
+      JacksonMediaType<BaseObject> mediaType = new JacksonMediaType<>(BaseObject.class, "application/vnd.vanillasource.baseobject+json");
+      mediaType.serialize(new ExtendedObject("John", "extra"), request);
+
+      ExtendedObject object = new JacksonMediaType<>(ExtendedObject.class, "application/vnd.vanillasource.extendedobject+json")
+         .deserialize(response, context).get();
+
+      assertEquals(object.getName(), "John");
+      assertEquals(object.getExtra(), "extra");
+   }
+
    @SuppressWarnings("unchecked")
    public void testReferencesGetDeserializedUsedReferenceResolver() throws Exception {
       JacksonMediaType<ReferenceObject> mediaType = new JacksonMediaType<>(ReferenceObject.class, "application/vnd.vanillasource.referenceobject+json");
@@ -74,6 +96,147 @@ public class JacksonMediaTypeTests {
       assertSame(object.getReference(), reference);
    }
 
+   @SuppressWarnings("unchecked")
+   public void testMapperIsCustomizedOnlyOnceForMultipleMessages() throws Exception {
+      Consumer<ObjectMapper> customizer = mock(Consumer.class);
+      JacksonMediaType<TestObject> mediaType = new JacksonMediaType<>(TestObject.class, mediaType("application/vnd.vanillasource.testobject+json"), customizer);
+      content = "{\"name\":\"John\",\"age\":34}";
+
+      mediaType.deserialize(response, context).get();
+      mediaType.deserialize(response, context).get();
+      mediaType.serialize(new TestObject("John", 34), request);
+
+      verify(customizer, times(1)).accept(any());
+   }
+
+   public void testReferencesAreResolvedWithTheContextOfTheirOwnResponse() throws Exception {
+      JacksonMediaType<ReferenceObject> mediaType = new JacksonMediaType<>(ReferenceObject.class, "application/vnd.vanillasource.referenceobject+json");
+      content = "{\"reference\":{\"href\":\"/relative/uri\"}}";
+      DeserializationContext otherContext = mock(DeserializationContext.class);
+      ResourceReference reference = mock(ResourceReference.class);
+      ResourceReference otherReference = mock(ResourceReference.class);
+      when(context.resolve(URI.create("/relative/uri"))).thenReturn(reference);
+      when(otherContext.resolve(URI.create("/relative/uri"))).thenReturn(otherReference);
+
+      ReferenceObject object = mediaType.deserialize(response, context).get();
+      ReferenceObject otherObject = mediaType.deserialize(response, otherContext).get();
+
+      assertSame(object.getReference(), reference);
+      assertSame(otherObject.getReference(), otherReference);
+   }
+
+   public void testPostFormsAreResolvedWithContext() throws Exception {
+      JacksonMediaType<FormObject> mediaType = new JacksonMediaType<>(FormObject.class, "application/vnd.vanillasource.formobject+json");
+      content = "{\"form\":{\"href\":\"/relative/uri\",\"method\":\"POST\"}}";
+      ResourceReference reference = mock(ResourceReference.class);
+      when(context.resolve(URI.create("/relative/uri"))).thenReturn(reference);
+
+      FormObject object = mediaType.deserialize(response, context).get();
+
+      assertNotNull(object.getForm());
+      verify(context).resolve(URI.create("/relative/uri"));
+   }
+
+   public void testStreamingTestObjectCanBeDeserialized() throws Exception {
+      JacksonMediaType<TestObject> mediaType = new JacksonMediaType<>(TestObject.class, "application/vnd.vanillasource.testobject+json").streaming();
+      content = "{\"name\":\"John\",\"age\":34}";
+
+      TestObject object = mediaType.deserialize(response, context).get();
+
+      assertEquals(object.getName(), "John");
+      assertEquals(object.getAge(), 34);
+   }
+
+   @SuppressWarnings("unchecked")
+   public void testStreamingDeserializesContentArrivingByteByByte() throws Exception {
+      JacksonMediaType<ReferenceObject> mediaType = new JacksonMediaType<>(ReferenceObject.class, "application/vnd.vanillasource.referenceobject+json").streaming();
+      ResourceReference reference = mock(ResourceReference.class);
+      when(context.resolve(URI.create("/relative/uri"))).thenReturn(reference);
+      doAnswer(invocation -> {
+         InputStreamReadableByteChannelMaster master = new InputStreamReadableByteChannelMaster(new ByteByByteInputStream(
+                  "{\"reference\":{\"href\":\"/relative/uri\"}}".getBytes()));
+         Function<ReadableByteChannelMaster, AioSlave<Void>> consumerFactory =
+            (Function<ReadableByteChannelMaster, AioSlave<Void>>) invocation.getArguments()[0];
+         return master.execute(consumerFactory.apply(master), Runnable::run);
+      }).when(response).consumeContent(any(Function.class));
+
+      ReferenceObject object = mediaType.deserialize(response, context).get();
+
+      assertSame(object.getReference(), reference);
+   }
+
+   @Test(expectedExceptions = ExecutionException.class)
+   public void testStreamingFailsOnIncompleteContent() throws Exception {
+      JacksonMediaType<TestObject> mediaType = new JacksonMediaType<>(TestObject.class, "application/vnd.vanillasource.testobject+json").streaming();
+      content = "{\"name\":\"John\",\"age\":";
+
+      mediaType.deserialize(response, context).get();
+   }
+
+   public void testContentLargerThanMaximumFails() throws Exception {
+      JacksonMediaType<TestObject> mediaType = new JacksonMediaType<>(TestObject.class, "application/vnd.vanillasource.testobject+json").withMaxContentSize(10);
+      content = "{\"name\":\"John\",\"age\":34}";
+
+      try {
+         mediaType.deserialize(response, context).get();
+         fail("too large content was deserialized");
+      } catch (ExecutionException e) {
+         assertTrue(e.getCause() instanceof ContentTooLargeException);
+      }
+   }
+
+   public void testStreamingContentLargerThanMaximumFails() throws Exception {
+      JacksonMediaType<TestObject> mediaType = new JacksonMediaType<>(TestObject.class, "application/vnd.vanillasource.testobject+json").withMaxContentSize(10).streaming();
+      content = "{\"name\":\"John\",\"age\":34}";
+
+      try {
+         mediaType.deserialize(response, context).get();
+         fail("too large content was deserialized");
+      } catch (ExecutionException e) {
+         assertTrue(e.getCause() instanceof ContentTooLargeException);
+      }
+   }
+
+   public void testStreamingReleasesBufferIfContentIsTooLarge() throws Exception {
+      JacksonMediaType<TestObject> mediaType = new JacksonMediaType<>(TestObject.class, "application/vnd.vanillasource.testobject+json").withMaxContentSize(10).streaming();
+      content = "{\"name\":\"John\",\"age\":34}";
+
+      assertAllBuffersReleasedAfterFailedDeserialization(mediaType);
+   }
+
+   public void testStreamingReleasesBufferIfContentIsMalformed() throws Exception {
+      JacksonMediaType<TestObject> mediaType = new JacksonMediaType<>(TestObject.class, "application/vnd.vanillasource.testobject+json").streaming();
+      content = "{\"name\":}";
+
+      assertAllBuffersReleasedAfterFailedDeserialization(mediaType);
+   }
+
+   private void assertAllBuffersReleasedAfterFailedDeserialization(JacksonMediaType<TestObject> mediaType) throws Exception {
+      ByteBufferPool originalPool = ByteBufferPools.heap();
+      Set<ByteBuffer> acquiredBuffers = Collections.newSetFromMap(new IdentityHashMap<>());
+      ByteBufferPools.setHeap(new ByteBufferPool() {
+         @Override
+         public ByteBuffer acquire(int size) {
+            ByteBuffer buffer = ByteBuffer.allocate(size);
+            acquiredBuffers.add(buffer);
+            return buffer;
+         }
+
+         @Override
+         public void release(ByteBuffer buffer) {
+            acquiredBuffers.remove(buffer);
+         }
+      });
+      try {
+         mediaType.deserialize(response, context).get();
+         fail("deserialization did not fail");
+      } catch (ExecutionException e) {
+         assertTrue(acquiredBuffers.isEmpty());
+      } finally {
+         ByteBufferPools.setHeap(originalPool);
+      }
+   }
+
    @BeforeMethod
    @SuppressWarnings("unchecked")
    protected void setUp() {
@@ -97,6 +260,17 @@ public class JacksonMediaTypeTests {
       }).when(response).consumeContent(any(Function.class));
    }
 
+   private static final class ByteByByteInputStream extends ByteArrayInputStream {
+      private ByteByByteInputStream(byte[] content) {
+         super(content);
+      }
+
+      @Override
+      public synchronized int read(byte[] buffer, int offset, int length) {
+         return super.read(buffer, offset, Math.min(length, 1));
+      }
+   }
+
    public class StringWritableByteChannel implements WritableByteChannelMaster {
       private StringBuilder builder = new StringBuilder();
 
@@ -150,6 +324,48 @@ public class JacksonMediaTypeTests {
       }
    }
 
+   public static class BaseObject {
+      private String name;
+
+      protected BaseObject() {
+      }
+
+      public BaseObject(String name) {
+         this.name = name;
+      }
+
+      public String getName() {
+         return name;
+      }
+   }
+
+   public static final class ExtendedObject extends BaseObject {
+      private String extra;
+
+      protected ExtendedObject() {
+      }
+
+      public ExtendedObject(String name, String extra) {
+         super(name);
+         this.extra = extra;
+      }
+
+      public String getExtra() {
+         return extra;
+      }
+   }
+
+   public static final class FormObject {
+      private Form form;
+
+      protected FormObject() {
+      }
+
+      public Form getForm() {
+         return form;
+      }
+   }
+
    public static final class ReferenceObject {
       private ResourceReference reference;
 
@@ -0,0 +1,260 @@
+/**
+ * Copyright (C) 2020 VanillaSource
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.vanillasource.gerec.mediatype.jackson;
+
+import org.testng.annotations.Test;
+import org.testng.annotations.BeforeMethod;
+import static org.testng.Assert.*;
+import static org.mockito.Mockito.*;
+import com.vanillasource.gerec.HttpResponse;
+import com.vanillasource.gerec.DeserializationContext;
+import static com.vanillasource.gerec.mediatype.MediaTypeSpecification.mediaType;
+import com.vanillasource.aio.AioSlave;
+import com.vanillasource.aio.ByteBufferPool;
+import com.vanillasource.aio.ByteBufferPools;
+import com.vanillasource.aio.channel.ReadableByteChannelMaster;
+import com.vanillasource.aio.channel.InputStreamReadableByteChannelMaster;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+import java.nio.ByteBuffer;
+import java.io.ByteArrayInputStream;
+
+@Test
+public class JsonArrayCollectionAcceptTypeTests {
+   private JacksonMediaType<Long> elementType;
+   private HttpResponse response;
+   private DeserializationContext context;
+   private List<Long> elements;
+   private String content;
+
+   public void testEmptyArrayProducesNoElements() throws Exception {
+      content = "[]";
+
+      acceptType().deserialize(response, context).get();
+
+      assertTrue(elements.isEmpty());
+   }
+
+   public void testElementsAreConsumedInOrder() throws Exception {
+      content = "[1, 2, 3]";
+
+      acceptType().deserialize(response, context).get();
+
+      assertEquals(elements, Arrays.asList(1L, 2L, 3L));
+   }
+
+   public void testStructuredElementsAreConsumed() throws Exception {
+      List<JacksonMediaTypeTests.TestObject> objects = new ArrayList<>();
+      content = "[{\"name\":\"John\",\"age\":34,\"ignored\":[1,{}]},{\"name\":\"Jane\",\"age\":35}]";
+
+      new JsonArrayCollectionAcceptType<>(mediaType("application/json"),
+            new JacksonMediaType<>(JacksonMediaTypeTests.TestObject.class, mediaType("application/json"),
+               mapper -> mapper.configure(com.fasterxml.jackson.databind.DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)),
+            objects::add).deserialize(response, context).get();
+
+      assertEquals(objects.size(), 2);
+      assertEquals(objects.get(0).getName(), "John");
+      assertEquals(objects.get(1).getAge(), 35);
+   }
+
+   @SuppressWarnings("unchecked")
+   public void testElementsSplitAcrossReadsAreConsumed() throws Exception {
+      doAnswer(invocation -> {
+         InputStreamReadableByteChannelMaster master = new InputStreamReadableByteChannelMaster(
+               new ByteArrayInputStream("[10, 20, 30]".getBytes()) {
+                  @Override
+                  public synchronized int read(byte[] buffer, int offset, int length) {
+                     return super.read(buffer, offset, Math.min(length, 1));
+                  }
+               });
+         Function<ReadableByteChannelMaster, AioSlave<Void>> consumerFactory =
+            (Function<ReadableByteChannelMaster, AioSlave<Void>>) invocation.getArguments()[0];
+         return master.execute(consumerFactory.apply(master), Runnable::run);
+      }).when(response).consumeContent(any(Function.class));
+
+      acceptType().deserialize(response, context).get();
+
+      assertEquals(elements, Arrays.asList(10L, 20L, 30L));
+   }
+
+   @Test(expectedExceptions = ExecutionException.class)
+   public void testNonArrayContentFails() throws Exception {
+      content = "{}";
+
+      acceptType().deserialize(response, context).get();
+   }
+
+   @Test(expectedExceptions = ExecutionException.class)
+   public void testIncompleteArrayFails() throws Exception {
+      content = "[1, 2";
+
+      acceptType().deserialize(response, context).get();
+   }
+
+   public void testBufferIsReleasedIfContentIsNotAnArray() throws Exception {
+      content = "{}";
+
+      assertAllBuffersReleasedAfterFailedDeserialization();
+   }
+
+   public void testBufferIsReleasedIfContentIsMalformed() throws Exception {
+      content = "[1, }";
+
+      assertAllBuffersReleasedAfterFailedDeserialization();
+   }
+
+   public void testBufferIsReleasedIfArrayIsIncomplete() throws Exception {
+      content = "[1, 2";
+
+      assertAllBuffersReleasedAfterFailedDeserialization();
+   }
+
+   public void testBufferIsReleasedIfContentContinuesAfterArray() throws Exception {
+      content = "[1] 2";
+
+      assertAllBuffersReleasedAfterFailedDeserialization();
+   }
+
+   @Test(expectedExceptions = ExecutionException.class)
+   public void testFailingConsumerFailsDeserialization() throws Exception {
+      content = "[1, 2]";
+
+      new JsonArrayCollectionAcceptType<Long>(mediaType("application/json"), elementType, element -> {
+         throw new IllegalStateException("test");
+      }).deserialize(response, context).get();
+   }
+
+   @SuppressWarnings("unchecked")
+   public void testMasterIsPausedWhenConsumerIsSlowAndResumedWhenItCatchesUp() throws Exception {
+      List<Runnable> tasks = new ArrayList<>();
+      ReadableByteChannelMaster master = mock(ReadableByteChannelMaster.class);
+      ByteBuffer input = ByteBuffer.wrap("[1, 2, 3, 4, 5]".getBytes());
+      when(master.read(any(ByteBuffer.class))).thenAnswer(invocation -> {
+         ByteBuffer buffer = (ByteBuffer) invocation.getArguments()[0];
+         int length = input.remaining();
+         buffer.put(input);
+         return length;
+      });
+      CompletableFuture<AioSlave<Void>> slave = new CompletableFuture<>();
+      doAnswer(invocation -> {
+         slave.complete(((Function<ReadableByteChannelMaster, AioSlave<Void>>) invocation.getArguments()[0]).apply(master));
+         return new CompletableFuture<>();
+      }).when(response).consumeContent(any(Function.class));
+      new JsonArrayCollectionAcceptType<>(mediaType("application/json"), elementType, elements::add, tasks::add, 2)
+         .deserialize(response, context);
+
+      slave.get().onReady();
+
+      verify(master).pause();
+      assertEquals(tasks.size(), 1);
+      tasks.get(0).run();
+      verify(master).resume();
+      assertEquals(tasks.size(), 2);
+      slave.get().onReady();
+      verify(master, times(2)).pause();
+      assertEquals(elements, Arrays.asList(1L));
+   }
+
+   public void testMasterIsNotPausedBelowMaxPendingElements() throws Exception {
+      ReadableByteChannelMaster master = mock(ReadableByteChannelMaster.class);
+
+      startWithSlowConsumer(master, "[1, 2]", 3).onReady();
+
+      verify(master, never()).pause();
+   }
+
+   public void testMasterIsPausedWhenMaxPendingElementsAreReached() throws Exception {
+      ReadableByteChannelMaster master = mock(ReadableByteChannelMaster.class);
+
+      startWithSlowConsumer(master, "[1, 2, 3]", 3).onReady();
+
+      verify(master).pause();
+   }
+
+   @SuppressWarnings("unchecked")
+   private AioSlave<Void> startWithSlowConsumer(ReadableByteChannelMaster master, String content, int maxPendingElements) throws Exception {
+      ByteBuffer input = ByteBuffer.wrap(content.getBytes());
+      when(master.read(any(ByteBuffer.class))).thenAnswer(invocation -> {
+         ByteBuffer buffer = (ByteBuffer) invocation.getArguments()[0];
+         int length = input.remaining();
+         buffer.put(input);
+         return length;
+      });
+      CompletableFuture<AioSlave<Void>> slave = new CompletableFuture<>();
+      doAnswer(invocation -> {
+         slave.complete(((Function<ReadableByteChannelMaster, AioSlave<Void>>) invocation.getArguments()[0]).apply(master));
+         return new CompletableFuture<>();
+      }).when(response).consumeContent(any(Function.class));
+      new JsonArrayCollectionAcceptType<>(mediaType("application/json"), elementType, elements::add, task -> {}, maxPendingElements)
+         .deserialize(response, context);
+      return slave.get();
+   }
+
+   private void assertAllBuffersReleasedAfterFailedDeserialization() throws Exception {
+      ByteBufferPool originalPool = ByteBufferPools.heap();
+      Set<ByteBuffer> acquiredBuffers = Collections.newSetFromMap(new IdentityHashMap<>());
+      ByteBufferPools.setHeap(new ByteBufferPool() {
+         @Override
+         public ByteBuffer acquire(int size) {
+            ByteBuffer buffer = ByteBuffer.allocate(size);
+            acquiredBuffers.add(buffer);
+            return buffer;
+         }
+
+         @Override
+         public void release(ByteBuffer buffer) {
+            acquiredBuffers.remove(buffer);
+         }
+      });
+      try {
+         acceptType().deserialize(response, context).get();
+         fail("deserialization did not fail");
+      } catch (ExecutionException e) {
+         assertTrue(acquiredBuffers.isEmpty());
+      } finally {
+         ByteBufferPools.setHeap(originalPool);
+      }
+   }
+
+   private JsonArrayCollectionAcceptType<Long> acceptType() {
+      return new JsonArrayCollectionAcceptType<>(mediaType("application/json"), elementType, elements::add);
+   }
+
+   @BeforeMethod
+   @SuppressWarnings("unchecked")
+   protected void setUp() {
+      elementType = new JacksonMediaType<>(Long.class, "application/json");
+      context = mock(DeserializationContext.class);
+      elements = new ArrayList<>();
+      response = mock(HttpResponse.class);
+      doAnswer(invocation -> {
+         InputStreamReadableByteChannelMaster master = new InputStreamReadableByteChannelMaster(new ByteArrayInputStream(content.getBytes()));
+         Function<ReadableByteChannelMaster, AioSlave<Void>> consumerFactory =
+            (Function<ReadableByteChannelMaster, AioSlave<Void>>) invocation.getArguments()[0];
+         return master.execute(consumerFactory.apply(master), Runnable::run);
+      }).when(response).consumeContent(any(Function.class));
+   }
+}
@@ -34,6 +34,7 @@ import com.vanillasource.aio.channel.OutputStreamWritableByteChannelMaster;
 import com.vanillasource.aio.channel.ReadableByteChannelMaster;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 import com.vanillasource.aio.channel.InputStreamReadableByteChannelMaster;
 import java.util.concurrent.Executor;
 import com.vanillasource.aio.channel.NullWritableByteChannelSlave;
@@ -43,7 +44,8 @@ import com.vanillasource.aio.channel.NullWritableByteChannelSlave;
  * classes, specifically <code>HttpURLConnection</code>. This is suitable
  * to be used in Android. As these classes do not support non-blocking
  * operation, an appropriate executor has to be supplied on which operations
- * will be pushed to.
+ * will be pushed to, or the client can be created to run operations on virtual
+ * threads with {@link #withVirtualThreads(int)}.
  */
 public final class AsyncJavanetHttpClient implements HttpClient {
    private final Executor executor;
@@ -70,6 +72,25 @@ public final class AsyncJavanetHttpClient implements HttpClient {
       this.connectionFactory = connectionFactory;
    }
 
+   /**
+    * Create a client that runs each blocking operation on its own virtual thread if the JVM supports
+    * virtual threads, or on its own platform thread otherwise. Instead of sizing a thread pool,
+    * the number of operations that run concurrently is limited, further operations wait in a queue
+    * without occupying a thread.
+    * @param maxConcurrentOperations The maximum number of requests sent or responses read at the same time.
+    */
+   public static AsyncJavanetHttpClient withVirtualThreads(int maxConcurrentOperations) {
+      return new AsyncJavanetHttpClient(new LimitingExecutor(ThreadPerTaskExecutors.create(), maxConcurrentOperations));
+   }
+
+   /**
+    * Create a client that runs on virtual threads with a custom configuration of the <code>HttpURLConnection</code>.
+    * @see #withVirtualThreads(int)
+    */
+   public static AsyncJavanetHttpClient withVirtualThreads(int maxConcurrentOperations, Function<URL, HttpURLConnection> connectionFactory) {
+      return new AsyncJavanetHttpClient(new LimitingExecutor(ThreadPerTaskExecutors.create(), maxConcurrentOperations), connectionFactory);
+   }
+
    @Override
    public CompletableFuture<HttpResponse> doHead(URI uri, HttpRequest.HttpRequestChange change) {
       return executeAsync(uri, "HEAD", change);
@@ -163,6 +184,11 @@ public final class AsyncJavanetHttpClient implements HttpClient {
          connection.setRequestProperty(header.getName(), header.serialize(value).stream().collect(Collectors.joining(",")));
       }
 
+      @Override
+      public void setHeaderValues(String name, List<String> values) {
+         connection.setRequestProperty(name, String.join(",", values));
+      }
+
       @Override
       public void setByteProducer(Function<WritableByteChannelMaster, AioSlave<Void>> producerFactory) {
          this.producerFactory = producerFactory;
@@ -181,7 +207,12 @@ public final class AsyncJavanetHttpClient implements HttpClient {
 
       public HttpResponseAdapter(HttpURLConnection connection) {
          this.connection = connection;
-         this.headers = connection.getHeaderFields();
+         this.headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+         connection.getHeaderFields().forEach((name, values) -> {
+            if (name != null) {
+               headers.put(name, values);
+            }
+         });
       }
 
       @Override
@@ -0,0 +1,81 @@
+/**
+ * Copyright (C) 2020 VanillaSource
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.vanillasource.gerec.javanet;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+
+/**
+ * An executor that runs at most a given number of tasks concurrently on a delegate executor. Tasks
+ * over the limit are queued and submitted when a running task completes. No thread is blocked while
+ * waiting for a permit, so the delegate may start a new thread for each task.
+ */
+final class LimitingExecutor implements Executor {
+   private final Executor delegate;
+   private final Semaphore permits;
+   private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+   LimitingExecutor(Executor delegate, int maxConcurrentTasks) {
+      if (maxConcurrentTasks < 1) {
+         throw new IllegalArgumentException("maximum concurrent tasks must be at least 1, but was "+maxConcurrentTasks);
+      }
+      this.delegate = delegate;
+      this.permits = new Semaphore(maxConcurrentTasks);
+   }
+
+   @Override
+   public void execute(Runnable task) {
+      tasks.add(task);
+      submitTasks();
+   }
+
+   /**
+    * Submit queued tasks while there are permits available. Both adding a task and
+    * releasing a permit is followed by this, so no task is left in the queue while there
+    * are permits.
+    */
+   private void submitTasks() {
+      while (!tasks.isEmpty() && permits.tryAcquire()) {
+         Runnable task = tasks.poll();
+         if (task == null) {
+            permits.release();
+         } else {
+            submit(task);
+         }
+      }
+   }
+
+   private void submit(Runnable task) {
+      try {
+         delegate.execute(() -> {
+            try {
+               task.run();
+            } finally {
+               permits.release();
+               submitTasks();
+            }
+         });
+      } catch (RuntimeException e) {
+         permits.release();
+         throw e;
+      }
+   }
+}
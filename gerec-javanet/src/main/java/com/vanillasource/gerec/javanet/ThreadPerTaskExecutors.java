@@ -0,0 +1,64 @@
+/**
+ * Copyright (C) 2020 VanillaSource
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.vanillasource.gerec.javanet;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.lang.reflect.Method;
+import java.lang.reflect.InvocationTargetException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Creates executors that run each task on its own new thread. On JVMs that support virtual threads
+ * these are virtual threads, otherwise daemon platform threads that are cached for a while after
+ * the task completes. The virtual thread executor is looked up reflectively, so this works on any JVM
+ * this library runs on.
+ */
+final class ThreadPerTaskExecutors {
+   private static final Logger logger = LoggerFactory.getLogger(ThreadPerTaskExecutors.class);
+   private static final AtomicInteger threadCount = new AtomicInteger();
+
+   private ThreadPerTaskExecutors() {
+   }
+
+   /**
+    * @return An executor that runs each task on a virtual thread if the JVM supports it,
+    * or on a platform thread otherwise.
+    */
+   static Executor create() {
+      try {
+         Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+         Executor executor = (Executor) factory.invoke(null);
+         logger.debug("running exchanges on virtual threads");
+         return executor;
+      } catch (NoSuchMethodException | IllegalAccessException e) {
+         logger.debug("virtual threads are not available, running exchanges on platform threads");
+      } catch (InvocationTargetException e) {
+         // Virtual threads are a preview feature on some JVMs and are not available unless enabled
+         logger.debug("virtual threads could not be created, running exchanges on platform threads", e.getCause());
+      }
+      return Executors.newCachedThreadPool(task -> {
+         Thread thread = new Thread(task, "gerec-javanet-"+threadCount.incrementAndGet());
+         thread.setDaemon(true);
+         return thread;
+      });
+   }
+}
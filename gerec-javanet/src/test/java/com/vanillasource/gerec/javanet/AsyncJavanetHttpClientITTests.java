@@ -32,6 +32,10 @@ import static java.util.Arrays.asList;
 import com.vanillasource.gerec.reference.HttpClientResourceReference;
 import com.vanillasource.gerec.mediatype.MediaTypes;
 import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.List;
+import java.util.ArrayList;
 
 @Test
 public class AsyncJavanetHttpClientITTests {
@@ -104,6 +108,14 @@ public class AsyncJavanetHttpClientITTests {
       assertEquals(response.getHeader(Headers.LOCATION), "nunu");
    }
 
+   public void testHeaderIsReadIgnoringCaseOfName() throws Exception {
+      stubFor(get(urlEqualTo("/nini")).willReturn(aResponse().withHeader("Content-type", "text/plain").withBody("ABC")));
+
+      HttpResponse response = client.doGet(requestURI, change).get();
+
+      assertEquals(response.getHeader(Headers.CONTENT_TYPE), new ValueWithParameter("text/plain"));
+   }
+
    public void testAllowsHeaderCanBeReadIfPresent() throws Exception {
       stubFor(options(urlEqualTo("/nini")).willReturn(aResponse().withHeader("Allow", "GET, POST").withBody("ABC")));
 
@@ -131,6 +143,27 @@ public class AsyncJavanetHttpClientITTests {
       }
    }
 
+   public void testClientOnVirtualThreadsReadsContent() throws Exception {
+      stubFor(get(urlEqualTo("/nini")).willReturn(aResponse().withHeader("Content-Type", "text/plain").withBody("ABC")));
+      HttpClientResourceReference reference = new HttpClientResourceReference(AsyncJavanetHttpClient.withVirtualThreads(2), requestURI);
+
+      assertEquals(reference.get(MediaTypes.textPlain()).join(), "ABC");
+   }
+
+   public void testClientOnVirtualThreadsCompletesMoreRequestsThanLimit() throws Exception {
+      stubFor(get(urlEqualTo("/nini")).willReturn(aResponse().withHeader("Content-Type", "text/plain").withBody("ABC")));
+      HttpClientResourceReference reference = new HttpClientResourceReference(AsyncJavanetHttpClient.withVirtualThreads(2), requestURI);
+      List<CompletableFuture<String>> results = new ArrayList<>();
+
+      for (int i=0; i<10; i++) {
+         results.add(reference.get(MediaTypes.textPlain()));
+      }
+
+      for (CompletableFuture<String> result: results) {
+         assertEquals(result.get(5, TimeUnit.SECONDS), "ABC");
+      }
+   }
+
    @BeforeMethod
    protected void setUp() {
       change = mock(HttpRequest.HttpRequestChange.class);
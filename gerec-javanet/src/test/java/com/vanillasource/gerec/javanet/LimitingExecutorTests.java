@@ -0,0 +1,124 @@
+/**
+ * Copyright (C) 2020 VanillaSource
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.vanillasource.gerec.javanet;
+
+import org.testng.annotations.*;
+import static org.testng.Assert.*;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Test
+public class LimitingExecutorTests {
+   private ExecutorService delegate;
+
+   public void testAllTasksAreExecuted() throws Exception {
+      LimitingExecutor executor = new LimitingExecutor(delegate, 3);
+      CountDownLatch done = new CountDownLatch(1000);
+
+      for (int i=0; i<1000; i++) {
+         executor.execute(done::countDown);
+      }
+
+      assertTrue(done.await(5, TimeUnit.SECONDS));
+   }
+
+   public void testNoMoreTasksRunConcurrentlyThanLimit() throws Exception {
+      LimitingExecutor executor = new LimitingExecutor(delegate, 3);
+      AtomicInteger running = new AtomicInteger();
+      AtomicInteger maxRunning = new AtomicInteger();
+      CountDownLatch done = new CountDownLatch(200);
+
+      for (int i=0; i<200; i++) {
+         executor.execute(() -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            sleep(1);
+            running.decrementAndGet();
+            done.countDown();
+         });
+      }
+
+      assertTrue(done.await(5, TimeUnit.SECONDS));
+      assertEquals(maxRunning.get(), 3);
+   }
+
+   public void testTasksOverLimitDoNotOccupyDelegateThreads() throws Exception {
+      List<Runnable> submitted = new ArrayList<>();
+      LimitingExecutor executor = new LimitingExecutor(submitted::add, 2);
+
+      for (int i=0; i<5; i++) {
+         executor.execute(() -> {});
+      }
+
+      assertEquals(submitted.size(), 2);
+   }
+
+   public void testCompletedTaskSubmitsNextQueuedTask() {
+      List<Runnable> submitted = new ArrayList<>();
+      LimitingExecutor executor = new LimitingExecutor(submitted::add, 1);
+      executor.execute(() -> {});
+      executor.execute(() -> {});
+
+      submitted.get(0).run();
+
+      assertEquals(submitted.size(), 2);
+   }
+
+   public void testFailingTaskReleasesPermit() {
+      List<Runnable> submitted = new ArrayList<>();
+      LimitingExecutor executor = new LimitingExecutor(submitted::add, 1);
+      executor.execute(() -> { throw new IllegalStateException("test"); });
+      executor.execute(() -> {});
+
+      try {
+         submitted.get(0).run();
+      } catch (IllegalStateException e) {
+         // Expected
+      }
+
+      assertEquals(submitted.size(), 2);
+   }
+
+   @Test(expectedExceptions = IllegalArgumentException.class)
+   public void testLimitMustBePositive() {
+      new LimitingExecutor(delegate, 0);
+   }
+
+   private void sleep(long millis) {
+      try {
+         Thread.sleep(millis);
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+      }
+   }
+
+   @BeforeMethod
+   protected void setUp() {
+      delegate = Executors.newCachedThreadPool();
+   }
+
+   @AfterMethod
+   protected void tearDown() {
+      delegate.shutdownNow();
+   }
+}
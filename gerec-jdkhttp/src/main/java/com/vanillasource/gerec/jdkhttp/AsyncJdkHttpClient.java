@@ -0,0 +1,200 @@
+/**
+ * Copyright (C) 2020 VanillaSource
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.vanillasource.gerec.jdkhttp;
+
+import com.vanillasource.gerec.reference.HttpClient;
+import com.vanillasource.gerec.*;
+import com.vanillasource.aio.AioSlave;
+import com.vanillasource.aio.channel.ReadableByteChannelMaster;
+import com.vanillasource.aio.channel.WritableByteChannelMaster;
+import java.net.URI;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest.BodyPublisher;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse.ResponseInfo;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Implement the <code>AsyncHttpClient</code> with the <code>java.net.http.HttpClient</code> of
+ * Java 11 and later. Request and response bodies are streamed without blocking any threads, with
+ * backpressure: a paused response consumer stops requesting more data from the connection, and the
+ * request producer is only called when the connection is ready to send more data. With the
+ * default client, requests to the same server are multiplexed over a single connection when the server
+ * supports HTTP/2.
+ */
+public final class AsyncJdkHttpClient implements HttpClient {
+   private static final Logger logger = LoggerFactory.getLogger(AsyncJdkHttpClient.class);
+   private final java.net.http.HttpClient httpClient;
+
+   /**
+    * Create with a default client preferring HTTP/2.
+    */
+   public AsyncJdkHttpClient() {
+      this(java.net.http.HttpClient.newBuilder()
+            .version(java.net.http.HttpClient.Version.HTTP_2)
+            .build());
+   }
+
+   /**
+    * Create with a custom configured client.
+    */
+   public AsyncJdkHttpClient(java.net.http.HttpClient httpClient) {
+      this.httpClient = httpClient;
+   }
+
+   @Override
+   public CompletableFuture<HttpResponse> doHead(URI uri, HttpRequest.HttpRequestChange change) {
+      return execute(uri, "HEAD", change);
+   }
+
+   @Override
+   public CompletableFuture<HttpResponse> doGet(URI uri, HttpRequest.HttpRequestChange change) {
+      return execute(uri, "GET", change);
+   }
+
+   @Override
+   public CompletableFuture<HttpResponse> doPost(URI uri, HttpRequest.HttpRequestChange change) {
+      return execute(uri, "POST", change);
+   }
+
+   @Override
+   public CompletableFuture<HttpResponse> doPut(URI uri, HttpRequest.HttpRequestChange change) {
+      return execute(uri, "PUT", change);
+   }
+
+   @Override
+   public CompletableFuture<HttpResponse> doDelete(URI uri, HttpRequest.HttpRequestChange change) {
+      return execute(uri, "DELETE", change);
+   }
+
+   @Override
+   public CompletableFuture<HttpResponse> doOptions(URI uri, HttpRequest.HttpRequestChange change) {
+      return execute(uri, "OPTIONS", change);
+   }
+
+   private CompletableFuture<HttpResponse> execute(URI uri, String method, HttpRequest.HttpRequestChange change) {
+      HttpRequestAdapter request = new HttpRequestAdapter(uri, method);
+      change.applyTo(request);
+      CompletableFuture<HttpResponse> result = new CompletableFuture<>();
+      logger.debug("making the async http request {} {}", method, uri);
+      httpClient.sendAsync(request.build(), responseInfo -> {
+         ChannelBodySubscriber body = new ChannelBodySubscriber();
+         result.complete(new HttpResponseAdapter(responseInfo, body));
+         return body;
+      }).whenComplete((response, exception) -> {
+         if (exception != null) {
+            result.completeExceptionally(new Exception("failed to make request to URI: "+uri, exception));
+         }
+      });
+      return result;
+   }
+
+   private static final class HttpRequestAdapter implements HttpRequest {
+      private final URI uri;
+      private final String method;
+      private final Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+      private BodyPublisher body = BodyPublishers.noBody();
+
+      private HttpRequestAdapter(URI uri, String method) {
+         this.uri = uri;
+         this.method = method;
+      }
+
+      private java.net.http.HttpRequest build() {
+         java.net.http.HttpRequest.Builder builder = java.net.http.HttpRequest.newBuilder(uri)
+            .method(method, body);
+         headers.forEach((name, values) -> values.forEach(value -> builder.header(name, value)));
+         return builder.build();
+      }
+
+      @Override
+      public boolean hasHeader(Header<?> header) {
+         return headers.containsKey(header.getName());
+      }
+
+      @Override
+      public <T> T getHeader(Header<T> header) {
+         return header.deserialize(headers.getOrDefault(header.getName(), Collections.emptyList()));
+      }
+
+      @Override
+      public <T> void setHeader(Header<T> header, T value) {
+         headers.put(header.getName(), new ArrayList<>(header.serialize(value)));
+      }
+
+      @Override
+      public void setHeaderValues(String name, List<String> values) {
+         headers.put(name, values);
+      }
+
+      @Override
+      public void setByteProducer(Function<WritableByteChannelMaster, AioSlave<Void>> producerFactory) {
+         this.body = new ChannelBodyPublisher(producerFactory, -1);
+      }
+
+      @Override
+      public void setByteProducer(Function<WritableByteChannelMaster, AioSlave<Void>> producerFactory, long length) {
+         if (length == 0) {
+            this.body = BodyPublishers.noBody();
+         } else {
+            this.body = new ChannelBodyPublisher(producerFactory, length);
+         }
+      }
+   }
+
+   private static final class HttpResponseAdapter implements HttpResponse {
+      private final ResponseInfo responseInfo;
+      private final HttpHeaders headers;
+      private final ChannelBodySubscriber body;
+
+      private HttpResponseAdapter(ResponseInfo responseInfo, ChannelBodySubscriber body) {
+         this.responseInfo = responseInfo;
+         this.headers = responseInfo.headers();
+         this.body = body;
+      }
+
+      @Override
+      public HttpStatusCode getStatusCode() {
+         return HttpStatusCode.valueOf(responseInfo.statusCode());
+      }
+
+      @Override
+      public boolean hasHeader(Header<?> header) {
+         return headers.firstValue(header.getName()).isPresent();
+      }
+
+      @Override
+      public <T> T getHeader(Header<T> header) {
+         return header.deserialize(headers.allValues(header.getName()));
+      }
+
+      @Override
+      public <R> CompletableFuture<R> consumeContent(Function<ReadableByteChannelMaster, AioSlave<R>> consumerFactory) {
+         return body.consume(consumerFactory);
+      }
+   }
+}
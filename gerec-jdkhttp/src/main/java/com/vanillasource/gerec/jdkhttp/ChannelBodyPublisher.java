@@ -0,0 +1,183 @@
+/**
+ * Copyright (C) 2020 VanillaSource
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.vanillasource.gerec.jdkhttp;
+
+import com.vanillasource.aio.AioSlave;
+import com.vanillasource.aio.channel.WritableByteChannelMaster;
+import java.net.http.HttpRequest.BodyPublisher;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Publishes the bytes a slave writes as the body of a request. The slave is only called while
+ * the connection requested more data and the slave is not paused. Writes without outstanding requests
+ * write nothing, the same way a non-blocking channel does when its buffers are full. A slave that does
+ * not write anything when it is ready is not called again until it is resumed or more data is requested.
+ * <p>
+ * Each subscription creates a new slave, so a request may be sent more than once, for example
+ * when the client retries it.
+ */
+final class ChannelBodyPublisher implements BodyPublisher {
+   private static final Logger logger = LoggerFactory.getLogger(ChannelBodyPublisher.class);
+   private static final int MAX_WRITE_SIZE = 65536;
+   private final Function<WritableByteChannelMaster, AioSlave<Void>> slaveFactory;
+   private final long length;
+
+   /**
+    * @param length The exact length of the body if known, negative if not known.
+    */
+   ChannelBodyPublisher(Function<WritableByteChannelMaster, AioSlave<Void>> slaveFactory, long length) {
+      this.slaveFactory = slaveFactory;
+      this.length = length;
+   }
+
+   @Override
+   public long contentLength() {
+      return length;
+   }
+
+   @Override
+   public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+      new ChannelSubscription(subscriber).start();
+   }
+
+   private final class ChannelSubscription implements Flow.Subscription, WritableByteChannelMaster {
+      private final Flow.Subscriber<? super ByteBuffer> subscriber;
+      private final AtomicLong demand = new AtomicLong();
+      private final AtomicInteger work = new AtomicInteger();
+      private volatile boolean paused = false;
+      private volatile boolean closed = false;
+      private volatile boolean cancelled = false;
+      private AioSlave<Void> slave;
+      private boolean done = false;
+      private long writtenLength = 0;
+
+      private ChannelSubscription(Flow.Subscriber<? super ByteBuffer> subscriber) {
+         this.subscriber = subscriber;
+      }
+
+      private void start() {
+         subscriber.onSubscribe(this);
+         drain();
+      }
+
+      @Override
+      public void request(long n) {
+         if (n <= 0) {
+            cancelled = true;
+            subscriber.onError(new IllegalArgumentException("requested non-positive number of items: "+n));
+            return;
+         }
+         demand.accumulateAndGet(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+         drain();
+      }
+
+      @Override
+      public void cancel() {
+         logger.debug("request body cancelled");
+         cancelled = true;
+      }
+
+      @Override
+      public void pause() {
+         paused = true;
+      }
+
+      @Override
+      public void resume() {
+         paused = false;
+         drain();
+      }
+
+      @Override
+      public void close() {
+         closed = true;
+         drain();
+      }
+
+      @Override
+      public boolean isOpen() {
+         return !closed && !cancelled;
+      }
+
+      @Override
+      public int write(ByteBuffer source) {
+         if (!isOpen() || demand.get() == 0 || !source.hasRemaining()) {
+            return 0;
+         }
+         demand.decrementAndGet();
+         int writeLength = Math.min(source.remaining(), MAX_WRITE_SIZE);
+         ByteBuffer copy = ByteBuffer.allocate(writeLength);
+         ByteBuffer part = source.duplicate();
+         part.limit(part.position() + writeLength);
+         copy.put(part).flip();
+         source.position(source.position() + writeLength);
+         writtenLength += writeLength;
+         subscriber.onNext(copy);
+         return writeLength;
+      }
+
+      /**
+       * Do all outstanding work on the current thread, unless another thread is already doing it, in
+       * which case that thread will pick up the work signaled here too.
+       */
+      private void drain() {
+         if (work.getAndIncrement() != 0) {
+            return;
+         }
+         int missed = 1;
+         do {
+            try {
+               step();
+            } catch (RuntimeException e) {
+               done = true;
+               subscriber.onError(e);
+            }
+            missed = work.addAndGet(-missed);
+         } while (missed != 0);
+      }
+
+      private void step() {
+         if (done || cancelled) {
+            return;
+         }
+         if (slave == null) {
+            slave = slaveFactory.apply(this);
+         }
+         while (!paused && !closed && !cancelled && demand.get() > 0) {
+            long writtenLengthBefore = writtenLength;
+            slave.onReady();
+            if (writtenLength == writtenLengthBefore) {
+               break;
+            }
+         }
+         if (closed) {
+            done = true;
+            logger.debug("request body completed");
+            subscriber.onComplete();
+            slave.onCompleted();
+         }
+      }
+   }
+}
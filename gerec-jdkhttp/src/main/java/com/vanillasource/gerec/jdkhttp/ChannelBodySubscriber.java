@@ -0,0 +1,215 @@
+/**
+ * Copyright (C) 2020 VanillaSource
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.vanillasource.gerec.jdkhttp;
+
+import com.vanillasource.aio.AioSlave;
+import com.vanillasource.aio.channel.ReadableByteChannelMaster;
+import java.net.http.HttpResponse.BodySubscriber;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Subscribes to the body of a response and supplies it to a slave as a readable channel. The
+ * next buffers of the body are only requested when the slave has read all the previous ones and
+ * is not paused, so a paused slave stops the flow of data from the connection. A slave that does
+ * not read anything when it is ready is not called again until it is resumed or more data arrives.
+ * <p>
+ * All calls to the slave are serialized, they happen on whichever thread delivers new data,
+ * resumes the slave or consumes the content first.
+ */
+final class ChannelBodySubscriber implements BodySubscriber<Void>, ReadableByteChannelMaster {
+   private static final Logger logger = LoggerFactory.getLogger(ChannelBodySubscriber.class);
+   private final Queue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+   private final AtomicInteger work = new AtomicInteger();
+   private final CompletableFuture<Object> result = new CompletableFuture<>();
+   private volatile Flow.Subscription subscription;
+   private volatile Function<ReadableByteChannelMaster, AioSlave<Object>> slaveFactory;
+   private volatile boolean paused = false;
+   private volatile boolean closed = false;
+   private volatile boolean completed = false;
+   private volatile Throwable error;
+   private volatile boolean requested = false;
+   private AioSlave<Object> slave;
+   private boolean done = false;
+   private long readLength = 0;
+
+   /**
+    * Start consuming the body with a slave. This may be called before or after the body started to arrive.
+    */
+   @SuppressWarnings("unchecked")
+   <R> CompletableFuture<R> consume(Function<ReadableByteChannelMaster, AioSlave<R>> slaveFactory) {
+      if (this.slaveFactory != null) {
+         throw new IllegalStateException("can only consume response once");
+      }
+      this.slaveFactory = (Function<ReadableByteChannelMaster, AioSlave<Object>>)(Object) slaveFactory;
+      drain();
+      return (CompletableFuture<R>) result;
+   }
+
+   @Override
+   public CompletionStage<Void> getBody() {
+      // The response is available as soon as the headers are, the body is consumed separately
+      return CompletableFuture.completedFuture(null);
+   }
+
+   @Override
+   public void onSubscribe(Flow.Subscription subscription) {
+      this.subscription = subscription;
+      drain();
+   }
+
+   @Override
+   public void onNext(List<ByteBuffer> items) {
+      buffers.addAll(items);
+      requested = false;
+      drain();
+   }
+
+   @Override
+   public void onError(Throwable error) {
+      logger.debug("response body failed", error);
+      this.error = error;
+      drain();
+   }
+
+   @Override
+   public void onComplete() {
+      logger.debug("response body completed");
+      completed = true;
+      drain();
+   }
+
+   @Override
+   public void pause() {
+      paused = true;
+   }
+
+   @Override
+   public void resume() {
+      paused = false;
+      drain();
+   }
+
+   @Override
+   public void close() {
+      logger.debug("closing response body");
+      closed = true;
+      drain();
+   }
+
+   @Override
+   public boolean isOpen() {
+      return !closed;
+   }
+
+   @Override
+   public int read(ByteBuffer target) {
+      int length = 0;
+      ByteBuffer buffer;
+      while (target.hasRemaining() && (buffer = buffers.peek()) != null) {
+         if (buffer.remaining() <= target.remaining()) {
+            length += buffer.remaining();
+            target.put(buffer);
+            buffers.poll();
+         } else {
+            int partLength = target.remaining();
+            ByteBuffer part = buffer.duplicate();
+            part.limit(part.position() + partLength);
+            target.put(part);
+            buffer.position(buffer.position() + partLength);
+            length += partLength;
+         }
+      }
+      if (length == 0 && (closed || (completed && buffers.isEmpty()))) {
+         return -1;
+      }
+      readLength += length;
+      return length;
+   }
+
+   /**
+    * Do all outstanding work on the current thread, unless another thread is already doing it, in
+    * which case that thread will pick up the work signaled here too.
+    */
+   private void drain() {
+      if (work.getAndIncrement() != 0) {
+         return;
+      }
+      int missed = 1;
+      do {
+         try {
+            step();
+         } catch (RuntimeException e) {
+            fail(e);
+         }
+         missed = work.addAndGet(-missed);
+      } while (missed != 0);
+   }
+
+   private void step() {
+      Flow.Subscription currentSubscription = subscription;
+      if (done || slaveFactory == null || currentSubscription == null) {
+         return;
+      }
+      if (slave == null) {
+         slave = slaveFactory.apply(this);
+      }
+      if (error != null) {
+         fail(error);
+         return;
+      }
+      while (!paused && !closed && !buffers.isEmpty()) {
+         long readLengthBefore = readLength;
+         slave.onReady();
+         if (readLength == readLengthBefore) {
+            break;
+         }
+      }
+      if (closed || (completed && buffers.isEmpty())) {
+         done = true;
+         if (!completed) {
+            currentSubscription.cancel();
+         }
+         buffers.clear();
+         result.complete(slave.onCompleted());
+      } else if (!paused && buffers.isEmpty() && !completed && !requested) {
+         requested = true;
+         currentSubscription.request(1);
+      }
+   }
+
+   private void fail(Throwable e) {
+      done = true;
+      buffers.clear();
+      Flow.Subscription currentSubscription = subscription;
+      if (currentSubscription != null && !completed) {
+         currentSubscription.cancel();
+      }
+      result.completeExceptionally(e);
+   }
+}
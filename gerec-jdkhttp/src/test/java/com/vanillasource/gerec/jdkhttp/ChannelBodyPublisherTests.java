@@ -0,0 +1,258 @@
+/**
+ * Copyright (C) 2020 VanillaSource
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.vanillasource.gerec.jdkhttp;
+
+import org.testng.annotations.*;
+import static org.testng.Assert.*;
+import static org.mockito.Mockito.*;
+import com.vanillasource.aio.AioSlave;
+import com.vanillasource.aio.channel.ByteArrayWritableByteChannelSlave;
+import com.vanillasource.aio.channel.WritableByteChannelMaster;
+import java.nio.ByteBuffer;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.concurrent.Flow;
+import java.util.function.Function;
+
+@Test
+public class ChannelBodyPublisherTests {
+   private RecordingSubscriber subscriber;
+
+   public void testContentLengthIsReported() {
+      ChannelBodyPublisher publisher = new ChannelBodyPublisher(output -> new ByteArrayWritableByteChannelSlave(output, "abc".getBytes()), 3);
+
+      assertEquals(publisher.contentLength(), 3);
+   }
+
+   public void testNothingIsWrittenWithoutRequest() {
+      publish(output -> new ByteArrayWritableByteChannelSlave(output, "abc".getBytes()));
+
+      assertTrue(subscriber.items.isEmpty());
+      assertFalse(subscriber.completed);
+   }
+
+   public void testRequestedContentIsWrittenAndCompleted() {
+      publish(output -> new ByteArrayWritableByteChannelSlave(output, "abc".getBytes()));
+
+      subscriber.subscription.request(Long.MAX_VALUE);
+
+      assertEquals(subscriber.content(), "abc");
+      assertTrue(subscriber.completed);
+   }
+
+   public void testOnlyRequestedNumberOfBuffersAreWritten() {
+      publish(output -> new RepeatingSlave(output, 5));
+
+      subscriber.subscription.request(2);
+
+      assertEquals(subscriber.items.size(), 2);
+      assertFalse(subscriber.completed);
+   }
+
+   public void testWritingContinuesWhenMoreIsRequested() {
+      publish(output -> new RepeatingSlave(output, 5));
+      subscriber.subscription.request(2);
+
+      subscriber.subscription.request(10);
+
+      assertEquals(subscriber.content(), "aaaaa");
+      assertTrue(subscriber.completed);
+   }
+
+   public void testPausedSlaveIsNotCalledUntilResumed() {
+      List<WritableByteChannelMaster> masters = new ArrayList<>();
+      publish(output -> {
+         masters.add(output);
+         return new RepeatingSlave(output, 5);
+      });
+      masters.get(0).pause();
+
+      subscriber.subscription.request(10);
+
+      assertTrue(subscriber.items.isEmpty());
+      masters.get(0).resume();
+      assertEquals(subscriber.content(), "aaaaa");
+   }
+
+   public void testCancelledSubscriptionStopsWriting() {
+      publish(output -> new RepeatingSlave(output, 5));
+      subscriber.subscription.request(2);
+
+      subscriber.subscription.cancel();
+      subscriber.subscription.request(10);
+
+      assertEquals(subscriber.items.size(), 2);
+      assertFalse(subscriber.completed);
+   }
+
+   public void testFailingSlaveFailsSubscriber() {
+      publish(output -> new AioSlave<Void>() {
+         @Override
+         public void onReady() {
+            throw new IllegalStateException("test");
+         }
+
+         @Override
+         public Void onCompleted() {
+            return null;
+         }
+      });
+
+      subscriber.subscription.request(1);
+
+      assertTrue(subscriber.error instanceof IllegalStateException);
+   }
+
+   public void testWrittenBufferIsCopied() {
+      byte[] content = "abc".getBytes();
+      publish(output -> new ByteArrayWritableByteChannelSlave(output, content));
+      subscriber.subscription.request(1);
+
+      content[0] = 'x';
+
+      assertEquals(subscriber.content(), "abc");
+   }
+
+   public void testSlaveNotWritingIsNotCalledAgainUntilResumed() {
+      List<IdleSlave> slaves = new ArrayList<>();
+      publish(output -> {
+         IdleSlave slave = new IdleSlave(output);
+         slaves.add(slave);
+         return slave;
+      });
+
+      subscriber.subscription.request(10);
+
+      assertEquals(slaves.get(0).readyCount, 1);
+      slaves.get(0).master.resume();
+      assertEquals(slaves.get(0).readyCount, 2);
+      assertEquals(subscriber.content(), "abc");
+      assertTrue(subscriber.completed);
+   }
+
+   private void publish(Function<WritableByteChannelMaster, AioSlave<Void>> slaveFactory) {
+      new ChannelBodyPublisher(slaveFactory, -1).subscribe(subscriber);
+   }
+
+   /**
+    * Writes a single byte on each call, and closes after the given number of bytes.
+    */
+   private static final class RepeatingSlave implements AioSlave<Void> {
+      private final WritableByteChannelMaster master;
+      private int remaining;
+
+      private RepeatingSlave(WritableByteChannelMaster master, int count) {
+         this.master = master;
+         this.remaining = count;
+      }
+
+      @Override
+      public void onReady() {
+         try {
+            if (remaining > 0) {
+               remaining -= master.write(ByteBuffer.wrap(new byte[] { 'a' }));
+            }
+            if (remaining == 0) {
+               master.close();
+            }
+         } catch (IOException e) {
+            throw new UncheckedIOException(e);
+         }
+      }
+
+      @Override
+      public Void onCompleted() {
+         return null;
+      }
+   }
+
+   /**
+    * Writes nothing the first time it is ready, writes everything and closes afterwards.
+    */
+   private static final class IdleSlave implements AioSlave<Void> {
+      private final WritableByteChannelMaster master;
+      private int readyCount = 0;
+
+      private IdleSlave(WritableByteChannelMaster master) {
+         this.master = master;
+      }
+
+      @Override
+      public void onReady() {
+         readyCount++;
+         if (readyCount > 1) {
+            try {
+               master.write(ByteBuffer.wrap("abc".getBytes()));
+               master.close();
+            } catch (IOException e) {
+               throw new UncheckedIOException(e);
+            }
+         }
+      }
+
+      @Override
+      public Void onCompleted() {
+         return null;
+      }
+   }
+
+   private static final class RecordingSubscriber implements Flow.Subscriber<ByteBuffer> {
+      private final List<ByteBuffer> items = new ArrayList<>();
+      private Flow.Subscription subscription;
+      private boolean completed = false;
+      private Throwable error;
+
+      @Override
+      public void onSubscribe(Flow.Subscription subscription) {
+         this.subscription = subscription;
+      }
+
+      @Override
+      public void onNext(ByteBuffer item) {
+         items.add(item);
+      }
+
+      @Override
+      public void onError(Throwable error) {
+         this.error = error;
+      }
+
+      @Override
+      public void onComplete() {
+         completed = true;
+      }
+
+      private String content() {
+         StringBuilder content = new StringBuilder();
+         for (ByteBuffer item: items) {
+            byte[] bytes = new byte[item.remaining()];
+            item.duplicate().get(bytes);
+            content.append(new String(bytes));
+         }
+         return content.toString();
+      }
+   }
+
+   @BeforeMethod
+   protected void setUp() {
+      subscriber = new RecordingSubscriber();
+   }
+}
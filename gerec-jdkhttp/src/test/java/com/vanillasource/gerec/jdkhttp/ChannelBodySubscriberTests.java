@@ -0,0 +1,246 @@
+/**
+ * Copyright (C) 2020 VanillaSource
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.vanillasource.gerec.jdkhttp;
+
+import org.testng.annotations.*;
+import static org.testng.Assert.*;
+import static org.mockito.Mockito.*;
+import com.vanillasource.aio.AioSlave;
+import com.vanillasource.aio.channel.ByteArrayReadableByteChannelSlave;
+import com.vanillasource.aio.channel.ReadableByteChannelMaster;
+import java.nio.ByteBuffer;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import static java.util.Arrays.asList;
+
+@Test
+public class ChannelBodySubscriberTests {
+   private ChannelBodySubscriber subscriber;
+   private Flow.Subscription subscription;
+
+   public void testNothingIsRequestedBeforeContentIsConsumed() {
+      subscriber.onSubscribe(subscription);
+
+      verify(subscription, never()).request(anyLong());
+   }
+
+   public void testConsumingContentRequestsData() {
+      subscriber.onSubscribe(subscription);
+
+      subscriber.consume(ByteArrayReadableByteChannelSlave::new);
+
+      verify(subscription).request(1);
+   }
+
+   public void testAllDataIsReadWhenCompleted() {
+      subscriber.onSubscribe(subscription);
+      CompletableFuture<byte[]> result = subscriber.consume(ByteArrayReadableByteChannelSlave::new);
+
+      subscriber.onNext(asList(buffer("ab"), buffer("c")));
+      subscriber.onNext(asList(buffer("de")));
+      subscriber.onComplete();
+
+      assertEquals(new String(result.join()), "abcde");
+   }
+
+   public void testDataArrivingBeforeConsumptionIsRead() {
+      subscriber.onSubscribe(subscription);
+      subscriber.onComplete();
+
+      CompletableFuture<byte[]> result = subscriber.consume(ByteArrayReadableByteChannelSlave::new);
+
+      assertEquals(result.join().length, 0);
+   }
+
+   public void testMoreDataIsRequestedAfterAllBuffersAreRead() {
+      subscriber.onSubscribe(subscription);
+      subscriber.consume(ByteArrayReadableByteChannelSlave::new);
+
+      subscriber.onNext(asList(buffer("abc")));
+
+      verify(subscription, times(2)).request(1);
+   }
+
+   public void testPausedSlaveStopsRequestingData() {
+      subscriber.onSubscribe(subscription);
+      subscriber.consume(PausingSlave::new);
+
+      subscriber.onNext(asList(buffer("abc")));
+
+      verify(subscription, times(1)).request(1);
+   }
+
+   public void testResumedSlaveReadsBufferedDataAndRequestsMore() {
+      subscriber.onSubscribe(subscription);
+      CompletableFuture<Integer> result = subscriber.consume(PausingSlave::new);
+      subscriber.onNext(asList(buffer("abc")));
+
+      subscriber.resume();
+
+      verify(subscription, times(2)).request(1);
+      subscriber.onComplete();
+      assertEquals(result.join().intValue(), 3);
+   }
+
+   public void testClosingCancelsSubscriptionAndCompletes() {
+      subscriber.onSubscribe(subscription);
+      CompletableFuture<byte[]> result = subscriber.consume(ByteArrayReadableByteChannelSlave::new);
+
+      subscriber.close();
+
+      verify(subscription).cancel();
+      assertTrue(result.isDone());
+   }
+
+   @Test(expectedExceptions = IllegalStateException.class)
+   public void testContentCanOnlyBeConsumedOnce() {
+      subscriber.consume(ByteArrayReadableByteChannelSlave::new);
+      subscriber.consume(ByteArrayReadableByteChannelSlave::new);
+   }
+
+   public void testErrorFailsResult() {
+      subscriber.onSubscribe(subscription);
+      CompletableFuture<byte[]> result = subscriber.consume(ByteArrayReadableByteChannelSlave::new);
+
+      subscriber.onError(new IllegalStateException("test"));
+
+      assertTrue(result.isCompletedExceptionally());
+   }
+
+   public void testFailingSlaveCancelsSubscription() {
+      subscriber.onSubscribe(subscription);
+      CompletableFuture<Void> result = subscriber.consume(master -> new AioSlave<Void>() {
+         @Override
+         public void onReady() {
+            throw new IllegalStateException("test");
+         }
+
+         @Override
+         public Void onCompleted() {
+            return null;
+         }
+      });
+
+      subscriber.onNext(asList(buffer("abc")));
+
+      verify(subscription).cancel();
+      assertTrue(result.isCompletedExceptionally());
+   }
+
+   public void testPartialBuffersAreReadInPieces() throws Exception {
+      subscriber.onSubscribe(subscription);
+      subscriber.onNext(asList(buffer("abcde")));
+      ByteBuffer target = ByteBuffer.allocate(2);
+
+      assertEquals(subscriber.read(target), 2);
+      target.clear();
+      assertEquals(subscriber.read(target), 2);
+      target.clear();
+      assertEquals(subscriber.read(target), 1);
+      assertEquals(subscriber.read(target), 0);
+   }
+
+   public void testSlaveNotReadingIsNotCalledAgainUntilResumed() {
+      subscriber.onSubscribe(subscription);
+      IdleSlave slave = new IdleSlave(subscriber);
+      CompletableFuture<Integer> result = subscriber.consume(master -> slave);
+
+      subscriber.onNext(asList(buffer("abc")));
+
+      assertEquals(slave.readyCount, 1);
+      subscriber.resume();
+      assertEquals(slave.readyCount, 2);
+      subscriber.onComplete();
+      assertEquals(result.join().intValue(), 3);
+   }
+
+   private ByteBuffer buffer(String content) {
+      return ByteBuffer.wrap(content.getBytes());
+   }
+
+   /**
+    * Pauses the first time it is ready, reads everything afterwards.
+    */
+   private static final class PausingSlave implements AioSlave<Integer> {
+      private final ReadableByteChannelMaster master;
+      private final ByteBuffer buffer = ByteBuffer.allocate(100);
+      private boolean pausedOnce = false;
+
+      private PausingSlave(ReadableByteChannelMaster master) {
+         this.master = master;
+      }
+
+      @Override
+      public void onReady() {
+         if (!pausedOnce) {
+            pausedOnce = true;
+            master.pause();
+         } else {
+            try {
+               master.read(buffer);
+            } catch (IOException e) {
+               throw new UncheckedIOException(e);
+            }
+         }
+      }
+
+      @Override
+      public Integer onCompleted() {
+         return buffer.position();
+      }
+   }
+
+   /**
+    * Reads nothing the first time it is ready, reads everything afterwards.
+    */
+   private static final class IdleSlave implements AioSlave<Integer> {
+      private final ReadableByteChannelMaster master;
+      private final ByteBuffer buffer = ByteBuffer.allocate(100);
+      private int readyCount = 0;
+
+      private IdleSlave(ReadableByteChannelMaster master) {
+         this.master = master;
+      }
+
+      @Override
+      public void onReady() {
+         readyCount++;
+         if (readyCount > 1) {
+            try {
+               master.read(buffer);
+            } catch (IOException e) {
+               throw new UncheckedIOException(e);
+            }
+         }
+      }
+
+      @Override
+      public Integer onCompleted() {
+         return buffer.position();
+      }
+   }
+
+   @BeforeMethod
+   protected void setUp() {
+      subscriber = new ChannelBodySubscriber();
+      subscription = mock(Flow.Subscription.class);
+   }
+}
@@ -0,0 +1,40 @@
+/**
+ * Copyright (C) 2020 VanillaSource
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.vanillasource.aio;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A source of byte buffers, which may be reused after they are released. A buffer
+ * acquired from the pool must be released at most once, and must not be used after
+ * it is released.
+ */
+public interface ByteBufferPool {
+   /**
+    * Acquire a buffer from the pool.
+    * @param size The size the buffer should have. The returned buffer is cleared and has
+    * exactly this many bytes remaining, but its capacity may be larger.
+    */
+   ByteBuffer acquire(int size);
+
+   /**
+    * Return the buffer to the pool for reuse. Buffers not acquired from this pool are ignored.
+    */
+   void release(ByteBuffer buffer);
+}
@@ -0,0 +1,80 @@
+/**
+ * Copyright (C) 2020 VanillaSource
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.vanillasource.aio;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.nio.ByteBuffer;
+
+/**
+ * The shared buffer pools used by all slaves and masters of this library. There is a pool of
+ * heap buffers, which is used where the backing array is needed, and a pool of direct buffers.
+ * The pools can be replaced by applications at startup. The default pools detect leaked buffers
+ * if debug logging is enabled for {@link SizeClassByteBufferPool}.
+ */
+public final class ByteBufferPools {
+   private static volatile ByteBufferPool heap = createDefault(false);
+   private static volatile ByteBufferPool direct = createDefault(true);
+
+   private ByteBufferPools() {
+   }
+
+   private static ByteBufferPool createDefault(boolean directBuffers) {
+      Logger logger = LoggerFactory.getLogger(SizeClassByteBufferPool.class);
+      return new SizeClassByteBufferPool(directBuffers, logger.isDebugEnabled());
+   }
+
+   /**
+    * The pool of heap buffers. All buffers from this pool have a backing array.
+    */
+   public static ByteBufferPool heap() {
+      return heap;
+   }
+
+   /**
+    * The pool of direct buffers.
+    */
+   public static ByteBufferPool direct() {
+      return direct;
+   }
+
+   public static void setHeap(ByteBufferPool pool) {
+      heap = pool;
+   }
+
+   public static void setDirect(ByteBufferPool pool) {
+      direct = pool;
+   }
+
+   /**
+    * A pool that allocates a new buffer on each acquire and does not keep any buffers.
+    */
+   public static ByteBufferPool unpooled(boolean directBuffers) {
+      return new ByteBufferPool() {
+         @Override
+         public ByteBuffer acquire(int size) {
+            return directBuffers ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+         }
+
+         @Override
+         public void release(ByteBuffer buffer) {
+         }
+      };
+   }
+}
@@ -0,0 +1,245 @@
+/**
+ * Copyright (C) 2020 VanillaSource
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.vanillasource.aio;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+
+/**
+ * A pool that keeps buffers in power of two size classes from 512 bytes to 64 KB. Larger
+ * buffers are allocated on each acquire and are not kept. Released buffers are first cached
+ * for the releasing thread, and shared with other threads only if that cache is full.
+ * <p>
+ * With leak detection enabled, the pool remembers where each buffer was acquired, and logs
+ * a warning for buffers that were garbage collected without being released. This has
+ * significant overhead and is intended for debugging only.
+ */
+public final class SizeClassByteBufferPool implements ByteBufferPool {
+   private static final Logger logger = LoggerFactory.getLogger(SizeClassByteBufferPool.class);
+   private static final int MIN_SIZE_SHIFT = 9;
+   private static final int MAX_SIZE_SHIFT = 16;
+   private static final int SIZE_CLASSES = MAX_SIZE_SHIFT - MIN_SIZE_SHIFT + 1;
+   private final boolean directBuffers;
+   private final int threadCacheSize;
+   private final SharedCache[] sharedCaches = new SharedCache[SIZE_CLASSES];
+   private final ThreadLocal<List<ArrayDeque<ByteBuffer>>> threadCaches;
+   private final LeakDetector leakDetector;
+
+   /**
+    * @param directBuffers Whether to allocate direct buffers, or heap buffers.
+    * @param threadCacheSize The number of buffers to cache per thread in each size class.
+    * @param sharedCacheSize The number of buffers to cache for all threads in each size class.
+    * @param leakDetection Whether to detect and log buffers that are not released.
+    */
+   public SizeClassByteBufferPool(boolean directBuffers, int threadCacheSize, int sharedCacheSize, boolean leakDetection) {
+      this.directBuffers = directBuffers;
+      this.threadCacheSize = threadCacheSize;
+      for (int i=0; i<SIZE_CLASSES; i++) {
+         sharedCaches[i] = new SharedCache(sharedCacheSize);
+      }
+      this.threadCaches = ThreadLocal.withInitial(() -> {
+         List<ArrayDeque<ByteBuffer>> caches = new ArrayList<>(SIZE_CLASSES);
+         for (int i=0; i<SIZE_CLASSES; i++) {
+            caches.add(new ArrayDeque<>(threadCacheSize));
+         }
+         return caches;
+      });
+      this.leakDetector = leakDetection ? new LeakDetector() : null;
+   }
+
+   public SizeClassByteBufferPool(boolean directBuffers, boolean leakDetection) {
+      this(directBuffers, 4, 64, leakDetection);
+   }
+
+   @Override
+   public ByteBuffer acquire(int size) {
+      if (size < 0) {
+         throw new IllegalArgumentException("buffer size can not be negative, was: "+size);
+      }
+      int sizeClass = sizeClassOf(size);
+      ByteBuffer buffer;
+      if (sizeClass < 0) {
+         buffer = allocate(size);
+      } else {
+         buffer = threadCaches.get().get(sizeClass).pollLast();
+         if (buffer == null) {
+            buffer = sharedCaches[sizeClass].poll();
+         }
+         if (buffer == null) {
+            buffer = allocate(1 << (sizeClass + MIN_SIZE_SHIFT));
+         }
+         buffer.clear();
+         buffer.limit(size);
+      }
+      if (leakDetector != null) {
+         leakDetector.track(buffer);
+      }
+      return buffer;
+   }
+
+   @Override
+   public void release(ByteBuffer buffer) {
+      if (buffer.isDirect() != directBuffers || buffer.isReadOnly()) {
+         return;
+      }
+      if (leakDetector != null && !leakDetector.untrack(buffer)) {
+         logger.warn("buffer released that is not acquired from this pool, or was already released", new Throwable("released here"));
+         return;
+      }
+      int capacity = buffer.capacity();
+      if (Integer.bitCount(capacity) != 1 || capacity < (1 << MIN_SIZE_SHIFT) || capacity > (1 << MAX_SIZE_SHIFT)) {
+         return;
+      }
+      int sizeClass = Integer.numberOfTrailingZeros(capacity) - MIN_SIZE_SHIFT;
+      ArrayDeque<ByteBuffer> threadCache = threadCaches.get().get(sizeClass);
+      if (threadCache.size() < threadCacheSize) {
+         threadCache.addLast(buffer);
+      } else {
+         sharedCaches[sizeClass].offer(buffer);
+      }
+   }
+
+   /**
+    * @return The number of buffers that were detected to be garbage collected without being released.
+    * Always zero if leak detection is not enabled.
+    */
+   public int getLeakCount() {
+      if (leakDetector == null) {
+         return 0;
+      }
+      leakDetector.reportLeaks();
+      return leakDetector.leakCount.get();
+   }
+
+   private ByteBuffer allocate(int capacity) {
+      return directBuffers ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+   }
+
+   private static int sizeClassOf(int size) {
+      if (size > (1 << MAX_SIZE_SHIFT)) {
+         return -1;
+      }
+      if (size <= (1 << MIN_SIZE_SHIFT)) {
+         return 0;
+      }
+      return 32 - Integer.numberOfLeadingZeros(size - 1) - MIN_SIZE_SHIFT;
+   }
+
+   private static final class SharedCache {
+      private final Queue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+      private final AtomicInteger size = new AtomicInteger();
+      private final int maxSize;
+
+      private SharedCache(int maxSize) {
+         this.maxSize = maxSize;
+      }
+
+      private ByteBuffer poll() {
+         ByteBuffer buffer = buffers.poll();
+         if (buffer != null) {
+            size.decrementAndGet();
+         }
+         return buffer;
+      }
+
+      private void offer(ByteBuffer buffer) {
+         if (size.incrementAndGet() > maxSize) {
+            size.decrementAndGet();
+         } else {
+            buffers.offer(buffer);
+         }
+      }
+   }
+
+   /**
+    * Tracks acquired buffers with weak references. Buffers are identified by identity, because
+    * the equality of byte buffers depends on their contents.
+    */
+   private static final class LeakDetector {
+      private final ReferenceQueue<ByteBuffer> collectedBuffers = new ReferenceQueue<>();
+      private final Map<Integer, List<Acquisition>> acquisitions = new HashMap<>();
+      private final AtomicInteger leakCount = new AtomicInteger();
+
+      private void track(ByteBuffer buffer) {
+         reportLeaks();
+         Acquisition acquisition = new Acquisition(buffer, collectedBuffers);
+         synchronized (acquisitions) {
+            acquisitions.computeIfAbsent(acquisition.identity, identity -> new ArrayList<>(1)).add(acquisition);
+         }
+      }
+
+      private boolean untrack(ByteBuffer buffer) {
+         int identity = System.identityHashCode(buffer);
+         synchronized (acquisitions) {
+            List<Acquisition> candidates = acquisitions.get(identity);
+            if (candidates != null) {
+               for (int i=0; i<candidates.size(); i++) {
+                  if (candidates.get(i).get() == buffer) {
+                     candidates.remove(i);
+                     if (candidates.isEmpty()) {
+                        acquisitions.remove(identity);
+                     }
+                     return true;
+                  }
+               }
+            }
+         }
+         return false;
+      }
+
+      private void reportLeaks() {
+         Acquisition acquisition;
+         while ((acquisition = (Acquisition) collectedBuffers.poll()) != null) {
+            boolean leaked;
+            synchronized (acquisitions) {
+               List<Acquisition> candidates = acquisitions.get(acquisition.identity);
+               leaked = candidates != null && candidates.remove(acquisition);
+               if (candidates != null && candidates.isEmpty()) {
+                  acquisitions.remove(acquisition.identity);
+               }
+            }
+            if (leaked) {
+               leakCount.incrementAndGet();
+               logger.warn("buffer was garbage collected without being released to the pool", acquisition.stackTrace);
+            }
+         }
+      }
+   }
+
+   private static final class Acquisition extends WeakReference<ByteBuffer> {
+      private final int identity;
+      private final Throwable stackTrace = new Throwable("buffer acquired here");
+
+      private Acquisition(ByteBuffer buffer, ReferenceQueue<ByteBuffer> queue) {
+         super(buffer, queue);
+         this.identity = System.identityHashCode(buffer);
+      }
+   }
+}
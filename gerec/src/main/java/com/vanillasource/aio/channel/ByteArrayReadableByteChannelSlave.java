@@ -19,49 +19,137 @@
 package com.vanillasource.aio.channel;
 
 import com.vanillasource.aio.AioSlave;
-import java.io.ByteArrayOutputStream;
+import com.vanillasource.aio.ByteBufferPools;
 import java.nio.ByteBuffer;
 import java.nio.channels.ReadableByteChannel;
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.ArrayList;
 
 /**
- * Reads all bytes into an internal buffer. Note, this has to copy the bytes
- * multiple times, and consumes as much memory as all the bytes. Use only
- * when the size of the input is limited/known.
+ * Reads all bytes into a byte array. If the size of the content is known in advance, the bytes
+ * are read directly into an array of exactly that size, which is returned without copying.
+ * Otherwise the bytes are read into a list of pooled chunks, which are assembled into the result
+ * array once at the end.
+ * <p>
+ * The content may not be larger than the given maximum size. If it is, the channel
+ * is closed and a {@link ContentTooLargeException} is thrown as soon as this is known.
  */
 public class ByteArrayReadableByteChannelSlave implements AioSlave<byte[]> {
-   private static final int BUFFER_SIZE = 4096;
+   private static final int MIN_CHUNK_SIZE = 4096;
+   private static final int MAX_CHUNK_SIZE = 65536;
    private final ReadableByteChannel channel;
-   private final byte[] bytes = new byte[BUFFER_SIZE];
-   private final ByteBuffer buffer = ByteBuffer.wrap(bytes);
-   private final ByteArrayOutputStream output;
+   private final long expectedSize;
+   private final int maxSize;
+   private final List<ByteBuffer> chunks = new ArrayList<>();
+   private ByteBuffer chunk;
+   private int size = 0;
 
-   public ByteArrayReadableByteChannelSlave(ReadableByteChannel channel, int initialSize) {
+   /**
+    * @param expectedSize The exact size of the content if known, negative if not known.
+    * @param maxSize The maximum number of bytes this slave accepts.
+    */
+   public ByteArrayReadableByteChannelSlave(ReadableByteChannel channel, long expectedSize, int maxSize) {
       this.channel = channel;
-      this.output = new ByteArrayOutputStream(initialSize);
+      this.expectedSize = expectedSize;
+      this.maxSize = maxSize;
+   }
+
+   /**
+    * @param expectedSize The expected size of the content, the content may be of different size
+    * but it is read most efficiently if this is the exact size.
+    */
+   public ByteArrayReadableByteChannelSlave(ReadableByteChannel channel, int expectedSize) {
+      this(channel, expectedSize, Integer.MAX_VALUE);
    }
 
    public ByteArrayReadableByteChannelSlave(ReadableByteChannel channel) {
-      this(channel, BUFFER_SIZE);
+      this(channel, -1, Integer.MAX_VALUE);
    }
 
    @Override
    public void onReady() {
       try {
-         buffer.clear();
-         int readLength;
-         while ((readLength = channel.read(buffer)) > 0) {
-            output.write(bytes, 0, readLength);
-            buffer.clear();
+         if (chunk == null) {
+            if (expectedSize > maxSize) {
+               abort();
+            }
+            if (expectedSize >= 0) {
+               chunk = ByteBuffer.wrap(new byte[(int) expectedSize]);
+               chunks.add(chunk);
+            } else {
+               addChunk(MIN_CHUNK_SIZE);
+            }
          }
+         int readLength;
+         do {
+            if (!chunk.hasRemaining()) {
+               addChunk(nextChunkSize());
+            }
+            readLength = channel.read(chunk);
+            if (readLength > 0) {
+               size += readLength;
+               if (size > maxSize) {
+                  abort();
+               }
+            }
+         } while (readLength > 0);
       } catch (IOException e) {
          throw new UncheckedIOException(e);
       }
    }
 
+   private void addChunk(int chunkSize) {
+      chunk = ByteBufferPools.heap().acquire(chunkSize);
+      chunks.add(chunk);
+   }
+
+   private void releaseChunks() {
+      for (int i = expectedSize >= 0 ? 1 : 0; i<chunks.size(); i++) {
+         ByteBufferPools.heap().release(chunks.get(i));
+      }
+      chunks.clear();
+   }
+
+   /**
+    * Determine the next chunk size. If the expected content is exactly read, the next
+    * chunk only needs to hold a single byte to detect the end of the content. The chunk is
+    * never larger than needed to detect the content being too large.
+    */
+   private int nextChunkSize() {
+      int nextSize;
+      if (size == expectedSize) {
+         nextSize = 1;
+      } else {
+         nextSize = Math.min(MAX_CHUNK_SIZE, Math.max(MIN_CHUNK_SIZE, size / 2));
+      }
+      return (int) Math.max(1, Math.min(nextSize, (long) maxSize - size + 1));
+   }
+
+   private void abort() throws IOException {
+      releaseChunks();
+      channel.close();
+      throw new ContentTooLargeException(maxSize);
+   }
+
    @Override
    public byte[] onCompleted() {
-      return output.toByteArray();
+      if (chunks.isEmpty()) {
+         return new byte[0];
+      }
+      if (expectedSize == size) {
+         byte[] bytes = chunks.get(0).array();
+         releaseChunks();
+         return bytes;
+      }
+      byte[] bytes = new byte[size];
+      int offset = 0;
+      for (ByteBuffer filledChunk: chunks) {
+         System.arraycopy(filledChunk.array(), filledChunk.arrayOffset(), bytes, offset, filledChunk.position());
+         offset += filledChunk.position();
+      }
+      releaseChunks();
+      return bytes;
    }
 }
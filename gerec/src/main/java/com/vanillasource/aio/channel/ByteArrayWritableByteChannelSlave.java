@@ -36,6 +36,14 @@ public class ByteArrayWritableByteChannelSlave implements AioSlave<Void> {
       this.content = ByteBuffer.wrap(bytes);
    }
 
+   /**
+    * Write the remaining bytes of the given buffer. The buffer itself is not modified.
+    */
+   public ByteArrayWritableByteChannelSlave(WritableByteChannel channel, ByteBuffer content) {
+      this.channel = channel;
+      this.content = content.duplicate();
+   }
+
    @Override
    public void onReady() {
       try {
@@ -0,0 +1,48 @@
+/**
+ * Copyright (C) 2020 VanillaSource
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.vanillasource.aio.channel;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Channel leader that supplies the remaining bytes of a byte buffer. The given buffer
+ * is not modified, so the same buffer can be supplied any number of times. This
+ * channel never blocks.
+ */
+public final class ByteBufferReadableByteChannelMaster extends PassiveAioMaster implements ReadableByteChannelMaster {
+   private final ByteBuffer content;
+
+   public ByteBufferReadableByteChannelMaster(ByteBuffer content) {
+      this.content = content.duplicate();
+   }
+
+   @Override
+   public int read(ByteBuffer buffer) {
+      if (!content.hasRemaining()) {
+         close();
+         return -1;
+      }
+      int length = Math.min(buffer.remaining(), content.remaining());
+      ByteBuffer slice = content.duplicate();
+      slice.limit(slice.position() + length);
+      buffer.put(slice);
+      content.position(content.position() + length);
+      return length;
+   }
+}
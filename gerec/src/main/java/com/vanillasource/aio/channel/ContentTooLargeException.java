@@ -0,0 +1,36 @@
+/**
+ * Copyright (C) 2020 VanillaSource
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.vanillasource.aio.channel;
+
+/**
+ * Thrown when the content to be read is larger than the allowed maximum size. The
+ * reading is aborted as soon as this is known, without reading the rest of the content.
+ */
+public class ContentTooLargeException extends RuntimeException {
+   private final long maxSize;
+
+   public ContentTooLargeException(long maxSize) {
+      super("content is larger than the allowed maximum of "+maxSize+" bytes");
+      this.maxSize = maxSize;
+   }
+
+   public long getMaxSize() {
+      return maxSize;
+   }
+}
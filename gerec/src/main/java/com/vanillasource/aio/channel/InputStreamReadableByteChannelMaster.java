@@ -18,6 +18,7 @@
 
 package com.vanillasource.aio.channel;
 
+import com.vanillasource.aio.ByteBufferPools;
 import java.nio.ByteBuffer;
 import java.io.IOException;
 import java.io.InputStream;
@@ -28,7 +29,9 @@ import java.io.UncheckedIOException;
  * iff the supplied stream blocks.
  */
 public final class InputStreamReadableByteChannelMaster extends PassiveAioMaster implements ReadableByteChannelMaster {
+   private static final int SCRATCH_SIZE = 8192;
    private final InputStream input;
+   private ByteBuffer scratch;
 
    public InputStreamReadableByteChannelMaster(InputStream input) {
       this.input = input;
@@ -44,17 +47,40 @@ public final class InputStreamReadableByteChannelMaster extends PassiveAioMaster
       }
    }
 
+   /**
+    * Reads directly into the backing array of heap buffers. Other buffers are filled through
+    * a pooled scratch buffer.
+    */
    @Override
    public int read(ByteBuffer buffer) throws IOException {
-      byte[] tmp = new byte[buffer.remaining()];
-      int length = input.read(tmp);
+      int length;
+      if (buffer.hasArray()) {
+         length = input.read(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+         if (length > 0) {
+            buffer.position(buffer.position() + length);
+         }
+      } else {
+         if (scratch == null) {
+            scratch = ByteBufferPools.heap().acquire(SCRATCH_SIZE);
+         }
+         length = input.read(scratch.array(), scratch.arrayOffset(), Math.min(buffer.remaining(), SCRATCH_SIZE));
+         if (length > 0) {
+            buffer.put(scratch.array(), scratch.arrayOffset(), length);
+         }
+      }
       if (length < 0) {
          close();
-      } else {
-         buffer.put(tmp, 0, length);
       }
       return length;
    }
+
+   @Override
+   protected void release() {
+      if (scratch != null) {
+         ByteBufferPools.heap().release(scratch);
+         scratch = null;
+      }
+   }
 }
 
 
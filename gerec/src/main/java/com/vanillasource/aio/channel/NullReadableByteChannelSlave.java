@@ -19,6 +19,7 @@
 package com.vanillasource.aio.channel;
 
 import com.vanillasource.aio.AioSlave;
+import com.vanillasource.aio.ByteBufferPools;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
@@ -29,7 +30,8 @@ import java.nio.channels.ReadableByteChannel;
  * completely, but discards all data immediately.
  */
 public final class NullReadableByteChannelSlave implements AioSlave<Void> {
-   private final ByteBuffer nothing = ByteBuffer.allocateDirect(4096);
+   private static final int BUFFER_SIZE = 4096;
+   private final ByteBuffer nothing = ByteBufferPools.direct().acquire(BUFFER_SIZE);
    private final ReadableByteChannel channel;
 
    public NullReadableByteChannelSlave(ReadableByteChannel channel) {
@@ -49,6 +51,7 @@ public final class NullReadableByteChannelSlave implements AioSlave<Void> {
 
    @Override
    public Void onCompleted() {
+      ByteBufferPools.direct().release(nothing);
       return null;
    }
 }
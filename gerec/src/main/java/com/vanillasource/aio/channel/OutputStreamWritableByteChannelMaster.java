@@ -18,6 +18,7 @@
 
 package com.vanillasource.aio.channel;
 
+import com.vanillasource.aio.ByteBufferPools;
 import java.nio.ByteBuffer;
 import java.io.IOException;
 import java.io.UncheckedIOException;
@@ -28,7 +29,9 @@ import java.io.OutputStream;
  * iff the supplied stream blocks.
  */
 public final class OutputStreamWritableByteChannelMaster extends PassiveAioMaster implements WritableByteChannelMaster {
+   private static final int SCRATCH_SIZE = 8192;
    private final OutputStream output;
+   private ByteBuffer scratch;
 
    public OutputStreamWritableByteChannelMaster(OutputStream output) {
       this.output = output;
@@ -44,12 +47,35 @@ public final class OutputStreamWritableByteChannelMaster extends PassiveAioMaste
       }
    }
 
+   /**
+    * Writes directly from the backing array of heap buffers. Other buffers are written through
+    * a pooled scratch buffer.
+    */
    @Override
    public int write(ByteBuffer buffer) throws IOException {
-      byte[] tmp = new byte[buffer.remaining()];
-      buffer.get(tmp);
-      output.write(tmp);
-      return tmp.length;
+      int length = buffer.remaining();
+      if (buffer.hasArray()) {
+         output.write(buffer.array(), buffer.arrayOffset() + buffer.position(), length);
+         buffer.position(buffer.limit());
+      } else {
+         if (scratch == null) {
+            scratch = ByteBufferPools.heap().acquire(SCRATCH_SIZE);
+         }
+         while (buffer.hasRemaining()) {
+            int chunkLength = Math.min(buffer.remaining(), SCRATCH_SIZE);
+            buffer.get(scratch.array(), scratch.arrayOffset(), chunkLength);
+            output.write(scratch.array(), scratch.arrayOffset(), chunkLength);
+         }
+      }
+      return length;
+   }
+
+   @Override
+   protected void release() {
+      if (scratch != null) {
+         ByteBufferPools.heap().release(scratch);
+         scratch = null;
+      }
    }
 }
 
@@ -19,6 +19,8 @@
 package com.vanillasource.aio.channel;
 
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 import com.vanillasource.aio.AioSlave;
 import com.vanillasource.aio.AioMaster;
 import java.util.concurrent.Executor;
@@ -26,11 +28,16 @@ import java.util.concurrent.Executor;
 /**
  * A master that is appropriate for passive implementations that do not have control
  * or backpressure functionality on their own.
+ * <p>
+ * The state of the master is kept in a single atomic state, so running the slave does not
+ * acquire any locks. A paused master parks the executing thread until it is resumed or closed.
  */
 public abstract class PassiveAioMaster implements AioMaster {
-   private volatile boolean closed = false; // Initially we don't know, so assume false
-   private boolean paused = false;
-   private Object pauseMutex = new Object();
+   private static final int RUNNING = 0;
+   private static final int PAUSED = 1;
+   private static final int CLOSED = 2;
+   private final AtomicInteger state = new AtomicInteger(RUNNING);
+   private volatile Thread executingThread;
 
    /**
     * Execute a given slave against this master. This will potentially spawn another thread
@@ -38,44 +45,65 @@ public abstract class PassiveAioMaster implements AioMaster {
     */
    public <T> CompletableFuture<T> execute(AioSlave<T> slave, Executor executor) {
       return CompletableFuture.supplyAsync(() -> {
+         executingThread = Thread.currentThread();
          try {
-            while (!closed) {
-               synchronized (pauseMutex) {
-                  while (paused) {
-                     pauseMutex.wait();
+            int currentState;
+            while ((currentState = state.get()) != CLOSED) {
+               if (currentState == PAUSED) {
+                  LockSupport.park(this);
+                  if (Thread.interrupted()) {
+                     throw new IllegalStateException("master interrupted");
                   }
+               } else {
+                  slave.onReady();
                }
-               slave.onReady();
             }
             return slave.onCompleted();
-         } catch (InterruptedException e) {
-            throw new IllegalStateException("master interrupted", e);
+         } finally {
+            executingThread = null;
+            release();
          }
       }, executor);
    }
 
+   /**
+    * Called in the executing thread after the slave completed or failed. Implementations
+    * may return buffers or other resources used for the I/O here.
+    */
+   protected void release() {
+   }
+
    public boolean isOpen() {
-      return !closed;
+      return state.get() != CLOSED;
    }
 
    @Override
    public void close() {
-      closed = true;
+      if (state.getAndSet(CLOSED) == PAUSED) {
+         wakeUp();
+      }
    }
 
    @Override
    public void pause() {
-      synchronized (pauseMutex) {
-         paused = true;
-      }
+      state.compareAndSet(RUNNING, PAUSED);
    }
 
    @Override
    public void resume() {
-      synchronized (pauseMutex) {
-         paused = false;
-         pauseMutex.notify();
+      if (state.compareAndSet(PAUSED, RUNNING)) {
+         wakeUp();
       }
    }
-}
 
+   /**
+    * Wake up the executing thread after the state changed. The executing thread is published
+    * before it reads the state, so it either sees the new state or is seen here.
+    */
+   private void wakeUp() {
+      Thread thread = executingThread;
+      if (thread != null) {
+         LockSupport.unpark(thread);
+      }
+   }
+}
@@ -19,10 +19,15 @@
 package com.vanillasource.aio.channel;
 
 import com.vanillasource.aio.AioMaster;
-import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.ScatteringByteChannel;
 import java.nio.ByteBuffer;
+import java.io.IOException;
 
-public interface ReadableByteChannelMaster extends ReadableByteChannel, AioMaster {
+/**
+ * A master that supplies bytes to read. Scattering reads are supported by all masters, by
+ * default they read into each buffer in turn, until a buffer could not be filled completely.
+ */
+public interface ReadableByteChannelMaster extends ScatteringByteChannel, AioMaster {
    ReadableByteChannelMaster NULL = new ReadableByteChannelMaster() {
       @Override
       public void pause() {
@@ -46,6 +51,28 @@ public interface ReadableByteChannelMaster extends ReadableByteChannel, AioMaste
          return false;
       }
    };
-}
 
+   @Override
+   default long read(ByteBuffer[] buffers, int offset, int length) throws IOException {
+      long totalLength = 0;
+      for (int i=offset; i<offset+length; i++) {
+         ByteBuffer buffer = buffers[i];
+         if (buffer.hasRemaining()) {
+            int readLength = read(buffer);
+            if (readLength < 0) {
+               return totalLength == 0 ? -1 : totalLength;
+            }
+            totalLength += readLength;
+            if (buffer.hasRemaining()) {
+               break;
+            }
+         }
+      }
+      return totalLength;
+   }
 
+   @Override
+   default long read(ByteBuffer[] buffers) throws IOException {
+      return read(buffers, 0, buffers.length);
+   }
+}
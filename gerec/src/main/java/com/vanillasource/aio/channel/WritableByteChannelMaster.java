@@ -19,9 +19,32 @@
 package com.vanillasource.aio.channel;
 
 import com.vanillasource.aio.AioMaster;
-import java.nio.channels.WritableByteChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.ByteBuffer;
+import java.io.IOException;
 
-public interface WritableByteChannelMaster extends WritableByteChannel, AioMaster {
+/**
+ * A master that accepts bytes to write. Gathering writes are supported by all masters, by
+ * default they write each buffer in turn, until a buffer could not be written completely.
+ */
+public interface WritableByteChannelMaster extends GatheringByteChannel, AioMaster {
+   @Override
+   default long write(ByteBuffer[] buffers, int offset, int length) throws IOException {
+      long totalLength = 0;
+      for (int i=offset; i<offset+length; i++) {
+         ByteBuffer buffer = buffers[i];
+         totalLength += write(buffer);
+         if (buffer.hasRemaining()) {
+            break;
+         }
+      }
+      return totalLength;
+   }
+
+   @Override
+   default long write(ByteBuffer[] buffers) throws IOException {
+      return write(buffers, 0, buffers.length);
+   }
 }
 
 
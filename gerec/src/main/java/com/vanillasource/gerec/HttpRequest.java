@@ -21,6 +21,7 @@ package com.vanillasource.gerec;
 import com.vanillasource.aio.AioSlave;
 import com.vanillasource.aio.channel.WritableByteChannelMaster;
 import java.util.function.Function;
+import java.util.List;
 
 public interface HttpRequest {
    boolean hasHeader(Header<?> header);
@@ -29,6 +30,31 @@ public interface HttpRequest {
 
    <T> void setHeader(Header<T> header, T value);
 
+   /**
+    * Set already serialized values of a header, replacing all previous values of the header.
+    * Implementations should override this to set the values directly, the default implementation
+    * goes through {@link #setHeader(Header, Object)}.
+    * @param values The header values, which are not modified by the request.
+    */
+   default void setHeaderValues(String name, List<String> values) {
+      setHeader(new Header<List<String>>() {
+         @Override
+         public String getName() {
+            return name;
+         }
+
+         @Override
+         public List<String> deserialize(List<String> headerValues) {
+            return headerValues;
+         }
+
+         @Override
+         public List<String> serialize(List<String> value) {
+            return value;
+         }
+      }, values);
+   }
+
    void setByteProducer(Function<WritableByteChannelMaster, AioSlave<Void>> producerFactory);
 
    void setByteProducer(Function<WritableByteChannelMaster, AioSlave<Void>> producerFactory, long length);
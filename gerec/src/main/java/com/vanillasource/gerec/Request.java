@@ -18,6 +18,7 @@
 
 package com.vanillasource.gerec;
 
+import java.net.URI;
 import java.util.concurrent.CompletableFuture;
 
 /**
@@ -45,6 +46,20 @@ public interface Request {
       return send(MediaType.NONE);
    }
 
+   /**
+    * @return The http method of this request, or null if not known.
+    */
+   default String getMethod() {
+      return null;
+   }
+
+   /**
+    * @return The uri this request will be sent to, or null if not known.
+    */
+   default URI getUri() {
+      return null;
+   }
+
    /**
     * Suspend this reqest into a serialized form.
     */
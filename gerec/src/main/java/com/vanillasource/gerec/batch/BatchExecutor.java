@@ -0,0 +1,278 @@
+/**
+ * Copyright (C) 2020 VanillaSource
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.vanillasource.gerec.batch;
+
+import com.vanillasource.gerec.AcceptMediaType;
+import com.vanillasource.gerec.Request;
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Sends many requests with a bounded number of them in flight at the same time, both overall
+ * and to any single host. Requests are pulled from the given iterator only when there is room for
+ * them, so a lazy producer, like a stream, is only asked for more requests as results are delivered.
+ * At most twice the maximum concurrency of requests are pulled ahead of delivering their results.
+ * <p>
+ * Results are given to the consumer one at a time, never concurrently, either in the order
+ * of the requests, or in the order they complete.
+ */
+public final class BatchExecutor {
+   private final int maxConcurrency;
+   private final int maxConcurrencyPerHost;
+
+   /**
+    * @param maxConcurrency The maximum number of requests in flight.
+    * @param maxConcurrencyPerHost The maximum number of requests in flight to the same host and port.
+    */
+   public BatchExecutor(int maxConcurrency, int maxConcurrencyPerHost) {
+      if (maxConcurrency < 1 || maxConcurrencyPerHost < 1) {
+         throw new IllegalArgumentException("concurrency limits must be at least 1, but were "+maxConcurrency+" and "+maxConcurrencyPerHost);
+      }
+      this.maxConcurrency = maxConcurrency;
+      this.maxConcurrencyPerHost = maxConcurrencyPerHost;
+   }
+
+   public BatchExecutor(int maxConcurrency) {
+      this(maxConcurrency, maxConcurrency);
+   }
+
+   /**
+    * The order in which results are delivered.
+    */
+   public enum Order {
+      /**
+       * In the order of the requests. A slow request holds back the results after it.
+       */
+      ORDERED,
+      /**
+       * In the order the requests complete.
+       */
+      UNORDERED
+   }
+
+   /**
+    * What happens when a request fails.
+    */
+   public enum ErrorMode {
+      /**
+       * The first failure stops the batch, no more requests are started, and the batch completes with that failure.
+       * Only successful results are delivered.
+       */
+      FAIL_FAST,
+      /**
+       * Failures are delivered as results, and the batch continues.
+       */
+      COLLECT_ERRORS
+   }
+
+   /**
+    * Execute the requests of the iterator.
+    * @return A future that completes when all results are delivered, or exceptionally if the batch failed.
+    * Cancelling it stops the batch.
+    */
+   public <T> CompletableFuture<Void> execute(Iterator<? extends Request> requests, AcceptMediaType<T> acceptType,
+         Order order, ErrorMode errorMode, Consumer<? super BatchResult<T>> consumer) {
+      Batch<T> batch = new Batch<>(requests, acceptType, order, errorMode, consumer);
+      batch.drain();
+      return batch.result;
+   }
+
+   public <T> CompletableFuture<Void> execute(Stream<? extends Request> requests, AcceptMediaType<T> acceptType,
+         Order order, ErrorMode errorMode, Consumer<? super BatchResult<T>> consumer) {
+      return execute(requests.iterator(), acceptType, order, errorMode, consumer);
+   }
+
+   public <T> CompletableFuture<Void> execute(Iterable<? extends Request> requests, AcceptMediaType<T> acceptType,
+         Order order, ErrorMode errorMode, Consumer<? super BatchResult<T>> consumer) {
+      return execute(requests.iterator(), acceptType, order, errorMode, consumer);
+   }
+
+   /**
+    * Send all requests and collect their contents in the order of the requests. Fails on the first failed request.
+    */
+   public <T> CompletableFuture<List<T>> sendAll(Collection<? extends Request> requests, AcceptMediaType<T> acceptType) {
+      List<T> contents = new ArrayList<>(requests.size());
+      return execute(requests, acceptType, Order.ORDERED, ErrorMode.FAIL_FAST, result -> contents.add(result.getContent()))
+         .thenApply(done -> contents);
+   }
+
+   private static String hostOf(URI uri) {
+      if (uri == null) {
+         return "";
+      }
+      return uri.getHost()+":"+uri.getPort();
+   }
+
+   /**
+    * The state of a single batch. All state is only modified in the drain loop, which
+    * is entered by one thread at a time. Completions of requests are queued and picked up by the loop.
+    */
+   private final class Batch<T> {
+      private final CompletableFuture<Void> result = new CompletableFuture<>();
+      private final AtomicInteger work = new AtomicInteger();
+      private final Queue<BatchResult<T>> completions = new ConcurrentLinkedQueue<>();
+      private final Iterator<? extends Request> requests;
+      private final AcceptMediaType<T> acceptType;
+      private final Order order;
+      private final ErrorMode errorMode;
+      private final Consumer<? super BatchResult<T>> consumer;
+      private final Deque<PendingRequest> pending = new ArrayDeque<>();
+      private final Map<String, Integer> runningPerHost = new HashMap<>();
+      private final Map<Long, BatchResult<T>> completedOutOfOrder = new HashMap<>();
+      private boolean exhausted = false;
+      private long nextIndex = 0;
+      private long nextDeliveryIndex = 0;
+      private int running = 0;
+      private int undelivered = 0;
+
+      private Batch(Iterator<? extends Request> requests, AcceptMediaType<T> acceptType, Order order,
+            ErrorMode errorMode, Consumer<? super BatchResult<T>> consumer) {
+         this.requests = requests;
+         this.acceptType = acceptType;
+         this.order = order;
+         this.errorMode = errorMode;
+         this.consumer = consumer;
+      }
+
+      private void drain() {
+         if (work.getAndIncrement() != 0) {
+            return;
+         }
+         int missed = 1;
+         do {
+            try {
+               step();
+            } catch (RuntimeException e) {
+               result.completeExceptionally(e);
+            }
+            missed = work.addAndGet(-missed);
+         } while (missed != 0);
+      }
+
+      private void step() {
+         BatchResult<T> completion;
+         while ((completion = completions.poll()) != null) {
+            completed(completion);
+         }
+         if (result.isDone()) {
+            return;
+         }
+         pull();
+         start();
+         if (exhausted && undelivered == 0) {
+            result.complete(null);
+         }
+      }
+
+      private void completed(BatchResult<T> completion) {
+         running--;
+         runningPerHost.compute(hostOf(completion.getRequest().getUri()), (host, count) -> count == 1 ? null : count - 1);
+         if (result.isDone()) {
+            return;
+         }
+         if (!completion.isSuccessful() && errorMode == ErrorMode.FAIL_FAST) {
+            result.completeExceptionally(completion.getError());
+            return;
+         }
+         if (order == Order.UNORDERED) {
+            deliver(completion);
+         } else {
+            completedOutOfOrder.put(completion.getIndex(), completion);
+            BatchResult<T> next;
+            while ((next = completedOutOfOrder.remove(nextDeliveryIndex)) != null) {
+               nextDeliveryIndex++;
+               deliver(next);
+            }
+         }
+      }
+
+      private void deliver(BatchResult<T> completion) {
+         undelivered--;
+         consumer.accept(completion);
+      }
+
+      private void pull() {
+         while (!exhausted && pending.size() < maxConcurrency && undelivered < 2 * maxConcurrency) {
+            if (requests.hasNext()) {
+               Request request = requests.next();
+               pending.add(new PendingRequest(nextIndex++, request, hostOf(request.getUri())));
+               undelivered++;
+            } else {
+               exhausted = true;
+            }
+         }
+      }
+
+      private void start() {
+         Iterator<PendingRequest> pendingIterator = pending.iterator();
+         while (running < maxConcurrency && pendingIterator.hasNext()) {
+            PendingRequest pendingRequest = pendingIterator.next();
+            if (runningPerHost.getOrDefault(pendingRequest.host, 0) < maxConcurrencyPerHost) {
+               pendingIterator.remove();
+               running++;
+               runningPerHost.merge(pendingRequest.host, 1, Integer::sum);
+               send(pendingRequest.index, pendingRequest.request);
+            }
+         }
+      }
+
+      private void send(long index, Request request) {
+         CompletableFuture<T> response;
+         try {
+            response = request.send(acceptType);
+         } catch (RuntimeException e) {
+            response = new CompletableFuture<>();
+            response.completeExceptionally(e);
+         }
+         response.whenComplete((content, exception) -> {
+            if (exception instanceof CompletionException && exception.getCause() != null) {
+               exception = exception.getCause();
+            }
+            completions.add(new BatchResult<>(index, request, content, exception));
+            drain();
+         });
+      }
+   }
+
+   private static final class PendingRequest {
+      private final long index;
+      private final Request request;
+      private final String host;
+
+      private PendingRequest(long index, Request request, String host) {
+         this.index = index;
+         this.request = request;
+         this.host = host;
+      }
+   }
+}
@@ -0,0 +1,76 @@
+/**
+ * Copyright (C) 2020 VanillaSource
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.vanillasource.gerec.batch;
+
+import com.vanillasource.gerec.Request;
+
+/**
+ * The outcome of a single request in a batch, either its deserialized content or the error
+ * it failed with.
+ */
+public final class BatchResult<T> {
+   private final long index;
+   private final Request request;
+   private final T content;
+   private final Throwable error;
+
+   BatchResult(long index, Request request, T content, Throwable error) {
+      this.index = index;
+      this.request = request;
+      this.content = content;
+      this.error = error;
+   }
+
+   /**
+    * @return The position of the request in the batch, starting with 0.
+    */
+   public long getIndex() {
+      return index;
+   }
+
+   public Request getRequest() {
+      return request;
+   }
+
+   public boolean isSuccessful() {
+      return error == null;
+   }
+
+   /**
+    * @return The content of the response, or null if the request failed.
+    */
+   public T getContent() {
+      return content;
+   }
+
+   /**
+    * @return The error the request failed with, or null if it was successful.
+    */
+   public Throwable getError() {
+      return error;
+   }
+
+   @Override
+   public String toString() {
+      if (isSuccessful()) {
+         return "BatchResult["+index+": "+content+"]";
+      }
+      return "BatchResult["+index+" failed: "+error+"]";
+   }
+}
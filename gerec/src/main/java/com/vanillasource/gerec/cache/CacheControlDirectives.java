@@ -0,0 +1,78 @@
+/**
+ * Copyright (C) 2020 VanillaSource
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.vanillasource.gerec.cache;
+
+import java.util.Map;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Collections;
+
+/**
+ * Parsed directives of <code>Cache-Control</code> header values. Directive names are lower-cased,
+ * directives without arguments are mapped to an empty string.
+ */
+final class CacheControlDirectives {
+   private final Map<String, String> directives;
+
+   private CacheControlDirectives(Map<String, String> directives) {
+      this.directives = directives;
+   }
+
+   static CacheControlDirectives parse(List<String> headerValues) {
+      if (headerValues == null || headerValues.isEmpty()) {
+         return new CacheControlDirectives(Collections.emptyMap());
+      }
+      Map<String, String> directives = new HashMap<>();
+      for (String headerValue: headerValues) {
+         for (String directive: headerValue.split(",")) {
+            int equalsIndex = directive.indexOf('=');
+            if (equalsIndex < 0) {
+               directives.put(directive.trim().toLowerCase(), "");
+            } else {
+               String argument = directive.substring(equalsIndex+1).trim();
+               if (argument.length() >= 2 && argument.startsWith("\"") && argument.endsWith("\"")) {
+                  argument = argument.substring(1, argument.length()-1);
+               }
+               directives.put(directive.substring(0, equalsIndex).trim().toLowerCase(), argument);
+            }
+         }
+      }
+      return new CacheControlDirectives(directives);
+   }
+
+   boolean has(String name) {
+      return directives.containsKey(name);
+   }
+
+   /**
+    * @return The argument of the given directive in seconds, or -1 if
+    * the directive is not present or its argument is not a number.
+    */
+   long seconds(String name) {
+      String argument = directives.get(name);
+      if (argument == null) {
+         return -1;
+      }
+      try {
+         return Long.parseLong(argument);
+      } catch (NumberFormatException e) {
+         return -1;
+      }
+   }
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright (C) 2020 VanillaSource
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.vanillasource.gerec.cache;
+
+import com.vanillasource.gerec.HttpResponse;
+import com.vanillasource.gerec.HttpStatusCode;
+import com.vanillasource.gerec.Header;
+import com.vanillasource.aio.AioSlave;
+import com.vanillasource.aio.channel.ReadableByteChannelMaster;
+import com.vanillasource.aio.channel.ByteBufferReadableByteChannelMaster;
+import java.util.function.Function;
+import java.util.concurrent.CompletableFuture;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A http response that is served from a cached response. The <code>Age</code> header
+ * is set to the age of the cached response at the time this response is created.
+ */
+final class CachedHttpResponse implements HttpResponse {
+   private final CachedResponse cachedResponse;
+   private final long age;
+
+   CachedHttpResponse(CachedResponse cachedResponse, long now) {
+      this.cachedResponse = cachedResponse;
+      this.age = cachedResponse.getAge(now) / 1000;
+   }
+
+   @Override
+   public HttpStatusCode getStatusCode() {
+      return cachedResponse.getStatusCode();
+   }
+
+   @Override
+   public boolean hasHeader(Header<?> header) {
+      return headerValues(header) != null;
+   }
+
+   @Override
+   public <T> T getHeader(Header<T> header) {
+      List<String> values = headerValues(header);
+      if (values == null) {
+         return header.deserialize(Collections.emptyList());
+      }
+      return header.deserialize(values);
+   }
+
+   private List<String> headerValues(Header<?> header) {
+      if ("Age".equalsIgnoreCase(header.getName())) {
+         return Collections.singletonList(Long.toString(age));
+      }
+      return cachedResponse.getHeader(header.getName());
+   }
+
+   @Override
+   public <R> CompletableFuture<R> consumeContent(Function<ReadableByteChannelMaster, AioSlave<R>> consumerFactory) {
+      ByteBufferReadableByteChannelMaster master = new ByteBufferReadableByteChannelMaster(cachedResponse.getContent());
+      AioSlave<R> consumer = consumerFactory.apply(master);
+      return master.execute(consumer, Runnable::run); // Safe to be sync, because content is in memory
+   }
+}
@@ -0,0 +1,194 @@
+/**
+ * Copyright (C) 2020 VanillaSource
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.vanillasource.gerec.cache;
+
+import com.vanillasource.gerec.HttpStatusCode;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Objects;
+import java.util.Collections;
+
+/**
+ * A response stored in a cache, together with the values of the request headers the response
+ * varies on. Instances are immutable, the content is never modified once stored.
+ */
+public final class CachedResponse {
+   private final HttpStatusCode statusCode;
+   private final Map<String, List<String>> headers;
+   private final Map<String, List<String>> varyingRequestHeaders;
+   private final ByteBuffer content;
+   private final long storedAt;
+
+   /**
+    * @param headers The stored response headers, the names are used case-insensitively.
+    * @param varyingRequestHeaders The request headers named in the <code>Vary</code> header
+    * of the response, with the values the request had. Headers the request did not have
+    * are not present.
+    * @param storedAt The time in epoch milliseconds the response was generated at, this is the time
+    * the age of this response is measured from.
+    */
+   public CachedResponse(HttpStatusCode statusCode, Map<String, List<String>> headers, Map<String, List<String>> varyingRequestHeaders,
+         ByteBuffer content, long storedAt) {
+      this.statusCode = statusCode;
+      this.headers = caseInsensitiveCopy(headers);
+      this.varyingRequestHeaders = caseInsensitiveCopy(varyingRequestHeaders);
+      this.content = content.asReadOnlyBuffer();
+      this.storedAt = storedAt;
+   }
+
+   private static Map<String, List<String>> caseInsensitiveCopy(Map<String, List<String>> headers) {
+      Map<String, List<String>> copy = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+      copy.putAll(headers);
+      return Collections.unmodifiableMap(copy);
+   }
+
+   public HttpStatusCode getStatusCode() {
+      return statusCode;
+   }
+
+   public Map<String, List<String>> getHeaders() {
+      return headers;
+   }
+
+   /**
+    * @return The values of the given header, or null if the header is not stored.
+    */
+   public List<String> getHeader(String name) {
+      return headers.get(name);
+   }
+
+   public Map<String, List<String>> getVaryingRequestHeaders() {
+      return varyingRequestHeaders;
+   }
+
+   /**
+    * @return A new read-only buffer of the content, which can be read independently of other
+    * readers.
+    */
+   public ByteBuffer getContent() {
+      return content.duplicate();
+   }
+
+   public long getStoredAt() {
+      return storedAt;
+   }
+
+   /**
+    * @return The approximate number of bytes this response occupies.
+    */
+   public long getSize() {
+      return content.remaining() + headersSize(headers) + headersSize(varyingRequestHeaders);
+   }
+
+   private static long headersSize(Map<String, List<String>> headers) {
+      long size = 0;
+      for (Map.Entry<String, List<String>> header: headers.entrySet()) {
+         size += header.getKey().length();
+         for (String value: header.getValue()) {
+            size += value.length();
+         }
+      }
+      return size;
+   }
+
+   /**
+    * @return True if this response can be used for a request with the given headers, that is all
+    * the headers this response varies on have the same values.
+    */
+   public boolean isVariantFor(Map<String, List<String>> requestHeaders) {
+      for (Map.Entry<String, List<String>> varyingHeader: varyingRequestHeaders.entrySet()) {
+         if (!Objects.equals(varyingHeader.getValue(), requestHeaders.get(varyingHeader.getKey()))) {
+            return false;
+         }
+      }
+      for (String varyingHeaderName: varyingHeaderNames()) {
+         if (!varyingRequestHeaders.containsKey(varyingHeaderName) && requestHeaders.containsKey(varyingHeaderName)) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   /**
+    * @return True if the given response is for the same request header values as this one, so it
+    * replaces this one.
+    */
+   public boolean isSameVariantAs(CachedResponse other) {
+      return varyingRequestHeaders.equals(other.varyingRequestHeaders);
+   }
+
+   private List<String> varyingHeaderNames() {
+      List<String> vary = headers.get("Vary");
+      if (vary == null) {
+         return Collections.emptyList();
+      }
+      List<String> names = new ArrayList<>();
+      for (String value: vary) {
+         for (String name: value.split(",")) {
+            if (!name.trim().isEmpty()) {
+               names.add(name.trim());
+            }
+         }
+      }
+      return names;
+   }
+
+   /**
+    * @return The number of milliseconds this response is fresh for after it was generated,
+    * based on the <code>max-age</code> directive of the response. Responses with <code>no-cache</code>
+    * or without <code>max-age</code> are never fresh.
+    */
+   public long getFreshnessLifetime() {
+      CacheControlDirectives directives = CacheControlDirectives.parse(headers.get("Cache-Control"));
+      if (directives.has("no-cache")) {
+         return 0;
+      }
+      return Math.max(0, directives.seconds("max-age")) * 1000L;
+   }
+
+   public long getAge(long now) {
+      return Math.max(0, now - storedAt);
+   }
+
+   public boolean isFresh(long now) {
+      return getAge(now) < getFreshnessLifetime();
+   }
+
+   /**
+    * @return True if the response can be revalidated with the server.
+    */
+   public boolean hasValidator() {
+      return headers.containsKey("ETag") || headers.containsKey("Last-Modified");
+   }
+
+   /**
+    * Create a new response that has the same content, but has the given headers updated
+    * and is generated at the given time. Used when the server confirmed this response is
+    * still valid.
+    */
+   public CachedResponse refresh(Map<String, List<String>> updatedHeaders, long now) {
+      Map<String, List<String>> mergedHeaders = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+      mergedHeaders.putAll(headers);
+      mergedHeaders.putAll(updatedHeaders);
+      return new CachedResponse(statusCode, mergedHeaders, varyingRequestHeaders, content, now);
+   }
+}
@@ -0,0 +1,316 @@
+/**
+ * Copyright (C) 2020 VanillaSource
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.vanillasource.gerec.cache;
+
+import com.vanillasource.gerec.HttpRequest;
+import com.vanillasource.gerec.HttpResponse;
+import com.vanillasource.gerec.HttpStatusCode;
+import com.vanillasource.gerec.Header;
+import com.vanillasource.gerec.http.Headers;
+import com.vanillasource.gerec.http.RecordingHttpRequest;
+import com.vanillasource.gerec.reference.HttpClient;
+import com.vanillasource.aio.channel.NullReadableByteChannelSlave;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.time.Clock;
+import java.util.List;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A http client that caches responses of <code>GET</code> requests made through the given client.
+ * Responses are stored for the uri and the values of the request headers named in the <code>Vary</code>
+ * header. Responses are served from the cache while they are fresh based on their <code>max-age</code>,
+ * after that they are revalidated with the server using <code>If-None-Match</code> or <code>If-Modified-Since</code>,
+ * and served from the cache again if the server answers <code>304</code>.
+ * <p>
+ * The <code>no-store</code>, <code>no-cache</code>, <code>max-age</code>, <code>min-fresh</code>, <code>max-stale</code> and
+ * <code>only-if-cached</code> request directives, and the <code>no-store</code>, <code>no-cache</code> and
+ * <code>max-age</code> response directives are respected. Successful <code>POST</code>, <code>PUT</code> and
+ * <code>DELETE</code> requests remove the stored responses of the uri. Requests that are already
+ * conditional are not served from the cache.
+ * <p>
+ * Only the headers in {@link #STORED_HEADERS} are stored with responses, other headers are not
+ * available in responses served from the cache.
+ */
+public final class CachingHttpClient implements HttpClient {
+   private static final Logger logger = LoggerFactory.getLogger(CachingHttpClient.class);
+   public static final List<String> STORED_HEADERS = Collections.unmodifiableList(Arrays.asList(
+            "Content-Type", "Content-Length", "Content-Encoding", "Content-Language", "Content-Location",
+            "ETag", "Last-Modified", "Cache-Control", "Expires", "Date", "Vary", "Location", "Allow", "Link"));
+   private static final List<String> CONDITIONAL_HEADERS = Arrays.asList(
+            "If-Match", "If-None-Match", "If-Modified-Since", "If-Unmodified-Since", "If-Range");
+   private static final long DEFAULT_MAX_CONTENT_LENGTH = 1024 * 1024;
+   private final HttpClient delegate;
+   private final ResponseCache cache;
+   private final Clock clock;
+   private final long maxContentLength;
+   private final AtomicLong hitCount = new AtomicLong();
+   private final AtomicLong missCount = new AtomicLong();
+   private final AtomicLong revalidationCount = new AtomicLong();
+
+   /**
+    * @param clock The clock to measure the age of responses with.
+    * @param maxContentLength Responses with longer content are not stored.
+    */
+   public CachingHttpClient(HttpClient delegate, ResponseCache cache, Clock clock, long maxContentLength) {
+      this.delegate = delegate;
+      this.cache = cache;
+      this.clock = clock;
+      this.maxContentLength = maxContentLength;
+   }
+
+   public CachingHttpClient(HttpClient delegate, ResponseCache cache) {
+      this(delegate, cache, Clock.systemUTC(), DEFAULT_MAX_CONTENT_LENGTH);
+   }
+
+   /**
+    * @return The number of requests served from the cache without contacting the server.
+    */
+   public long getHitCount() {
+      return hitCount.get();
+   }
+
+   /**
+    * @return The number of requests that had no usable stored response.
+    */
+   public long getMissCount() {
+      return missCount.get();
+   }
+
+   /**
+    * @return The number of requests that were sent to the server to validate a stored response.
+    */
+   public long getRevalidationCount() {
+      return revalidationCount.get();
+   }
+
+   @Override
+   public CompletableFuture<HttpResponse> doHead(URI uri, HttpRequest.HttpRequestChange change) {
+      return delegate.doHead(uri, change);
+   }
+
+   @Override
+   public CompletableFuture<HttpResponse> doOptions(URI uri, HttpRequest.HttpRequestChange change) {
+      return delegate.doOptions(uri, change);
+   }
+
+   @Override
+   public CompletableFuture<HttpResponse> doPost(URI uri, HttpRequest.HttpRequestChange change) {
+      return invalidating(uri, delegate.doPost(uri, change));
+   }
+
+   @Override
+   public CompletableFuture<HttpResponse> doPut(URI uri, HttpRequest.HttpRequestChange change) {
+      return invalidating(uri, delegate.doPut(uri, change));
+   }
+
+   @Override
+   public CompletableFuture<HttpResponse> doDelete(URI uri, HttpRequest.HttpRequestChange change) {
+      return invalidating(uri, delegate.doDelete(uri, change));
+   }
+
+   private CompletableFuture<HttpResponse> invalidating(URI uri, CompletableFuture<HttpResponse> call) {
+      return call.thenApply(response -> {
+         if (!response.getStatusCode().isError()) {
+            logger.debug("removing stored responses of {}", uri);
+            removeStored(uri);
+         }
+         return response;
+      });
+   }
+
+   @Override
+   public CompletableFuture<HttpResponse> doGet(URI uri, HttpRequest.HttpRequestChange change) {
+      Map<String, List<String>> requestHeaders = RecordingHttpRequest.recordHeaders(change);
+      CacheControlDirectives requestDirectives = CacheControlDirectives.parse(requestHeaders.get("Cache-Control"));
+      if (requestDirectives.has("no-store") || isConditional(requestHeaders)) {
+         missCount.incrementAndGet();
+         return delegate.doGet(uri, change);
+      }
+      long now = clock.millis();
+      CachedResponse cachedResponse = findVariant(uri, requestHeaders);
+      if (cachedResponse != null &&
+            (requestDirectives.has("only-if-cached") || (!requestDirectives.has("no-cache") && isFresh(cachedResponse, requestDirectives, now)))) {
+         logger.debug("serving {} from cache", uri);
+         hitCount.incrementAndGet();
+         return CompletableFuture.completedFuture(new CachedHttpResponse(cachedResponse, now));
+      }
+      if (requestDirectives.has("only-if-cached")) {
+         logger.debug("no stored response for {}, but request is only if cached", uri);
+         missCount.incrementAndGet();
+         return CompletableFuture.completedFuture(new CachedHttpResponse(new CachedResponse(HttpStatusCode.GATEWAY_TIMEOUT,
+                     Collections.emptyMap(), Collections.emptyMap(), ByteBuffer.allocate(0), now), now));
+      }
+      if (cachedResponse != null && cachedResponse.hasValidator()) {
+         logger.debug("revalidating stored response of {}", uri);
+         revalidationCount.incrementAndGet();
+         return delegate.doGet(uri, change.and(validatorsOf(cachedResponse)))
+            .thenApply(response -> {
+               if (HttpStatusCode.NOT_MODIFIED.equals(response.getStatusCode())) {
+                  response.consumeContent(NullReadableByteChannelSlave::new);
+                  Map<String, List<String>> updatedHeaders = storedHeaders(response);
+                  updatedHeaders.remove("Content-Length");
+                  CachedResponse refreshedResponse = cachedResponse.refresh(updatedHeaders, generatedAt(response));
+                  store(uri, refreshedResponse);
+                  return new CachedHttpResponse(refreshedResponse, clock.millis());
+               }
+               return storing(uri, requestHeaders, response);
+            });
+      }
+      missCount.incrementAndGet();
+      return delegate.doGet(uri, change)
+         .thenApply(response -> storing(uri, requestHeaders, response));
+   }
+
+   private CachedResponse findVariant(URI uri, Map<String, List<String>> requestHeaders) {
+      for (CachedResponse variant: cache.get(uri)) {
+         if (variant.isVariantFor(requestHeaders)) {
+            return variant;
+         }
+      }
+      return null;
+   }
+
+   private static boolean isFresh(CachedResponse cachedResponse, CacheControlDirectives requestDirectives, long now) {
+      long age = cachedResponse.getAge(now);
+      long maxAge = requestDirectives.seconds("max-age");
+      if (maxAge >= 0 && age > maxAge * 1000L) {
+         return false;
+      }
+      long minFresh = Math.max(0, requestDirectives.seconds("min-fresh")) * 1000L;
+      long maxStale = 0;
+      if (requestDirectives.has("max-stale")) {
+         long maxStaleSeconds = requestDirectives.seconds("max-stale");
+         maxStale = maxStaleSeconds < 0 ? Long.MAX_VALUE / 2 : maxStaleSeconds * 1000L;
+      }
+      return age + minFresh < cachedResponse.getFreshnessLifetime() + maxStale;
+   }
+
+   private static boolean isConditional(Map<String, List<String>> requestHeaders) {
+      for (String conditionalHeader: CONDITIONAL_HEADERS) {
+         if (requestHeaders.containsKey(conditionalHeader)) {
+            return true;
+         }
+      }
+      return false;
+   }
+
+   private static HttpRequest.HttpRequestChange validatorsOf(CachedResponse cachedResponse) {
+      return request -> {
+         List<String> etag = cachedResponse.getHeader("ETag");
+         if (etag != null) {
+            request.setHeader(Headers.IF_NONE_MATCH, String.join(", ", etag));
+         }
+         List<String> lastModified = cachedResponse.getHeader("Last-Modified");
+         if (lastModified != null) {
+            request.setHeader(Headers.IF_MODIFIED_SINCE, lastModified.get(0));
+         }
+      };
+   }
+
+   private HttpResponse storing(URI uri, Map<String, List<String>> requestHeaders, HttpResponse response) {
+      HttpStatusCode statusCode = response.getStatusCode();
+      if (!HttpStatusCode.OK.equals(statusCode) && !HttpStatusCode.NON_AUTHORITATIVE_INFORMATION.equals(statusCode)) {
+         return response;
+      }
+      Map<String, List<String>> responseHeaders = storedHeaders(response);
+      if (CacheControlDirectives.parse(responseHeaders.get("Cache-Control")).has("no-store")) {
+         return response;
+      }
+      Map<String, List<String>> varyingRequestHeaders = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+      if (response.hasHeader(Headers.VARY)) {
+         for (String varyingHeaderName: response.getHeader(Headers.VARY)) {
+            if ("*".equals(varyingHeaderName)) {
+               return response;
+            }
+            if (requestHeaders.containsKey(varyingHeaderName)) {
+               varyingRequestHeaders.put(varyingHeaderName, requestHeaders.get(varyingHeaderName));
+            }
+         }
+      }
+      long generatedAt = generatedAt(response);
+      CachedResponse candidate = new CachedResponse(statusCode, responseHeaders, varyingRequestHeaders, ByteBuffer.allocate(0), generatedAt);
+      if (candidate.getFreshnessLifetime() == 0 && !candidate.hasValidator()) {
+         return response;
+      }
+      Long contentLength = response.hasHeader(Headers.CONTENT_LENGTH) ? response.getHeader(Headers.CONTENT_LENGTH) : null;
+      if (contentLength != null && contentLength > maxContentLength) {
+         return response;
+      }
+      return new StoringHttpResponse(response, maxContentLength, content -> {
+         if (contentLength == null || contentLength == content.length) {
+            logger.debug("storing response of {}", uri);
+            store(uri, new CachedResponse(statusCode, responseHeaders, varyingRequestHeaders, ByteBuffer.wrap(content), generatedAt));
+         }
+      });
+   }
+
+   /**
+    * Storing is best-effort, a failing cache does not fail the response.
+    */
+   private void store(URI uri, CachedResponse response) {
+      try {
+         cache.put(uri, response);
+      } catch (RuntimeException e) {
+         logger.warn("could not store response of {}", uri, e);
+      }
+   }
+
+   private void removeStored(URI uri) {
+      try {
+         cache.remove(uri);
+      } catch (RuntimeException e) {
+         logger.warn("could not remove stored responses of {}", uri, e);
+      }
+   }
+
+   /**
+    * The time the response was generated at, which is now, unless the response
+    * is already aged in some other cache.
+    */
+   private long generatedAt(HttpResponse response) {
+      long now = clock.millis();
+      try {
+         if (response.hasHeader(Headers.AGE)) {
+            return now - Math.max(0, response.getHeader(Headers.AGE)) * 1000L;
+         }
+      } catch (IllegalArgumentException e) {
+         logger.debug("ignoring unparseable age of response", e);
+      }
+      return now;
+   }
+
+   private static Map<String, List<String>> storedHeaders(HttpResponse response) {
+      Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+      for (String headerName: STORED_HEADERS) {
+         Header<List<String>> header = Headers.rawHeader(headerName);
+         if (response.hasHeader(header)) {
+            headers.put(headerName, response.getHeader(header));
+         }
+      }
+      return headers;
+   }
+}
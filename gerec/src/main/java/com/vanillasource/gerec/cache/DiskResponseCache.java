@@ -0,0 +1,511 @@
+/**
+ * Copyright (C) 2020 VanillaSource
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.vanillasource.gerec.cache;
+
+import com.vanillasource.gerec.HttpStatusCode;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.DirectoryStream;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.TreeMap;
+import java.util.Iterator;
+import java.util.Collections;
+import java.util.zip.CRC32;
+import java.nio.charset.StandardCharsets;
+import java.io.ByteArrayOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A response cache that stores responses in memory-mapped segment files in a directory, so
+ * stored responses survive restarts. Responses are appended to the current segment, until it is full
+ * and a new segment is started. The content of responses returned from this cache are slices of the
+ * mapped segments, so they are not copied to the heap. Only the index of responses, containing the
+ * headers, is held on the heap.
+ * <p>
+ * Each record in a segment is checksummed, and when the cache is opened, the index is recovered
+ * by reading all the segments, up to the first incomplete or corrupt record in each. Records are
+ * written to the mapped segments, which the operating system writes to disk even if the process crashes,
+ * but not necessarily if the machine crashes. Call {@link #flush()} to force the segments to disk.
+ * <p>
+ * Storing and removing responses is best-effort: if a response can not be written, the failure is
+ * logged and the stored responses of its uri are forgotten.
+ * <p>
+ * When a new segment is started, the oldest segments are compacted if less than half of them is still
+ * used, by copying their used records to the current segment. If the segments take more space than
+ * the maximum size, the oldest segments are deleted with all their responses.
+ */
+public final class DiskResponseCache implements ResponseCache, AutoCloseable {
+   private static final Logger logger = LoggerFactory.getLogger(DiskResponseCache.class);
+   private static final int DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+   private static final int RECORD_MAGIC = 0x47524543;
+   private static final int RECORD_HEADER_LENGTH = 12;
+   private static final byte PUT_RECORD = 1;
+   private static final byte REMOVE_RECORD = 2;
+   private static final String SEGMENT_PREFIX = "segment-";
+   private static final String SEGMENT_SUFFIX = ".gerec";
+   private final Path directory;
+   private final long maxSize;
+   private final int segmentSize;
+   private final List<Segment> segments = new ArrayList<>();
+   private final Map<URI, List<IndexEntry>> index = new HashMap<>();
+   private boolean compacting = false;
+
+   /**
+    * Open the cache in the given directory, recovering all responses already stored there.
+    * @param maxSize The maximum number of bytes all segment files may take.
+    * @param segmentSize The size of a single segment file. Responses larger than this are not stored.
+    */
+   public DiskResponseCache(Path directory, long maxSize, int segmentSize) {
+      if (maxSize < 2L * segmentSize) {
+         throw new IllegalArgumentException("max size "+maxSize+" must be at least two segments of "+segmentSize+" bytes");
+      }
+      this.directory = directory;
+      this.maxSize = maxSize;
+      this.segmentSize = segmentSize;
+      try {
+         Files.createDirectories(directory);
+         recover();
+      } catch (IOException e) {
+         throw new UncheckedIOException(e);
+      }
+   }
+
+   public DiskResponseCache(Path directory, long maxSize) {
+      this(directory, maxSize, DEFAULT_SEGMENT_SIZE);
+   }
+
+   @Override
+   public synchronized List<CachedResponse> get(URI uri) {
+      List<IndexEntry> entries = index.get(uri);
+      if (entries == null) {
+         return Collections.emptyList();
+      }
+      List<CachedResponse> responses = new ArrayList<>(entries.size());
+      for (IndexEntry entry: entries) {
+         responses.add(entry.toResponse());
+      }
+      return responses;
+   }
+
+   @Override
+   public synchronized void put(URI uri, CachedResponse response) {
+      try {
+         byte[] metadata = metadata(uri, response);
+         ByteBuffer content = response.getContent();
+         if (RECORD_HEADER_LENGTH + 5 + metadata.length + content.remaining() > segmentSize) {
+            logger.debug("response of {} does not fit into a segment, not storing", uri);
+            remove(uri);
+            return;
+         }
+         IndexEntry entry = appendPut(uri, response, metadata, content);
+         List<IndexEntry> entries = index.computeIfAbsent(uri, key -> new ArrayList<>(1));
+         Iterator<IndexEntry> entryIterator = entries.iterator();
+         while (entryIterator.hasNext()) {
+            IndexEntry oldEntry = entryIterator.next();
+            if (oldEntry.isSameVariantAs(entry)) {
+               oldEntry.release();
+               entryIterator.remove();
+            }
+         }
+         entries.add(entry);
+      } catch (IOException | UncheckedIOException e) {
+         logger.warn("could not store response of {}, forgetting stored responses", uri, e);
+         forget(uri);
+      }
+   }
+
+   private void forget(URI uri) {
+      List<IndexEntry> entries = index.remove(uri);
+      if (entries != null) {
+         for (IndexEntry entry: entries) {
+            entry.release();
+         }
+      }
+   }
+
+   @Override
+   public synchronized void remove(URI uri) {
+      if (index.containsKey(uri)) {
+         forget(uri);
+         try {
+            ByteArrayOutputStream metadata = new ByteArrayOutputStream();
+            DataOutputStream output = new DataOutputStream(metadata);
+            writeString(output, uri.toString());
+            output.close();
+            append(REMOVE_RECORD, metadata.toByteArray(), ByteBuffer.allocate(0));
+         } catch (IOException | UncheckedIOException e) {
+            logger.warn("could not write removal of {}, it may be recovered after restart", uri, e);
+         }
+      }
+   }
+
+   /**
+    * Compact the oldest segments, if less than half of them is used.
+    */
+   public synchronized void compact() {
+      if (compacting) {
+         return;
+      }
+      compacting = true;
+      try {
+         while (segments.size() > 1 && segments.get(0).liveBytes < segments.get(0).writePosition / 2) {
+            Segment oldest = segments.get(0);
+            logger.debug("compacting segment {}, used {} of {} bytes", oldest.id, oldest.liveBytes, oldest.writePosition);
+            for (Map.Entry<URI, List<IndexEntry>> entries: index.entrySet()) {
+               for (IndexEntry entry: entries.getValue()) {
+                  if (entry.segment == oldest) {
+                     CachedResponse response = entry.toResponse();
+                     IndexEntry movedEntry = appendPut(entries.getKey(), response, metadata(entries.getKey(), response), response.getContent());
+                     entry.moveTo(movedEntry);
+                  }
+               }
+            }
+            deleteOldestSegment();
+         }
+         evict();
+      } catch (IOException e) {
+         throw new UncheckedIOException(e);
+      } finally {
+         compacting = false;
+      }
+   }
+
+   /**
+    * Force all stored responses to be written to disk.
+    */
+   public synchronized void flush() {
+      for (Segment segment: segments) {
+         segment.buffer.force();
+      }
+   }
+
+   /**
+    * @return The number of bytes taken by segment files.
+    */
+   public synchronized long getSize() {
+      return (long) segments.size() * segmentSize;
+   }
+
+   @Override
+   public void close() {
+      flush();
+   }
+
+   private void recover() throws IOException {
+      List<Integer> segmentIds = new ArrayList<>();
+      try (DirectoryStream<Path> segmentFiles = Files.newDirectoryStream(directory, SEGMENT_PREFIX+"*"+SEGMENT_SUFFIX)) {
+         for (Path segmentFile: segmentFiles) {
+            String fileName = segmentFile.getFileName().toString();
+            try {
+               segmentIds.add(Integer.parseInt(fileName.substring(SEGMENT_PREFIX.length(), fileName.length()-SEGMENT_SUFFIX.length())));
+            } catch (NumberFormatException e) {
+               logger.warn("ignoring unknown file {} in cache directory", segmentFile);
+            }
+         }
+      }
+      Collections.sort(segmentIds);
+      for (int segmentId: segmentIds) {
+         Segment segment = openSegment(segmentId);
+         segments.add(segment);
+         recover(segment);
+      }
+      if (segments.isEmpty()) {
+         segments.add(openSegment(0));
+      }
+      logger.debug("recovered {} uris from {} segments in {}", index.size(), segments.size(), directory);
+      evict();
+   }
+
+   private void recover(Segment segment) throws IOException {
+      ByteBuffer buffer = segment.buffer.duplicate();
+      int position = 0;
+      while (position + RECORD_HEADER_LENGTH <= segmentSize) {
+         buffer.clear().position(position);
+         int magic = buffer.getInt();
+         int payloadLength = buffer.getInt();
+         int crc = buffer.getInt();
+         if (magic != RECORD_MAGIC || payloadLength < 5 || payloadLength > segmentSize - position - RECORD_HEADER_LENGTH) {
+            break;
+         }
+         ByteBuffer payload = buffer.slice();
+         payload.limit(payloadLength);
+         CRC32 checksum = new CRC32();
+         checksum.update(payload.duplicate());
+         if ((int) checksum.getValue() != crc) {
+            logger.warn("corrupt record in segment {} at {}, ignoring rest of segment", segment.id, position);
+            break;
+         }
+         byte type = payload.get();
+         int metadataLength = payload.getInt();
+         byte[] metadata = new byte[metadataLength];
+         payload.get(metadata);
+         DataInputStream input = new DataInputStream(new ByteArrayInputStream(metadata));
+         URI uri = URI.create(readString(input));
+         if (type == PUT_RECORD) {
+            IndexEntry entry = readPut(input, segment, position + RECORD_HEADER_LENGTH + 5 + metadataLength,
+                  payloadLength - 5 - metadataLength, RECORD_HEADER_LENGTH + payloadLength);
+            List<IndexEntry> entries = index.computeIfAbsent(uri, key -> new ArrayList<>(1));
+            Iterator<IndexEntry> entryIterator = entries.iterator();
+            while (entryIterator.hasNext()) {
+               IndexEntry oldEntry = entryIterator.next();
+               if (oldEntry.isSameVariantAs(entry)) {
+                  oldEntry.release();
+                  entryIterator.remove();
+               }
+            }
+            entries.add(entry);
+         } else if (type == REMOVE_RECORD) {
+            List<IndexEntry> entries = index.remove(uri);
+            if (entries != null) {
+               entries.forEach(IndexEntry::release);
+            }
+         }
+         position += RECORD_HEADER_LENGTH + payloadLength;
+      }
+      segment.writePosition = position;
+   }
+
+   private IndexEntry readPut(DataInputStream input, Segment segment, int contentOffset, int contentLength, int recordLength) throws IOException {
+      HttpStatusCode statusCode = HttpStatusCode.valueOf(input.readInt());
+      long storedAt = input.readLong();
+      Map<String, List<String>> headers = readHeaders(input);
+      Map<String, List<String>> varyingRequestHeaders = readHeaders(input);
+      IndexEntry entry = new IndexEntry(statusCode, headers, varyingRequestHeaders, storedAt);
+      entry.locate(segment, contentOffset, contentLength, recordLength);
+      return entry;
+   }
+
+   private static Map<String, List<String>> readHeaders(DataInputStream input) throws IOException {
+      int headerCount = input.readInt();
+      Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+      for (int i=0; i<headerCount; i++) {
+         String name = readString(input);
+         int valueCount = input.readInt();
+         List<String> values = new ArrayList<>(valueCount);
+         for (int j=0; j<valueCount; j++) {
+            values.add(readString(input));
+         }
+         headers.put(name, values);
+      }
+      return headers;
+   }
+
+   /**
+    * Strings are written as length-prefixed UTF-8, so they are not limited to 64K like with <code>writeUTF</code>.
+    */
+   private static void writeString(DataOutputStream output, String value) throws IOException {
+      byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+      output.writeInt(bytes.length);
+      output.write(bytes);
+   }
+
+   private static String readString(DataInputStream input) throws IOException {
+      int length = input.readInt();
+      if (length < 0 || length > input.available()) {
+         throw new IOException("string length "+length+" is invalid");
+      }
+      byte[] bytes = new byte[length];
+      input.readFully(bytes);
+      return new String(bytes, StandardCharsets.UTF_8);
+   }
+
+   private static void writeHeaders(DataOutputStream output, Map<String, List<String>> headers) throws IOException {
+      output.writeInt(headers.size());
+      for (Map.Entry<String, List<String>> header: headers.entrySet()) {
+         writeString(output, header.getKey());
+         output.writeInt(header.getValue().size());
+         for (String value: header.getValue()) {
+            writeString(output, value);
+         }
+      }
+   }
+
+   private static byte[] metadata(URI uri, CachedResponse response) throws IOException {
+      ByteArrayOutputStream metadata = new ByteArrayOutputStream();
+      DataOutputStream output = new DataOutputStream(metadata);
+      writeString(output, uri.toString());
+      output.writeInt(response.getStatusCode().value());
+      output.writeLong(response.getStoredAt());
+      writeHeaders(output, response.getHeaders());
+      writeHeaders(output, response.getVaryingRequestHeaders());
+      output.close();
+      return metadata.toByteArray();
+   }
+
+   private IndexEntry appendPut(URI uri, CachedResponse response, byte[] metadata, ByteBuffer content) throws IOException {
+      int contentLength = content.remaining();
+      int recordOffset = append(PUT_RECORD, metadata, content);
+      Segment segment = segments.get(segments.size()-1);
+      IndexEntry entry = new IndexEntry(response.getStatusCode(), response.getHeaders(), response.getVaryingRequestHeaders(), response.getStoredAt());
+      entry.locate(segment, recordOffset + RECORD_HEADER_LENGTH + 5 + metadata.length, contentLength,
+            RECORD_HEADER_LENGTH + 5 + metadata.length + contentLength);
+      return entry;
+   }
+
+   /**
+    * Append a record to the current segment, starting a new one if it does not fit.
+    * @return The offset of the record in the current segment.
+    */
+   private int append(byte type, byte[] metadata, ByteBuffer content) throws IOException {
+      int payloadLength = 5 + metadata.length + content.remaining();
+      Segment segment = segments.get(segments.size()-1);
+      if (segment.writePosition + RECORD_HEADER_LENGTH + payloadLength > segmentSize) {
+         segment = startSegment();
+      }
+      ByteBuffer buffer = segment.buffer.duplicate();
+      int recordOffset = segment.writePosition;
+      buffer.position(recordOffset + RECORD_HEADER_LENGTH);
+      ByteBuffer payload = buffer.slice();
+      payload.put(type);
+      payload.putInt(metadata.length);
+      payload.put(metadata);
+      payload.put(content.duplicate());
+      payload.flip();
+      CRC32 checksum = new CRC32();
+      checksum.update(payload);
+      buffer.position(recordOffset);
+      buffer.putInt(RECORD_MAGIC);
+      buffer.putInt(payloadLength);
+      buffer.putInt((int) checksum.getValue());
+      segment.writePosition = recordOffset + RECORD_HEADER_LENGTH + payloadLength;
+      if (segment.writePosition + RECORD_HEADER_LENGTH <= segmentSize) {
+         buffer.position(segment.writePosition);
+         buffer.putInt(0); // Records left after a corrupt one must not be read after the next recovery
+      }
+      return recordOffset;
+   }
+
+   private Segment startSegment() throws IOException {
+      Segment segment = openSegment(segments.get(segments.size()-1).id + 1);
+      segments.add(segment);
+      logger.debug("started segment {}", segment.id);
+      if (!compacting) {
+         compact();
+         evict();
+      }
+      return segments.get(segments.size()-1);
+   }
+
+   private void evict() throws IOException {
+      while (segments.size() > 1 && (long) segments.size() * segmentSize > maxSize) {
+         Segment oldest = segments.get(0);
+         logger.debug("evicting segment {}", oldest.id);
+         Iterator<List<IndexEntry>> entriesIterator = index.values().iterator();
+         while (entriesIterator.hasNext()) {
+            List<IndexEntry> entries = entriesIterator.next();
+            entries.removeIf(entry -> entry.segment == oldest);
+            if (entries.isEmpty()) {
+               entriesIterator.remove();
+            }
+         }
+         deleteOldestSegment();
+      }
+   }
+
+   private void deleteOldestSegment() throws IOException {
+      Segment oldest = segments.remove(0);
+      Files.deleteIfExists(segmentPath(oldest.id));
+   }
+
+   private Segment openSegment(int id) throws IOException {
+      try (FileChannel channel = FileChannel.open(segmentPath(id),
+               StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+         return new Segment(id, channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize));
+      }
+   }
+
+   private Path segmentPath(int id) {
+      return directory.resolve(String.format("%s%08d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+   }
+
+   private static final class Segment {
+      private final int id;
+      private final MappedByteBuffer buffer;
+      private int writePosition = 0;
+      private long liveBytes = 0;
+
+      private Segment(int id, MappedByteBuffer buffer) {
+         this.id = id;
+         this.buffer = buffer;
+      }
+   }
+
+   private static final class IndexEntry {
+      private final HttpStatusCode statusCode;
+      private final Map<String, List<String>> headers;
+      private final Map<String, List<String>> varyingRequestHeaders;
+      private final long storedAt;
+      private Segment segment;
+      private int contentOffset;
+      private int contentLength;
+      private int recordLength;
+
+      private IndexEntry(HttpStatusCode statusCode, Map<String, List<String>> headers, Map<String, List<String>> varyingRequestHeaders, long storedAt) {
+         this.statusCode = statusCode;
+         this.headers = headers;
+         this.varyingRequestHeaders = varyingRequestHeaders;
+         this.storedAt = storedAt;
+      }
+
+      private void locate(Segment segment, int contentOffset, int contentLength, int recordLength) {
+         this.segment = segment;
+         this.contentOffset = contentOffset;
+         this.contentLength = contentLength;
+         this.recordLength = recordLength;
+         segment.liveBytes += recordLength;
+      }
+
+      private void moveTo(IndexEntry entry) {
+         release();
+         this.segment = entry.segment;
+         this.contentOffset = entry.contentOffset;
+         this.contentLength = entry.contentLength;
+         this.recordLength = entry.recordLength;
+      }
+
+      private void release() {
+         segment.liveBytes -= recordLength;
+      }
+
+      private boolean isSameVariantAs(IndexEntry other) {
+         return varyingRequestHeaders.equals(other.varyingRequestHeaders);
+      }
+
+      private CachedResponse toResponse() {
+         ByteBuffer content = segment.buffer.duplicate();
+         content.position(contentOffset);
+         content.limit(contentOffset + contentLength);
+         return new CachedResponse(statusCode, headers, varyingRequestHeaders, content.slice(), storedAt);
+      }
+   }
+}
@@ -0,0 +1,108 @@
+/**
+ * Copyright (C) 2020 VanillaSource
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.vanillasource.gerec.cache;
+
+import java.net.URI;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * A response cache that holds the responses in memory, up to the given number of bytes. If
+ * the limit is reached, the least recently used uris are evicted with all their variants.
+ */
+public final class InMemoryResponseCache implements ResponseCache {
+   private final long maxSize;
+   private final Map<URI, List<CachedResponse>> entries = new LinkedHashMap<>(16, 0.75f, true);
+   private long size = 0;
+
+   /**
+    * @param maxSize The maximum number of bytes of all stored responses.
+    */
+   public InMemoryResponseCache(long maxSize) {
+      this.maxSize = maxSize;
+   }
+
+   @Override
+   public synchronized List<CachedResponse> get(URI uri) {
+      List<CachedResponse> variants = entries.get(uri);
+      if (variants == null) {
+         return Collections.emptyList();
+      }
+      return new ArrayList<>(variants);
+   }
+
+   @Override
+   public synchronized void put(URI uri, CachedResponse response) {
+      if (response.getSize() > maxSize) {
+         remove(uri);
+         return;
+      }
+      List<CachedResponse> variants = entries.get(uri);
+      if (variants == null) {
+         variants = new ArrayList<>(1);
+         entries.put(uri, variants);
+      }
+      Iterator<CachedResponse> variantIterator = variants.iterator();
+      while (variantIterator.hasNext()) {
+         CachedResponse variant = variantIterator.next();
+         if (variant.isSameVariantAs(response)) {
+            variantIterator.remove();
+            size -= variant.getSize();
+         }
+      }
+      variants.add(response);
+      size += response.getSize();
+      evict();
+   }
+
+   private void evict() {
+      Iterator<List<CachedResponse>> eldestIterator = entries.values().iterator();
+      while (size > maxSize && eldestIterator.hasNext()) {
+         size -= size(eldestIterator.next());
+         eldestIterator.remove();
+      }
+   }
+
+   @Override
+   public synchronized void remove(URI uri) {
+      List<CachedResponse> variants = entries.remove(uri);
+      if (variants != null) {
+         size -= size(variants);
+      }
+   }
+
+   private static long size(List<CachedResponse> variants) {
+      long size = 0;
+      for (CachedResponse variant: variants) {
+         size += variant.getSize();
+      }
+      return size;
+   }
+
+   /**
+    * @return The number of bytes of all stored responses.
+    */
+   public synchronized long getSize() {
+      return size;
+   }
+}
@@ -0,0 +1,44 @@
+/**
+ * Copyright (C) 2020 VanillaSource
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.vanillasource.gerec.cache;
+
+import java.net.URI;
+import java.util.List;
+
+/**
+ * Storage for cached responses. A response cache only stores responses, it does not
+ * decide what to store or whether a stored response can be used. Implementations must be thread-safe.
+ */
+public interface ResponseCache {
+   /**
+    * @return All the stored variants for the given uri, or an empty list if there are none.
+    */
+   List<CachedResponse> get(URI uri);
+
+   /**
+    * Store the given response, replacing the variant for the same varying
+    * request headers if there is one. The cache may decide not to store the response.
+    */
+   void put(URI uri, CachedResponse response);
+
+   /**
+    * Remove all variants stored for the given uri.
+    */
+   void remove(URI uri);
+}
@@ -0,0 +1,143 @@
+/**
+ * Copyright (C) 2020 VanillaSource
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.vanillasource.gerec.cache;
+
+import com.vanillasource.gerec.HttpResponse;
+import com.vanillasource.gerec.HttpStatusCode;
+import com.vanillasource.gerec.Header;
+import com.vanillasource.aio.AioSlave;
+import com.vanillasource.aio.channel.ReadableByteChannelMaster;
+import java.util.function.Function;
+import java.util.function.Consumer;
+import java.util.concurrent.CompletableFuture;
+import java.nio.ByteBuffer;
+import java.io.IOException;
+import java.io.ByteArrayOutputStream;
+
+/**
+ * A http response that copies the content while it is consumed, and hands the content over to be
+ * stored, if the consumer read the whole content. If the content turns out to be too large,
+ * or the consumer closes the content before the end, nothing is stored.
+ */
+final class StoringHttpResponse implements HttpResponse {
+   private final HttpResponse response;
+   private final long maxContentLength;
+   private final Consumer<byte[]> store;
+
+   StoringHttpResponse(HttpResponse response, long maxContentLength, Consumer<byte[]> store) {
+      this.response = response;
+      this.maxContentLength = maxContentLength;
+      this.store = store;
+   }
+
+   @Override
+   public HttpStatusCode getStatusCode() {
+      return response.getStatusCode();
+   }
+
+   @Override
+   public boolean hasHeader(Header<?> header) {
+      return response.hasHeader(header);
+   }
+
+   @Override
+   public <T> T getHeader(Header<T> header) {
+      return response.getHeader(header);
+   }
+
+   @Override
+   public <R> CompletableFuture<R> consumeContent(Function<ReadableByteChannelMaster, AioSlave<R>> consumerFactory) {
+      return response.consumeContent(master -> {
+         CopyingReadableByteChannelMaster copyingMaster = new CopyingReadableByteChannelMaster(master);
+         AioSlave<R> consumer = consumerFactory.apply(copyingMaster);
+         return new AioSlave<R>() {
+            @Override
+            public void onReady() {
+               consumer.onReady();
+            }
+
+            @Override
+            public R onCompleted() {
+               R result = consumer.onCompleted();
+               if (copyingMaster.isCopyComplete()) {
+                  store.accept(copyingMaster.copy.toByteArray());
+               }
+               return result;
+            }
+         };
+      });
+   }
+
+   private final class CopyingReadableByteChannelMaster implements ReadableByteChannelMaster {
+      private final ReadableByteChannelMaster master;
+      private final ByteArrayOutputStream copy = new ByteArrayOutputStream();
+      private boolean closedByConsumer = false;
+      private boolean tooLarge = false;
+
+      private CopyingReadableByteChannelMaster(ReadableByteChannelMaster master) {
+         this.master = master;
+      }
+
+      private boolean isCopyComplete() {
+         return !closedByConsumer && !tooLarge;
+      }
+
+      @Override
+      public int read(ByteBuffer buffer) throws IOException {
+         int position = buffer.position();
+         int length = master.read(buffer);
+         if (length > 0 && !tooLarge) {
+            if (copy.size() + length > maxContentLength) {
+               tooLarge = true;
+               copy.reset();
+            } else if (buffer.hasArray()) {
+               copy.write(buffer.array(), buffer.arrayOffset() + position, length);
+            } else {
+               byte[] bytes = new byte[length];
+               ByteBuffer readBytes = buffer.duplicate();
+               readBytes.position(position);
+               readBytes.get(bytes);
+               copy.write(bytes, 0, length);
+            }
+         }
+         return length;
+      }
+
+      @Override
+      public boolean isOpen() {
+         return master.isOpen();
+      }
+
+      @Override
+      public void pause() {
+         master.pause();
+      }
+
+      @Override
+      public void resume() {
+         master.resume();
+      }
+
+      @Override
+      public void close() {
+         closedByConsumer = true;
+         master.close();
+      }
+   }
+}
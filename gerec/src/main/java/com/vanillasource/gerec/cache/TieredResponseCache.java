@@ -0,0 +1,61 @@
+/**
+ * Copyright (C) 2020 VanillaSource
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.vanillasource.gerec.cache;
+
+import java.net.URI;
+import java.util.List;
+
+/**
+ * A response cache that combines a faster, smaller cache with a slower, larger one, typically
+ * an in-memory cache with a disk cache. Responses are stored in both, and responses only found in
+ * the second cache are copied to the first one when they are used.
+ */
+public final class TieredResponseCache implements ResponseCache {
+   private final ResponseCache firstTier;
+   private final ResponseCache secondTier;
+
+   public TieredResponseCache(ResponseCache firstTier, ResponseCache secondTier) {
+      this.firstTier = firstTier;
+      this.secondTier = secondTier;
+   }
+
+   @Override
+   public List<CachedResponse> get(URI uri) {
+      List<CachedResponse> responses = firstTier.get(uri);
+      if (responses.isEmpty()) {
+         responses = secondTier.get(uri);
+         for (CachedResponse response: responses) {
+            firstTier.put(uri, response);
+         }
+      }
+      return responses;
+   }
+
+   @Override
+   public void put(URI uri, CachedResponse response) {
+      firstTier.put(uri, response);
+      secondTier.put(uri, response);
+   }
+
+   @Override
+   public void remove(URI uri) {
+      firstTier.remove(uri);
+      secondTier.remove(uri);
+   }
+}
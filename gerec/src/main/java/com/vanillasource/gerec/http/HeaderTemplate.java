@@ -0,0 +1,84 @@
+/**
+ * Copyright (C) 2020 VanillaSource
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.vanillasource.gerec.http;
+
+import com.vanillasource.gerec.HttpRequest;
+import java.util.Map;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Collections;
+
+/**
+ * An immutable change that sets headers with pre-serialized values. It is compiled once from
+ * another change, which is applied to a recording request to find out what headers it sets. Applying
+ * the template then sets all those headers directly, without running the original changes, or serializing
+ * any values again.
+ * <p>
+ * The template replaces any values the request already has for its headers, so it should be applied
+ * first, with dynamic changes composed on top using {@link #and(HttpRequest.HttpRequestChange)}. The
+ * compiled change must only set headers, and must set the same headers each time it is applied.
+ */
+public final class HeaderTemplate implements HttpRequest.HttpRequestChange {
+   private final String[] names;
+   private final List<List<String>> values;
+
+   private HeaderTemplate(String[] names, List<List<String>> values) {
+      this.names = names;
+      this.values = values;
+   }
+
+   /**
+    * Compile the given change into a template.
+    * @throws IllegalArgumentException If the change sets content on the request.
+    */
+   public static HeaderTemplate compile(HttpRequest.HttpRequestChange change) {
+      RecordingHttpRequest request = new RecordingHttpRequest();
+      change.applyTo(request);
+      if (request.isContentSet()) {
+         throw new IllegalArgumentException("change sets content, only changes setting headers can be compiled: "+change);
+      }
+      Map<String, List<String>> headers = request.getHeaders();
+      String[] names = new String[headers.size()];
+      List<List<String>> values = new ArrayList<>(headers.size());
+      for (Map.Entry<String, List<String>> header: headers.entrySet()) {
+         names[values.size()] = header.getKey();
+         values.add(Collections.unmodifiableList(new ArrayList<>(header.getValue())));
+      }
+      return new HeaderTemplate(names, values);
+   }
+
+   @Override
+   public void applyTo(HttpRequest request) {
+      for (int i=0; i<names.length; i++) {
+         request.setHeaderValues(names[i], values.get(i));
+      }
+   }
+
+   @Override
+   public String toString() {
+      StringBuilder builder = new StringBuilder("HeaderTemplate[");
+      for (int i=0; i<names.length; i++) {
+         if (i > 0) {
+            builder.append(", ");
+         }
+         builder.append(names[i]).append(": ").append(values.get(i));
+      }
+      return builder.append(']').toString();
+   }
+}
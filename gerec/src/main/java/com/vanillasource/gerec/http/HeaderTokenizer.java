@@ -0,0 +1,221 @@
+/**
+ * Copyright (C) 2020 VanillaSource
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.vanillasource.gerec.http;
+
+/**
+ * A single-pass tokenizer for header values as defined in RFC 7230. It reads tokens
+ * and quoted strings between separators, directly from a region of the header value.
+ * Separators inside quoted strings are not considered separators.
+ */
+final class HeaderTokenizer {
+   private static final String TOKEN_SPECIAL_CHARACTERS = "!#$%&'*+-.^_`|~";
+   private final String input;
+   private final int end;
+   private int position;
+
+   HeaderTokenizer(String input, int start, int end) {
+      this.input = input;
+      this.position = start;
+      this.end = end;
+   }
+
+   void skipWhitespace() {
+      while (position < end && isWhitespace(input.charAt(position))) {
+         position++;
+      }
+   }
+
+   /**
+    * Skip the given separator, if it is the next character.
+    * @return Whether the separator was skipped.
+    */
+   boolean skip(char separator) {
+      if (position < end && input.charAt(position) == separator) {
+         position++;
+         return true;
+      }
+      return false;
+   }
+
+   /**
+    * Read a token or quoted string, up to the given delimiter or a semicolon. Anything following
+    * a quoted string before the delimiter is ignored.
+    * @return The token without surrounding whitespace, or the content of the quoted string.
+    */
+   String nextToken(char delimiter) {
+      if (position < end && input.charAt(position) == '"') {
+         String quoted = nextQuotedString();
+         skipUntil(delimiter);
+         return quoted;
+      }
+      int start = position;
+      skipUntil(delimiter);
+      return input.substring(start, trimEnd(start, position));
+   }
+
+   /**
+    * Read a token or quoted string like {@link #nextToken}, in lower case. If the token
+    * is one of the given common tokens, that instance is returned.
+    */
+   String nextLowerCaseToken(char delimiter, String[] commonTokens) {
+      if (position < end && input.charAt(position) == '"') {
+         String quoted = nextQuotedString().toLowerCase();
+         skipUntil(delimiter);
+         for (String commonToken: commonTokens) {
+            if (commonToken.equals(quoted)) {
+               return commonToken;
+            }
+         }
+         return quoted;
+      }
+      int start = position;
+      skipUntil(delimiter);
+      int tokenEnd = trimEnd(start, position);
+      int length = tokenEnd - start;
+      for (String commonToken: commonTokens) {
+         if (commonToken.length() == length && input.regionMatches(true, start, commonToken, 0, length)) {
+            return commonToken;
+         }
+      }
+      return input.substring(start, tokenEnd).toLowerCase();
+   }
+
+   /**
+    * @return How many of the given separators follow, not counting ones in quoted strings.
+    */
+   int countRemaining(char separator) {
+      int count = 0;
+      boolean quoted = false;
+      for (int i=position; i<end; i++) {
+         char c = input.charAt(i);
+         if (quoted && c == '\\') {
+            i++;
+         } else if (c == '"') {
+            quoted = !quoted;
+         } else if (!quoted && c == separator) {
+            count++;
+         }
+      }
+      return count;
+   }
+
+   private void skipUntil(char delimiter) {
+      boolean quoted = false;
+      while (position < end) {
+         char c = input.charAt(position);
+         if (quoted && c == '\\') {
+            position++;
+         } else if (c == '"') {
+            quoted = !quoted;
+         } else if (!quoted && (c == delimiter || c == ';')) {
+            return;
+         }
+         position++;
+      }
+      position = end;
+   }
+
+   private String nextQuotedString() {
+      position++; // Opening quote
+      int start = position;
+      StringBuilder unescaped = null;
+      while (position < end) {
+         char c = input.charAt(position);
+         if (c == '"') {
+            String content = unescaped == null ? input.substring(start, position) : unescaped.toString();
+            position++;
+            return content;
+         }
+         if (c == '\\' && position+1 < end) {
+            if (unescaped == null) {
+               unescaped = new StringBuilder(input.length());
+               unescaped.append(input, start, position);
+            }
+            position++;
+            c = input.charAt(position);
+         }
+         if (unescaped != null) {
+            unescaped.append(c);
+         }
+         position++;
+      }
+      return unescaped == null ? input.substring(start, end) : unescaped.toString();
+   }
+
+   private int trimEnd(int start, int tokenEnd) {
+      while (tokenEnd > start && isWhitespace(input.charAt(tokenEnd-1))) {
+         tokenEnd--;
+      }
+      return tokenEnd;
+   }
+
+   /**
+    * Find the end of the next element in a comma separated list, not counting commas in quoted strings.
+    */
+   static int elementEnd(String input, int start, int end) {
+      boolean quoted = false;
+      for (int i=start; i<end; i++) {
+         char c = input.charAt(i);
+         if (quoted && c == '\\') {
+            i++;
+         } else if (c == '"') {
+            quoted = !quoted;
+         } else if (!quoted && c == ',') {
+            return i;
+         }
+      }
+      return end;
+   }
+
+   static boolean isWhitespace(char c) {
+      return c == ' ' || c == '\t';
+   }
+
+   /**
+    * Append the value as a token, or as a quoted string if it is not a valid token.
+    */
+   static void appendQuotedIfNeeded(StringBuilder builder, String value) {
+      if (isToken(value)) {
+         builder.append(value);
+         return;
+      }
+      builder.append('"');
+      for (int i=0; i<value.length(); i++) {
+         char c = value.charAt(i);
+         if (c == '"' || c == '\\') {
+            builder.append('\\');
+         }
+         builder.append(c);
+      }
+      builder.append('"');
+   }
+
+   private static boolean isToken(String value) {
+      if (value.isEmpty()) {
+         return false;
+      }
+      for (int i=0; i<value.length(); i++) {
+         char c = value.charAt(i);
+         if (!((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || TOKEN_SPECIAL_CHARACTERS.indexOf(c) >= 0)) {
+            return false;
+         }
+      }
+      return true;
+   }
+}
@@ -20,7 +20,7 @@ package com.vanillasource.gerec.http;
 
 import com.vanillasource.gerec.Header;
 import java.util.List;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.stream.Collectors;
 
@@ -42,6 +42,8 @@ public class Headers {
    public static final Header<String> LOCATION = singleStringHeader("Location");
    public static final Header<Long> CONTENT_LENGTH = singleLongHeader("Content-Length");
    public static final Header<String> AUTHORIZATION = singleStringHeader("Authorization");
+   public static final Header<List<String>> VARY = csvStringHeader("Vary");
+   public static final Header<Long> AGE = singleLongHeader("Age");
 
    private Headers() {
    }
@@ -76,6 +78,29 @@ public class Headers {
       };
    }
 
+   /**
+    * A header that keeps all physical header lines exactly as received, without
+    * splitting or parsing them. Useful for passing on headers without interpreting them.
+    */
+   public static Header<List<String>> rawHeader(String name) {
+      return new Header<List<String>>() {
+         @Override
+         public String getName() {
+            return name;
+         }
+
+         @Override
+         public List<String> deserialize(List<String> headerValues) {
+            return new ArrayList<>(headerValues);
+         }
+
+         @Override
+         public List<String> serialize(List<String> value) {
+            return new ArrayList<>(value);
+         }
+      };
+   }
+
    public static Header<List<String>> csvStringHeader(String name) {
       return csvValueHeader(name, new StringFormat());
    }
@@ -87,12 +112,28 @@ public class Headers {
             return name;
          }
 
+         /**
+          * Split values on commas that are not in quoted strings. Empty elements are ignored.
+          */
          @Override
          public List<T> deserialize(List<String> headerValues) {
-            List<T> values = new LinkedList<>();
+            List<T> values = new ArrayList<>();
             for (String headerValue: headerValues) {
-               for (String value: headerValue.split(",")) {
-                  values.add(format.deserialize(value.trim()));
+               int start = 0;
+               while (start <= headerValue.length()) {
+                  int end = HeaderTokenizer.elementEnd(headerValue, start, headerValue.length());
+                  int valueStart = start;
+                  int valueEnd = end;
+                  while (valueStart < valueEnd && HeaderTokenizer.isWhitespace(headerValue.charAt(valueStart))) {
+                     valueStart++;
+                  }
+                  while (valueEnd > valueStart && HeaderTokenizer.isWhitespace(headerValue.charAt(valueEnd-1))) {
+                     valueEnd--;
+                  }
+                  if (valueStart < valueEnd) {
+                     values.add(format.deserialize(headerValue, valueStart, valueEnd));
+                  }
+                  start = end + 1;
                }
             }
             return values;
@@ -108,6 +149,13 @@ public class Headers {
    public interface ValueFormat<T> {
       T deserialize(String value);
 
+      /**
+       * Deserialize the value in the given region of a header value.
+       */
+      default T deserialize(String headerValue, int start, int end) {
+         return deserialize(headerValue.substring(start, end));
+      }
+
       String serialize(T object);
    }
 
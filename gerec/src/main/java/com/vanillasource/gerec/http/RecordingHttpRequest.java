@@ -0,0 +1,96 @@
+/**
+ * Copyright (C) 2020 VanillaSource
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.vanillasource.gerec.http;
+
+import com.vanillasource.gerec.HttpRequest;
+import com.vanillasource.gerec.Header;
+import com.vanillasource.aio.AioSlave;
+import com.vanillasource.aio.channel.WritableByteChannelMaster;
+import java.util.function.Function;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.List;
+import java.util.Collections;
+
+/**
+ * A http request that only records the headers set on it, in their serialized form. Content is ignored,
+ * only whether it was set is recorded. Useful to find out what headers a change would set.
+ */
+public final class RecordingHttpRequest implements HttpRequest {
+   private final Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+   private boolean contentSet = false;
+
+   /**
+    * Apply the given change to a new recording request and return the recorded headers.
+    * @return The headers by name, the names are used case-insensitively.
+    */
+   public static Map<String, List<String>> recordHeaders(HttpRequest.HttpRequestChange change) {
+      RecordingHttpRequest request = new RecordingHttpRequest();
+      change.applyTo(request);
+      return request.getHeaders();
+   }
+
+   public Map<String, List<String>> getHeaders() {
+      return headers;
+   }
+
+   /**
+    * @return Whether a byte producer was set on this request.
+    */
+   public boolean isContentSet() {
+      return contentSet;
+   }
+
+   /**
+    * @return Whether no content and no other header than the given one was set on this request.
+    */
+   public boolean isOnlyHeaderSet(Header<?> header) {
+      return !contentSet && headers.keySet().stream().allMatch(name -> name.equalsIgnoreCase(header.getName()));
+   }
+
+   @Override
+   public boolean hasHeader(Header<?> header) {
+      return headers.containsKey(header.getName());
+   }
+
+   @Override
+   public <T> T getHeader(Header<T> header) {
+      return header.deserialize(headers.getOrDefault(header.getName(), Collections.emptyList()));
+   }
+
+   @Override
+   public <T> void setHeader(Header<T> header, T value) {
+      headers.put(header.getName(), header.serialize(value));
+   }
+
+   @Override
+   public void setHeaderValues(String name, List<String> values) {
+      headers.put(name, values);
+   }
+
+   @Override
+   public void setByteProducer(Function<WritableByteChannelMaster, AioSlave<Void>> producerFactory) {
+      contentSet = true;
+   }
+
+   @Override
+   public void setByteProducer(Function<WritableByteChannelMaster, AioSlave<Void>> producerFactory, long length) {
+      contentSet = true;
+   }
+}
@@ -20,33 +20,59 @@ package com.vanillasource.gerec.http;
 
 import java.util.Map;
 import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Objects;
 
 /**
  * A "standard" header value, which is a string with
  * one or more parameters associated. The parameters themselves
  * are composed of key-value pairs, some without explicit value.
+ * Parameters are stored as an array of alternating keys and values, in the order they were given.
  */
 public final class ValueWithParameter {
+   private static final String[] NO_PARAMETERS = new String[0];
+   private static final String[] COMMON_VALUES = {
+      "application/json", "text/plain", "text/html", "application/xml", "application/octet-stream",
+      "application/x-www-form-urlencoded", "multipart/form-data", "*/*" };
+   private static final String[] COMMON_PARAMETER_KEYS = { "charset", "q", "boundary" };
    private final String value;
-   private final Map<String, String> parameters;
+   private final String[] parameters;
 
    public ValueWithParameter(String value) {
-      this(value, new HashMap<>());
+      this(value, NO_PARAMETERS);
    }
 
    public ValueWithParameter(String value, String parameterKey, String parameterValue) {
-      this(value, parameters(parameterKey, parameterValue));
+      this(value, new String[] { parameterKey, parameterValue });
    }
 
-   private static Map<String, String> parameters(String key, String value) {
-      Map<String, String> parameters = new HashMap<>();
-      parameters.put(key, value);
-      return parameters;
+   /**
+    * The order in which the parameters are serialized is unspecified, it does not follow the iteration order of the given map.
+    */
+   public ValueWithParameter(String value, Map<String, String> parameters) {
+      this(value, parameters(new HashMap<>(parameters)));
    }
 
-   public ValueWithParameter(String value, Map<String, String> parameters) {
+   private ValueWithParameter(String value, String[] parameters) {
       this.value = value;
-      this.parameters = new HashMap<>(parameters);
+      this.parameters = parameters;
+   }
+
+   private static String[] parameters(Map<String, String> parameters) {
+      if (parameters.isEmpty()) {
+         return NO_PARAMETERS;
+      }
+      String[] result = new String[parameters.size() * 2];
+      int index = 0;
+      for (Map.Entry<String, String> entry: parameters.entrySet()) {
+         result[index++] = entry.getKey();
+         result[index++] = entry.getValue();
+      }
+      return result;
+   }
+
+   public String getValue() {
+      return value;
    }
 
    public boolean matchesValue(ValueWithParameter other) {
@@ -54,23 +80,40 @@ public final class ValueWithParameter {
    }
 
    public boolean hasParameter(String parameterName) {
-      return parameters.containsKey(parameterName.toLowerCase());
+      return indexOf(parameters, parameters.length, parameterName.toLowerCase()) >= 0;
    }
 
    public String getParameterValue(String parameterName, String defaultValue) {
-      String parameterValue = parameters.get(parameterName.toLowerCase());
-      if (parameterValue == null) {
+      int index = indexOf(parameters, parameters.length, parameterName.toLowerCase());
+      if (index < 0 || parameters[index+1] == null) {
          return defaultValue;
       }
-      return parameterValue;
+      return parameters[index+1];
    }
 
    public ValueWithParameter addParameter(String parameterName, String parameterValue) {
-      Map<String, String> newParameters = new HashMap<>(parameters);
-      newParameters.put(parameterName, parameterValue);
+      int index = indexOf(parameters, parameters.length, parameterName);
+      String[] newParameters;
+      if (index < 0) {
+         newParameters = Arrays.copyOf(parameters, parameters.length + 2);
+         newParameters[parameters.length] = parameterName;
+         newParameters[parameters.length+1] = parameterValue;
+      } else {
+         newParameters = parameters.clone();
+         newParameters[index+1] = parameterValue;
+      }
       return new ValueWithParameter(value, newParameters);
    }
 
+   private static int indexOf(String[] parameters, int length, String parameterName) {
+      for (int i=0; i<length; i+=2) {
+         if (parameters[i].equals(parameterName)) {
+            return i;
+         }
+      }
+      return -1;
+   }
+
    @Override
    public String toString() {
       return FORMAT.serialize(this);
@@ -78,7 +121,11 @@ public final class ValueWithParameter {
 
    @Override
    public int hashCode() {
-      return 11*value.hashCode() + 13*parameters.hashCode();
+      int parametersHashCode = 0; // Same as for a map of the parameters
+      for (int i=0; i<parameters.length; i+=2) {
+         parametersHashCode += parameters[i].hashCode() ^ Objects.hashCode(parameters[i+1]);
+      }
+      return 11*value.hashCode() + 13*parametersHashCode;
    }
 
    @Override
@@ -87,60 +134,82 @@ public final class ValueWithParameter {
          return false;
       }
       ValueWithParameter other = (ValueWithParameter) o;
-      return other.value.equals(value) && other.parameters.equals(parameters);
+      if (!other.value.equals(value) || other.parameters.length != parameters.length) {
+         return false;
+      }
+      for (int i=0; i<parameters.length; i+=2) {
+         int otherIndex = indexOf(other.parameters, other.parameters.length, parameters[i]);
+         if (otherIndex < 0 || !Objects.equals(other.parameters[otherIndex+1], parameters[i+1])) {
+            return false;
+         }
+      }
+      return true;
    }
 
    /**
     * The standard header values with parameters are case-insensitive, in both the value
     * and the parameter keys. In addition both the value and the parameter values may be 
-    * in quotes. The deserialized object has the value and parameter keys in lower case,
-    * parameter values are left as-is.
-    * Serialization does not produce quotes at the moment, so values which would require
-    * quotes will not work.
+    * quoted strings, which may contain separators and escaped characters. The deserialized
+    * object has the value and parameter keys in lower case, parameter values are left as-is.
+    * Parameter values are serialized as quoted strings if they contain separators.
     */
    public static final Headers.ValueFormat<ValueWithParameter> FORMAT = new Headers.ValueFormat<ValueWithParameter>() {
       @Override
       public ValueWithParameter deserialize(String headerValue) {
-         String[] split = headerValue.split(";");
-         String value = null;
-         Map<String, String> parameters = new HashMap<>();
-         for (int i=0; i<split.length; i++) {
-            if (i == 0) {
-               value = removeQuotes(split[i].trim().toLowerCase());
-            } else {
-               String[] keyValue = split[i].trim().split("=");
-               if (keyValue.length == 1) {
-                  parameters.put(keyValue[0].toLowerCase(), null);
+         return deserialize(headerValue, 0, headerValue.length());
+      }
+
+      /**
+       * Parses the value in a single pass, without regular expressions or intermediate collections.
+       */
+      @Override
+      public ValueWithParameter deserialize(String headerValue, int start, int end) {
+         HeaderTokenizer tokenizer = new HeaderTokenizer(headerValue, start, end);
+         tokenizer.skipWhitespace();
+         String value = tokenizer.nextLowerCaseToken(';', COMMON_VALUES);
+         int parameterCount = tokenizer.countRemaining(';');
+         if (parameterCount == 0) {
+            return new ValueWithParameter(value, NO_PARAMETERS);
+         }
+         String[] parameters = new String[parameterCount * 2];
+         int length = 0;
+         while (tokenizer.skip(';')) {
+            tokenizer.skipWhitespace();
+            String key = tokenizer.nextLowerCaseToken('=', COMMON_PARAMETER_KEYS);
+            String parameterValue = null;
+            if (tokenizer.skip('=')) {
+               tokenizer.skipWhitespace();
+               parameterValue = tokenizer.nextToken(';');
+            }
+            if (!key.isEmpty()) {
+               int index = indexOf(parameters, length, key);
+               if (index < 0) {
+                  parameters[length++] = key;
+                  parameters[length++] = parameterValue;
                } else {
-                  parameters.put(keyValue[0].toLowerCase(), removeQuotes(keyValue[1]));
+                  parameters[index+1] = parameterValue;
                }
             }
          }
-         return new ValueWithParameter(value, parameters);
-      }
-
-      private String removeQuotes(String value) {
-         if (value.startsWith("\"") && value.endsWith("\"")) {
-            return value.substring(1, value.length()-1);
-         } else {
-            return value;
+         if (length < parameters.length) {
+            parameters = Arrays.copyOf(parameters, length);
          }
+         return new ValueWithParameter(value, parameters);
       }
 
       @Override
       public String serialize(ValueWithParameter object) {
          StringBuilder builder = new StringBuilder();
          builder.append(object.value);
-         for (Map.Entry<String, String> entry: object.parameters.entrySet()) {
+         for (int i=0; i<object.parameters.length; i+=2) {
             builder.append("; ");
-            builder.append(entry.getKey());
-            if (entry.getValue() != null) {
+            builder.append(object.parameters[i]);
+            if (object.parameters[i+1] != null) {
                builder.append("=");
-               builder.append(entry.getValue());
+               HeaderTokenizer.appendQuotedIfNeeded(builder, object.parameters[i+1]);
             }
          }
          return builder.toString();
       }
    };
 }
-
@@ -27,14 +27,24 @@ import com.vanillasource.gerec.DeserializationContext;
 import java.util.concurrent.CompletableFuture;
 
 /**
- * Accept media type that copies all input into a byte array.
+ * Accept media type that copies all input into a byte array. If the response has a
+ * content length, the content is read into an array of exactly that size.
  */
 public class ByteArrayAcceptType implements AcceptMediaType<byte[]> {
-   private static final int DEFAULT_INITIAL_SIZE = 4096;
    private final MediaTypeSpecification mediaType;
+   private final int maxSize;
 
-   public ByteArrayAcceptType(MediaTypeSpecification mediaType) {
+   /**
+    * @param maxSize The maximum size of the content in bytes. Larger contents fail
+    * with {@link com.vanillasource.aio.channel.ContentTooLargeException}.
+    */
+   public ByteArrayAcceptType(MediaTypeSpecification mediaType, int maxSize) {
       this.mediaType = mediaType;
+      this.maxSize = maxSize;
+   }
+
+   public ByteArrayAcceptType(MediaTypeSpecification mediaType) {
+      this(mediaType, Integer.MAX_VALUE);
    }
 
    @Override
@@ -49,14 +59,14 @@ public class ByteArrayAcceptType implements AcceptMediaType<byte[]> {
 
    @Override
    public CompletableFuture<byte[]> deserialize(HttpResponse response, DeserializationContext context) {
-      int initialSize;
+      long expectedSize;
       if (response.hasHeader(Headers.CONTENT_LENGTH)) {
-         initialSize = response.getHeader(Headers.CONTENT_LENGTH).intValue();
+         expectedSize = response.getHeader(Headers.CONTENT_LENGTH);
       } else {
-         initialSize = DEFAULT_INITIAL_SIZE;
+         expectedSize = -1;
       }
       return response.consumeContent(channel ->
-            new ByteArrayReadableByteChannelSlave(channel, initialSize));
+            new ByteArrayReadableByteChannelSlave(channel, expectedSize, maxSize));
    }
 }
 
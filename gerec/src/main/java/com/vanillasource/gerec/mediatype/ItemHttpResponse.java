@@ -0,0 +1,69 @@
+/**
+ * Copyright (C) 2020 VanillaSource
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.vanillasource.gerec.mediatype;
+
+import com.vanillasource.gerec.HttpResponse;
+import com.vanillasource.gerec.HttpStatusCode;
+import com.vanillasource.gerec.Header;
+import com.vanillasource.aio.AioSlave;
+import com.vanillasource.aio.channel.ReadableByteChannelMaster;
+import com.vanillasource.aio.channel.ByteBufferReadableByteChannelMaster;
+import java.util.function.Function;
+import java.util.concurrent.CompletableFuture;
+import java.nio.ByteBuffer;
+
+/**
+ * A response for a single item of a collection response, with the status and headers of the whole
+ * response, but with only the bytes of the item as content. The content is only valid until the
+ * item is deserialized, because the collection types reuse their buffers for subsequent items.
+ */
+final class ItemHttpResponse implements HttpResponse {
+   private final HttpResponse response;
+   private ByteBuffer content;
+
+   ItemHttpResponse(HttpResponse response) {
+      this.response = response;
+   }
+
+   void setContent(ByteBuffer content) {
+      this.content = content;
+   }
+
+   @Override
+   public HttpStatusCode getStatusCode() {
+      return response.getStatusCode();
+   }
+
+   @Override
+   public boolean hasHeader(Header<?> header) {
+      return response.hasHeader(header);
+   }
+
+   @Override
+   public <T> T getHeader(Header<T> header) {
+      return response.getHeader(header);
+   }
+
+   @Override
+   public <T> CompletableFuture<T> consumeContent(Function<ReadableByteChannelMaster, AioSlave<T>> consumerFactory) {
+      ByteBufferReadableByteChannelMaster master = new ByteBufferReadableByteChannelMaster(content);
+      AioSlave<T> follower = consumerFactory.apply(master);
+      return master.execute(follower, Runnable::run);
+   }
+}
@@ -21,19 +21,14 @@ package com.vanillasource.gerec.mediatype;
 import com.vanillasource.gerec.HttpResponse;
 import com.vanillasource.gerec.HttpRequest;
 import com.vanillasource.gerec.AcceptMediaType;
-import com.vanillasource.gerec.HttpStatusCode;
-import com.vanillasource.gerec.Header;
 import com.vanillasource.gerec.DeserializationContext;
 import com.vanillasource.aio.AioSlave;
-import com.vanillasource.aio.channel.ReadableByteChannelMaster;
-import com.vanillasource.aio.channel.InputStreamReadableByteChannelMaster;
-import java.util.function.Function;
+import com.vanillasource.aio.ByteBufferPools;
 import java.util.function.Consumer;
 import java.util.concurrent.CompletableFuture;
 import java.nio.ByteBuffer;
 import java.io.IOException;
 import java.io.UncheckedIOException;
-import java.io.ByteArrayInputStream;
 
 /**
  * An accept type that with another (delegate) accept type will lazily deserialize
@@ -44,6 +39,9 @@ import java.io.ByteArrayInputStream;
  * this type can be used for long-polling basically indefinitely.
  * Because only non-empty lines are deserialized, empty lines (line breaks) can be used by
  * the server to keep the connection alive.
+ * Lines are split on the bytes, so any encoding compatible with ASCII line breaks, like UTF-8, can be used.
+ * A carriage return before the line break is not part of the line. Lines that are completely in the
+ * read buffer are given to the delegate type without copying.
  */
 public class LineBasedCollectionAcceptType<T> implements AcceptMediaType<Void> {
    private static final int READ_BUFFER_SIZE = 4096;
@@ -51,12 +49,22 @@ public class LineBasedCollectionAcceptType<T> implements AcceptMediaType<Void> {
    private final AcceptMediaType<T> acceptType;
    private final Consumer<T> consumer;
    private final long timeout;
+   private final int maxLineLength;
 
-   public LineBasedCollectionAcceptType(MediaTypeSpecification mediaType, AcceptMediaType<T> acceptType, Consumer<T> consumer, long timeout) {
+   /**
+    * @param maxLineLength The maximum length of a line in bytes. A longer line aborts the
+    * processing of the response.
+    */
+   public LineBasedCollectionAcceptType(MediaTypeSpecification mediaType, AcceptMediaType<T> acceptType, Consumer<T> consumer, long timeout, int maxLineLength) {
       this.mediaType = mediaType;
       this.acceptType = acceptType;
       this.consumer = consumer;
       this.timeout = timeout;
+      this.maxLineLength = maxLineLength;
+   }
+
+   public LineBasedCollectionAcceptType(MediaTypeSpecification mediaType, AcceptMediaType<T> acceptType, Consumer<T> consumer, long timeout) {
+      this(mediaType, acceptType, consumer, timeout, Integer.MAX_VALUE);
    }
 
    public LineBasedCollectionAcceptType(MediaTypeSpecification mediaType, AcceptMediaType<T> acceptType, Consumer<T> consumer) {
@@ -76,28 +84,20 @@ public class LineBasedCollectionAcceptType<T> implements AcceptMediaType<Void> {
    @Override
    public CompletableFuture<Void> deserialize(HttpResponse response, DeserializationContext context) {
       return response.consumeContent(input -> new AioSlave<Void>() {
-         private final ByteBuffer inputBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
-         private final StringBuilder lineBuilder = new StringBuilder();
+         private final ByteBuffer inputBuffer = ByteBufferPools.heap().acquire(READ_BUFFER_SIZE);
+         private final byte[] inputBytes = inputBuffer.array();
+         private final int inputOffset = inputBuffer.arrayOffset();
+         private final ItemHttpResponse lineResponse = new ItemHttpResponse(response);
          private final ShutdownTimer timer = new ShutdownTimer(input::close, timeout);
+         private ByteBuffer partialLine = ByteBuffer.allocate(0);
 
          @Override
          public void onReady() {
             timer.reset();
             try {
-               while (input.read(inputBuffer) > 0) {
-                  inputBuffer.flip();
-                  while (inputBuffer.hasRemaining()) {
-                     int c = inputBuffer.get();
-                     if (c == '\n') {
-                        String line = lineBuilder.toString();
-                        if (!line.isEmpty()) {
-                           processLine(line);
-                        }
-                        lineBuilder.setLength(0);
-                     } else {
-                        lineBuilder.append((char) c);
-                     }
-                  }
+               int readLength;
+               while ((readLength = input.read(inputBuffer)) > 0) {
+                  processLines(readLength);
                   inputBuffer.clear();
                }
             } catch (IOException e) {
@@ -105,37 +105,64 @@ public class LineBasedCollectionAcceptType<T> implements AcceptMediaType<Void> {
             }
          }
 
-         private void processLine(String line) {
-            acceptType.deserialize(new HttpResponse() {
-               @Override
-               public HttpStatusCode getStatusCode() {
-                  return response.getStatusCode();
-               }
-
-               @Override
-               public boolean hasHeader(Header<?> header) {
-                  return response.hasHeader(header);
+         private void processLines(int length) {
+            int lineStart = inputOffset;
+            int end = inputOffset + length;
+            for (int i=inputOffset; i<end; i++) {
+               if (inputBytes[i] == '\n') {
+                  if (partialLine.position() == 0) {
+                     processLine(ByteBuffer.wrap(inputBytes, lineStart, i - lineStart));
+                  } else {
+                     appendPartialLine(lineStart, i - lineStart);
+                     partialLine.flip();
+                     processLine(partialLine);
+                     partialLine.clear();
+                  }
+                  lineStart = i + 1;
                }
+            }
+            if (lineStart < end) {
+               appendPartialLine(lineStart, end - lineStart);
+            }
+         }
 
-               @Override
-               public <T> T getHeader(Header<T> header) {
-                  return response.getHeader(header);
-               }
+         private void appendPartialLine(int offset, int length) {
+            if ((long) partialLine.position() + length > maxLineLength) {
+               throw new IllegalStateException("line is longer than the maximum of "+maxLineLength+" bytes");
+            }
+            if (partialLine.remaining() < length) {
+               int capacity = Math.max(partialLine.position() + length, Math.min(maxLineLength, Math.max(partialLine.capacity() * 2, READ_BUFFER_SIZE)));
+               ByteBuffer grownPartialLine = ByteBuffer.allocate(capacity);
+               partialLine.flip();
+               grownPartialLine.put(partialLine);
+               partialLine = grownPartialLine;
+            }
+            partialLine.put(inputBytes, offset, length);
+         }
 
-               @Override
-               public <T> CompletableFuture<T> consumeContent(Function<ReadableByteChannelMaster, AioSlave<T>> consumerFactory) {
-                  InputStreamReadableByteChannelMaster master = new InputStreamReadableByteChannelMaster(new ByteArrayInputStream(line.getBytes()));
-                  AioSlave<T> follower = consumerFactory.apply(master);
-                  return master.execute(follower, Runnable::run);
-               }
-            }, context)
-            .thenAccept(consumer)
-            .join();
+         private void processLine(ByteBuffer line) {
+            int lineLength = line.remaining();
+            if (lineLength > 0 && line.get(line.limit() - 1) == '\r') {
+               lineLength--;
+            }
+            if (lineLength > maxLineLength) {
+               throw new IllegalStateException("line is longer than the maximum of "+maxLineLength+" bytes");
+            }
+            if (lineLength == 0) {
+               return;
+            }
+            ByteBuffer lineContent = line.slice();
+            lineContent.limit(lineLength);
+            lineResponse.setContent(lineContent.asReadOnlyBuffer());
+            acceptType.deserialize(lineResponse, context)
+               .thenAccept(consumer)
+               .join();
          }
 
          @Override
          public Void onCompleted() {
             timer.cancel();
+            ByteBufferPools.heap().release(inputBuffer);
             return null;
          }
       });
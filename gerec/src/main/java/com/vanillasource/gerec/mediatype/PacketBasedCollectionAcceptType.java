@@ -21,19 +21,14 @@ package com.vanillasource.gerec.mediatype;
 import com.vanillasource.gerec.HttpResponse;
 import com.vanillasource.gerec.HttpRequest;
 import com.vanillasource.gerec.AcceptMediaType;
-import com.vanillasource.gerec.HttpStatusCode;
-import com.vanillasource.gerec.Header;
 import com.vanillasource.gerec.DeserializationContext;
 import com.vanillasource.aio.AioSlave;
-import com.vanillasource.aio.channel.ReadableByteChannelMaster;
-import com.vanillasource.aio.channel.InputStreamReadableByteChannelMaster;;
-import java.util.function.Function;
+import com.vanillasource.aio.ByteBufferPools;
 import java.util.function.Consumer;
 import java.util.concurrent.CompletableFuture;
 import java.nio.ByteBuffer;
 import java.io.IOException;
 import java.io.UncheckedIOException;
-import java.io.ByteArrayInputStream;
 
 /**
  * An accept type that with another (delegate) accept type will lazily deserialize
@@ -43,6 +38,9 @@ import java.io.ByteArrayInputStream;
  * this type can be used for long-polling basically indefinitely.
  * Packets of zero length can be used for keep-alive packets. These will not be
  * forwarded to the delegate type.
+ * Packets that are completely in the read buffer are given to the delegate type without copying.
+ * Packets larger than the read buffer are collected into a buffer, which is reused for subsequent
+ * large packets.
  */
 public class PacketBasedCollectionAcceptType<T> implements AcceptMediaType<Void> {
    private static final int READ_BUFFER_SIZE = 4096;
@@ -76,11 +74,11 @@ public class PacketBasedCollectionAcceptType<T> implements AcceptMediaType<Void>
    public CompletableFuture<Void> deserialize(HttpResponse response, DeserializationContext context) {
       return response.consumeContent(input -> new AioSlave<Void>() {
          private final ShutdownTimer timer = new ShutdownTimer(input::close, timeout);
-         private final ByteBuffer inputBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
-         private final int[] packetLength = new int[4];
-         private int packetLengthOffset = 0;
-         private byte[] packet = null;
-         private int packetOffset = 0;
+         private final ByteBuffer inputBuffer = ByteBufferPools.direct().acquire(READ_BUFFER_SIZE);
+         private final ItemHttpResponse packetResponse = new ItemHttpResponse(response);
+         private int packetLength = -1;
+         private ByteBuffer largePacket = null;
+         private ByteBuffer largePacketBuffer = null;
 
          @Override
          public void onReady() {
@@ -88,70 +86,79 @@ public class PacketBasedCollectionAcceptType<T> implements AcceptMediaType<Void>
             try {
                while (input.read(inputBuffer) > 0) {
                   inputBuffer.flip();
-                  while (inputBuffer.hasRemaining()) {
-                     int c = inputBuffer.get();
-                     if (packet == null) {
-                        // Building length
-                        packetLength[packetLengthOffset++] = c & 0xFF;
-                        if (packetLengthOffset == 4) {
-                           int totalPacketLength = (packetLength[0]<<24) + (packetLength[1]<<16) + (packetLength[2]<<8) + packetLength[3];
-                           if (totalPacketLength < 0) {
-                              throw new IllegalStateException("packet length was negative: "+totalPacketLength+", length bytes: "+packetLength[0]+","+packetLength[1]+","+packetLength[2]+","+packetLength[3]);
-                           }
-                           packet = new byte[totalPacketLength];
-                           packetLengthOffset = 0;
-                           if (packet.length == 0) {
-                              packet = null;
-                           }
-                        }
-                     } else {
-                        // Building the packet
-                        packet[packetOffset++] = (byte) c;
-                        if (packetOffset == packet.length) {
-                           processPacket();
-                           packet = null;
-                           packetOffset = 0;
-                        }
-                     }
-                  }
-                  inputBuffer.clear();
+                  processPackets();
+                  inputBuffer.compact(); // Only the beginning of a packet that did not fit is copied
                }
             } catch (IOException e) {
                throw new UncheckedIOException(e);
             }
          }
 
-         private void processPacket() {
-            acceptType.deserialize(new HttpResponse() {
-               @Override
-               public HttpStatusCode getStatusCode() {
-                  return response.getStatusCode();
-               }
-
-               @Override
-               public boolean hasHeader(Header<?> header) {
-                  return response.hasHeader(header);
+         private void processPackets() {
+            while (true) {
+               if (packetLength < 0) {
+                  if (inputBuffer.remaining() < 4) {
+                     return;
+                  }
+                  packetLength = inputBuffer.getInt();
+                  if (packetLength < 0) {
+                     throw new IllegalStateException("packet length was negative: "+packetLength);
+                  }
+                  if (packetLength == 0) {
+                     packetLength = -1;
+                  } else if (packetLength > inputBuffer.capacity()) {
+                     startLargePacket();
+                  }
+               } else if (largePacket != null) {
+                  int length = Math.min(inputBuffer.remaining(), largePacket.remaining());
+                  ByteBuffer part = inputBuffer.duplicate();
+                  part.limit(part.position() + length);
+                  largePacket.put(part);
+                  inputBuffer.position(inputBuffer.position() + length);
+                  if (largePacket.hasRemaining()) {
+                     return;
+                  }
+                  largePacket.flip();
+                  processPacket(largePacket);
+                  largePacket = null;
+                  packetLength = -1;
+               } else if (inputBuffer.remaining() >= packetLength) {
+                  ByteBuffer packet = inputBuffer.slice();
+                  packet.limit(packetLength);
+                  processPacket(packet.asReadOnlyBuffer());
+                  inputBuffer.position(inputBuffer.position() + packetLength);
+                  packetLength = -1;
+               } else {
+                  return;
                }
+            }
+         }
 
-               @Override
-               public <T> T getHeader(Header<T> header) {
-                  return response.getHeader(header);
+         private void startLargePacket() {
+            if (largePacketBuffer == null || largePacketBuffer.capacity() < packetLength) {
+               if (largePacketBuffer != null) {
+                  ByteBufferPools.heap().release(largePacketBuffer);
                }
+               largePacketBuffer = ByteBufferPools.heap().acquire(packetLength);
+            }
+            largePacket = largePacketBuffer;
+            largePacket.clear().limit(packetLength);
+         }
 
-               @Override
-               public <T> CompletableFuture<T> consumeContent(Function<ReadableByteChannelMaster, AioSlave<T>> consumerFactory) {
-                  InputStreamReadableByteChannelMaster master = new InputStreamReadableByteChannelMaster(new ByteArrayInputStream(packet));
-                  AioSlave<T> follower = consumerFactory.apply(master);
-                  return master.execute(follower, Runnable::run);
-               }
-            }, context)
-            .thenAccept(consumer)
-            .join();
+         private void processPacket(ByteBuffer packet) {
+            packetResponse.setContent(packet);
+            acceptType.deserialize(packetResponse, context)
+               .thenAccept(consumer)
+               .join();
          }
 
          @Override
          public Void onCompleted() {
             timer.cancel();
+            ByteBufferPools.direct().release(inputBuffer);
+            if (largePacketBuffer != null) {
+               ByteBufferPools.heap().release(largePacketBuffer);
+            }
             return null;
          }
       });
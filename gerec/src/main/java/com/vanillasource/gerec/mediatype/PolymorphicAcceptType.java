@@ -22,39 +22,124 @@ import com.vanillasource.gerec.AcceptMediaType;
 import com.vanillasource.gerec.HttpRequest;
 import com.vanillasource.gerec.HttpResponse;
 import com.vanillasource.gerec.DeserializationContext;
+import com.vanillasource.gerec.http.Headers;
+import com.vanillasource.gerec.http.RecordingHttpRequest;
+import com.vanillasource.gerec.http.ValueWithParameter;
 import java.util.List;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Map;
+import java.util.HashMap;
 import java.util.concurrent.CompletableFuture;
 
 /**
  * An accept-type that can await several media types that are mapping to a 
  * class hierarchy, returning the base class. This means this type can actually
  * map representations into an inheritance hierarchy. 
+ * <p>
+ * The media types each accept type accepts are determined once, when this type is created.
+ * Responses are then dispatched by looking up their content type, so only the accept types for
+ * that content type are asked whether they handle the response. Accept types that accept wildcards,
+ * or don't reveal what they accept, are always asked. If more accept types handle a response,
+ * the first one in the list is used.
+ * <p>
+ * If all accept types only add values to the accept header, those values are collected once and
+ * added to requests in a single header update.
  */
 public class PolymorphicAcceptType<T> implements AcceptMediaType<T> {
-   private List<? extends AcceptMediaType<? extends T>> acceptTypes;
+   private final List<? extends AcceptMediaType<? extends T>> acceptTypes;
+   private final Map<String, List<Candidate<T>>> candidatesByMediaType = new HashMap<>();
+   private final List<Candidate<T>> fallbackCandidates = new ArrayList<>();
+   private final List<ValueWithParameter> acceptedValues;
 
    public PolymorphicAcceptType(List<? extends AcceptMediaType<? extends T>> acceptTypes) {
-      this.acceptTypes = acceptTypes;
+      this.acceptTypes = new ArrayList<>(acceptTypes);
+      List<ValueWithParameter> allAcceptedValues = new ArrayList<>();
+      boolean onlyAcceptHeader = true;
+      for (int i=0; i<this.acceptTypes.size(); i++) {
+         AcceptMediaType<? extends T> acceptType = this.acceptTypes.get(i);
+         RecordingHttpRequest recorder = new RecordingHttpRequest();
+         acceptType.applyAsOption(recorder);
+         List<ValueWithParameter> values = recorder.getHeader(Headers.ACCEPT);
+         onlyAcceptHeader &= recorder.isOnlyHeaderSet(Headers.ACCEPT) && !values.isEmpty();
+         allAcceptedValues.addAll(values);
+         Candidate<T> candidate = new Candidate<>(i, acceptType);
+         if (values.isEmpty() || values.stream().anyMatch(value -> value.getValue().contains("*"))) {
+            fallbackCandidates.add(candidate);
+         } else {
+            values.stream()
+               .map(value -> value.getValue().toLowerCase())
+               .distinct()
+               .forEach(mediaType -> candidatesByMediaType.computeIfAbsent(mediaType, key -> new ArrayList<>()).add(candidate));
+         }
+      }
+      this.acceptedValues = onlyAcceptHeader ? Collections.unmodifiableList(allAcceptedValues) : null;
    }
 
    @Override
    public void applyAsOption(HttpRequest request) {
-      acceptTypes.forEach(acceptType -> acceptType.applyAsOption(request));
+      if (acceptedValues == null) {
+         acceptTypes.forEach(acceptType -> acceptType.applyAsOption(request));
+      } else if (!acceptedValues.isEmpty()) {
+         if (request.hasHeader(Headers.ACCEPT)) {
+            List<ValueWithParameter> allValues = new ArrayList<>(request.getHeader(Headers.ACCEPT));
+            allValues.addAll(acceptedValues);
+            request.setHeader(Headers.ACCEPT, Collections.unmodifiableList(allValues));
+         } else {
+            request.setHeader(Headers.ACCEPT, acceptedValues);
+         }
+      }
    }
 
    @Override
    public boolean isHandling(HttpResponse response) {
-      return acceptTypes.stream().anyMatch(acceptType -> acceptType.isHandling(response));
+      return find(response) != null;
    }
 
    @Override
    public CompletableFuture<T> deserialize(HttpResponse response, DeserializationContext context) {
-      return acceptTypes.stream()
-         .filter(acceptType -> acceptType.isHandling(response))
-         .findFirst()
-         .orElseThrow(() -> new IllegalStateException("no matching media types found for "+response+", possible media types were: "+acceptTypes))
-         .deserialize(response, context)
+      AcceptMediaType<? extends T> acceptType = find(response);
+      if (acceptType == null) {
+         throw new IllegalStateException("no matching media types found for "+response+", possible media types were: "+acceptTypes);
+      }
+      return acceptType.deserialize(response, context)
          .thenApply(t -> t); // Map from <? extends T> to <T>
    }
-}
 
+   /**
+    * Find the first accept type handling the response, going through the candidates
+    * for the content type and the fallback candidates in the order of the original list.
+    */
+   private AcceptMediaType<? extends T> find(HttpResponse response) {
+      List<Candidate<T>> matchingCandidates = Collections.emptyList();
+      if (response.hasHeader(Headers.CONTENT_TYPE)) {
+         matchingCandidates = candidatesByMediaType.getOrDefault(
+               response.getHeader(Headers.CONTENT_TYPE).getValue().toLowerCase(), Collections.emptyList());
+      }
+      int matchingIndex = 0;
+      int fallbackIndex = 0;
+      while (matchingIndex < matchingCandidates.size() || fallbackIndex < fallbackCandidates.size()) {
+         Candidate<T> candidate;
+         if (fallbackIndex >= fallbackCandidates.size() ||
+               (matchingIndex < matchingCandidates.size() && matchingCandidates.get(matchingIndex).index < fallbackCandidates.get(fallbackIndex).index)) {
+            candidate = matchingCandidates.get(matchingIndex++);
+         } else {
+            candidate = fallbackCandidates.get(fallbackIndex++);
+         }
+         if (candidate.acceptType.isHandling(response)) {
+            return candidate.acceptType;
+         }
+      }
+      return null;
+   }
+
+   private static final class Candidate<T> {
+      private final int index;
+      private final AcceptMediaType<? extends T> acceptType;
+
+      private Candidate(int index, AcceptMediaType<? extends T> acceptType) {
+         this.index = index;
+         this.acceptType = acceptType;
+      }
+   }
+}
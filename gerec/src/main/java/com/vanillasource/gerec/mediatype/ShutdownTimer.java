@@ -18,52 +18,45 @@
 
 package com.vanillasource.gerec.mediatype;
 
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.TimeUnit;
 import org.slf4j.LoggerFactory;
 import org.slf4j.Logger;
 
+/**
+ * Executes an action if not reset for the given timeout. All timers share the
+ * same timing wheel, so timers are cheap to create, reset and cancel.
+ */
 public final class ShutdownTimer {
    private static final Logger logger = LoggerFactory.getLogger(ShutdownTimer.class);
-   private final ScheduledExecutorService executor = Executors.newScheduledThreadPool(1, runnable -> {
-      Thread thread = Executors.defaultThreadFactory().newThread(runnable);
-      thread.setDaemon(true);
-      return thread;
-   });
    private final Runnable action;
    private final long timeout;
-   private ScheduledFuture<?> future;
+   private final TimingWheel.Timeout scheduledTimeout;
 
    public ShutdownTimer(Runnable action, long timeout) {
       this.action = action;
       this.timeout = timeout;
-      reset();
-   }
-
-   public void reset() {
-      if (future != null) {
-         future.cancel(false);
-      }
-      if (executor.isShutdown()) {
-         return;
-      }
       if (timeout != 0L) {
-         logger.debug("shutdown timer reset to "+timeout+" ms from now");
-         future = executor.schedule(this::execute, timeout, TimeUnit.MILLISECONDS);
+         logger.debug("shutdown timer set to {} ms", timeout);
+         this.scheduledTimeout = TimingWheel.shared().schedule(this::execute, timeout);
       } else {
          logger.debug("shutdown timer disabled");
+         this.scheduledTimeout = null;
+      }
+   }
+
+   public void reset() {
+      if (scheduledTimeout != null) {
+         scheduledTimeout.reset(timeout);
       }
    }
 
    private void execute() {
       logger.debug("shutdown timer expired, executing action");
-      cancel();
       action.run();
    }
 
    public void cancel() {
-      executor.shutdownNow();
+      if (scheduledTimeout != null) {
+         scheduledTimeout.cancel();
+      }
    }
 }
@@ -34,10 +34,19 @@ import java.io.UncheckedIOException;
 public class StringAcceptType implements AcceptMediaType<String> {
    private final ByteArrayAcceptType delegate;
    private final String defaultEncoding;
+   private final int maxSize;
 
-   public StringAcceptType(MediaTypeSpecification mediaType, String defaultEncoding) {
-      this.delegate = new ByteArrayAcceptType(mediaType);
+   /**
+    * @param maxSize The maximum size of the content in bytes.
+    */
+   public StringAcceptType(MediaTypeSpecification mediaType, String defaultEncoding, int maxSize) {
+      this.delegate = new ByteArrayAcceptType(mediaType, maxSize);
       this.defaultEncoding = defaultEncoding;
+      this.maxSize = maxSize;
+   }
+
+   public StringAcceptType(MediaTypeSpecification mediaType, String defaultEncoding) {
+      this(mediaType, defaultEncoding, Integer.MAX_VALUE);
    }
 
    public StringAcceptType(MediaTypeSpecification mediaType) {
@@ -56,7 +65,7 @@ public class StringAcceptType implements AcceptMediaType<String> {
 
    @Override
    public CompletableFuture<String> deserialize(HttpResponse response, DeserializationContext context) {
-      return new ByteArrayAcceptType(MediaTypeSpecification.WILDCARD).deserialize(response, context)
+      return new ByteArrayAcceptType(MediaTypeSpecification.WILDCARD, maxSize).deserialize(response, context)
          .thenApply(content -> {
             String encoding = defaultEncoding;
             if (response.hasHeader(Headers.CONTENT_TYPE)) {
@@ -0,0 +1,186 @@
+/**
+ * Copyright (C) 2020 VanillaSource
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.vanillasource.gerec.mediatype;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import org.slf4j.LoggerFactory;
+import org.slf4j.Logger;
+
+/**
+ * A hashed timing wheel that executes timeouts with the precision of a tick, using
+ * a single daemon thread for all timeouts. Resetting and cancelling a timeout only writes a volatile
+ * field, the wheel notices the new deadline, or the cancellation, when it reaches the timeout's bucket.
+ * Expired timeout actions are handed to an executor, so a slow action does not delay other timeouts.
+ */
+final class TimingWheel {
+   private static final Logger logger = LoggerFactory.getLogger(TimingWheel.class);
+   private static final TimingWheel SHARED = new TimingWheel(10, 512, ForkJoinPool.commonPool());
+   private final long tickNanos;
+   private final int mask;
+   private final Queue<Timeout>[] buckets;
+   private final Queue<Timeout> newTimeouts = new ConcurrentLinkedQueue<>();
+   private final AtomicInteger activeTimeouts = new AtomicInteger();
+   private final long startNanos = System.nanoTime();
+   private final Executor executor;
+   private volatile Thread thread;
+   private long currentTick = 0;
+
+   /**
+    * @param tickMillis The duration of a tick.
+    * @param bucketCount Number of buckets, must be power of two.
+    * @param executor The executor to run the expired actions on.
+    */
+   @SuppressWarnings("unchecked")
+   TimingWheel(long tickMillis, int bucketCount, Executor executor) {
+      if (Integer.bitCount(bucketCount) != 1) {
+         throw new IllegalArgumentException("bucket count must be a power of two, but was "+bucketCount);
+      }
+      this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+      this.mask = bucketCount - 1;
+      this.executor = executor;
+      this.buckets = new Queue[bucketCount];
+      for (int i=0; i<bucketCount; i++) {
+         buckets[i] = new ArrayDeque<>();
+      }
+   }
+
+   static TimingWheel shared() {
+      return SHARED;
+   }
+
+   /**
+    * Schedule the given action to run after the given delay, unless reset or cancelled before.
+    */
+   Timeout schedule(Runnable action, long delayMillis) {
+      Timeout timeout = new Timeout(action, delayMillis);
+      activeTimeouts.incrementAndGet();
+      newTimeouts.add(timeout);
+      start();
+      return timeout;
+   }
+
+   private void start() {
+      Thread currentThread = thread;
+      if (currentThread == null) {
+         synchronized (this) {
+            if (thread == null) {
+               thread = new Thread(this::run, "gerec-timing-wheel");
+               thread.setDaemon(true);
+               thread.start();
+               return;
+            }
+            currentThread = thread;
+         }
+      }
+      LockSupport.unpark(currentThread);
+   }
+
+   private void run() {
+      while (true) {
+         if (activeTimeouts.get() == 0) {
+            LockSupport.park(this);
+            currentTick = elapsedTicks();
+         }
+         transferNewTimeouts();
+         long targetTick = elapsedTicks();
+         while (currentTick <= targetTick) {
+            expire(buckets[(int) (currentTick & mask)]);
+            currentTick++;
+         }
+         long sleepNanos = startNanos + currentTick * tickNanos - System.nanoTime();
+         if (sleepNanos > 0) {
+            LockSupport.parkNanos(this, sleepNanos);
+         }
+      }
+   }
+
+   private long elapsedTicks() {
+      return (System.nanoTime() - startNanos) / tickNanos;
+   }
+
+   private void transferNewTimeouts() {
+      Timeout timeout;
+      while ((timeout = newTimeouts.poll()) != null) {
+         place(timeout, currentTick);
+      }
+   }
+
+   private void place(Timeout timeout, long earliestTick) {
+      long deadlineTick = Math.max(earliestTick, (timeout.deadline - startNanos + tickNanos - 1) / tickNanos);
+      buckets[(int) (deadlineTick & mask)].add(timeout);
+   }
+
+   private void expire(Queue<Timeout> bucket) {
+      long now = System.nanoTime();
+      for (int i = bucket.size(); i > 0; i--) {
+         Timeout timeout = bucket.poll();
+         if (timeout.cancelled) {
+            activeTimeouts.decrementAndGet();
+         } else if (timeout.deadline - now > 0) {
+            place(timeout, currentTick + 1);
+         } else {
+            timeout.cancelled = true;
+            activeTimeouts.decrementAndGet();
+            try {
+               executor.execute(timeout::run);
+            } catch (RuntimeException e) {
+               logger.warn("could not execute timeout action", e);
+            }
+         }
+      }
+   }
+
+   static final class Timeout {
+      private final Runnable action;
+      private volatile long deadline;
+      private volatile boolean cancelled = false;
+
+      private Timeout(Runnable action, long delayMillis) {
+         this.action = action;
+         this.deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+      }
+
+      /**
+       * Move the deadline to the given delay from now. Has no effect if the
+       * timeout is already cancelled or executed.
+       */
+      void reset(long delayMillis) {
+         deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+      }
+
+      void cancel() {
+         cancelled = true;
+      }
+
+      private void run() {
+         try {
+            action.run();
+         } catch (RuntimeException e) {
+            logger.warn("timeout action failed", e);
+         }
+      }
+   }
+}
@@ -0,0 +1,87 @@
+/**
+ * Copyright (C) 2020 VanillaSource
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.vanillasource.gerec.metrics;
+
+/**
+ * An immutable copy of the values recorded in a {@link LatencyHistogram}.
+ */
+public final class HistogramSnapshot {
+   private final long[] counts;
+   private final long count;
+   private final long sum;
+   private final long max;
+
+   HistogramSnapshot(long[] counts, long sum, long max) {
+      this.counts = counts;
+      long totalCount = 0;
+      for (long bucketCount: counts) {
+         totalCount += bucketCount;
+      }
+      this.count = totalCount;
+      this.sum = sum;
+      this.max = max;
+   }
+
+   public long getCount() {
+      return count;
+   }
+
+   /**
+    * @return The exact largest recorded value, or 0 if nothing was recorded.
+    */
+   public long getMax() {
+      return max;
+   }
+
+   /**
+    * @return The exact mean of recorded values, or 0 if nothing was recorded.
+    */
+   public double getMean() {
+      return count == 0 ? 0 : (double) sum / count;
+   }
+
+   /**
+    * @param percentile The percentile between 0 and 100.
+    * @return A value such that the given percent of recorded values are at most this value, or 0 if
+    * nothing was recorded. The value is the upper end of the bucket the percentile falls into, but
+    * never more than the largest recorded value.
+    */
+   public long getValueAtPercentile(double percentile) {
+      if (percentile < 0 || percentile > 100) {
+         throw new IllegalArgumentException("percentile must be between 0 and 100, but was "+percentile);
+      }
+      if (count == 0) {
+         return 0;
+      }
+      long targetCount = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+      long cumulativeCount = 0;
+      for (int i=0; i<counts.length; i++) {
+         cumulativeCount += counts[i];
+         if (cumulativeCount >= targetCount) {
+            return Math.min(LatencyHistogram.highestValueOf(i), max);
+         }
+      }
+      return max;
+   }
+
+   @Override
+   public String toString() {
+      return "count="+count+", mean="+getMean()+", p50="+getValueAtPercentile(50)+", p99="+getValueAtPercentile(99)+", max="+max;
+   }
+}
@@ -0,0 +1,107 @@
+/**
+ * Copyright (C) 2020 VanillaSource
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.vanillasource.gerec.metrics;
+
+import com.vanillasource.gerec.HttpStatusCode;
+import java.net.URI;
+
+/**
+ * Receives the events of exchanges made through an {@link InstrumentedHttpClient}. Events are reported on
+ * the threads of the exchanges, so implementations must be thread-safe, and should not block.
+ */
+public interface HttpClientMetrics {
+   HttpClientMetrics DISABLED = new HttpClientMetrics() {
+      @Override
+      public boolean isEnabled() {
+         return false;
+      }
+
+      @Override
+      public ExchangeMetrics requestStarted(String method, URI uri) {
+         return ExchangeMetrics.NONE;
+      }
+   };
+
+   /**
+    * @return Whether exchanges should be instrumented at all. If not, requests are passed directly
+    * to the delegate client.
+    */
+   default boolean isEnabled() {
+      return true;
+   }
+
+   /**
+    * A request is about to be sent.
+    * @return The metrics of this exchange, which receives all further events of it.
+    */
+   ExchangeMetrics requestStarted(String method, URI uri);
+
+   /**
+    * The events of a single exchange. An exchange ends either with the content consumed or with a failure.
+    * All times are in nanoseconds since the request was started.
+    */
+   interface ExchangeMetrics {
+      ExchangeMetrics NONE = new ExchangeMetrics() {
+         @Override
+         public void bytesWritten(long length) {
+         }
+
+         @Override
+         public void bytesRead(long length) {
+         }
+
+         @Override
+         public void responseReceived(HttpStatusCode statusCode, long timeToFirstByte) {
+         }
+
+         @Override
+         public void contentConsumed(long timeToLastByte) {
+         }
+
+         @Override
+         public void failed(Throwable error, long time) {
+         }
+      };
+
+      /**
+       * Bytes of the request body were written.
+       */
+      void bytesWritten(long length);
+
+      /**
+       * Bytes of the response body were read.
+       */
+      void bytesRead(long length);
+
+      /**
+       * The response status and headers were received.
+       */
+      void responseReceived(HttpStatusCode statusCode, long timeToFirstByte);
+
+      /**
+       * The response body was completely consumed.
+       */
+      void contentConsumed(long timeToLastByte);
+
+      /**
+       * The exchange failed, either before a response was received, or while consuming its content.
+       */
+      void failed(Throwable error, long time);
+   }
+}
@@ -0,0 +1,201 @@
+/**
+ * Copyright (C) 2020 VanillaSource
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.vanillasource.gerec.metrics;
+
+import com.vanillasource.gerec.HttpStatusCode;
+import java.net.URI;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics that aggregate all exchanges into counters, gauges and latency histograms, which
+ * can be read at any time, for example to be exported to a monitoring system. All recording
+ * is lock-free. Recording can be disabled at runtime, in which case the instrumented client
+ * does not instrument requests at all.
+ */
+public final class HttpClientStatistics implements HttpClientMetrics {
+   private final ConcurrentMap<String, LongAdder> methodCounts = new ConcurrentHashMap<>();
+   private final ConcurrentMap<String, LongAdder> hostCounts = new ConcurrentHashMap<>();
+   private final LongAdder[] statusClassCounts = new LongAdder[5];
+   private final LongAdder failureCount = new LongAdder();
+   private final LongAdder bytesWritten = new LongAdder();
+   private final LongAdder bytesRead = new LongAdder();
+   private final AtomicLong requestsInFlight = new AtomicLong();
+   private final AtomicLong exchangesInFlight = new AtomicLong();
+   private final LatencyHistogram timeToFirstByte = new LatencyHistogram();
+   private final LatencyHistogram timeToLastByte = new LatencyHistogram();
+   private volatile boolean enabled = true;
+
+   public HttpClientStatistics() {
+      for (int i=0; i<statusClassCounts.length; i++) {
+         statusClassCounts[i] = new LongAdder();
+      }
+   }
+
+   public void setEnabled(boolean enabled) {
+      this.enabled = enabled;
+   }
+
+   @Override
+   public boolean isEnabled() {
+      return enabled;
+   }
+
+   @Override
+   public ExchangeMetrics requestStarted(String method, URI uri) {
+      methodCounts.computeIfAbsent(method, key -> new LongAdder()).increment();
+      hostCounts.computeIfAbsent(hostOf(uri), key -> new LongAdder()).increment();
+      requestsInFlight.incrementAndGet();
+      exchangesInFlight.incrementAndGet();
+      return new Exchange();
+   }
+
+   private static String hostOf(URI uri) {
+      if (uri.getPort() < 0) {
+         return String.valueOf(uri.getHost());
+      }
+      return uri.getHost()+":"+uri.getPort();
+   }
+
+   /**
+    * @return The number of requests started with each method.
+    */
+   public Map<String, Long> getMethodCounts() {
+      return snapshot(methodCounts);
+   }
+
+   /**
+    * @return The number of requests started to each host, including the port if given in the uri.
+    */
+   public Map<String, Long> getHostCounts() {
+      return snapshot(hostCounts);
+   }
+
+   private static Map<String, Long> snapshot(Map<String, LongAdder> counts) {
+      Map<String, Long> result = new TreeMap<>();
+      counts.forEach((key, count) -> result.put(key, count.sum()));
+      return Collections.unmodifiableMap(result);
+   }
+
+   /**
+    * @param statusClass The class of status codes, 1 for 1xx codes up to 5 for 5xx codes.
+    * @return The number of responses received with a status code of the given class.
+    */
+   public long getStatusClassCount(int statusClass) {
+      if (statusClass < 1 || statusClass > statusClassCounts.length) {
+         throw new IllegalArgumentException("status class must be between 1 and 5, but was "+statusClass);
+      }
+      return statusClassCounts[statusClass - 1].sum();
+   }
+
+   /**
+    * @return The number of exchanges that failed, either without a response or while consuming the content.
+    */
+   public long getFailureCount() {
+      return failureCount.sum();
+   }
+
+   public long getBytesWritten() {
+      return bytesWritten.sum();
+   }
+
+   public long getBytesRead() {
+      return bytesRead.sum();
+   }
+
+   /**
+    * @return The number of requests that did not yet receive a response.
+    */
+   public long getRequestsInFlight() {
+      return requestsInFlight.get();
+   }
+
+   /**
+    * @return The number of exchanges that did not yet consume their content completely.
+    */
+   public long getExchangesInFlight() {
+      return exchangesInFlight.get();
+   }
+
+   /**
+    * @return The nanoseconds from starting requests until their responses were received.
+    */
+   public HistogramSnapshot getTimeToFirstByte() {
+      return timeToFirstByte.getSnapshot();
+   }
+
+   /**
+    * @return The nanoseconds from starting requests until their contents were consumed.
+    */
+   public HistogramSnapshot getTimeToLastByte() {
+      return timeToLastByte.getSnapshot();
+   }
+
+   private final class Exchange implements ExchangeMetrics {
+      private final AtomicBoolean responded = new AtomicBoolean();
+      private final AtomicBoolean ended = new AtomicBoolean();
+
+      @Override
+      public void bytesWritten(long length) {
+         bytesWritten.add(length);
+      }
+
+      @Override
+      public void bytesRead(long length) {
+         bytesRead.add(length);
+      }
+
+      @Override
+      public void responseReceived(HttpStatusCode statusCode, long time) {
+         if (responded.compareAndSet(false, true)) {
+            requestsInFlight.decrementAndGet();
+            int statusClass = statusCode.value() / 100;
+            if (statusClass >= 1 && statusClass <= statusClassCounts.length) {
+               statusClassCounts[statusClass - 1].increment();
+            }
+            timeToFirstByte.record(time);
+         }
+      }
+
+      @Override
+      public void contentConsumed(long time) {
+         if (ended.compareAndSet(false, true)) {
+            exchangesInFlight.decrementAndGet();
+            timeToLastByte.record(time);
+         }
+      }
+
+      @Override
+      public void failed(Throwable error, long time) {
+         if (responded.compareAndSet(false, true)) {
+            requestsInFlight.decrementAndGet();
+         }
+         if (ended.compareAndSet(false, true)) {
+            exchangesInFlight.decrementAndGet();
+            failureCount.increment();
+         }
+      }
+   }
+}
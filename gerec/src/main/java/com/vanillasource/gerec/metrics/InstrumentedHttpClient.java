@@ -0,0 +1,284 @@
+/**
+ * Copyright (C) 2020 VanillaSource
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.vanillasource.gerec.metrics;
+
+import com.vanillasource.gerec.Header;
+import com.vanillasource.gerec.HttpRequest;
+import com.vanillasource.gerec.HttpResponse;
+import com.vanillasource.gerec.HttpStatusCode;
+import com.vanillasource.gerec.reference.HttpClient;
+import com.vanillasource.aio.AioSlave;
+import com.vanillasource.aio.channel.ReadableByteChannelMaster;
+import com.vanillasource.aio.channel.WritableByteChannelMaster;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+import java.util.List;
+
+/**
+ * A http client that reports each exchange to the given metrics. Time to first byte is measured
+ * until the response is received, time to last byte until its content is consumed. Body bytes are
+ * counted as the request producer writes them and as the response consumer reads them.
+ * If the metrics are disabled, requests are given to the delegate unchanged.
+ */
+public final class InstrumentedHttpClient implements HttpClient {
+   private final HttpClient delegate;
+   private final HttpClientMetrics metrics;
+
+   public InstrumentedHttpClient(HttpClient delegate, HttpClientMetrics metrics) {
+      this.delegate = delegate;
+      this.metrics = metrics;
+   }
+
+   @Override
+   public CompletableFuture<HttpResponse> doHead(URI uri, HttpRequest.HttpRequestChange change) {
+      return execute("HEAD", uri, change, HttpClient::doHead);
+   }
+
+   @Override
+   public CompletableFuture<HttpResponse> doGet(URI uri, HttpRequest.HttpRequestChange change) {
+      return execute("GET", uri, change, HttpClient::doGet);
+   }
+
+   @Override
+   public CompletableFuture<HttpResponse> doPost(URI uri, HttpRequest.HttpRequestChange change) {
+      return execute("POST", uri, change, HttpClient::doPost);
+   }
+
+   @Override
+   public CompletableFuture<HttpResponse> doPut(URI uri, HttpRequest.HttpRequestChange change) {
+      return execute("PUT", uri, change, HttpClient::doPut);
+   }
+
+   @Override
+   public CompletableFuture<HttpResponse> doDelete(URI uri, HttpRequest.HttpRequestChange change) {
+      return execute("DELETE", uri, change, HttpClient::doDelete);
+   }
+
+   @Override
+   public CompletableFuture<HttpResponse> doOptions(URI uri, HttpRequest.HttpRequestChange change) {
+      return execute("OPTIONS", uri, change, HttpClient::doOptions);
+   }
+
+   private CompletableFuture<HttpResponse> execute(String method, URI uri, HttpRequest.HttpRequestChange change, HttpClientCall call) {
+      if (!metrics.isEnabled()) {
+         return call.execute(delegate, uri, change);
+      }
+      long startTime = System.nanoTime();
+      HttpClientMetrics.ExchangeMetrics exchange = metrics.requestStarted(method, uri);
+      CompletableFuture<HttpResponse> response;
+      try {
+         response = call.execute(delegate, uri, request -> change.applyTo(new InstrumentedHttpRequest(request, exchange)));
+      } catch (RuntimeException e) {
+         exchange.failed(e, System.nanoTime() - startTime);
+         throw e;
+      }
+      return response.handle((delegateResponse, exception) -> {
+         if (exception != null) {
+            Throwable cause = exception instanceof CompletionException && exception.getCause() != null ? exception.getCause() : exception;
+            exchange.failed(cause, System.nanoTime() - startTime);
+            throw exception instanceof CompletionException ? (CompletionException) exception : new CompletionException(exception);
+         }
+         exchange.responseReceived(delegateResponse.getStatusCode(), System.nanoTime() - startTime);
+         return new InstrumentedHttpResponse(delegateResponse, exchange, startTime);
+      });
+   }
+
+   private interface HttpClientCall {
+      CompletableFuture<HttpResponse> execute(HttpClient client, URI uri, HttpRequest.HttpRequestChange change);
+   }
+
+   private static final class InstrumentedHttpRequest implements HttpRequest {
+      private final HttpRequest request;
+      private final HttpClientMetrics.ExchangeMetrics exchange;
+
+      private InstrumentedHttpRequest(HttpRequest request, HttpClientMetrics.ExchangeMetrics exchange) {
+         this.request = request;
+         this.exchange = exchange;
+      }
+
+      @Override
+      public boolean hasHeader(Header<?> header) {
+         return request.hasHeader(header);
+      }
+
+      @Override
+      public <T> T getHeader(Header<T> header) {
+         return request.getHeader(header);
+      }
+
+      @Override
+      public <T> void setHeader(Header<T> header, T value) {
+         request.setHeader(header, value);
+      }
+
+      @Override
+      public void setHeaderValues(String name, List<String> values) {
+         request.setHeaderValues(name, values);
+      }
+
+      @Override
+      public void setByteProducer(Function<WritableByteChannelMaster, AioSlave<Void>> producerFactory) {
+         request.setByteProducer(master -> producerFactory.apply(new CountingWritableByteChannelMaster(master, exchange)));
+      }
+
+      @Override
+      public void setByteProducer(Function<WritableByteChannelMaster, AioSlave<Void>> producerFactory, long length) {
+         request.setByteProducer(master -> producerFactory.apply(new CountingWritableByteChannelMaster(master, exchange)), length);
+      }
+   }
+
+   private static final class InstrumentedHttpResponse implements HttpResponse {
+      private final HttpResponse response;
+      private final HttpClientMetrics.ExchangeMetrics exchange;
+      private final long startTime;
+
+      private InstrumentedHttpResponse(HttpResponse response, HttpClientMetrics.ExchangeMetrics exchange, long startTime) {
+         this.response = response;
+         this.exchange = exchange;
+         this.startTime = startTime;
+      }
+
+      @Override
+      public HttpStatusCode getStatusCode() {
+         return response.getStatusCode();
+      }
+
+      @Override
+      public boolean hasHeader(Header<?> header) {
+         return response.hasHeader(header);
+      }
+
+      @Override
+      public <T> T getHeader(Header<T> header) {
+         return response.getHeader(header);
+      }
+
+      @Override
+      public <R> CompletableFuture<R> consumeContent(Function<ReadableByteChannelMaster, AioSlave<R>> consumerFactory) {
+         return response.consumeContent(master -> consumerFactory.apply(new CountingReadableByteChannelMaster(master, exchange)))
+            .whenComplete((result, exception) -> {
+               if (exception != null) {
+                  exchange.failed(exception, System.nanoTime() - startTime);
+               } else {
+                  exchange.contentConsumed(System.nanoTime() - startTime);
+               }
+            });
+      }
+   }
+
+   private static final class CountingReadableByteChannelMaster implements ReadableByteChannelMaster {
+      private final ReadableByteChannelMaster master;
+      private final HttpClientMetrics.ExchangeMetrics exchange;
+
+      private CountingReadableByteChannelMaster(ReadableByteChannelMaster master, HttpClientMetrics.ExchangeMetrics exchange) {
+         this.master = master;
+         this.exchange = exchange;
+      }
+
+      @Override
+      public int read(ByteBuffer buffer) throws IOException {
+         int length = master.read(buffer);
+         if (length > 0) {
+            exchange.bytesRead(length);
+         }
+         return length;
+      }
+
+      @Override
+      public long read(ByteBuffer[] buffers, int offset, int length) throws IOException {
+         long readLength = master.read(buffers, offset, length);
+         if (readLength > 0) {
+            exchange.bytesRead(readLength);
+         }
+         return readLength;
+      }
+
+      @Override
+      public void pause() {
+         master.pause();
+      }
+
+      @Override
+      public void resume() {
+         master.resume();
+      }
+
+      @Override
+      public void close() {
+         master.close();
+      }
+
+      @Override
+      public boolean isOpen() {
+         return master.isOpen();
+      }
+   }
+
+   private static final class CountingWritableByteChannelMaster implements WritableByteChannelMaster {
+      private final WritableByteChannelMaster master;
+      private final HttpClientMetrics.ExchangeMetrics exchange;
+
+      private CountingWritableByteChannelMaster(WritableByteChannelMaster master, HttpClientMetrics.ExchangeMetrics exchange) {
+         this.master = master;
+         this.exchange = exchange;
+      }
+
+      @Override
+      public int write(ByteBuffer buffer) throws IOException {
+         int length = master.write(buffer);
+         if (length > 0) {
+            exchange.bytesWritten(length);
+         }
+         return length;
+      }
+
+      @Override
+      public long write(ByteBuffer[] buffers, int offset, int length) throws IOException {
+         long writtenLength = master.write(buffers, offset, length);
+         if (writtenLength > 0) {
+            exchange.bytesWritten(writtenLength);
+         }
+         return writtenLength;
+      }
+
+      @Override
+      public void pause() {
+         master.pause();
+      }
+
+      @Override
+      public void resume() {
+         master.resume();
+      }
+
+      @Override
+      public void close() {
+         master.close();
+      }
+
+      @Override
+      public boolean isOpen() {
+         return master.isOpen();
+      }
+   }
+}
@@ -0,0 +1,90 @@
+/**
+ * Copyright (C) 2020 VanillaSource
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.vanillasource.gerec.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of non-negative values, typically latencies in nanoseconds. Values are
+ * counted in buckets that are linear within each power of two, like in HDR histograms, so
+ * reported values have a relative error of at most about 3% at any magnitude, with a fixed amount
+ * of memory. Recording a value does not allocate and does not lock.
+ */
+public final class LatencyHistogram {
+   private static final int SUB_BUCKET_BITS = 6;
+   private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+   private static final int HALF_SUB_BUCKET_COUNT = SUB_BUCKET_COUNT / 2;
+   static final int BUCKET_COUNT = SUB_BUCKET_COUNT + (63 - SUB_BUCKET_BITS) * HALF_SUB_BUCKET_COUNT;
+   private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+   private final LongAdder sum = new LongAdder();
+   private final AtomicLong max = new AtomicLong();
+
+   /**
+    * Record a value. Negative values are recorded as zero.
+    */
+   public void record(long value) {
+      long recordedValue = Math.max(0, value);
+      counts.incrementAndGet(indexOf(recordedValue));
+      sum.add(recordedValue);
+      long currentMax;
+      while (recordedValue > (currentMax = max.get()) && !max.compareAndSet(currentMax, recordedValue)) {
+         // Retry until this value is recorded or a larger one is
+      }
+   }
+
+   /**
+    * @return A copy of the values recorded so far. Values recorded concurrently
+    * may or may not be included.
+    */
+   public HistogramSnapshot getSnapshot() {
+      long[] snapshotCounts = new long[BUCKET_COUNT];
+      for (int i=0; i<BUCKET_COUNT; i++) {
+         snapshotCounts[i] = counts.get(i);
+      }
+      return new HistogramSnapshot(snapshotCounts, sum.sum(), max.get());
+   }
+
+   static int indexOf(long value) {
+      if (value < SUB_BUCKET_COUNT) {
+         return (int) value;
+      }
+      int exponent = 63 - Long.numberOfLeadingZeros(value);
+      int mantissa = (int) (value >>> (exponent - SUB_BUCKET_BITS + 1));
+      return SUB_BUCKET_COUNT + (exponent - SUB_BUCKET_BITS) * HALF_SUB_BUCKET_COUNT + mantissa - HALF_SUB_BUCKET_COUNT;
+   }
+
+   static long lowestValueOf(int index) {
+      if (index < SUB_BUCKET_COUNT) {
+         return index;
+      }
+      int offset = index - SUB_BUCKET_COUNT;
+      int exponent = SUB_BUCKET_BITS + offset / HALF_SUB_BUCKET_COUNT;
+      long mantissa = HALF_SUB_BUCKET_COUNT + offset % HALF_SUB_BUCKET_COUNT;
+      return mantissa << (exponent - SUB_BUCKET_BITS + 1);
+   }
+
+   static long highestValueOf(int index) {
+      if (index + 1 >= BUCKET_COUNT) {
+         return Long.MAX_VALUE;
+      }
+      return lowestValueOf(index + 1) - 1;
+   }
+}
@@ -40,10 +40,17 @@ import java.util.Optional;
  * using individual decisions for all media types, and this object
  * takes case of navigating until the intent
  * is fulfilled.
+ * <p>
+ * Resources are fetched again each time they are followed, unless they are memoized, either
+ * separately for each execution or in a memo shared by executions.
  */
 public final class Navigation<R> {
    private final ResourceReference startReference;
    private final List<AcceptMediaType<Function<NavigationContext<R>, CompletableFuture<Optional<R>>>>> types;
+   private volatile AcceptMediaType<Function<NavigationContext<R>, CompletableFuture<Optional<R>>>> acceptType;
+   private NavigationMemo memo;
+   private boolean memoizePerExecution = false;
+   private int maxDepth = NavigationContext.DEFAULT_MAX_DEPTH;
 
    public Navigation(ResourceReference startReference) {
       this.startReference = startReference;
@@ -52,15 +59,48 @@ public final class Navigation<R> {
 
    public <T> Navigation<R> navigate(AcceptMediaType<T> type, BiFunction<T, NavigationContext<R>, CompletableFuture<Optional<R>>> decision) {
       types.add(type.map(value -> context -> decision.apply(value, context)));
+      acceptType = null;
+      return this;
+   }
+
+   /**
+    * Remember visited resources in the given memo, which may be shared with other navigations.
+    * Entries are specific to this navigation's media types, and are forgotten when any request
+    * other than a <code>GET</code> is followed.
+    */
+   public Navigation<R> memoize(NavigationMemo memo) {
+      this.memo = memo;
+      this.memoizePerExecution = false;
+      return this;
+   }
+
+   /**
+    * Remember visited resources only during a single execution, so each execution starts with
+    * an empty memo. Entries are forgotten when any request other than a <code>GET</code> is followed.
+    */
+   public Navigation<R> memoizePerExecution() {
+      this.memo = null;
+      this.memoizePerExecution = true;
+      return this;
+   }
+
+   /**
+    * Fail the navigation if it follows more requests than the given depth from the start.
+    */
+   public Navigation<R> maxDepth(int maxDepth) {
+      this.maxDepth = maxDepth;
       return this;
    }
 
    public CompletableFuture<Optional<R>> execute() {
-      AcceptMediaType<Function<NavigationContext<R>, CompletableFuture<Optional<R>>>> acceptType =
-         new PolymorphicAcceptType<>(types);
-      NavigationContext<R> context = new NavigationContext<>(acceptType);
-      return startReference.get(acceptType)
-         .thenCompose(rule -> rule.apply(context));
+      AcceptMediaType<Function<NavigationContext<R>, CompletableFuture<Optional<R>>>> currentAcceptType = acceptType;
+      if (currentAcceptType == null) {
+         currentAcceptType = new PolymorphicAcceptType<>(new ArrayList<>(types));
+         acceptType = currentAcceptType;
+      }
+      NavigationMemo executionMemo = memoizePerExecution ? new NavigationMemo(Long.MAX_VALUE, System::nanoTime) : memo;
+      NavigationContext<R> context = new NavigationContext<>(currentAcceptType, executionMemo, maxDepth);
+      return context.follow(startReference.prepareGet());
    }
 }
 
@@ -25,12 +25,54 @@ import java.util.Optional;
 import java.util.function.Function;
 import java.util.List;
 import java.util.function.BiFunction;
+import java.util.function.BinaryOperator;
+import java.util.Collection;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.net.URI;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+/**
+ * The context of a single step in a navigation. <code>GET</code> requests are not followed again if they were
+ * already visited on the path to this step since the last other request, because that would be a cycle.
+ * If a memo is given, <code>GET</code> requests are remembered in it, and it is cleared by any other request,
+ * as that may change resources. The number of steps from the start is limited to a maximum depth.
+ * <p>
+ * Contexts of the branches of a parallel navigation are cancelled when the parallel navigation completes, after which
+ * they do not follow any more requests.
+ */
 public final class NavigationContext<R> {
+   private static final Logger logger = LoggerFactory.getLogger(NavigationContext.class);
+   static final int DEFAULT_MAX_DEPTH = 100;
    private final AcceptMediaType<Function<NavigationContext<R>, CompletableFuture<Optional<R>>>> acceptType;
+   private final NavigationMemo memo;
+   private final int maxDepth;
+   private final Hop hop;
+   private final Cancellation cancellation;
 
-   public NavigationContext(AcceptMediaType<Function<NavigationContext<R>, CompletableFuture<Optional<R>>>> acceptType) {
+   private NavigationContext(AcceptMediaType<Function<NavigationContext<R>, CompletableFuture<Optional<R>>>> acceptType,
+         NavigationMemo memo, int maxDepth, Hop hop, Cancellation cancellation) {
       this.acceptType = acceptType;
+      this.memo = memo;
+      this.maxDepth = maxDepth;
+      this.hop = hop;
+      this.cancellation = cancellation;
+   }
+
+   /**
+    * @param memo The memo to remember <code>GET</code> requests in, or null to not remember them.
+    * @param maxDepth The maximum number of requests followed from the start of the navigation.
+    */
+   public NavigationContext(AcceptMediaType<Function<NavigationContext<R>, CompletableFuture<Optional<R>>>> acceptType,
+         NavigationMemo memo, int maxDepth) {
+      this(acceptType, memo, maxDepth, null, null);
+   }
+
+   public NavigationContext(AcceptMediaType<Function<NavigationContext<R>, CompletableFuture<Optional<R>>>> acceptType) {
+      this(acceptType, null, DEFAULT_MAX_DEPTH);
    }
 
    public CompletableFuture<Optional<R>> back() {
@@ -42,8 +84,59 @@ public final class NavigationContext<R> {
    }
 
    public CompletableFuture<Optional<R>> follow(Request request) {
+      CompletableFuture<Optional<R>> refusal = refuse(request);
+      if (refusal != null) {
+         return refusal;
+      }
+      NavigationContext<R> next = next(request, cancellation);
+      return decide(request)
+         .thenCompose(rule -> rule.apply(next));
+   }
+
+   /**
+    * @return The result of the request without following it, or null if it can be followed.
+    */
+   private CompletableFuture<Optional<R>> refuse(Request request) {
+      if (cancellation != null && cancellation.isCancelled()) {
+         logger.debug("navigation branch cancelled, not following {}", request.getUri());
+         CompletableFuture<Optional<R>> cancelled = new CompletableFuture<>();
+         cancelled.cancel(false);
+         return cancelled;
+      }
+      int depth = hop == null ? 0 : hop.depth;
+      if (depth >= maxDepth) {
+         CompletableFuture<Optional<R>> failure = new CompletableFuture<>();
+         failure.completeExceptionally(new IllegalStateException("navigation exceeded the maximum depth of "+maxDepth+" at "+request.getUri()));
+         return failure;
+      }
+      if (isSafe(request) && hop != null && hop.visited(request.getUri())) {
+         logger.debug("navigation already visited {}, going back", request.getUri());
+         return back();
+      }
+      return null;
+   }
+
+   private CompletableFuture<Function<NavigationContext<R>, CompletableFuture<Optional<R>>>> decide(Request request) {
+      if (memo == null) {
+         return request.send(acceptType);
+      }
+      if (isSafe(request)) {
+         return memo.get(request.getUri(), acceptType, () -> request.send(acceptType));
+      }
+      memo.clear();
       return request.send(acceptType)
-         .thenCompose(rule -> rule.apply(this));
+         .thenApply(rule -> {
+            memo.clear();
+            return rule;
+         });
+   }
+
+   private NavigationContext<R> next(Request request, Cancellation nextCancellation) {
+      return new NavigationContext<>(acceptType, memo, maxDepth, new Hop(request.getUri(), isSafe(request), hop), nextCancellation);
+   }
+
+   private static boolean isSafe(Request request) {
+      return "GET".equals(request.getMethod()) && request.getUri() != null;
    }
 
    public static <T, R> BiFunction<T, NavigationContext<R>, CompletableFuture<Optional<R>>> follow(
@@ -70,4 +163,216 @@ public final class NavigationContext<R> {
       return (page, context) -> context.first(singleListDecision.apply(page));
    }
 
+   /**
+    * Follow all requests in parallel, with at most the given number of them followed at the same time,
+    * and finish with the first result found. Requests not yet followed are not started, responses still outstanding are
+    * cancelled, and branches already navigating do not follow any more requests.
+    * If no request leads to a result, this goes back.
+    */
+   public CompletableFuture<Optional<R>> any(List<Request> requests, int maxConcurrency) {
+      return new FanOut(requests, maxConcurrency, true, null).start();
+   }
+
+   public static <T, R> BiFunction<T, NavigationContext<R>, CompletableFuture<Optional<R>>> any(
+         Function<T, List<Request>> singleListDecision, int maxConcurrency) {
+      return (page, context) -> context.any(singleListDecision.apply(page), maxConcurrency);
+   }
+
+   /**
+    * Follow all requests in parallel, with at most the given number of them followed at the same time,
+    * and merge all results found with the reducer, in the order of the requests.
+    * If no request leads to a result, this goes back.
+    */
+   public CompletableFuture<Optional<R>> all(List<Request> requests, int maxConcurrency, BinaryOperator<R> reducer) {
+      return new FanOut(requests, maxConcurrency, false, reducer).start();
+   }
+
+   public static <T, R> BiFunction<T, NavigationContext<R>, CompletableFuture<Optional<R>>> all(
+         Function<T, List<Request>> singleListDecision, int maxConcurrency, BinaryOperator<R> reducer) {
+      return (page, context) -> context.all(singleListDecision.apply(page), maxConcurrency, reducer);
+   }
+
+   /**
+    * Follows a list of requests in a fixed number of lanes. Each lane takes the next request
+    * when its previous one is completed. Requests that complete synchronously are handled in a loop
+    * instead of recursively.
+    */
+   private final class FanOut {
+      private final CompletableFuture<Optional<R>> result = new CompletableFuture<>();
+      private final Collection<CompletableFuture<?>> inProgress = ConcurrentHashMap.newKeySet();
+      private final Cancellation branches = new Cancellation(cancellation);
+      private final AtomicInteger nextIndex = new AtomicInteger();
+      private final AtomicInteger remaining;
+      private final AtomicReferenceArray<Optional<R>> values;
+      private final List<Request> requests;
+      private final int maxConcurrency;
+      private final boolean race;
+      private final BinaryOperator<R> reducer;
+
+      private FanOut(List<Request> requests, int maxConcurrency, boolean race, BinaryOperator<R> reducer) {
+         if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("max concurrency must be at least 1, but was "+maxConcurrency);
+         }
+         this.requests = requests;
+         this.maxConcurrency = maxConcurrency;
+         this.race = race;
+         this.reducer = reducer;
+         this.remaining = new AtomicInteger(requests.size());
+         this.values = new AtomicReferenceArray<>(requests.size());
+      }
+
+      private CompletableFuture<Optional<R>> start() {
+         if (requests.isEmpty()) {
+            return back();
+         }
+         result.whenComplete((value, exception) -> {
+            branches.cancel();
+            inProgress.forEach(sent -> sent.cancel(false));
+         });
+         for (int i=0; i<Math.min(maxConcurrency, requests.size()); i++) {
+            runLane();
+         }
+         return result;
+      }
+
+      private void runLane() {
+         int index;
+         while (!result.isDone() && (index = nextIndex.getAndIncrement()) < requests.size()) {
+            CompletableFuture<Function<NavigationContext<R>, CompletableFuture<Optional<R>>>> sent = null;
+            CompletableFuture<Optional<R>> branch;
+            try {
+               Request request = requests.get(index);
+               branch = refuse(request);
+               if (branch == null) {
+                  NavigationContext<R> next = next(request, branches);
+                  sent = decide(request);
+                  branch = sent.thenCompose(rule -> rule.apply(next));
+               }
+            } catch (RuntimeException e) {
+               result.completeExceptionally(e);
+               return;
+            }
+            if (!branch.isDone()) {
+               int branchIndex = index;
+               CompletableFuture<?> sentRequest = sent;
+               inProgress.add(sentRequest);
+               branch.whenComplete((value, exception) -> {
+                  inProgress.remove(sentRequest);
+                  if (completed(branchIndex, value, exception)) {
+                     runLane();
+                  }
+               });
+               if (result.isDone()) {
+                  sentRequest.cancel(false);
+               }
+               return;
+            }
+            Optional<R> value = null;
+            Throwable exception = null;
+            try {
+               value = branch.join();
+            } catch (CompletionException e) {
+               exception = e.getCause();
+            } catch (RuntimeException e) {
+               exception = e;
+            }
+            if (!completed(index, value, exception)) {
+               return;
+            }
+         }
+      }
+
+      /**
+       * @return Whether the lane should continue with the next request.
+       */
+      private boolean completed(int index, Optional<R> value, Throwable exception) {
+         if (exception instanceof CompletionException && exception.getCause() != null) {
+            result.completeExceptionally(exception.getCause());
+            return false;
+         }
+         if (exception != null) {
+            result.completeExceptionally(exception);
+            return false;
+         }
+         if (race && value.isPresent()) {
+            result.complete(value);
+            return false;
+         }
+         values.set(index, value);
+         if (remaining.decrementAndGet() == 0) {
+            result.complete(reduce());
+            return false;
+         }
+         return true;
+      }
+
+      private Optional<R> reduce() {
+         Optional<R> reduced = Optional.empty();
+         if (race) {
+            return reduced;
+         }
+         for (int i=0; i<values.length(); i++) {
+            Optional<R> value = values.get(i);
+            if (value.isPresent()) {
+               reduced = reduced.isPresent() ? Optional.of(reducer.apply(reduced.get(), value.get())) : value;
+            }
+         }
+         return reduced;
+      }
+   }
+
+   /**
+    * Whether the branches of a parallel navigation are cancelled. A branch is also cancelled if
+    * the branch it is nested in is cancelled.
+    */
+   private static final class Cancellation {
+      private final Cancellation parent;
+      private volatile boolean cancelled = false;
+
+      private Cancellation(Cancellation parent) {
+         this.parent = parent;
+      }
+
+      private void cancel() {
+         cancelled = true;
+      }
+
+      private boolean isCancelled() {
+         for (Cancellation current = this; current != null; current = current.parent) {
+            if (current.cancelled) {
+               return true;
+            }
+         }
+         return false;
+      }
+   }
+
+   /**
+    * A request followed on the path from the start of the navigation.
+    */
+   private static final class Hop {
+      private final URI uri;
+      private final boolean safe;
+      private final Hop parent;
+      private final int depth;
+
+      private Hop(URI uri, boolean safe, Hop parent) {
+         this.uri = uri;
+         this.safe = safe;
+         this.parent = parent;
+         this.depth = parent == null ? 1 : parent.depth + 1;
+      }
+
+      /**
+       * @return Whether the uri was visited on the path since the last request that was not a <code>GET</code>.
+       */
+      private boolean visited(URI visitedUri) {
+         for (Hop current = this; current != null && current.safe; current = current.parent) {
+            if (current.uri.equals(visitedUri)) {
+               return true;
+            }
+         }
+         return false;
+      }
+   }
 }
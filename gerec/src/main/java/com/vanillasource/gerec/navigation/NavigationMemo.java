@@ -0,0 +1,165 @@
+/**
+ * Copyright (C) 2020 VanillaSource
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.vanillasource.gerec.navigation;
+
+import com.vanillasource.gerec.AcceptMediaType;
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Remembers the deserialized responses of <code>GET</code> requests made during navigation,
+ * by uri and accept type. Concurrent navigations through the same resource share a single request
+ * in flight. Failed requests are not remembered. Each caller gets its own view of the shared
+ * result, so cancelling it does not affect other callers.
+ * <p>
+ * Navigations only remember resources if given a memo, or if they create one for each execution. To share resources between
+ * navigations, give the same memo to all of them, usually with a time-to-live. Requests are
+ * identified only by uri and accept type, not by any other request headers, so a memo should only
+ * be shared by navigations that would receive the same responses, for example ones using the
+ * same credentials. Navigations clear the memo when following any request other than a <code>GET</code>.
+ */
+public final class NavigationMemo {
+   private static final int PURGE_INTERVAL = 256;
+   private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+   private final AtomicInteger insertions = new AtomicInteger();
+   private final long timeToLive;
+   private final LongSupplier clock;
+
+   NavigationMemo(long timeToLive, LongSupplier clock) {
+      this.timeToLive = timeToLive;
+      this.clock = clock;
+   }
+
+   /**
+    * Create a memo that forgets entries after the given time.
+    */
+   public NavigationMemo(long timeToLive, TimeUnit unit) {
+      this(unit.toNanos(timeToLive), System::nanoTime);
+   }
+
+   /**
+    * Create a memo that never forgets.
+    */
+   public NavigationMemo() {
+      this(Long.MAX_VALUE, System::nanoTime);
+   }
+
+   /**
+    * Get the remembered content, or fetch it with the given function.
+    */
+   @SuppressWarnings("unchecked")
+   public <T> CompletableFuture<T> get(URI uri, AcceptMediaType<T> acceptType, Supplier<CompletableFuture<T>> fetch) {
+      Key key = new Key(uri, acceptType);
+      long now = clock.getAsLong();
+      Entry entry = entries.get(key);
+      if (entry != null && !entry.isExpired(now)) {
+         return view((CompletableFuture<T>) entry.content);
+      }
+      Entry newEntry = new Entry(new CompletableFuture<T>(), now);
+      entry = entries.compute(key, (existingKey, existingEntry) ->
+            existingEntry != null && !existingEntry.isExpired(now) ? existingEntry : newEntry);
+      if (entry != newEntry) {
+         return view((CompletableFuture<T>) entry.content);
+      }
+      CompletableFuture<T> content = (CompletableFuture<T>) newEntry.content;
+      if (insertions.incrementAndGet() % PURGE_INTERVAL == 0) {
+         purge(now);
+      }
+      CompletableFuture<T> fetched;
+      try {
+         fetched = fetch.get();
+      } catch (RuntimeException e) {
+         entries.remove(key, newEntry);
+         content.completeExceptionally(e);
+         return view(content);
+      }
+      fetched.whenComplete((value, exception) -> {
+         if (exception != null) {
+            entries.remove(key, newEntry);
+            content.completeExceptionally(exception);
+         } else {
+            content.complete(value);
+         }
+      });
+      return view(content);
+   }
+
+   private static <T> CompletableFuture<T> view(CompletableFuture<T> content) {
+      return content.thenApply(value -> value);
+   }
+
+   private void purge(long now) {
+      entries.values().removeIf(entry -> entry.isExpired(now));
+   }
+
+   /**
+    * Forget all entries.
+    */
+   public void clear() {
+      entries.clear();
+   }
+
+   int size() {
+      return entries.size();
+   }
+
+   private final class Entry {
+      private final CompletableFuture<?> content;
+      private final long created;
+
+      private Entry(CompletableFuture<?> content, long created) {
+         this.content = content;
+         this.created = created;
+      }
+
+      private boolean isExpired(long now) {
+         return now - created >= timeToLive;
+      }
+   }
+
+   private static final class Key {
+      private final URI uri;
+      private final AcceptMediaType<?> acceptType;
+
+      private Key(URI uri, AcceptMediaType<?> acceptType) {
+         this.uri = uri;
+         this.acceptType = acceptType;
+      }
+
+      @Override
+      public int hashCode() {
+         return uri.hashCode() * 31 + System.identityHashCode(acceptType);
+      }
+
+      @Override
+      public boolean equals(Object o) {
+         if (!(o instanceof Key)) {
+            return false;
+         }
+         Key other = (Key) o;
+         return uri.equals(other.uri) && acceptType == other.acceptType;
+      }
+   }
+}
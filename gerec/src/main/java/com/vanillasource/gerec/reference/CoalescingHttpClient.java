@@ -0,0 +1,196 @@
+/**
+ * Copyright (C) 2020 VanillaSource
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.vanillasource.gerec.reference;
+
+import com.vanillasource.gerec.HttpRequest;
+import com.vanillasource.gerec.HttpResponse;
+import com.vanillasource.gerec.HttpStatusCode;
+import com.vanillasource.gerec.Header;
+import com.vanillasource.gerec.http.RecordingHttpRequest;
+import com.vanillasource.aio.AioSlave;
+import com.vanillasource.aio.channel.ReadableByteChannelMaster;
+import com.vanillasource.aio.channel.ByteArrayReadableByteChannelSlave;
+import com.vanillasource.aio.channel.ByteBufferReadableByteChannelMaster;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A http client that sends only one request for concurrent <code>GET</code> or <code>HEAD</code>
+ * requests to the same uri with the same headers. Requests that arrive while an identical request is
+ * in progress receive the response of that request. The content of shared responses is read completely
+ * into memory, and replayed to each request separately, so this client must not be used
+ * for long-polling or other unbounded content.
+ */
+public final class CoalescingHttpClient implements HttpClient {
+   private static final Logger logger = LoggerFactory.getLogger(CoalescingHttpClient.class);
+   private final HttpClient delegate;
+   private final ConcurrentMap<RequestKey, CompletableFuture<BufferedResponse>> requestsInProgress = new ConcurrentHashMap<>();
+   private final AtomicLong upstreamCount = new AtomicLong();
+   private final AtomicLong coalescedCount = new AtomicLong();
+
+   public CoalescingHttpClient(HttpClient delegate) {
+      this.delegate = delegate;
+   }
+
+   /**
+    * @return The number of <code>GET</code> and <code>HEAD</code> requests that were actually sent.
+    */
+   public long getUpstreamCount() {
+      return upstreamCount.get();
+   }
+
+   /**
+    * @return The number of requests that were not sent, but received the response of an identical
+    * request in progress.
+    */
+   public long getCoalescedCount() {
+      return coalescedCount.get();
+   }
+
+   @Override
+   public CompletableFuture<HttpResponse> doHead(URI uri, HttpRequest.HttpRequestChange change) {
+      return coalesce("HEAD", uri, change, HttpClient::doHead);
+   }
+
+   @Override
+   public CompletableFuture<HttpResponse> doGet(URI uri, HttpRequest.HttpRequestChange change) {
+      return coalesce("GET", uri, change, HttpClient::doGet);
+   }
+
+   @Override
+   public CompletableFuture<HttpResponse> doOptions(URI uri, HttpRequest.HttpRequestChange change) {
+      return delegate.doOptions(uri, change);
+   }
+
+   @Override
+   public CompletableFuture<HttpResponse> doPost(URI uri, HttpRequest.HttpRequestChange change) {
+      return delegate.doPost(uri, change);
+   }
+
+   @Override
+   public CompletableFuture<HttpResponse> doPut(URI uri, HttpRequest.HttpRequestChange change) {
+      return delegate.doPut(uri, change);
+   }
+
+   @Override
+   public CompletableFuture<HttpResponse> doDelete(URI uri, HttpRequest.HttpRequestChange change) {
+      return delegate.doDelete(uri, change);
+   }
+
+   private CompletableFuture<HttpResponse> coalesce(String method, URI uri, HttpRequest.HttpRequestChange change, HttpClientCall call) {
+      RequestKey key = new RequestKey(method, uri, RecordingHttpRequest.recordHeaders(change));
+      CompletableFuture<BufferedResponse> response = new CompletableFuture<>();
+      CompletableFuture<BufferedResponse> responseInProgress = requestsInProgress.putIfAbsent(key, response);
+      if (responseInProgress != null) {
+         logger.debug("{} {} is already in progress, waiting for its response", method, uri);
+         coalescedCount.incrementAndGet();
+         return responseInProgress.thenApply(BufferedResponse::replay);
+      }
+      upstreamCount.incrementAndGet();
+      call.execute(delegate, uri, change)
+         .thenCompose(upstreamResponse -> upstreamResponse.consumeContent(ByteArrayReadableByteChannelSlave::new)
+               .thenApply(content -> new BufferedResponse(upstreamResponse, content)))
+         .whenComplete((bufferedResponse, exception) -> {
+            requestsInProgress.remove(key, response);
+            if (exception != null) {
+               response.completeExceptionally(exception);
+            } else {
+               response.complete(bufferedResponse);
+            }
+         });
+      return response.thenApply(BufferedResponse::replay);
+   }
+
+   private interface HttpClientCall {
+      CompletableFuture<HttpResponse> execute(HttpClient httpClient, URI uri, HttpRequest.HttpRequestChange change);
+   }
+
+   private static final class RequestKey {
+      private final String method;
+      private final URI uri;
+      private final Map<String, List<String>> headers = new HashMap<>();
+
+      private RequestKey(String method, URI uri, Map<String, List<String>> headers) {
+         this.method = method;
+         this.uri = uri;
+         headers.forEach((name, values) -> this.headers.put(name.toLowerCase(), values));
+      }
+
+      @Override
+      public int hashCode() {
+         return Objects.hash(method, uri, headers);
+      }
+
+      @Override
+      public boolean equals(Object o) {
+         if ((o == null) || (!(o instanceof RequestKey))) {
+            return false;
+         }
+         RequestKey k = (RequestKey) o;
+         return method.equals(k.method) && uri.equals(k.uri) && headers.equals(k.headers);
+      }
+   }
+
+   private static final class BufferedResponse {
+      private final HttpResponse response;
+      private final ByteBuffer content;
+
+      private BufferedResponse(HttpResponse response, byte[] content) {
+         this.response = response;
+         this.content = ByteBuffer.wrap(content).asReadOnlyBuffer();
+      }
+
+      private HttpResponse replay() {
+         return new HttpResponse() {
+            @Override
+            public HttpStatusCode getStatusCode() {
+               return response.getStatusCode();
+            }
+
+            @Override
+            public boolean hasHeader(Header<?> header) {
+               return response.hasHeader(header);
+            }
+
+            @Override
+            public <T> T getHeader(Header<T> header) {
+               return response.getHeader(header);
+            }
+
+            @Override
+            public <R> CompletableFuture<R> consumeContent(Function<ReadableByteChannelMaster, AioSlave<R>> consumerFactory) {
+               ByteBufferReadableByteChannelMaster master = new ByteBufferReadableByteChannelMaster(content);
+               AioSlave<R> consumer = consumerFactory.apply(master);
+               return master.execute(consumer, Runnable::run); // Safe to be sync, because content is in memory
+            }
+         };
+      }
+   }
+}
@@ -38,10 +38,12 @@ import com.vanillasource.gerec.AcceptMediaType;
 import com.vanillasource.gerec.ContentMediaType;
 import com.vanillasource.aio.AioSlave;
 import com.vanillasource.aio.channel.ReadableByteChannelMaster;
+import com.vanillasource.aio.channel.ContentTooLargeException;
 import java.net.URI;
 import java.util.function.Function;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CompletionException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import java.io.ByteArrayInputStream;
@@ -52,6 +54,7 @@ import java.util.function.Consumer;
  */
 public class HttpClientResourceReference implements ResourceReference {
    private static final Logger logger = LoggerFactory.getLogger(HttpClientResourceReference.class);
+   private static final int MAX_ERROR_BODY_SIZE = 1024*1024;
    private final HttpClient asyncHttpClient;
    private final URI uri;
 
@@ -62,41 +65,41 @@ public class HttpClientResourceReference implements ResourceReference {
 
    @Override
    public Request prepareHead(HttpRequest.HttpRequestChange change) {
-      return request(HttpClient::doHead, uri, change);
+      return request("HEAD", HttpClient::doHead, uri, change);
    }
 
    @Override
    public Request prepareGet(HttpRequest.HttpRequestChange change) {
-      return request(HttpClient::doGet, uri, change);
+      return request("GET", HttpClient::doGet, uri, change);
    }
 
    @Override
    public <R> Request preparePost(ContentMediaType<R> contentType, R content, HttpRequest.HttpRequestChange change) {
-      return request(HttpClient::doPost, uri, change
+      return request("POST", HttpClient::doPost, uri, change
             .and(contentType::applyAsContent)
             .and(request -> contentType.serialize(content, request)));
    }
 
    @Override
    public <R> Request preparePut(ContentMediaType<R> contentType, R content, HttpRequest.HttpRequestChange change) {
-      return request(HttpClient::doPut, uri, change
+      return request("PUT", HttpClient::doPut, uri, change
             .and(contentType::applyAsContent)
             .and(request -> contentType.serialize(content, request)));
    }
 
    @Override
    public Request prepareDelete(HttpRequest.HttpRequestChange change) {
-      return request(HttpClient::doDelete, uri, change);
+      return request("DELETE", HttpClient::doDelete, uri, change);
    }
 
    @Override
    public <R> Request prepareOptions(ContentMediaType<R> contentType, R content, HttpRequest.HttpRequestChange change) {
-      return request(HttpClient::doOptions, uri, change
+      return request("OPTIONS", HttpClient::doOptions, uri, change
             .and(contentType::applyAsContent)
             .and(request -> contentType.serialize(content, request)));
    }
 
-   private Request request(HttpClientCall call, URI uri, HttpRequest.HttpRequestChange change) {
+   private Request request(String method, HttpClientCall call, URI uri, HttpRequest.HttpRequestChange change) {
       return new Request() {
          @Override
          public <T> CompletableFuture<ContentResponse<T>> sendResponse(AcceptMediaType<T> acceptType, HttpRequest.HttpRequestChange additionalChange) {
@@ -104,6 +107,16 @@ public class HttpClientResourceReference implements ResourceReference {
                .thenCompose(response -> createResponse(response, acceptType));
          }
 
+         @Override
+         public String getMethod() {
+            return method;
+         }
+
+         @Override
+         public URI getUri() {
+            return uri;
+         }
+
          @Override
          public byte[] suspend() {
             SuspendingHttpClient suspendingClient = new SuspendingHttpClient();
@@ -116,6 +129,9 @@ public class HttpClientResourceReference implements ResourceReference {
    @Override
    public Request prepareResume(byte[] suspendedRequest) {
       return new Request() {
+         private volatile String method;
+         private volatile URI uri;
+
          @Override
          public <T> CompletableFuture<ContentResponse<T>> sendResponse(AcceptMediaType<T> acceptType, HttpRequest.HttpRequestChange additionalChange) {
             SuspendingHttpClient suspendingClient = new SuspendingHttpClient(suspendedRequest);
@@ -123,6 +139,26 @@ public class HttpClientResourceReference implements ResourceReference {
                .thenCompose(uriResponseEntry -> new HttpClientResourceReference(asyncHttpClient, uriResponseEntry.getKey()).createResponse(uriResponseEntry.getValue(), acceptType));
          }
 
+         @Override
+         public String getMethod() {
+            String parsedMethod = method;
+            if (parsedMethod == null) {
+               parsedMethod = new SuspendingHttpClient(suspendedRequest).getMethod();
+               method = parsedMethod;
+            }
+            return parsedMethod;
+         }
+
+         @Override
+         public URI getUri() {
+            URI parsedUri = uri;
+            if (parsedUri == null) {
+               parsedUri = new SuspendingHttpClient(suspendedRequest).getUri();
+               uri = parsedUri;
+            }
+            return parsedUri;
+         }
+
          @Override
          public byte[] suspend() {
             return suspendedRequest;
@@ -152,7 +188,14 @@ public class HttpClientResourceReference implements ResourceReference {
    }
 
    private <T> CompletableFuture<ContentResponse<T>> error(HttpResponse response, Exception cause) {
-      return new ByteArrayAcceptType(MediaTypeSpecification.WILDCARD).deserialize(response, this::follow)
+      return new ByteArrayAcceptType(MediaTypeSpecification.WILDCARD, MAX_ERROR_BODY_SIZE).deserialize(response, this::follow)
+         .exceptionally(exception -> {
+            if (exception.getCause() instanceof ContentTooLargeException) {
+               logger.warn("error body from '{}' is larger than {} bytes, ignoring it", uri, MAX_ERROR_BODY_SIZE);
+               return new byte[0];
+            }
+            throw exception instanceof CompletionException ? (CompletionException) exception : new CompletionException(exception);
+         })
          .thenApply(content -> {
             logger.debug("cached full error contents, returning with exception", cause);
             throw new HttpErrorException("error in response from '"+uri+"', status code: "+response.getStatusCode(), new HttpErrorResponse(response, content));
@@ -24,14 +24,15 @@ import com.vanillasource.gerec.Header;
 import static com.vanillasource.gerec.http.Headers.*;
 import java.net.URI;
 import java.util.concurrent.CompletableFuture;
-import java.io.ByteArrayOutputStream;
-import java.io.DataOutputStream;
+import java.io.OutputStream;
 import java.io.UncheckedIOException;
 import java.io.IOException;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.AbstractMap;
+import java.util.Arrays;
 import com.vanillasource.aio.AioSlave;
+import com.vanillasource.aio.ByteBufferPools;
 import com.vanillasource.aio.channel.WritableByteChannelMaster;
 import java.util.function.Function;
 import java.util.List;
@@ -41,30 +42,156 @@ import java.io.DataInputStream;
 import java.net.URISyntaxException;
 import com.vanillasource.aio.channel.ByteArrayWritableByteChannelSlave;
 import java.util.ArrayList;
+import java.nio.ByteBuffer;
+import java.nio.BufferUnderflowException;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.DataFormatException;
 import org.slf4j.LoggerFactory;
 import org.slf4j.Logger;
 
 /**
  * An http client which can suspend and re-execute a single call.
+ * <p>
+ * Calls are suspended in a versioned binary format. Lengths are written as variable length integers,
+ * common header names as a single byte, and only the last values set for each header are written.
+ * Content is written directly into the suspended call, optionally compressed if it is large. On resume,
+ * content is streamed from the suspended bytes without copying. Calls suspended in the original format,
+ * which starts with the action code instead of a format marker, can still be resumed.
  */
 public final class SuspendingHttpClient implements HttpClient {
    private static final Logger logger = LoggerFactory.getLogger(SuspendingHttpClient.class);
-   private byte[] suspendedCall;
+   private static final String[] METHODS = { null, "HEAD", "OPTIONS", "GET", "POST", "PUT", "DELETE" };
+   private static final int FORMAT_V2 = 0xC2;
+   private static final int END = 0;
+   private static final int HEADER = 1;
+   private static final int CONTENT = 2;
+   private static final int COMPRESSED_CONTENT = 3;
+   private static final int INFLATE_BUFFER_SIZE = 8192;
+   /**
+    * Header names written as their index in this table. The table may only be extended at the end.
+    */
+   private static final String[] HEADER_NAMES = { null, "Accept", "Accept-Encoding", "Accept-Language",
+      "Authorization", "Cache-Control", "Content-Length", "Content-Type", "Cookie", "If-Match",
+      "If-Modified-Since", "If-None-Match", "If-Unmodified-Since", "User-Agent" };
+   private final int compressionThreshold;
+   private ByteBuffer suspendedCall;
 
    public SuspendingHttpClient() {
+      this(Integer.MAX_VALUE);
+   }
+
+   /**
+    * @param compressionThreshold Content of at least this many bytes is compressed when suspended,
+    * if compressing makes it smaller.
+    */
+   public SuspendingHttpClient(int compressionThreshold) {
+      this.compressionThreshold = compressionThreshold;
    }
 
    public SuspendingHttpClient(byte[] suspendedCall) {
-      this.suspendedCall = suspendedCall;
+      this(ByteBuffer.wrap(suspendedCall));
+   }
+
+   /**
+    * Resume a call from the remaining bytes of the given buffer, which may be for example a region of
+    * a memory mapped file. The buffer is not copied, so its contents must not change while this client
+    * is used.
+    */
+   public SuspendingHttpClient(ByteBuffer suspendedCall) {
+      this(Integer.MAX_VALUE);
+      this.suspendedCall = suspendedCall.slice();
    }
 
    public CompletableFuture<Map.Entry<URI, HttpResponse>> execute(HttpClient client) {
+      SuspendedCall call = parse(true);
+      URI uri = call.uri;
+      switch (call.actionCode) {
+         case 1:
+            logger.debug("executing suspended HEAD {}", uri);
+            return client.doHead(uri, call.change)
+               .thenApply(response -> new AbstractMap.SimpleEntry<>(uri, response));
+         case 2:
+            logger.debug("executing suspended OPTIONS {}", uri);
+            return client.doOptions(uri, call.change)
+               .thenApply(response -> new AbstractMap.SimpleEntry<>(uri, response));
+         case 3:
+            logger.debug("executing suspended GET {}", uri);
+            return client.doGet(uri, call.change)
+               .thenApply(response -> new AbstractMap.SimpleEntry<>(uri, response));
+         case 4:
+            logger.debug("executing suspended POST {}", uri);
+            return client.doPost(uri, call.change)
+               .thenApply(response -> new AbstractMap.SimpleEntry<>(uri, response));
+         case 5:
+            logger.debug("executing suspended PUT {}", uri);
+            return client.doPut(uri, call.change)
+               .thenApply(response -> new AbstractMap.SimpleEntry<>(uri, response));
+         case 6:
+            logger.debug("executing suspended DELETE {}", uri);
+            return client.doDelete(uri, call.change)
+               .thenApply(response -> new AbstractMap.SimpleEntry<>(uri, response));
+         default:
+            throw new IllegalArgumentException("action code "+call.actionCode+" in suspended call is unknown");
+      }
+   }
+
+   /**
+    * @return The http method of the suspended call.
+    */
+   public String getMethod() {
+      int actionCode = parse(false).actionCode;
+      if (actionCode < 1 || actionCode >= METHODS.length) {
+         throw new IllegalArgumentException("action code "+actionCode+" in suspended call is unknown");
+      }
+      return METHODS[actionCode];
+   }
+
+   /**
+    * @return The uri of the suspended call.
+    */
+   public URI getUri() {
+      return parse(false).uri;
+   }
+
+   public byte[] suspend() {
+      if (suspendedCall == null) {
+         throw new IllegalStateException("there was no suspended call yet");
+      }
+      if (suspendedCall.hasArray() && suspendedCall.arrayOffset() == 0 && suspendedCall.remaining() == suspendedCall.array().length) {
+         return suspendedCall.array();
+      }
+      byte[] bytes = new byte[suspendedCall.remaining()];
+      suspendedCall.duplicate().get(bytes);
+      return bytes;
+   }
+
+   private SuspendedCall parse(boolean withChange) {
+      if (suspendedCall == null) {
+         throw new IllegalStateException("there was no suspended call yet");
+      }
+      try {
+         if (suspendedCall.hasRemaining() && (suspendedCall.get(suspendedCall.position()) & 0xFF) == FORMAT_V2) {
+            return new SuspendedCallReader(suspendedCall).read(withChange);
+         } else {
+            return parseLegacy(withChange);
+         }
+      } catch (BufferUnderflowException e) {
+         throw new IllegalArgumentException("suspended call is truncated", e);
+      } catch (URISyntaxException e) {
+         throw new IllegalArgumentException("could not parse uri in suspended call", e);
+      }
+   }
+
+   private SuspendedCall parseLegacy(boolean withChange) throws URISyntaxException {
       try {
-         DataInputStream dis = new DataInputStream(new ByteArrayInputStream(suspendedCall));
+         DataInputStream dis = new DataInputStream(new ByteArrayInputStream(suspend()));
          int actionCode = dis.readByte();
          URI uri = new URI(dis.readUTF());
          HttpRequest.HttpRequestChange change = HttpRequest.HttpRequestChange.NO_CHANGE;
-         while (true) {
+         while (withChange) {
             int contentCode = dis.readByte();
             if (contentCode == 10) {
                String headerName = dis.readUTF();
@@ -85,117 +212,60 @@ public final class SuspendingHttpClient implements HttpClient {
                break;
             }
          }
-         switch (actionCode) {
-            case 1:
-               logger.debug("executing suspended HEAD {}", uri);
-               return client.doHead(uri, change)
-                  .thenApply(response -> new AbstractMap.SimpleEntry<>(uri, response));
-            case 2:
-               logger.debug("executing suspended OPTIONS {}", uri);
-               return client.doOptions(uri, change)
-                  .thenApply(response -> new AbstractMap.SimpleEntry<>(uri, response));
-            case 3:
-               logger.debug("executing suspended GET {}", uri);
-               return client.doGet(uri, change)
-                  .thenApply(response -> new AbstractMap.SimpleEntry<>(uri, response));
-            case 4:
-               logger.debug("executing suspended POST {}", uri);
-               return client.doPost(uri, change)
-                  .thenApply(response -> new AbstractMap.SimpleEntry<>(uri, response));
-            case 5:
-               logger.debug("executing suspended PUT {}", uri);
-               return client.doPut(uri, change)
-                  .thenApply(response -> new AbstractMap.SimpleEntry<>(uri, response));
-            case 6:
-               logger.debug("executing suspended DELETE {}", uri);
-               return client.doDelete(uri, change)
-                  .thenApply(response -> new AbstractMap.SimpleEntry<>(uri, response));
-            default:
-               throw new IllegalArgumentException("action code "+actionCode+" in suspended call is unknown");
-         }
+         return new SuspendedCall(actionCode, uri, change);
       } catch (IOException e) {
          throw new UncheckedIOException("unable to parse suspended call", e);
-      } catch (URISyntaxException e) {
-         throw new IllegalArgumentException("could not parse uri in suspended call", e);
       }
    }
 
-   public byte[] suspend() {
-      if (suspendedCall == null) {
-         throw new IllegalStateException("there was no suspended call yet");
-      }
-      return suspendedCall;
-   }
-
    private void suspend(int actionCode, URI uri, HttpRequest.HttpRequestChange change) {
       if (suspendedCall != null) {
          throw new IllegalStateException("there is already a suspended call, can not suspend more then one call");
       }
-      try {
-         ByteArrayOutputStream bos = new ByteArrayOutputStream();
-         DataOutputStream dos = new DataOutputStream(bos);
-         dos.writeByte(actionCode);
-         dos.writeUTF(uri.toString());
-         change.applyTo(new HttpRequest() {
-            private final Map<String, Object> headers = new HashMap<>();
-
-            @Override
-            public boolean hasHeader(Header<?> header) {
-               return headers.containsKey(header.getName().toUpperCase());
-            }
+      SuspendedCallWriter writer = new SuspendedCallWriter();
+      writer.write(FORMAT_V2);
+      writer.write(actionCode);
+      writer.writeString(uri.toString());
+      Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+      change.applyTo(new HttpRequest() {
+         @Override
+         public boolean hasHeader(Header<?> header) {
+            return headers.containsKey(header.getName());
+         }
 
-            @Override
-            @SuppressWarnings("unchecked")
-            public <T> T getHeader(Header<T> header) {
-               return (T) headers.get(header.getName().toUpperCase());
-            }
+         @Override
+         public <T> T getHeader(Header<T> header) {
+            List<String> values = headers.get(header.getName());
+            return values == null ? null : header.deserialize(values);
+         }
 
-            @Override
-            public <T> void setHeader(Header<T> header, T value) {
-               headers.put(header.getName().toUpperCase(), value);
-               try {
-                  dos.writeByte(10);
-                  dos.writeUTF(header.getName());
-                  List<String> values = header.serialize(value);
-                  dos.writeInt(values.size());
-                  for (String headerValue: values) {
-                     dos.writeUTF(headerValue);
-                  }
-               } catch (IOException e) {
-                  throw new UncheckedIOException("can not write header", e);
-               }
-            }
+         @Override
+         public <T> void setHeader(Header<T> header, T value) {
+            headers.put(header.getName(), header.serialize(value));
+         }
 
-            @Override
-            public void setByteProducer(Function<WritableByteChannelMaster, AioSlave<Void>> producerFactory) {
-               ByteArrayOutputStream bos = new ByteArrayOutputStream();
-               OutputStreamWritableByteChannelMaster master = new OutputStreamWritableByteChannelMaster(bos);
-               AioSlave<Void> follower = producerFactory.apply(master);
-               master.execute(follower, Runnable::run);
-               byte[] content = bos.toByteArray();
-               try {
-                  dos.writeByte(11);
-                  dos.writeInt(content.length);
-                  dos.write(content);
-               } catch (IOException e) {
-                  throw new UncheckedIOException("can not write content", e);
-               }
-            }
+         @Override
+         public void setHeaderValues(String name, List<String> values) {
+            headers.put(name, values);
+         }
 
-            @Override
-            public void setByteProducer(Function<WritableByteChannelMaster, AioSlave<Void>> producerFactory, long length) {
-               setByteProducer(producerFactory);
-            }
-         });
-         dos.writeByte(0x7F);
-         dos.close();
-         suspendedCall = bos.toByteArray();
-      } catch (IOException e) {
-         throw new UncheckedIOException(e);
+         @Override
+         public void setByteProducer(Function<WritableByteChannelMaster, AioSlave<Void>> producerFactory) {
+            writer.writeContent(producerFactory, compressionThreshold);
+         }
+
+         @Override
+         public void setByteProducer(Function<WritableByteChannelMaster, AioSlave<Void>> producerFactory, long length) {
+            setByteProducer(producerFactory);
+         }
+      });
+      for (Map.Entry<String, List<String>> header: headers.entrySet()) {
+         writer.writeHeader(header.getKey(), header.getValue());
       }
+      writer.write(END);
+      suspendedCall = ByteBuffer.wrap(writer.toByteArray());
    }
 
-
    @Override
    public CompletableFuture<HttpResponse> doHead(URI uri, HttpRequest.HttpRequestChange change) {
       logger.debug("suspending HEAD {}", uri);
@@ -237,4 +307,299 @@ public final class SuspendingHttpClient implements HttpClient {
       suspend(6, uri, change);
       return new CompletableFuture<>();
    }
+
+   private static final class SuspendedCall {
+      private final int actionCode;
+      private final URI uri;
+      private final HttpRequest.HttpRequestChange change;
+
+      private SuspendedCall(int actionCode, URI uri, HttpRequest.HttpRequestChange change) {
+         this.actionCode = actionCode;
+         this.uri = uri;
+         this.change = change;
+      }
+   }
+
+   /**
+    * Writes the v2 format into a growing array. Content is written by its producer directly into
+    * this array, the length before it is patched in afterwards.
+    */
+   private static final class SuspendedCallWriter extends OutputStream {
+      private static final int MAX_SIZE = Integer.MAX_VALUE - 8;
+      private static final int RESERVED_LENGTH_SIZE = 5;
+      private byte[] bytes = new byte[256];
+      private int size = 0;
+
+      @Override
+      public void write(int b) {
+         ensureCapacity(1);
+         bytes[size++] = (byte) b;
+      }
+
+      @Override
+      public void write(byte[] source, int offset, int length) {
+         ensureCapacity(length);
+         System.arraycopy(source, offset, bytes, size, length);
+         size += length;
+      }
+
+      /**
+       * The content producer closes its channel, which closes this stream, but the call is still being written.
+       */
+      @Override
+      public void close() {
+      }
+
+      private void writeVarint(long value) {
+         while ((value & ~0x7FL) != 0) {
+            write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+         }
+         write((int) value);
+      }
+
+      private void writeString(String value) {
+         byte[] valueBytes = value.getBytes(StandardCharsets.UTF_8);
+         writeVarint(valueBytes.length);
+         write(valueBytes, 0, valueBytes.length);
+      }
+
+      private void writeHeader(String name, List<String> values) {
+         write(HEADER);
+         int nameIndex = headerNameIndex(name);
+         writeVarint(nameIndex);
+         if (nameIndex == 0) {
+            writeString(name);
+         }
+         writeVarint(values.size());
+         for (String value: values) {
+            writeString(value);
+         }
+      }
+
+      private void writeContent(Function<WritableByteChannelMaster, AioSlave<Void>> producerFactory, int compressionThreshold) {
+         int recordStart = size;
+         write(CONTENT);
+         int lengthPosition = size;
+         ensureCapacity(RESERVED_LENGTH_SIZE);
+         size += RESERVED_LENGTH_SIZE;
+         int contentStart = size;
+         OutputStreamWritableByteChannelMaster master = new OutputStreamWritableByteChannelMaster(this);
+         master.execute(producerFactory.apply(master), Runnable::run);
+         int length = size - contentStart;
+         if (length >= compressionThreshold && compress(recordStart, contentStart, length)) {
+            return;
+         }
+         for (int i=0; i<RESERVED_LENGTH_SIZE-1; i++) {
+            bytes[lengthPosition+i] = (byte) ((length & 0x7F) | 0x80);
+            length >>>= 7;
+         }
+         bytes[lengthPosition+RESERVED_LENGTH_SIZE-1] = (byte) length;
+      }
+
+      /**
+       * Replace the content record with a compressed one, if compressing makes it smaller.
+       * @return Whether the content was compressed.
+       */
+      private boolean compress(int recordStart, int contentStart, int length) {
+         Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+         try {
+            deflater.setInput(bytes, contentStart, length);
+            deflater.finish();
+            byte[] compressed = new byte[length];
+            int compressedLength = 0;
+            while (!deflater.finished() && compressedLength < compressed.length) {
+               compressedLength += deflater.deflate(compressed, compressedLength, compressed.length - compressedLength);
+            }
+            if (!deflater.finished() || compressedLength + RESERVED_LENGTH_SIZE >= length) {
+               return false;
+            }
+            size = recordStart;
+            write(COMPRESSED_CONTENT);
+            writeVarint(length);
+            writeVarint(compressedLength);
+            write(compressed, 0, compressedLength);
+            return true;
+         } finally {
+            deflater.end();
+         }
+      }
+
+      private void ensureCapacity(int length) {
+         if ((long) size + length > MAX_SIZE) {
+            throw new IllegalStateException("suspended call would be larger than the maximum of "+MAX_SIZE+" bytes");
+         }
+         if (size + length > bytes.length) {
+            bytes = Arrays.copyOf(bytes, (int) Math.min(MAX_SIZE, Math.max(2L * bytes.length, size + length)));
+         }
+      }
+
+      private byte[] toByteArray() {
+         return Arrays.copyOf(bytes, size);
+      }
+
+      private static int headerNameIndex(String name) {
+         for (int i=1; i<HEADER_NAMES.length; i++) {
+            if (HEADER_NAMES[i].equalsIgnoreCase(name)) {
+               return i;
+            }
+         }
+         return 0;
+      }
+   }
+
+   /**
+    * Reads the v2 format. Headers are collected into a single change, content is given to the
+    * request as a region of the suspended call.
+    */
+   private static final class SuspendedCallReader {
+      private final ByteBuffer input;
+
+      private SuspendedCallReader(ByteBuffer suspendedCall) {
+         this.input = suspendedCall.duplicate();
+      }
+
+      private SuspendedCall read(boolean withChange) throws URISyntaxException {
+         input.get();
+         int actionCode = input.get() & 0xFF;
+         URI uri = new URI(readString());
+         if (!withChange) {
+            return new SuspendedCall(actionCode, uri, HttpRequest.HttpRequestChange.NO_CHANGE);
+         }
+         List<String> headerNames = new ArrayList<>();
+         List<List<String>> headerValues = new ArrayList<>();
+         HttpRequest.HttpRequestChange contentChange = HttpRequest.HttpRequestChange.NO_CHANGE;
+         int recordCode;
+         while ((recordCode = input.get() & 0xFF) != END) {
+            if (recordCode == HEADER) {
+               headerNames.add(readHeaderName());
+               int size = readLength();
+               List<String> values = new ArrayList<>(size);
+               for (int i=0; i<size; i++) {
+                  values.add(readString());
+               }
+               headerValues.add(values);
+            } else if (recordCode == CONTENT) {
+               ByteBuffer content = readRegion(readLength());
+               contentChange = request ->
+                  request.setByteProducer(output -> new ByteArrayWritableByteChannelSlave(output, content), content.remaining());
+            } else if (recordCode == COMPRESSED_CONTENT) {
+               int length = readLength(Integer.MAX_VALUE);
+               ByteBuffer compressed = readRegion(readLength());
+               contentChange = request ->
+                  request.setByteProducer(output -> new InflatingWritableByteChannelSlave(output, compressed), length);
+            } else {
+               throw new IllegalArgumentException("record code "+recordCode+" in suspended call is unknown");
+            }
+         }
+         HttpRequest.HttpRequestChange content = contentChange;
+         return new SuspendedCall(actionCode, uri, request -> {
+            for (int i=0; i<headerNames.size(); i++) {
+               request.setHeaderValues(headerNames.get(i), headerValues.get(i));
+            }
+            content.applyTo(request);
+         });
+      }
+
+      private String readHeaderName() {
+         int nameIndex = readLength(HEADER_NAMES.length - 1);
+         if (nameIndex == 0) {
+            return readString();
+         }
+         return HEADER_NAMES[nameIndex];
+      }
+
+      private String readString() {
+         ByteBuffer region = readRegion(readLength());
+         if (region.hasArray()) {
+            return new String(region.array(), region.arrayOffset() + region.position(), region.remaining(), StandardCharsets.UTF_8);
+         }
+         return StandardCharsets.UTF_8.decode(region).toString();
+      }
+
+      private ByteBuffer readRegion(int length) {
+         ByteBuffer region = input.slice();
+         region.limit(length);
+         input.position(input.position() + length);
+         return region;
+      }
+
+      /**
+       * Read a length that must fit into the remaining bytes.
+       */
+      private int readLength() {
+         return readLength(input.remaining());
+      }
+
+      private int readLength(int max) {
+         long value = 0;
+         for (int shift = 0; shift < 35; shift += 7) {
+            int b = input.get() & 0xFF;
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+               if (value > max) {
+                  throw new IllegalArgumentException("length "+value+" in suspended call is larger than the maximum of "+max);
+               }
+               return (int) value;
+            }
+         }
+         throw new IllegalArgumentException("length in suspended call is too long");
+      }
+   }
+
+   /**
+    * Streams deflated content to the channel, inflating it through a pooled buffer.
+    */
+   private static final class InflatingWritableByteChannelSlave implements AioSlave<Void> {
+      private final WritableByteChannel channel;
+      private final Inflater inflater = new Inflater();
+      private final ByteBuffer buffer = ByteBufferPools.heap().acquire(INFLATE_BUFFER_SIZE);
+
+      private InflatingWritableByteChannelSlave(WritableByteChannel channel, ByteBuffer compressed) {
+         this.channel = channel;
+         if (compressed.hasArray()) {
+            inflater.setInput(compressed.array(), compressed.arrayOffset() + compressed.position(), compressed.remaining());
+         } else {
+            byte[] compressedBytes = new byte[compressed.remaining()];
+            compressed.duplicate().get(compressedBytes);
+            inflater.setInput(compressedBytes);
+         }
+         buffer.limit(0);
+      }
+
+      @Override
+      public void onReady() {
+         try {
+            while (true) {
+               if (buffer.hasRemaining()) {
+                  channel.write(buffer);
+                  if (buffer.hasRemaining()) {
+                     return;
+                  }
+               }
+               if (inflater.finished()) {
+                  channel.close();
+                  return;
+               }
+               buffer.clear();
+               int length = inflater.inflate(buffer.array(), buffer.arrayOffset(), buffer.remaining());
+               buffer.limit(length);
+               if (length == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                  throw new IllegalArgumentException("compressed content in suspended call is truncated");
+               }
+            }
+         } catch (IOException e) {
+            throw new UncheckedIOException(e);
+         } catch (DataFormatException e) {
+            throw new IllegalArgumentException("compressed content in suspended call is corrupt", e);
+         }
+      }
+
+      @Override
+      public Void onCompleted() {
+         inflater.end();
+         ByteBufferPools.heap().release(buffer);
+         return null;
+      }
+   }
 }
@@ -0,0 +1,149 @@
+/**
+ * Copyright (C) 2020 VanillaSource
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.vanillasource.aio;
+
+import org.testng.annotations.*;
+import static org.testng.Assert.*;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+
+@Test
+public class SizeClassByteBufferPoolTests {
+   private SizeClassByteBufferPool pool;
+
+   public void testAcquiredBufferHasRequestedSizeRemaining() {
+      ByteBuffer buffer = pool.acquire(1000);
+
+      assertEquals(buffer.position(), 0);
+      assertEquals(buffer.remaining(), 1000);
+   }
+
+   public void testAcquiredBufferHasPowerOfTwoCapacity() {
+      ByteBuffer buffer = pool.acquire(1000);
+
+      assertEquals(buffer.capacity(), 1024);
+   }
+
+   public void testReleasedBufferIsReusedAndCleared() {
+      ByteBuffer buffer = pool.acquire(1000);
+      buffer.put(new byte[100]);
+      pool.release(buffer);
+
+      ByteBuffer reusedBuffer = pool.acquire(600);
+
+      assertSame(reusedBuffer, buffer);
+      assertEquals(reusedBuffer.position(), 0);
+      assertEquals(reusedBuffer.remaining(), 600);
+   }
+
+   public void testBufferOfDifferentSizeClassIsNotReused() {
+      ByteBuffer buffer = pool.acquire(1000);
+      pool.release(buffer);
+
+      assertNotSame(pool.acquire(5000), buffer);
+   }
+
+   public void testBufferReleasedOnOtherThreadIsReusedThroughSharedCache() {
+      pool = new SizeClassByteBufferPool(false, 0, 10, false);
+      ByteBuffer buffer = pool.acquire(1000);
+      CompletableFuture.runAsync(() -> pool.release(buffer)).join();
+
+      assertSame(pool.acquire(1000), buffer);
+   }
+
+   public void testBuffersAreNotKeptOverCacheSizes() {
+      pool = new SizeClassByteBufferPool(false, 1, 1, false);
+      ByteBuffer buffer1 = pool.acquire(1000);
+      ByteBuffer buffer2 = pool.acquire(1000);
+      ByteBuffer buffer3 = pool.acquire(1000);
+      pool.release(buffer1);
+      pool.release(buffer2);
+      pool.release(buffer3);
+
+      ByteBuffer reused1 = pool.acquire(1000);
+      ByteBuffer reused2 = pool.acquire(1000);
+      ByteBuffer reused3 = pool.acquire(1000);
+
+      assertSame(reused1, buffer1);
+      assertSame(reused2, buffer2);
+      assertNotSame(reused3, buffer3);
+   }
+
+   public void testLargeBuffersAreNotPooled() {
+      ByteBuffer buffer = pool.acquire(100000);
+      pool.release(buffer);
+
+      assertEquals(buffer.capacity(), 100000);
+      assertNotSame(pool.acquire(100000), buffer);
+   }
+
+   public void testDirectPoolReturnsDirectBuffers() {
+      pool = new SizeClassByteBufferPool(true, false);
+
+      assertTrue(pool.acquire(1000).isDirect());
+   }
+
+   public void testBuffersOfOtherKindAreNotPooled() {
+      ByteBuffer direct = ByteBuffer.allocateDirect(1024);
+      pool.release(direct);
+
+      assertFalse(pool.acquire(1000).isDirect());
+   }
+
+   @Test(expectedExceptions = IllegalArgumentException.class)
+   public void testNegativeSizeIsRejected() {
+      pool.acquire(-1);
+   }
+
+   public void testLeakDetectionReportsBuffersNotReleased() throws Exception {
+      pool = new SizeClassByteBufferPool(false, true);
+      pool.acquire(1000);
+
+      for (int i=0; i<100 && pool.getLeakCount() == 0; i++) {
+         System.gc();
+         Thread.sleep(10);
+      }
+
+      assertEquals(pool.getLeakCount(), 1);
+   }
+
+   public void testLeakDetectionDoesNotReportReleasedBuffers() throws Exception {
+      pool = new SizeClassByteBufferPool(false, 0, 0, true);
+      pool.release(pool.acquire(1000));
+
+      System.gc();
+      Thread.sleep(100);
+
+      assertEquals(pool.getLeakCount(), 0);
+   }
+
+   public void testLeakDetectionIgnoresBuffersReleasedTwice() {
+      pool = new SizeClassByteBufferPool(false, true);
+      ByteBuffer buffer = pool.acquire(1000);
+      pool.release(buffer);
+      pool.release(buffer);
+
+      assertNotSame(pool.acquire(1000), pool.acquire(1000));
+   }
+
+   @BeforeMethod
+   protected void setUp() {
+      pool = new SizeClassByteBufferPool(false, false);
+   }
+}
@@ -0,0 +1,119 @@
+/**
+ * Copyright (C) 2018 VanillaSource
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.vanillasource.aio.channel;
+
+import org.testng.annotations.*;
+import static org.testng.Assert.*;
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+
+@Test
+public class ByteArrayReadableByteChannelSlaveTests {
+   private byte[] content;
+
+   public void testContentOfExpectedSizeIsRead() {
+      byte[] result = read(master(content), content.length, 100000);
+
+      assertEquals(result, content);
+   }
+
+   public void testContentOfUnknownSizeIsRead() {
+      byte[] result = read(master(content), -1, 100000);
+
+      assertEquals(result, content);
+   }
+
+   public void testContentLargerThanExpectedIsRead() {
+      byte[] result = read(master(content), 10, 100000);
+
+      assertEquals(result, content);
+   }
+
+   public void testContentSmallerThanExpectedIsRead() {
+      byte[] result = read(master(content), 20000, 100000);
+
+      assertEquals(result, content);
+   }
+
+   public void testContentReadByteByByteIsRead() {
+      byte[] result = read(byteByByteMaster(content), -1, 100000);
+
+      assertEquals(result, content);
+   }
+
+   public void testEmptyContentIsRead() {
+      byte[] result = read(master(new byte[0]), 0, 100000);
+
+      assertEquals(result, new byte[0]);
+   }
+
+   public void testContentOfExactlyMaximumSizeIsRead() {
+      byte[] result = read(master(content), -1, content.length);
+
+      assertEquals(result, content);
+   }
+
+   @Test(expectedExceptions = ContentTooLargeException.class)
+   public void testContentLargerThanMaximumSizeFails() {
+      read(master(content), -1, content.length-1);
+   }
+
+   @Test(expectedExceptions = ContentTooLargeException.class)
+   public void testContentLargerThanMaximumButExpectedSmallerFails() {
+      read(master(content), 10, 100);
+   }
+
+   public void testExpectedSizeLargerThanMaximumFailsWithoutReading() {
+      InputStreamReadableByteChannelMaster master = master(content);
+      try {
+         new ByteArrayReadableByteChannelSlave(master, content.length, 100).onReady();
+         fail("slave did not fail on too large content");
+      } catch (ContentTooLargeException e) {
+         assertFalse(master.isOpen());
+      }
+   }
+
+   private byte[] read(InputStreamReadableByteChannelMaster master, long expectedSize, int maxSize) {
+      ByteArrayReadableByteChannelSlave slave = new ByteArrayReadableByteChannelSlave(master, expectedSize, maxSize);
+      while (master.isOpen()) {
+         slave.onReady();
+      }
+      return slave.onCompleted();
+   }
+
+   private InputStreamReadableByteChannelMaster master(byte[] bytes) {
+      return new InputStreamReadableByteChannelMaster(new ByteArrayInputStream(bytes));
+   }
+
+   private InputStreamReadableByteChannelMaster byteByByteMaster(byte[] bytes) {
+      return new InputStreamReadableByteChannelMaster(new ByteArrayInputStream(bytes) {
+         @Override
+         public synchronized int read(byte[] buffer, int offset, int length) {
+            return super.read(buffer, offset, Math.min(length, 1));
+         }
+      });
+   }
+
+   @BeforeMethod
+   protected void setUp() {
+      content = new byte[12345];
+      Arrays.fill(content, (byte) 'a');
+      content[content.length-1] = 'b';
+   }
+}
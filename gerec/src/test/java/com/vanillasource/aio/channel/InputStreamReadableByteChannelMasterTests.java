@@ -0,0 +1,118 @@
+/**
+ * Copyright (C) 2020 VanillaSource
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.vanillasource.aio.channel;
+
+import org.testng.annotations.*;
+import static org.testng.Assert.*;
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+
+@Test
+public class InputStreamReadableByteChannelMasterTests {
+   private InputStreamReadableByteChannelMaster master;
+
+   public void testHeapBufferIsFilled() throws Exception {
+      ByteBuffer buffer = ByteBuffer.allocate(10);
+
+      int length = master.read(buffer);
+
+      assertEquals(length, 6);
+      assertEquals(content(buffer), "abcdef");
+   }
+
+   public void testHeapBufferIsFilledFromItsPosition() throws Exception {
+      ByteBuffer buffer = ByteBuffer.allocate(10);
+      buffer.put((byte) 'x');
+
+      master.read(buffer);
+
+      assertEquals(content(buffer), "xabcdef");
+   }
+
+   public void testSliceOfHeapBufferIsFilledAtItsOffset() throws Exception {
+      ByteBuffer buffer = ByteBuffer.allocate(10);
+      buffer.position(2);
+      ByteBuffer slice = buffer.slice();
+
+      master.read(slice);
+
+      assertEquals(content(slice), "abcdef");
+      assertEquals(new String(buffer.array(), 2, 6), "abcdef");
+   }
+
+   public void testDirectBufferIsFilled() throws Exception {
+      ByteBuffer buffer = ByteBuffer.allocateDirect(10);
+
+      int length = master.read(buffer);
+
+      assertEquals(length, 6);
+      assertEquals(content(buffer), "abcdef");
+   }
+
+   public void testReadsAtMostRemainingBytes() throws Exception {
+      ByteBuffer buffer = ByteBuffer.allocate(4);
+
+      int length = master.read(buffer);
+
+      assertEquals(length, 4);
+      assertEquals(content(buffer), "abcd");
+   }
+
+   public void testEndOfStreamClosesMaster() throws Exception {
+      master.read(ByteBuffer.allocate(10));
+
+      int length = master.read(ByteBuffer.allocate(10));
+
+      assertEquals(length, -1);
+      assertFalse(master.isOpen());
+   }
+
+   public void testScatteringReadFillsBuffersInOrder() throws Exception {
+      ByteBuffer first = ByteBuffer.allocate(2);
+      ByteBuffer second = ByteBuffer.allocateDirect(3);
+      ByteBuffer third = ByteBuffer.allocate(10);
+
+      long length = master.read(new ByteBuffer[] { first, second, third });
+
+      assertEquals(length, 6);
+      assertEquals(content(first), "ab");
+      assertEquals(content(second), "cde");
+      assertEquals(content(third), "f");
+   }
+
+   public void testScatteringReadAtEndOfStreamReturnsEndOfStream() throws Exception {
+      master.read(ByteBuffer.allocate(10));
+
+      long length = master.read(new ByteBuffer[] { ByteBuffer.allocate(2), ByteBuffer.allocate(2) });
+
+      assertEquals(length, -1);
+   }
+
+   private String content(ByteBuffer buffer) {
+      buffer.flip();
+      byte[] bytes = new byte[buffer.remaining()];
+      buffer.get(bytes);
+      return new String(bytes);
+   }
+
+   @BeforeMethod
+   protected void setUp() {
+      master = new InputStreamReadableByteChannelMaster(new ByteArrayInputStream("abcdef".getBytes()));
+   }
+}
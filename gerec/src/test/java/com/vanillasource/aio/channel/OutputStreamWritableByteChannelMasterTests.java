@@ -0,0 +1,87 @@
+/**
+ * Copyright (C) 2020 VanillaSource
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.vanillasource.aio.channel;
+
+import org.testng.annotations.*;
+import static org.testng.Assert.*;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+@Test
+public class OutputStreamWritableByteChannelMasterTests {
+   private ByteArrayOutputStream output;
+   private OutputStreamWritableByteChannelMaster master;
+
+   public void testHeapBufferIsWritten() throws Exception {
+      ByteBuffer buffer = ByteBuffer.wrap("abcdef".getBytes());
+
+      int length = master.write(buffer);
+
+      assertEquals(length, 6);
+      assertFalse(buffer.hasRemaining());
+      assertEquals(output.toString(), "abcdef");
+   }
+
+   public void testOnlyRemainingBytesOfHeapBufferAreWritten() throws Exception {
+      ByteBuffer buffer = ByteBuffer.wrap("abcdef".getBytes());
+      buffer.position(1);
+      buffer.limit(4);
+
+      master.write(buffer.slice());
+
+      assertEquals(output.toString(), "bcd");
+   }
+
+   public void testDirectBufferIsWritten() throws Exception {
+      ByteBuffer buffer = direct(20000);
+
+      int length = master.write(buffer);
+
+      assertEquals(length, 20000);
+      assertEquals(output.size(), 20000);
+      assertEquals(output.toByteArray()[19999], (byte) (19999 % 100));
+   }
+
+   public void testGatheringWriteWritesBuffersInOrder() throws Exception {
+      ByteBuffer first = ByteBuffer.wrap("ab".getBytes());
+      ByteBuffer second = ByteBuffer.allocateDirect(3);
+      second.put("cde".getBytes());
+      second.flip();
+
+      long length = master.write(new ByteBuffer[] { first, second });
+
+      assertEquals(length, 5);
+      assertEquals(output.toString(), "abcde");
+   }
+
+   private ByteBuffer direct(int length) {
+      ByteBuffer buffer = ByteBuffer.allocateDirect(length);
+      for (int i=0; i<length; i++) {
+         buffer.put((byte) (i % 100));
+      }
+      buffer.flip();
+      return buffer;
+   }
+
+   @BeforeMethod
+   protected void setUp() {
+      output = new ByteArrayOutputStream();
+      master = new OutputStreamWritableByteChannelMaster(output);
+   }
+}
@@ -0,0 +1,161 @@
+/**
+ * Copyright (C) 2020 VanillaSource
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.vanillasource.aio.channel;
+
+import org.testng.annotations.*;
+import static org.testng.Assert.*;
+import com.vanillasource.aio.AioSlave;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Test
+public class PassiveAioMasterTests {
+   private ExecutorService executor;
+   private TestMaster master;
+
+   public void testSlaveIsCalledUntilClosed() throws Exception {
+      AtomicInteger readyCount = new AtomicInteger();
+
+      int result = master.execute(slave(() -> {
+         if (readyCount.incrementAndGet() == 3) {
+            master.close();
+         }
+      }, readyCount), executor).get(5, TimeUnit.SECONDS);
+
+      assertEquals(result, 3);
+   }
+
+   public void testPausedMasterDoesNotCallSlaveUntilResumed() throws Exception {
+      AtomicInteger readyCount = new AtomicInteger();
+      CompletableFuture<Integer> result = master.execute(slave(() -> {
+         readyCount.incrementAndGet();
+         master.pause();
+      }, readyCount), executor);
+      Thread.sleep(100);
+
+      assertEquals(readyCount.get(), 1);
+      master.close();
+      assertEquals(result.get(5, TimeUnit.SECONDS).intValue(), 1);
+   }
+
+   public void testClosingPausedMasterCompletesSlave() throws Exception {
+      master.pause();
+      CompletableFuture<Integer> result = master.execute(slave(() -> {}, new AtomicInteger()), executor);
+      Thread.sleep(50);
+
+      master.close();
+
+      assertEquals(result.get(5, TimeUnit.SECONDS).intValue(), 0);
+   }
+
+   public void testCanNotResumeClosedMaster() {
+      master.close();
+      master.resume();
+
+      assertFalse(master.isOpen());
+   }
+
+   public void testReleaseIsCalledAfterSlaveCompletes() throws Exception {
+      master.execute(slave(master::close, new AtomicInteger()), executor).get(5, TimeUnit.SECONDS);
+
+      assertEquals(master.releaseCount, 1);
+   }
+
+   public void testReleaseIsCalledIfSlaveFails() throws Exception {
+      try {
+         master.execute(slave(() -> { throw new IllegalStateException("test"); }, new AtomicInteger()), executor).get(5, TimeUnit.SECONDS);
+      } catch (Exception e) {
+         // Expected
+      }
+
+      assertEquals(master.releaseCount, 1);
+   }
+
+   public void testSlavePausingItselfIsNeverLostWhenResumedConcurrently() throws Exception {
+      for (int i=0; i<2000; i++) {
+         TestMaster master = new TestMaster();
+         AtomicInteger readyCount = new AtomicInteger();
+         CompletableFuture<Integer> result = master.execute(slave(() -> {
+            if (readyCount.incrementAndGet() >= 10) {
+               master.close();
+            } else {
+               master.pause();
+               executor.execute(master::resume);
+            }
+         }, readyCount), executor);
+
+         assertEquals(result.get(5, TimeUnit.SECONDS).intValue(), 10);
+      }
+   }
+
+   public void testConcurrentPauseResumeAndCloseAlwaysCompletes() throws Exception {
+      for (int i=0; i<2000; i++) {
+         TestMaster master = new TestMaster();
+         CompletableFuture<Integer> result = master.execute(slave(() -> {}, new AtomicInteger()), executor);
+         CompletableFuture<Void> toggling = CompletableFuture.runAsync(() -> {
+            for (int j=0; j<10; j++) {
+               master.pause();
+               master.resume();
+            }
+            master.pause();
+         }, executor);
+         CompletableFuture.runAsync(master::close, executor);
+
+         result.get(5, TimeUnit.SECONDS);
+         toggling.get(5, TimeUnit.SECONDS);
+      }
+   }
+
+   private AioSlave<Integer> slave(Runnable onReady, AtomicInteger readyCount) {
+      return new AioSlave<Integer>() {
+         @Override
+         public void onReady() {
+            onReady.run();
+         }
+
+         @Override
+         public Integer onCompleted() {
+            return readyCount.get();
+         }
+      };
+   }
+
+   private static final class TestMaster extends PassiveAioMaster {
+      private volatile int releaseCount = 0;
+
+      @Override
+      protected void release() {
+         releaseCount++;
+      }
+   }
+
+   @BeforeMethod
+   protected void setUp() {
+      executor = Executors.newCachedThreadPool();
+      master = new TestMaster();
+   }
+
+   @AfterMethod
+   protected void tearDown() {
+      executor.shutdownNow();
+   }
+}
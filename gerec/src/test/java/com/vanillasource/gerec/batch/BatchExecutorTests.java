@@ -0,0 +1,278 @@
+/**
+ * Copyright (C) 2020 VanillaSource
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.vanillasource.gerec.batch;
+
+import org.testng.annotations.Test;
+import org.testng.annotations.BeforeMethod;
+import static org.testng.Assert.*;
+import com.vanillasource.gerec.AcceptMediaType;
+import com.vanillasource.gerec.ContentResponse;
+import com.vanillasource.gerec.HttpRequest;
+import com.vanillasource.gerec.Request;
+import com.vanillasource.gerec.mediatype.MediaTypes;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+@Test
+public class BatchExecutorTests {
+   private List<BatchResult<String>> results;
+
+   public void testAllRequestsAreSentIfUnderLimit() {
+      List<TestRequest> requests = requests("a", "b", "c");
+
+      new BatchExecutor(5).execute(requests, MediaTypes.textPlain(), BatchExecutor.Order.ORDERED, BatchExecutor.ErrorMode.FAIL_FAST, results::add);
+
+      assertTrue(requests.stream().allMatch(TestRequest::isSent));
+   }
+
+   public void testNoMoreThanMaxConcurrencyRequestsAreSent() {
+      List<TestRequest> requests = requests("a", "b", "c");
+
+      new BatchExecutor(2).execute(requests, MediaTypes.textPlain(), BatchExecutor.Order.ORDERED, BatchExecutor.ErrorMode.FAIL_FAST, results::add);
+
+      assertTrue(requests.get(0).isSent());
+      assertTrue(requests.get(1).isSent());
+      assertFalse(requests.get(2).isSent());
+   }
+
+   public void testCompletedRequestMakesRoomForNextRequest() {
+      List<TestRequest> requests = requests("a", "b", "c");
+      new BatchExecutor(2).execute(requests, MediaTypes.textPlain(), BatchExecutor.Order.ORDERED, BatchExecutor.ErrorMode.FAIL_FAST, results::add);
+
+      requests.get(1).complete("B");
+
+      assertTrue(requests.get(2).isSent());
+   }
+
+   public void testNoMoreThanMaxConcurrencyPerHostRequestsAreSent() {
+      List<TestRequest> requests = Arrays.asList(
+            new TestRequest("http://host1/a"), new TestRequest("http://host1/b"), new TestRequest("http://host2/c"));
+
+      new BatchExecutor(5, 1).execute(requests, MediaTypes.textPlain(), BatchExecutor.Order.ORDERED, BatchExecutor.ErrorMode.FAIL_FAST, results::add);
+
+      assertTrue(requests.get(0).isSent());
+      assertFalse(requests.get(1).isSent());
+      assertTrue(requests.get(2).isSent());
+   }
+
+   public void testRequestsWithoutUriShareHostLimit() {
+      List<TestRequest> requests = Arrays.asList(new TestRequest(null), new TestRequest(null));
+
+      new BatchExecutor(5, 1).execute(requests, MediaTypes.textPlain(), BatchExecutor.Order.ORDERED, BatchExecutor.ErrorMode.FAIL_FAST, results::add);
+      requests.get(0).complete("A");
+
+      assertTrue(requests.get(1).isSent());
+      assertEquals(contents(), Arrays.asList("A"));
+   }
+
+   public void testOrderedResultsAreDeliveredInOrderOfRequests() {
+      List<TestRequest> requests = requests("a", "b");
+      CompletableFuture<Void> done = new BatchExecutor(2).execute(requests, MediaTypes.textPlain(), BatchExecutor.Order.ORDERED, BatchExecutor.ErrorMode.FAIL_FAST, results::add);
+
+      requests.get(1).complete("B");
+      assertTrue(results.isEmpty());
+      requests.get(0).complete("A");
+
+      assertEquals(contents(), Arrays.asList("A", "B"));
+      assertTrue(done.isDone());
+   }
+
+   public void testUnorderedResultsAreDeliveredInOrderOfCompletion() {
+      List<TestRequest> requests = requests("a", "b");
+      CompletableFuture<Void> done = new BatchExecutor(2).execute(requests, MediaTypes.textPlain(), BatchExecutor.Order.UNORDERED, BatchExecutor.ErrorMode.FAIL_FAST, results::add);
+
+      requests.get(1).complete("B");
+      requests.get(0).complete("A");
+
+      assertEquals(contents(), Arrays.asList("B", "A"));
+      assertEquals(results.get(0).getIndex(), 1);
+      assertTrue(done.isDone());
+   }
+
+   public void testFailFastCompletesBatchWithFailure() {
+      List<TestRequest> requests = requests("a", "b", "c");
+      CompletableFuture<Void> done = new BatchExecutor(1).execute(requests, MediaTypes.textPlain(), BatchExecutor.Order.ORDERED, BatchExecutor.ErrorMode.FAIL_FAST, results::add);
+
+      requests.get(0).fail(new IOException("test"));
+
+      assertTrue(done.isCompletedExceptionally());
+      assertFalse(requests.get(1).isSent());
+      assertTrue(results.isEmpty());
+   }
+
+   public void testFailFastFailureHasOriginalCause() {
+      List<TestRequest> requests = requests("a");
+      CompletableFuture<Void> done = new BatchExecutor(1).execute(requests, MediaTypes.textPlain(), BatchExecutor.Order.ORDERED, BatchExecutor.ErrorMode.FAIL_FAST, results::add);
+      IOException error = new IOException("test");
+
+      requests.get(0).fail(error);
+
+      try {
+         done.join();
+         fail("batch should fail");
+      } catch (CompletionException e) {
+         assertSame(e.getCause(), error);
+      }
+   }
+
+   public void testCollectErrorsDeliversFailuresAndContinues() {
+      List<TestRequest> requests = requests("a", "b");
+      CompletableFuture<Void> done = new BatchExecutor(1).execute(requests, MediaTypes.textPlain(), BatchExecutor.Order.ORDERED, BatchExecutor.ErrorMode.COLLECT_ERRORS, results::add);
+
+      requests.get(0).fail(new IOException("test"));
+      requests.get(1).complete("B");
+
+      assertFalse(results.get(0).isSuccessful());
+      assertTrue(results.get(0).getError() instanceof IOException);
+      assertEquals(results.get(1).getContent(), "B");
+      assertTrue(done.isDone());
+      assertFalse(done.isCompletedExceptionally());
+   }
+
+   public void testEmptyBatchCompletesImmediately() {
+      CompletableFuture<Void> done = new BatchExecutor(1).execute(requests(), MediaTypes.textPlain(), BatchExecutor.Order.ORDERED, BatchExecutor.ErrorMode.FAIL_FAST, results::add);
+
+      assertTrue(done.isDone());
+   }
+
+   public void testProducerIsOnlyPulledAheadWithinWindow() {
+      AtomicInteger produced = new AtomicInteger();
+
+      new BatchExecutor(2).execute(IntStream.range(0, 1000).mapToObj(i -> {
+         produced.incrementAndGet();
+         return new TestRequest("http://localhost/"+i);
+      }), MediaTypes.textPlain(), BatchExecutor.Order.ORDERED, BatchExecutor.ErrorMode.FAIL_FAST, results::add);
+
+      assertTrue(produced.get() <= 4);
+   }
+
+   public void testManySynchronouslyCompletingRequestsAreAllDelivered() {
+      CompletableFuture<Void> done = new BatchExecutor(3).execute(IntStream.range(0, 10000).mapToObj(i -> {
+         TestRequest request = new TestRequest("http://localhost/"+i);
+         request.complete(String.valueOf(i));
+         return request;
+      }), MediaTypes.textPlain(), BatchExecutor.Order.ORDERED, BatchExecutor.ErrorMode.FAIL_FAST, results::add);
+
+      assertTrue(done.isDone());
+      assertEquals(results.size(), 10000);
+      assertEquals(results.get(9999).getContent(), "9999");
+   }
+
+   public void testCancelledBatchStartsNoMoreRequests() {
+      List<TestRequest> requests = requests("a", "b");
+      CompletableFuture<Void> done = new BatchExecutor(1).execute(requests, MediaTypes.textPlain(), BatchExecutor.Order.ORDERED, BatchExecutor.ErrorMode.FAIL_FAST, results::add);
+
+      done.cancel(false);
+      requests.get(0).complete("A");
+
+      assertFalse(requests.get(1).isSent());
+   }
+
+   public void testSendAllCollectsContentsInOrder() {
+      List<TestRequest> requests = requests("a", "b");
+      CompletableFuture<List<String>> contents = new BatchExecutor(2).sendAll(requests, MediaTypes.textPlain());
+
+      requests.get(1).complete("B");
+      requests.get(0).complete("A");
+
+      assertEquals(contents.join(), Arrays.asList("A", "B"));
+   }
+
+   @Test(expectedExceptions = IllegalArgumentException.class)
+   public void testZeroConcurrencyIsRejected() {
+      new BatchExecutor(0);
+   }
+
+   private List<String> contents() {
+      List<String> contents = new ArrayList<>();
+      for (BatchResult<String> result: results) {
+         contents.add(result.getContent());
+      }
+      return contents;
+   }
+
+   private List<TestRequest> requests(String... paths) {
+      List<TestRequest> requests = new ArrayList<>();
+      for (String path: paths) {
+         requests.add(new TestRequest("http://localhost/"+path));
+      }
+      return requests;
+   }
+
+   @BeforeMethod
+   protected void setUp() {
+      results = new ArrayList<>();
+   }
+
+   private static final class TestRequest implements Request {
+      private final URI uri;
+      private final CompletableFuture<String> content = new CompletableFuture<>();
+      private boolean sent = false;
+
+      private TestRequest(String uri) {
+         this.uri = uri == null ? null : URI.create(uri);
+      }
+
+      public boolean isSent() {
+         return sent;
+      }
+
+      public void complete(String value) {
+         content.complete(value);
+      }
+
+      public void fail(Throwable error) {
+         content.completeExceptionally(error);
+      }
+
+      @Override
+      @SuppressWarnings("unchecked")
+      public <T> CompletableFuture<T> send(AcceptMediaType<T> acceptType) {
+         sent = true;
+         return (CompletableFuture<T>) content;
+      }
+
+      @Override
+      public <T> CompletableFuture<ContentResponse<T>> sendResponse(AcceptMediaType<T> acceptType, HttpRequest.HttpRequestChange change) {
+         throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public String getMethod() {
+         return "GET";
+      }
+
+      @Override
+      public URI getUri() {
+         return uri;
+      }
+
+      @Override
+      public byte[] suspend() {
+         throw new UnsupportedOperationException();
+      }
+   }
+}
@@ -0,0 +1,283 @@
+/**
+ * Copyright (C) 2020 VanillaSource
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.vanillasource.gerec.cache;
+
+import org.testng.annotations.Test;
+import org.testng.annotations.BeforeMethod;
+import static org.testng.Assert.*;
+import static org.mockito.Mockito.*;
+import com.vanillasource.gerec.HttpResponse;
+import com.vanillasource.gerec.HttpRequest;
+import com.vanillasource.gerec.HttpStatusCode;
+import com.vanillasource.gerec.http.Headers;
+import com.vanillasource.gerec.http.CacheControl;
+import com.vanillasource.gerec.http.RecordingHttpRequest;
+import com.vanillasource.gerec.reference.HttpClient;
+import com.vanillasource.aio.channel.ByteArrayReadableByteChannelSlave;
+import org.mockito.ArgumentCaptor;
+import java.net.URI;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+@Test
+public class CachingHttpClientTests {
+   private static final URI URI = java.net.URI.create("http://localhost/resource");
+   private HttpClient delegate;
+   private TestClock clock;
+   private InMemoryResponseCache cache;
+   private CachingHttpClient client;
+
+   public void testFreshResponseIsServedFromCache() {
+      respond(new StaticHttpResponse(HttpStatusCode.OK, "Content", "Cache-Control", "max-age=60"));
+      get();
+
+      String content = get();
+
+      assertEquals(content, "Content");
+      verify(delegate, times(1)).doGet(any(), any());
+      assertEquals(client.getHitCount(), 1);
+      assertEquals(client.getMissCount(), 1);
+   }
+
+   public void testCachedResponseHasAge() {
+      respond(new StaticHttpResponse(HttpStatusCode.OK, "Content", "Cache-Control", "max-age=60"));
+      get();
+      clock.now = 11000L;
+
+      HttpResponse response = client.doGet(URI, HttpRequest.HttpRequestChange.NO_CHANGE).join();
+
+      assertEquals(response.getHeader(Headers.AGE).longValue(), 10L);
+   }
+
+   public void testResponseIsNotStoredIfContentIsNotConsumed() {
+      respond(new StaticHttpResponse(HttpStatusCode.OK, "Content", "Cache-Control", "max-age=60"));
+      client.doGet(URI, HttpRequest.HttpRequestChange.NO_CHANGE).join();
+
+      get();
+
+      verify(delegate, times(2)).doGet(any(), any());
+   }
+
+   public void testResponseIsNotStoredIfContentLengthDoesNotMatch() {
+      respond(new StaticHttpResponse(HttpStatusCode.OK, "Content", "Cache-Control", "max-age=60", "Content-Length", "100"));
+      get();
+
+      get();
+
+      verify(delegate, times(2)).doGet(any(), any());
+   }
+
+   public void testNoStoreResponseIsNotStored() {
+      respond(new StaticHttpResponse(HttpStatusCode.OK, "Content", "Cache-Control", "no-store, max-age=60"));
+      get();
+
+      get();
+
+      verify(delegate, times(2)).doGet(any(), any());
+   }
+
+   public void testErrorResponseIsNotStored() {
+      respond(new StaticHttpResponse(HttpStatusCode.NOT_FOUND, "Content", "Cache-Control", "max-age=60"));
+      get();
+
+      get();
+
+      verify(delegate, times(2)).doGet(any(), any());
+   }
+
+   public void testStaleResponseIsRevalidatedWithETag() {
+      respond(new StaticHttpResponse(HttpStatusCode.OK, "Content", "Cache-Control", "max-age=60", "ETag", "\"1\""));
+      get();
+      clock.now = 70000L;
+      StaticHttpResponse notModified = new StaticHttpResponse(HttpStatusCode.NOT_MODIFIED, "", "ETag", "\"1\"");
+      respond(notModified);
+
+      String content = get();
+
+      assertEquals(content, "Content");
+      assertEquals(lastRequestHeaders().get("If-None-Match").get(0), "\"1\"");
+      assertEquals(notModified.consumeCount, 1);
+      assertEquals(client.getRevalidationCount(), 1);
+   }
+
+   public void testRevalidatedResponseIsFreshAgain() {
+      respond(new StaticHttpResponse(HttpStatusCode.OK, "Content", "Cache-Control", "max-age=60", "ETag", "\"1\""));
+      get();
+      clock.now = 70000L;
+      respond(new StaticHttpResponse(HttpStatusCode.NOT_MODIFIED, "", "ETag", "\"1\""));
+      get();
+
+      get();
+
+      verify(delegate, times(2)).doGet(any(), any());
+      assertEquals(client.getHitCount(), 1);
+   }
+
+   public void testStaleResponseIsRevalidatedWithLastModified() {
+      respond(new StaticHttpResponse(HttpStatusCode.OK, "Content", "Last-Modified", "Wed, 21 Oct 2015 07:28:00 GMT"));
+      get();
+      respond(new StaticHttpResponse(HttpStatusCode.NOT_MODIFIED, ""));
+
+      String content = get();
+
+      assertEquals(content, "Content");
+      assertEquals(lastRequestHeaders().get("If-Modified-Since").get(0), "Wed, 21 Oct 2015 07:28:00 GMT");
+   }
+
+   public void testChangedResponseReplacesStoredResponse() {
+      respond(new StaticHttpResponse(HttpStatusCode.OK, "Content", "ETag", "\"1\""));
+      get();
+      respond(new StaticHttpResponse(HttpStatusCode.OK, "New Content", "Cache-Control", "max-age=60", "ETag", "\"2\""));
+      get();
+
+      String content = get();
+
+      assertEquals(content, "New Content");
+      verify(delegate, times(2)).doGet(any(), any());
+   }
+
+   public void testNoCacheRequestIsRevalidated() {
+      respond(new StaticHttpResponse(HttpStatusCode.OK, "Content", "Cache-Control", "max-age=60", "ETag", "\"1\""));
+      get();
+      respond(new StaticHttpResponse(HttpStatusCode.NOT_MODIFIED, ""));
+
+      client.doGet(URI, CacheControl.noCache()).join().consumeContent(ByteArrayReadableByteChannelSlave::new).join();
+
+      verify(delegate, times(2)).doGet(any(), any());
+      assertEquals(client.getRevalidationCount(), 1);
+   }
+
+   public void testNoStoreRequestBypassesCache() {
+      respond(new StaticHttpResponse(HttpStatusCode.OK, "Content", "Cache-Control", "max-age=60"));
+      get();
+
+      client.doGet(URI, CacheControl.noStore()).join();
+
+      verify(delegate, times(2)).doGet(any(), any());
+   }
+
+   public void testOnlyIfCachedRequestWithoutStoredResponseIsGatewayTimeout() {
+      HttpResponse response = client.doGet(URI, CacheControl.onlyIfCached()).join();
+
+      assertEquals(response.getStatusCode(), HttpStatusCode.GATEWAY_TIMEOUT);
+      verify(delegate, never()).doGet(any(), any());
+   }
+
+   public void testDifferentVariantIsNotServed() {
+      respond(new StaticHttpResponse(HttpStatusCode.OK, "Content", "Cache-Control", "max-age=60", "Vary", "Accept-Language"));
+      get(request -> request.setHeader(Headers.singleStringHeader("Accept-Language"), "en"));
+      get(request -> request.setHeader(Headers.singleStringHeader("Accept-Language"), "en"));
+
+      get(request -> request.setHeader(Headers.singleStringHeader("Accept-Language"), "de"));
+
+      verify(delegate, times(2)).doGet(any(), any());
+   }
+
+   public void testSuccessfulPostRemovesStoredResponse() {
+      respond(new StaticHttpResponse(HttpStatusCode.OK, "Content", "Cache-Control", "max-age=60"));
+      get();
+      when(delegate.doPost(any(), any())).thenReturn(CompletableFuture.completedFuture(new StaticHttpResponse(HttpStatusCode.OK, "")));
+
+      client.doPost(URI, HttpRequest.HttpRequestChange.NO_CHANGE).join();
+      get();
+
+      verify(delegate, times(2)).doGet(any(), any());
+   }
+
+   public void testFailingCacheDoesNotFailResponse() {
+      ResponseCache failingCache = mock(ResponseCache.class);
+      when(failingCache.get(any())).thenReturn(Collections.emptyList());
+      doThrow(new IllegalStateException("test")).when(failingCache).put(any(), any());
+      client = new CachingHttpClient(delegate, failingCache, clock, 1024);
+      respond(new StaticHttpResponse(HttpStatusCode.OK, "Content", "Cache-Control", "max-age=60"));
+
+      String content = get();
+
+      assertEquals(content, "Content");
+      verify(failingCache).put(any(), any());
+   }
+
+   public void testFailingCacheDoesNotFailPost() {
+      ResponseCache failingCache = mock(ResponseCache.class);
+      doThrow(new IllegalStateException("test")).when(failingCache).remove(any());
+      client = new CachingHttpClient(delegate, failingCache, clock, 1024);
+      when(delegate.doPost(any(), any())).thenReturn(CompletableFuture.completedFuture(new StaticHttpResponse(HttpStatusCode.OK, "")));
+
+      HttpResponse response = client.doPost(URI, HttpRequest.HttpRequestChange.NO_CHANGE).join();
+
+      assertEquals(response.getStatusCode(), HttpStatusCode.OK);
+   }
+
+   private void respond(HttpResponse response) {
+      when(delegate.doGet(any(), any())).thenReturn(CompletableFuture.completedFuture(response));
+   }
+
+   private String get() {
+      return get(HttpRequest.HttpRequestChange.NO_CHANGE);
+   }
+
+   private String get(HttpRequest.HttpRequestChange change) {
+      return new String(client.doGet(URI, change).join().consumeContent(ByteArrayReadableByteChannelSlave::new).join());
+   }
+
+   private Map<String, List<String>> lastRequestHeaders() {
+      ArgumentCaptor<HttpRequest.HttpRequestChange> changeCaptor = ArgumentCaptor.forClass(HttpRequest.HttpRequestChange.class);
+      verify(delegate, atLeastOnce()).doGet(any(), changeCaptor.capture());
+      return RecordingHttpRequest.recordHeaders(changeCaptor.getValue());
+   }
+
+   private static final class TestClock extends Clock {
+      private long now;
+
+      @Override
+      public long millis() {
+         return now;
+      }
+
+      @Override
+      public Instant instant() {
+         return Instant.ofEpochMilli(now);
+      }
+
+      @Override
+      public ZoneId getZone() {
+         return ZoneOffset.UTC;
+      }
+
+      @Override
+      public Clock withZone(ZoneId zone) {
+         throw new UnsupportedOperationException();
+      }
+   }
+
+   @BeforeMethod
+   protected void setUp() {
+      delegate = mock(HttpClient.class);
+      clock = new TestClock();
+      clock.now = 1000L;
+      cache = new InMemoryResponseCache(1024);
+      client = new CachingHttpClient(delegate, cache, clock, 1024);
+   }
+}
@@ -0,0 +1,233 @@
+/**
+ * Copyright (C) 2020 VanillaSource
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.vanillasource.gerec.cache;
+
+import org.testng.annotations.Test;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.AfterMethod;
+import static org.testng.Assert.*;
+import com.vanillasource.gerec.HttpStatusCode;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.io.IOException;
+
+@Test
+public class DiskResponseCacheTests {
+   private Path directory;
+   private DiskResponseCache cache;
+
+   public void testStoredResponseIsReturned() {
+      cache.put(uri(1), response("Content"));
+
+      List<CachedResponse> responses = cache.get(uri(1));
+
+      assertEquals(responses.size(), 1);
+      assertEquals(content(responses.get(0)), "Content");
+      assertEquals(responses.get(0).getHeader("ETag"), Arrays.asList("\"1\""));
+      assertEquals(responses.get(0).getStatusCode(), HttpStatusCode.OK);
+      assertEquals(responses.get(0).getStoredAt(), 123L);
+   }
+
+   public void testStoredResponseIsRecoveredAfterReopen() {
+      cache.put(uri(1), response("Content"));
+
+      reopen();
+
+      assertEquals(content(cache.get(uri(1)).get(0)), "Content");
+   }
+
+   public void testRemovedResponseIsNotRecoveredAfterReopen() {
+      cache.put(uri(1), response("Content"));
+      cache.remove(uri(1));
+
+      reopen();
+
+      assertTrue(cache.get(uri(1)).isEmpty());
+   }
+
+   public void testReplacedVariantIsNotRecoveredAfterReopen() {
+      cache.put(uri(1), response("Content"));
+      cache.put(uri(1), response("New Content"));
+
+      reopen();
+
+      assertEquals(cache.get(uri(1)).size(), 1);
+      assertEquals(content(cache.get(uri(1)).get(0)), "New Content");
+   }
+
+   public void testDifferentVariantsAreKept() {
+      cache.put(uri(1), response("English", Collections.singletonMap("Accept-Language", Arrays.asList("en"))));
+      cache.put(uri(1), response("German", Collections.singletonMap("Accept-Language", Arrays.asList("de"))));
+
+      reopen();
+
+      assertEquals(cache.get(uri(1)).size(), 2);
+   }
+
+   public void testCorruptRecordAndFollowingRecordsAreIgnoredOnRecovery() throws IOException {
+      cache.put(uri(1), response("First"));
+      cache.put(uri(2), response("Second"));
+      cache.put(uri(3), response("Third"));
+      cache.close();
+      Path segment = segments()[0];
+      byte[] bytes = Files.readAllBytes(segment);
+      int secondContent = new String(bytes, "ISO-8859-1").indexOf("Second");
+      bytes[secondContent] ^= 0xFF;
+      Files.write(segment, bytes);
+
+      reopen();
+
+      assertEquals(content(cache.get(uri(1)).get(0)), "First");
+      assertTrue(cache.get(uri(2)).isEmpty());
+      assertTrue(cache.get(uri(3)).isEmpty());
+   }
+
+   public void testResponsesStoredAfterRecoveringCorruptRecordAreRecovered() throws IOException {
+      cache.put(uri(1), response("First"));
+      cache.put(uri(2), response("Second"));
+      cache.put(uri(3), response("Third"));
+      cache.close();
+      Path segment = segments()[0];
+      byte[] bytes = Files.readAllBytes(segment);
+      bytes[new String(bytes, "ISO-8859-1").indexOf("Second")] ^= 0xFF;
+      Files.write(segment, bytes);
+      reopen();
+      cache.put(uri(4), response("Fourth"));
+
+      reopen();
+
+      assertEquals(content(cache.get(uri(4)).get(0)), "Fourth");
+      assertTrue(cache.get(uri(3)).isEmpty());
+   }
+
+   public void testOldestSegmentsAreEvictedOverMaxSize() {
+      for (int i=0; i<100; i++) {
+         cache.put(uri(i), response(content(300)));
+      }
+
+      assertTrue(cache.getSize() <= 4096);
+      assertTrue(cache.get(uri(0)).isEmpty());
+      assertEquals(content(cache.get(uri(99)).get(0)), content(300));
+   }
+
+   public void testSparseSegmentsAreCompacted() {
+      cache.put(uri(0), response("Kept"));
+      for (int i=0; i<100; i++) {
+         cache.put(uri(1), response(content(300)));
+      }
+
+      assertEquals(content(cache.get(uri(0)).get(0)), "Kept");
+      reopen();
+      assertEquals(content(cache.get(uri(0)).get(0)), "Kept");
+      assertEquals(content(cache.get(uri(1)).get(0)), content(300));
+   }
+
+   public void testResponseLargerThanSegmentIsNotStored() {
+      cache.put(uri(1), response(content(2000)));
+
+      assertTrue(cache.get(uri(1)).isEmpty());
+   }
+
+   public void testHeaderValueLongerThan64KIsRecoveredAfterReopen() {
+      cache.close();
+      cache = new DiskResponseCache(directory, 1 << 20, 1 << 18);
+      String longValue = content(70000);
+      cache.put(uri(1), new CachedResponse(HttpStatusCode.OK, Collections.singletonMap("Link", Arrays.asList(longValue)),
+               Collections.emptyMap(), ByteBuffer.wrap("Content".getBytes()), 123L));
+
+      cache.close();
+      cache = new DiskResponseCache(directory, 1 << 20, 1 << 18);
+
+      assertEquals(cache.get(uri(1)).get(0).getHeader("Link"), Arrays.asList(longValue));
+   }
+
+   public void testFailedStoreIsIgnoredAndForgetsUri() throws IOException {
+      cache.put(uri(1), response(content(600)));
+      for (Path segment: segments()) {
+         Files.delete(segment);
+      }
+      Files.delete(directory);
+
+      cache.put(uri(1), response(content(600)));
+
+      assertTrue(cache.get(uri(1)).isEmpty());
+      Files.createDirectories(directory);
+   }
+
+   private String content(int length) {
+      StringBuilder builder = new StringBuilder();
+      for (int i=0; i<length; i++) {
+         builder.append((char) ('a' + i % 26));
+      }
+      return builder.toString();
+   }
+
+   private String content(CachedResponse response) {
+      ByteBuffer content = response.getContent();
+      byte[] bytes = new byte[content.remaining()];
+      content.get(bytes);
+      return new String(bytes);
+   }
+
+   private URI uri(int index) {
+      return URI.create("http://localhost/"+index);
+   }
+
+   private CachedResponse response(String content) {
+      return response(content, Collections.emptyMap());
+   }
+
+   private CachedResponse response(String content, Map<String, List<String>> varyingRequestHeaders) {
+      return new CachedResponse(HttpStatusCode.OK, Collections.singletonMap("ETag", Arrays.asList("\"1\"")), varyingRequestHeaders,
+            ByteBuffer.wrap(content.getBytes()), 123L);
+   }
+
+   private Path[] segments() throws IOException {
+      try (Stream<Path> files = Files.list(directory)) {
+         return files.sorted().toArray(Path[]::new);
+      }
+   }
+
+   private void reopen() {
+      cache.close();
+      cache = new DiskResponseCache(directory, 4096, 1024);
+   }
+
+   @BeforeMethod
+   protected void setUp() throws IOException {
+      directory = Files.createTempDirectory("gerec-cache");
+      cache = new DiskResponseCache(directory, 4096, 1024);
+   }
+
+   @AfterMethod
+   protected void tearDown() throws IOException {
+      cache.close();
+      try (Stream<Path> files = Files.walk(directory)) {
+         files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+      }
+   }
+}
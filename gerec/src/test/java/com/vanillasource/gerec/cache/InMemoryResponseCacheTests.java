@@ -0,0 +1,91 @@
+/**
+ * Copyright (C) 2020 VanillaSource
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.vanillasource.gerec.cache;
+
+import org.testng.annotations.Test;
+import org.testng.annotations.BeforeMethod;
+import static org.testng.Assert.*;
+import com.vanillasource.gerec.HttpStatusCode;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Arrays;
+
+@Test
+public class InMemoryResponseCacheTests {
+   private InMemoryResponseCache cache;
+
+   public void testStoredResponseIsReturned() {
+      CachedResponse response = response(10);
+      cache.put(uri(1), response);
+
+      assertEquals(cache.get(uri(1)), Arrays.asList(response));
+   }
+
+   public void testSameVariantIsReplaced() {
+      CachedResponse response = response(10);
+      cache.put(uri(1), response(10));
+      cache.put(uri(1), response);
+
+      assertEquals(cache.get(uri(1)), Arrays.asList(response));
+      assertEquals(cache.getSize(), 10);
+   }
+
+   public void testLeastRecentlyUsedIsEvicted() {
+      cache.put(uri(1), response(40));
+      cache.put(uri(2), response(40));
+      cache.get(uri(1));
+
+      cache.put(uri(3), response(40));
+
+      assertFalse(cache.get(uri(1)).isEmpty());
+      assertTrue(cache.get(uri(2)).isEmpty());
+      assertFalse(cache.get(uri(3)).isEmpty());
+      assertEquals(cache.getSize(), 80);
+   }
+
+   public void testResponseLargerThanCacheIsNotStored() {
+      cache.put(uri(1), response(101));
+
+      assertTrue(cache.get(uri(1)).isEmpty());
+      assertEquals(cache.getSize(), 0);
+   }
+
+   public void testRemovedResponseIsNotReturned() {
+      cache.put(uri(1), response(10));
+
+      cache.remove(uri(1));
+
+      assertTrue(cache.get(uri(1)).isEmpty());
+      assertEquals(cache.getSize(), 0);
+   }
+
+   private URI uri(int index) {
+      return URI.create("http://localhost/"+index);
+   }
+
+   private CachedResponse response(int size) {
+      return new CachedResponse(HttpStatusCode.OK, Collections.emptyMap(), Collections.emptyMap(), ByteBuffer.allocate(size), 0);
+   }
+
+   @BeforeMethod
+   protected void setUp() {
+      cache = new InMemoryResponseCache(100);
+   }
+}
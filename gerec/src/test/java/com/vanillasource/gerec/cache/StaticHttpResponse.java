@@ -0,0 +1,70 @@
+/**
+ * Copyright (C) 2020 VanillaSource
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.vanillasource.gerec.cache;
+
+import com.vanillasource.gerec.HttpResponse;
+import com.vanillasource.gerec.HttpStatusCode;
+import com.vanillasource.gerec.Header;
+import com.vanillasource.aio.AioSlave;
+import com.vanillasource.aio.channel.ReadableByteChannelMaster;
+import com.vanillasource.aio.channel.InputStreamReadableByteChannelMaster;
+import java.util.function.Function;
+import java.util.concurrent.CompletableFuture;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.List;
+import java.util.Arrays;
+import java.io.ByteArrayInputStream;
+
+public final class StaticHttpResponse implements HttpResponse {
+   private final HttpStatusCode statusCode;
+   private final Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+   private final String content;
+   public int consumeCount = 0;
+
+   public StaticHttpResponse(HttpStatusCode statusCode, String content, String... headerNamesAndValues) {
+      this.statusCode = statusCode;
+      this.content = content;
+      for (int i=0; i<headerNamesAndValues.length; i+=2) {
+         headers.put(headerNamesAndValues[i], Arrays.asList(headerNamesAndValues[i+1]));
+      }
+   }
+
+   @Override
+   public HttpStatusCode getStatusCode() {
+      return statusCode;
+   }
+
+   @Override
+   public boolean hasHeader(Header<?> header) {
+      return headers.containsKey(header.getName());
+   }
+
+   @Override
+   public <T> T getHeader(Header<T> header) {
+      return header.deserialize(headers.get(header.getName()));
+   }
+
+   @Override
+   public <R> CompletableFuture<R> consumeContent(Function<ReadableByteChannelMaster, AioSlave<R>> consumerFactory) {
+      consumeCount++;
+      InputStreamReadableByteChannelMaster master = new InputStreamReadableByteChannelMaster(new ByteArrayInputStream(content.getBytes()));
+      return master.execute(consumerFactory.apply(master), Runnable::run);
+   }
+}
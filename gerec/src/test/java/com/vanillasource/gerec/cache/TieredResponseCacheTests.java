@@ -0,0 +1,75 @@
+/**
+ * Copyright (C) 2020 VanillaSource
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.vanillasource.gerec.cache;
+
+import org.testng.annotations.Test;
+import org.testng.annotations.BeforeMethod;
+import static org.testng.Assert.*;
+import static org.mockito.Mockito.*;
+import com.vanillasource.gerec.HttpStatusCode;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Arrays;
+
+@Test
+public class TieredResponseCacheTests {
+   private static final URI URI = java.net.URI.create("http://localhost/resource");
+   private ResponseCache firstTier;
+   private ResponseCache secondTier;
+   private TieredResponseCache cache;
+   private CachedResponse response;
+
+   public void testResponseIsStoredInBothTiers() {
+      cache.put(URI, response);
+
+      verify(firstTier).put(URI, response);
+      verify(secondTier).put(URI, response);
+   }
+
+   public void testResponseIsRemovedFromBothTiers() {
+      cache.remove(URI);
+
+      verify(firstTier).remove(URI);
+      verify(secondTier).remove(URI);
+   }
+
+   public void testResponseFromFirstTierIsReturnedWithoutAskingSecond() {
+      when(firstTier.get(URI)).thenReturn(Arrays.asList(response));
+
+      assertEquals(cache.get(URI), Arrays.asList(response));
+      verify(secondTier, never()).get(URI);
+   }
+
+   public void testResponseFromSecondTierIsCopiedToFirst() {
+      when(firstTier.get(URI)).thenReturn(Collections.emptyList());
+      when(secondTier.get(URI)).thenReturn(Arrays.asList(response));
+
+      assertEquals(cache.get(URI), Arrays.asList(response));
+      verify(firstTier).put(URI, response);
+   }
+
+   @BeforeMethod
+   protected void setUp() {
+      firstTier = mock(ResponseCache.class);
+      secondTier = mock(ResponseCache.class);
+      cache = new TieredResponseCache(firstTier, secondTier);
+      response = new CachedResponse(HttpStatusCode.OK, Collections.emptyMap(), Collections.emptyMap(), ByteBuffer.allocate(0), 0);
+   }
+}
@@ -0,0 +1,99 @@
+/**
+ * Copyright (C) 2020 VanillaSource
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.vanillasource.gerec.http;
+
+import org.testng.annotations.*;
+import static org.testng.Assert.*;
+import static org.mockito.Mockito.*;
+import com.vanillasource.gerec.HttpRequest;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import static java.util.Arrays.asList;
+
+@Test
+public class HeaderTemplateTests {
+   private HttpRequest.HttpRequestChange change;
+
+   public void testTemplateSetsSameHeadersAsCompiledChange() {
+      HeaderTemplate template = HeaderTemplate.compile(change);
+
+      assertEquals(RecordingHttpRequest.recordHeaders(template), RecordingHttpRequest.recordHeaders(change));
+   }
+
+   public void testCompiledChangeIsNotAppliedAgainByTemplate() {
+      HttpRequest.HttpRequestChange countedChange = mock(HttpRequest.HttpRequestChange.class);
+      HeaderTemplate template = HeaderTemplate.compile(countedChange);
+
+      template.applyTo(new RecordingHttpRequest());
+      template.applyTo(new RecordingHttpRequest());
+
+      verify(countedChange, times(1)).applyTo(any());
+   }
+
+   public void testTemplateSetsPreSerializedValuesDirectly() {
+      HttpRequest request = mock(HttpRequest.class);
+
+      HeaderTemplate.compile(change).applyTo(request);
+
+      verify(request).setHeaderValues("Accept", Collections.singletonList("text/plain, application/json"));
+      verify(request).setHeaderValues("If-Match", Collections.singletonList("abc"));
+   }
+
+   public void testDynamicChangesComposeOnTopOfTemplate() {
+      HttpRequest.HttpRequestChange composed = HeaderTemplate.compile(change)
+         .and(new MultiValueHeaderAdd(Headers.ACCEPT, new ValueWithParameter("text/html")))
+         .and(new SingleHeaderValueSet(Headers.AUTHORIZATION, "Bearer token"));
+
+      Map<String, List<String>> headers = RecordingHttpRequest.recordHeaders(composed);
+
+      assertEquals(headers.get("Accept"), asList("text/plain, application/json, text/html"));
+      assertEquals(headers.get("Authorization"), asList("Bearer token"));
+      assertEquals(headers.get("If-Match"), asList("abc"));
+   }
+
+   public void testTemplateReplacesPreviousValues() {
+      HttpRequest.HttpRequestChange composed = new SingleHeaderValueSet(Headers.IF_MATCH, "def")
+         .and(HeaderTemplate.compile(change));
+
+      assertEquals(RecordingHttpRequest.recordHeaders(composed).get("If-Match"), asList("abc"));
+   }
+
+   public void testTemplateIsNotAffectedByChangesOfAppliedRequest() {
+      HeaderTemplate template = HeaderTemplate.compile(change);
+      HttpRequest.HttpRequestChange composed = template
+         .and(new MultiValueHeaderAdd(Headers.ACCEPT, new ValueWithParameter("text/html")));
+
+      RecordingHttpRequest.recordHeaders(composed);
+
+      assertEquals(RecordingHttpRequest.recordHeaders(template).get("Accept"), asList("text/plain, application/json"));
+   }
+
+   @Test(expectedExceptions = IllegalArgumentException.class)
+   public void testChangesSettingContentCanNotBeCompiled() {
+      HeaderTemplate.compile(request -> request.setByteProducer(master -> null));
+   }
+
+   @BeforeMethod
+   protected void setUp() {
+      change = new MultiValueHeaderAdd(Headers.ACCEPT, new ValueWithParameter("text/plain"))
+         .and(new MultiValueHeaderAdd(Headers.ACCEPT, new ValueWithParameter("application/json")))
+         .and(new SingleHeaderValueSet(Headers.IF_MATCH, "abc"));
+   }
+}
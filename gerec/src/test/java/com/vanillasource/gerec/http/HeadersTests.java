@@ -61,5 +61,22 @@ public class HeadersTests {
 
       assertEquals(values, asList("A", "B", "C", "D", "E", "F"));
    }
-}
 
+   public void testRawValuesAreDeserializedVerbatim() {
+      List<String> values = rawHeader("Test").deserialize(asList("A, B", "C"));
+
+      assertEquals(values, asList("A, B", "C"));
+   }
+
+   public void testCsvValuesDoNotSplitOnCommasInQuotes() {
+      List<String> values = csvStringHeader("Test").deserialize(asList("A, \"B, C\", D"));
+
+      assertEquals(values, asList("A", "\"B, C\"", "D"));
+   }
+
+   public void testCsvValuesIgnoreEmptyElements() {
+      List<String> values = csvStringHeader("Test").deserialize(asList("A,, B, ", ""));
+
+      assertEquals(values, asList("A", "B"));
+   }
+}
@@ -116,5 +116,42 @@ public class ValueWithParameterTests {
       assertFalse(value.hasParameter("key2"));
       assertTrue(value2.hasParameter("key2"));
    }
-}
 
+   public void testQuotedParameterValueMayContainSeparators() {
+      ValueWithParameter value = FORMAT.deserialize("multipart/form-data; boundary=\"a; b=c, d\"; q=0.5");
+
+      assertEquals(value.getParameterValue("boundary", null), "a; b=c, d");
+      assertEquals(value.getParameterValue("q", null), "0.5");
+   }
+
+   public void testQuotedParameterValueMayContainEscapedQuotes() {
+      ValueWithParameter value = FORMAT.deserialize("text/plain; title=\"a \\\"b\\\" c\"");
+
+      assertEquals(value.getParameterValue("title", null), "a \"b\" c");
+   }
+
+   public void testWhitespaceAroundEqualsIsIgnored() {
+      ValueWithParameter value = FORMAT.deserialize("text/plain ; charset = utf-8 ;q= 1.0");
+
+      assertEquals(value.getParameterValue("charset", null), "utf-8");
+      assertEquals(value.getParameterValue("q", null), "1.0");
+   }
+
+   public void testCommonValuesAreShared() {
+      ValueWithParameter value = FORMAT.deserialize("Application/JSON; charset=utf-8");
+
+      assertSame(value.getValue(), "application/json");
+   }
+
+   public void testParameterValuesWithSeparatorsAreQuotedWhenSerialized() {
+      ValueWithParameter value = new ValueWithParameter("multipart/form-data", "boundary", "a; \"b\"");
+
+      assertEquals(FORMAT.serialize(value), "multipart/form-data; boundary=\"a; \\\"b\\\"\"");
+   }
+
+   public void testSerializedValueDeserializesToEqualValue() {
+      ValueWithParameter value = new ValueWithParameter("multipart/form-data", "boundary", "a, b; c");
+
+      assertEquals(FORMAT.deserialize(FORMAT.serialize(value)), value);
+   }
+}
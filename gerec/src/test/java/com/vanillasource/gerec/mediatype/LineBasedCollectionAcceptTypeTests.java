@@ -22,6 +22,8 @@ import org.testng.annotations.*;
 import static org.testng.Assert.*;
 import static org.mockito.Mockito.*;
 import com.vanillasource.gerec.HttpResponse;
+import com.vanillasource.gerec.http.Headers;
+import com.vanillasource.gerec.http.ValueWithParameter;
 import com.vanillasource.aio.AioSlave;
 import com.vanillasource.aio.channel.InputStreamReadableByteChannelMaster;;
 import com.vanillasource.aio.channel.ReadableByteChannelMaster;
@@ -30,6 +32,7 @@ import java.util.function.Function;
 import java.util.function.Consumer;
 import java.util.concurrent.CompletableFuture;
 import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.concurrent.ExecutionException;
 
 @Test
@@ -64,6 +67,87 @@ public class LineBasedCollectionAcceptTypeTests {
       type.deserialize(response, null).get();
    }
 
+   public void testMultiByteCharactersSplitAcrossReadsAreDecodedCorrectly() throws Exception {
+      when(response.hasHeader(Headers.CONTENT_TYPE)).thenReturn(true);
+      when(response.getHeader(Headers.CONTENT_TYPE)).thenReturn(ValueWithParameter.FORMAT.deserialize("application/vnd.vanillasource.lines; charset=UTF-8"));
+      responseContentByteByByte("\u00e1rv\u00edzt\u0171r\u0151\n\u6f22\u5b57\n".getBytes(StandardCharsets.UTF_8));
+
+      type.deserialize(response, null).get();
+
+      verify(consumer).accept("\u00e1rv\u00edzt\u0171r\u0151");
+      verify(consumer).accept("\u6f22\u5b57");
+   }
+
+   public void testCarriageReturnIsNotPartOfLine() throws Exception {
+      responseContent("a\r\nb\r\n\r\n");
+
+      type.deserialize(response, null).get();
+
+      verify(consumer).accept("a");
+      verify(consumer).accept("b");
+      verifyNoMoreInteractions(consumer);
+   }
+
+   public void testLinesLongerThanReadBufferAreConsumed() throws Exception {
+      String longLine = repeat('x', 10000);
+      responseContent("a\n"+longLine+"\n"+repeat('y', 5000)+"\nb\n");
+
+      type.deserialize(response, null).get();
+
+      verify(consumer).accept("a");
+      verify(consumer).accept(longLine);
+      verify(consumer).accept(repeat('y', 5000));
+      verify(consumer).accept("b");
+   }
+
+   public void testIncompleteLastLineIsNotConsumed() throws Exception {
+      responseContent("a\nb");
+
+      type.deserialize(response, null).get();
+
+      verify(consumer).accept("a");
+      verifyNoMoreInteractions(consumer);
+   }
+
+   @Test(expectedExceptions = ExecutionException.class)
+   public void testLineLongerThanMaximumAbortsType() throws Exception {
+      type = new LineBasedCollectionAcceptType<String>(mediaType("application/vnd.vanillasource.lines"), MediaTypes.textPlain(), consumer, 0L, 100);
+      responseContent("a\n"+repeat('x', 101)+"\n");
+
+      type.deserialize(response, null).get();
+   }
+
+   @Test(expectedExceptions = ExecutionException.class)
+   public void testPartialLineLongerThanMaximumAbortsType() throws Exception {
+      type = new LineBasedCollectionAcceptType<String>(mediaType("application/vnd.vanillasource.lines"), MediaTypes.textPlain(), consumer, 0L, 100);
+      responseContentByteByByte(repeat('x', 200).getBytes());
+
+      type.deserialize(response, null).get();
+   }
+
+   private String repeat(char c, int length) {
+      StringBuilder builder = new StringBuilder(length);
+      for (int i=0; i<length; i++) {
+         builder.append(c);
+      }
+      return builder.toString();
+   }
+
+   @SuppressWarnings("unchecked")
+   private void responseContentByteByByte(byte[] content) {
+      doAnswer(invocation -> {
+         InputStreamReadableByteChannelMaster master = new InputStreamReadableByteChannelMaster(new ByteArrayInputStream(content) {
+            @Override
+            public synchronized int read(byte[] buffer, int offset, int length) {
+               return super.read(buffer, offset, Math.min(length, 1));
+            }
+         });
+         AioSlave<String> slave = ((Function<ReadableByteChannelMaster, AioSlave<String>>) invocation.getArguments()[0])
+            .apply(master);
+         return master.execute(slave, Runnable::run);
+      }).when(response).consumeContent(any(Function.class));
+   }
+
    @SuppressWarnings("unchecked")
    private void responseContent(String content) {
       doAnswer(invocation -> {
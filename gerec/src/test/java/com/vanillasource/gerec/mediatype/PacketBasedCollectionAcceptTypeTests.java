@@ -27,6 +27,8 @@ import com.vanillasource.aio.channel.InputStreamReadableByteChannelMaster;
 import com.vanillasource.aio.channel.ReadableByteChannelMaster;
 import static com.vanillasource.gerec.mediatype.MediaTypeSpecification.*;
 import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.function.Function;
 import java.util.function.Consumer;
 import java.util.concurrent.CompletableFuture;
@@ -65,6 +67,73 @@ public class PacketBasedCollectionAcceptTypeTests {
       type.deserialize(response, null).get();
    }
 
+   public void testPacketsSpanningReadsAreConsumed() throws Exception {
+      responseContentByteByByte(new byte[] { 0,0,0,1, 'a', 0,0,0,2, 'b', 'c' });
+
+      type.deserialize(response, null).get();
+
+      verify(consumer).accept("a");
+      verify(consumer).accept("bc");
+   }
+
+   public void testPacketsLargerThanReadBufferAreConsumed() throws Exception {
+      byte[] content = new byte[4 + 10000 + 4 + 5000 + 4 + 1];
+      ByteBuffer buffer = ByteBuffer.wrap(content);
+      buffer.putInt(10000).put(repeat('x', 10000));
+      buffer.putInt(5000).put(repeat('y', 5000));
+      buffer.putInt(1).put((byte) 'z');
+      responseContent(content);
+
+      type.deserialize(response, null).get();
+
+      verify(consumer).accept(new String(repeat('x', 10000)));
+      verify(consumer).accept(new String(repeat('y', 5000)));
+      verify(consumer).accept("z");
+   }
+
+   public void testManySmallPacketsAcrossReadBufferBoundaryAreConsumed() throws Exception {
+      ByteBuffer buffer = ByteBuffer.allocate(1000 * 7);
+      for (int i=0; i<1000; i++) {
+         buffer.putInt(3).put(String.format("%03d", i).getBytes());
+      }
+      responseContent(buffer.array());
+
+      type.deserialize(response, null).get();
+
+      verify(consumer).accept("000");
+      verify(consumer).accept("585");
+      verify(consumer).accept("999");
+      verify(consumer, times(1000)).accept(any());
+   }
+
+   @Test(expectedExceptions = ExecutionException.class)
+   public void testNegativePacketLengthAbortsType() throws Exception {
+      responseContent(new byte[] { (byte) 0xFF,0,0,1, 'a' });
+
+      type.deserialize(response, null).get();
+   }
+
+   private byte[] repeat(char c, int length) {
+      byte[] bytes = new byte[length];
+      Arrays.fill(bytes, (byte) c);
+      return bytes;
+   }
+
+   @SuppressWarnings("unchecked")
+   private void responseContentByteByByte(byte[] content) {
+      doAnswer(invocation -> {
+         InputStreamReadableByteChannelMaster master = new InputStreamReadableByteChannelMaster(new ByteArrayInputStream(content) {
+            @Override
+            public synchronized int read(byte[] buffer, int offset, int length) {
+               return super.read(buffer, offset, Math.min(length, 1));
+            }
+         });
+         AioSlave<String> slave = ((Function<ReadableByteChannelMaster, AioSlave<String>>) invocation.getArguments()[0])
+            .apply(master);
+         return master.execute(slave, Runnable::run);
+      }).when(response).consumeContent(any(Function.class));
+   }
+
    @SuppressWarnings("unchecked")
    private void responseContent(byte[] content) {
       doAnswer(invocation -> {
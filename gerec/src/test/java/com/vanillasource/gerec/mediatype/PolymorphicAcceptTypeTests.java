@@ -0,0 +1,233 @@
+/**
+ * Copyright (C) 2020 VanillaSource
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.vanillasource.gerec.mediatype;
+
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+import static org.mockito.Mockito.*;
+import com.vanillasource.gerec.AcceptMediaType;
+import com.vanillasource.gerec.Header;
+import com.vanillasource.gerec.HttpRequest;
+import com.vanillasource.gerec.HttpResponse;
+import com.vanillasource.gerec.HttpStatusCode;
+import com.vanillasource.gerec.http.Headers;
+import com.vanillasource.gerec.http.ValueWithParameter;
+import com.vanillasource.gerec.cache.StaticHttpResponse;
+import com.vanillasource.aio.AioSlave;
+import com.vanillasource.aio.channel.ReadableByteChannelMaster;
+import static com.vanillasource.gerec.mediatype.MediaTypeSpecification.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+@Test
+public class PolymorphicAcceptTypeTests {
+   public void testResponseIsDeserializedByTypeOfContentType() {
+      PolymorphicAcceptType<String> type = types("application/vnd.a", "application/vnd.b");
+
+      assertEquals(type.deserialize(response("application/vnd.b"), null).join(), "application/vnd.b");
+   }
+
+   public void testContentTypeWithParametersIsDispatched() {
+      PolymorphicAcceptType<String> type = types("application/vnd.a", "application/vnd.b");
+
+      assertEquals(type.deserialize(response("application/vnd.b; charset=utf-8"), null).join(), "application/vnd.b");
+   }
+
+   public void testContentTypeIsDispatchedIgnoringCase() {
+      PolymorphicAcceptType<String> type = types("application/vnd.a", "application/vnd.b");
+
+      assertEquals(type.deserialize(response("Application/Vnd.B"), null).join(), "application/vnd.b");
+   }
+
+   public void testFirstTypeInListWinsForSameContentType() {
+      PolymorphicAcceptType<String> type = new PolymorphicAcceptType<>(Arrays.asList(
+               type("application/vnd.a").map(value -> "first"), type("application/vnd.a").map(value -> "second")));
+
+      assertEquals(type.deserialize(response("application/vnd.a"), null).join(), "first");
+   }
+
+   public void testUnrevealedTypeEarlierInListWins() {
+      PolymorphicAcceptType<String> type = new PolymorphicAcceptType<>(Arrays.asList(
+               handlingAll(), type("application/vnd.a")));
+
+      assertEquals(type.deserialize(response("application/vnd.a"), null).join(), "all");
+   }
+
+   public void testSpecificTypeEarlierInListWinsOverUnrevealedType() {
+      PolymorphicAcceptType<String> type = new PolymorphicAcceptType<>(Arrays.asList(
+               type("application/vnd.a"), handlingAll()));
+
+      assertEquals(type.deserialize(response("application/vnd.a"), null).join(), "application/vnd.a");
+   }
+
+   public void testUnrevealedTypeHandlesUnknownContentType() {
+      PolymorphicAcceptType<String> type = new PolymorphicAcceptType<>(Arrays.asList(
+               type("application/vnd.a"), handlingAll()));
+
+      assertEquals(type.deserialize(response("application/vnd.c"), null).join(), "all");
+   }
+
+   public void testWildcardTypeIsAskedForUnknownContentType() {
+      PolymorphicAcceptType<String> type = new PolymorphicAcceptType<>(Arrays.asList(
+               type("application/vnd.a"), type("*/*")));
+
+      assertTrue(type.isHandling(response("*/*")));
+   }
+
+   public void testUnknownContentTypeIsNotHandled() {
+      PolymorphicAcceptType<String> type = types("application/vnd.a", "application/vnd.b");
+
+      assertFalse(type.isHandling(response("application/vnd.c")));
+   }
+
+   public void testResponseWithoutContentTypeIsNotHandled() {
+      PolymorphicAcceptType<String> type = types("application/vnd.a", "application/vnd.b");
+
+      assertFalse(type.isHandling(new StaticHttpResponse(HttpStatusCode.OK, "")));
+   }
+
+   @Test(expectedExceptions = IllegalStateException.class)
+   public void testUnknownContentTypeCanNotBeDeserialized() {
+      PolymorphicAcceptType<String> type = types("application/vnd.a", "application/vnd.b");
+
+      type.deserialize(response("application/vnd.c"), null);
+   }
+
+   public void testContentTypeIsReadOnlyOnceAndOnlyMatchingTypeIsAsked() {
+      List<String> mediaTypes = new ArrayList<>();
+      for (int i=0; i<50; i++) {
+         mediaTypes.add("application/vnd.type"+i);
+      }
+      PolymorphicAcceptType<String> type = types(mediaTypes.toArray(new String[0]));
+      CountingHttpResponse response = new CountingHttpResponse(response("application/vnd.type42"));
+
+      assertTrue(type.isHandling(response));
+      assertEquals(response.contentTypeReads, 2); // Once for lookup, once by the matching type
+   }
+
+   public void testAcceptHeaderContainsAllTypesInOrder() {
+      PolymorphicAcceptType<String> type = types("application/vnd.a", "application/vnd.b");
+      HttpRequest request = mock(HttpRequest.class);
+
+      type.applyAsOption(request);
+
+      verify(request).setHeader(Headers.ACCEPT, Arrays.asList(new ValueWithParameter("application/vnd.a"), new ValueWithParameter("application/vnd.b")));
+   }
+
+   public void testAcceptHeaderKeepsPreviousValues() {
+      PolymorphicAcceptType<String> type = types("application/vnd.a");
+      HttpRequest request = mock(HttpRequest.class);
+      when(request.hasHeader(Headers.ACCEPT)).thenReturn(true);
+      when(request.getHeader(Headers.ACCEPT)).thenReturn(Arrays.asList(new ValueWithParameter("text/plain")));
+
+      type.applyAsOption(request);
+
+      verify(request).setHeader(Headers.ACCEPT, Arrays.asList(new ValueWithParameter("text/plain"), new ValueWithParameter("application/vnd.a")));
+   }
+
+   @SuppressWarnings("unchecked")
+   public void testTypesChangingOtherHeadersAreAppliedDirectly() {
+      AcceptMediaType<String> otherType = mock(AcceptMediaType.class);
+      doAnswer(invocation -> {
+         ((HttpRequest) invocation.getArguments()[0]).setHeader(Headers.AUTHORIZATION, "token");
+         return null;
+      }).when(otherType).applyAsOption(any());
+      PolymorphicAcceptType<String> type = new PolymorphicAcceptType<>(Arrays.asList(type("application/vnd.a"), otherType));
+      HttpRequest request = mock(HttpRequest.class);
+
+      type.applyAsOption(request);
+
+      verify(request).setHeader(Headers.AUTHORIZATION, "token");
+   }
+
+   @SuppressWarnings("unchecked")
+   public void testTypesSettingAcceptValuesDirectlyAreCollected() {
+      AcceptMediaType<String> rawType = mock(AcceptMediaType.class);
+      doAnswer(invocation -> {
+         ((HttpRequest) invocation.getArguments()[0]).setHeaderValues("accept", Arrays.asList("application/vnd.b"));
+         return null;
+      }).when(rawType).applyAsOption(any());
+      PolymorphicAcceptType<String> type = new PolymorphicAcceptType<>(Arrays.asList(type("application/vnd.a"), rawType));
+      HttpRequest request = mock(HttpRequest.class);
+
+      type.applyAsOption(request);
+
+      verify(request).setHeader(Headers.ACCEPT, Arrays.asList(new ValueWithParameter("application/vnd.a"), new ValueWithParameter("application/vnd.b")));
+      verify(rawType, times(1)).applyAsOption(any());
+   }
+
+   private PolymorphicAcceptType<String> types(String... mediaTypes) {
+      List<AcceptMediaType<String>> acceptTypes = new ArrayList<>();
+      for (String mediaType: mediaTypes) {
+         acceptTypes.add(type(mediaType));
+      }
+      return new PolymorphicAcceptType<>(acceptTypes);
+   }
+
+   private AcceptMediaType<String> type(String mediaType) {
+      return MediaTypes.textPlain(mediaType(mediaType)).map(content -> mediaType);
+   }
+
+   @SuppressWarnings("unchecked")
+   private AcceptMediaType<String> handlingAll() {
+      AcceptMediaType<String> acceptType = mock(AcceptMediaType.class);
+      when(acceptType.isHandling(any())).thenReturn(true);
+      when(acceptType.deserialize(any(), any())).thenReturn(CompletableFuture.completedFuture("all"));
+      return acceptType;
+   }
+
+   private HttpResponse response(String contentType) {
+      return new StaticHttpResponse(HttpStatusCode.OK, "content", "Content-Type", contentType);
+   }
+
+   private static final class CountingHttpResponse implements HttpResponse {
+      private final HttpResponse response;
+      private int contentTypeReads = 0;
+
+      private CountingHttpResponse(HttpResponse response) {
+         this.response = response;
+      }
+
+      @Override
+      public HttpStatusCode getStatusCode() {
+         return response.getStatusCode();
+      }
+
+      @Override
+      public boolean hasHeader(Header<?> header) {
+         return response.hasHeader(header);
+      }
+
+      @Override
+      public <T> T getHeader(Header<T> header) {
+         if (header == Headers.CONTENT_TYPE) {
+            contentTypeReads++;
+         }
+         return response.getHeader(header);
+      }
+
+      @Override
+      public <R> CompletableFuture<R> consumeContent(Function<ReadableByteChannelMaster, AioSlave<R>> consumerFactory) {
+         return response.consumeContent(consumerFactory);
+      }
+   }
+}
@@ -0,0 +1,113 @@
+/**
+ * Copyright (C) 2020 VanillaSource
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.vanillasource.gerec.mediatype;
+
+import org.testng.annotations.Test;
+import org.testng.annotations.BeforeMethod;
+import static org.testng.Assert.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+@Test
+public class TimingWheelTests {
+   private TimingWheel wheel;
+   private CountDownLatch executed;
+
+   public void testActionIsExecutedAfterDelay() throws Exception {
+      long start = System.nanoTime();
+      wheel.schedule(executed::countDown, 20);
+
+      assertTrue(executed.await(1, TimeUnit.SECONDS));
+      assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(20));
+   }
+
+   public void testActionIsExecutedAfterDelayLongerThanWheelRotation() throws Exception {
+      long start = System.nanoTime();
+      wheel.schedule(executed::countDown, 50);
+
+      assertTrue(executed.await(1, TimeUnit.SECONDS));
+      assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+   }
+
+   public void testCancelledActionIsNotExecuted() throws Exception {
+      wheel.schedule(executed::countDown, 20).cancel();
+
+      assertFalse(executed.await(100, TimeUnit.MILLISECONDS));
+   }
+
+   public void testResetPostponesExecution() throws Exception {
+      TimingWheel.Timeout timeout = wheel.schedule(executed::countDown, 30);
+      for (int i=0; i<10; i++) {
+         Thread.sleep(10);
+         timeout.reset(30);
+      }
+
+      assertEquals(executed.getCount(), 1);
+      assertTrue(executed.await(1, TimeUnit.SECONDS));
+   }
+
+   public void testActionIsExecutedOnlyOnce() throws Exception {
+      CountDownLatch twice = new CountDownLatch(2);
+      TimingWheel.Timeout timeout = wheel.schedule(twice::countDown, 10);
+      Thread.sleep(50);
+
+      timeout.reset(10);
+
+      assertFalse(twice.await(100, TimeUnit.MILLISECONDS));
+      assertEquals(twice.getCount(), 1);
+   }
+
+   public void testManyTimeoutsAreAllExecuted() throws Exception {
+      CountDownLatch all = new CountDownLatch(1000);
+      for (int i=0; i<1000; i++) {
+         wheel.schedule(all::countDown, i % 40);
+      }
+
+      assertTrue(all.await(1, TimeUnit.SECONDS));
+   }
+
+   public void testSlowActionDoesNotDelayOtherTimeouts() throws Exception {
+      ExecutorService executor = Executors.newCachedThreadPool();
+      CountDownLatch release = new CountDownLatch(1);
+      try {
+         wheel = new TimingWheel(1, 8, executor);
+         wheel.schedule(() -> {
+            try {
+               release.await();
+            } catch (InterruptedException e) {
+               Thread.currentThread().interrupt();
+            }
+         }, 5);
+         wheel.schedule(executed::countDown, 20);
+
+         assertTrue(executed.await(1, TimeUnit.SECONDS));
+      } finally {
+         release.countDown();
+         executor.shutdown();
+      }
+   }
+
+   @BeforeMethod
+   protected void setUp() {
+      wheel = new TimingWheel(1, 8, Runnable::run);
+      executed = new CountDownLatch(1);
+   }
+}
@@ -0,0 +1,141 @@
+/**
+ * Copyright (C) 2020 VanillaSource
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.vanillasource.gerec.metrics;
+
+import org.testng.annotations.Test;
+import org.testng.annotations.BeforeMethod;
+import static org.testng.Assert.*;
+import com.vanillasource.gerec.HttpStatusCode;
+import java.io.IOException;
+import java.net.URI;
+
+@Test
+public class HttpClientStatisticsTests {
+   private HttpClientStatistics statistics;
+
+   public void testRequestsAreCountedPerMethod() {
+      statistics.requestStarted("GET", URI.create("http://localhost/a"));
+      statistics.requestStarted("GET", URI.create("http://localhost/b"));
+      statistics.requestStarted("POST", URI.create("http://localhost/a"));
+
+      assertEquals(statistics.getMethodCounts().get("GET"), Long.valueOf(2));
+      assertEquals(statistics.getMethodCounts().get("POST"), Long.valueOf(1));
+   }
+
+   public void testRequestsAreCountedPerHostAndPort() {
+      statistics.requestStarted("GET", URI.create("http://localhost/a"));
+      statistics.requestStarted("GET", URI.create("http://localhost:8080/a"));
+
+      assertEquals(statistics.getHostCounts().get("localhost"), Long.valueOf(1));
+      assertEquals(statistics.getHostCounts().get("localhost:8080"), Long.valueOf(1));
+   }
+
+   public void testStartedRequestIsInFlight() {
+      statistics.requestStarted("GET", URI.create("http://localhost/a"));
+
+      assertEquals(statistics.getRequestsInFlight(), 1);
+      assertEquals(statistics.getExchangesInFlight(), 1);
+   }
+
+   public void testRespondedRequestIsNoLongerInFlightButExchangeIs() {
+      HttpClientMetrics.ExchangeMetrics exchange = statistics.requestStarted("GET", URI.create("http://localhost/a"));
+
+      exchange.responseReceived(HttpStatusCode.OK, 100);
+
+      assertEquals(statistics.getRequestsInFlight(), 0);
+      assertEquals(statistics.getExchangesInFlight(), 1);
+   }
+
+   public void testConsumedExchangeIsNoLongerInFlight() {
+      HttpClientMetrics.ExchangeMetrics exchange = statistics.requestStarted("GET", URI.create("http://localhost/a"));
+
+      exchange.responseReceived(HttpStatusCode.OK, 100);
+      exchange.contentConsumed(200);
+
+      assertEquals(statistics.getExchangesInFlight(), 0);
+   }
+
+   public void testStatusCodesAreCountedByClass() {
+      statistics.requestStarted("GET", URI.create("http://localhost/a")).responseReceived(HttpStatusCode.OK, 1);
+      statistics.requestStarted("GET", URI.create("http://localhost/a")).responseReceived(HttpStatusCode.NOT_FOUND, 1);
+      statistics.requestStarted("GET", URI.create("http://localhost/a")).responseReceived(HttpStatusCode.CONFLICT, 1);
+
+      assertEquals(statistics.getStatusClassCount(2), 1);
+      assertEquals(statistics.getStatusClassCount(4), 2);
+      assertEquals(statistics.getStatusClassCount(5), 0);
+   }
+
+   @Test(expectedExceptions = IllegalArgumentException.class)
+   public void testStatusClassOutOfRangeIsRejected() {
+      statistics.getStatusClassCount(6);
+   }
+
+   public void testLatenciesAreRecorded() {
+      HttpClientMetrics.ExchangeMetrics exchange = statistics.requestStarted("GET", URI.create("http://localhost/a"));
+
+      exchange.responseReceived(HttpStatusCode.OK, 10);
+      exchange.contentConsumed(20);
+
+      assertEquals(statistics.getTimeToFirstByte().getMax(), 10);
+      assertEquals(statistics.getTimeToLastByte().getMax(), 20);
+   }
+
+   public void testBytesAreSummed() {
+      HttpClientMetrics.ExchangeMetrics exchange = statistics.requestStarted("POST", URI.create("http://localhost/a"));
+
+      exchange.bytesWritten(10);
+      exchange.bytesWritten(5);
+      exchange.bytesRead(7);
+
+      assertEquals(statistics.getBytesWritten(), 15);
+      assertEquals(statistics.getBytesRead(), 7);
+   }
+
+   public void testFailureBeforeResponseEndsExchange() {
+      HttpClientMetrics.ExchangeMetrics exchange = statistics.requestStarted("GET", URI.create("http://localhost/a"));
+
+      exchange.failed(new IOException("test"), 10);
+
+      assertEquals(statistics.getFailureCount(), 1);
+      assertEquals(statistics.getRequestsInFlight(), 0);
+      assertEquals(statistics.getExchangesInFlight(), 0);
+   }
+
+   public void testFailureAfterConsumedContentIsIgnored() {
+      HttpClientMetrics.ExchangeMetrics exchange = statistics.requestStarted("GET", URI.create("http://localhost/a"));
+      exchange.responseReceived(HttpStatusCode.OK, 10);
+      exchange.contentConsumed(20);
+
+      exchange.failed(new IOException("test"), 30);
+
+      assertEquals(statistics.getFailureCount(), 0);
+      assertEquals(statistics.getExchangesInFlight(), 0);
+   }
+
+   public void testStatisticsCanBeDisabled() {
+      statistics.setEnabled(false);
+
+      assertFalse(statistics.isEnabled());
+   }
+
+   @BeforeMethod
+   protected void setUp() {
+      statistics = new HttpClientStatistics();
+   }
+}
@@ -0,0 +1,162 @@
+/**
+ * Copyright (C) 2020 VanillaSource
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.vanillasource.gerec.metrics;
+
+import org.testng.annotations.Test;
+import org.testng.annotations.BeforeMethod;
+import static org.testng.Assert.*;
+import static org.mockito.Mockito.*;
+import com.vanillasource.gerec.HttpRequest;
+import com.vanillasource.gerec.HttpResponse;
+import com.vanillasource.gerec.HttpStatusCode;
+import com.vanillasource.gerec.reference.HttpClient;
+import com.vanillasource.gerec.cache.StaticHttpResponse;
+import com.vanillasource.aio.AioSlave;
+import com.vanillasource.aio.channel.ByteArrayReadableByteChannelSlave;
+import com.vanillasource.aio.channel.WritableByteChannelMaster;
+import org.mockito.ArgumentCaptor;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+@Test
+public class InstrumentedHttpClientTests {
+   private static final URI URI = java.net.URI.create("http://localhost/resource");
+   private HttpClient delegate;
+   private CompletableFuture<HttpResponse> upstreamResponse;
+   private HttpClientStatistics statistics;
+   private InstrumentedHttpClient client;
+
+   public void testRequestIsCountedWhenStarted() {
+      client.doPost(URI, HttpRequest.HttpRequestChange.NO_CHANGE);
+
+      assertEquals(statistics.getMethodCounts().get("POST"), Long.valueOf(1));
+      assertEquals(statistics.getRequestsInFlight(), 1);
+   }
+
+   public void testResponseIsRecordedWhenReceived() {
+      CompletableFuture<HttpResponse> response = client.doGet(URI, HttpRequest.HttpRequestChange.NO_CHANGE);
+
+      upstreamResponse.complete(new StaticHttpResponse(HttpStatusCode.OK, "Content"));
+
+      assertEquals(response.join().getStatusCode(), HttpStatusCode.OK);
+      assertEquals(statistics.getStatusClassCount(2), 1);
+      assertEquals(statistics.getTimeToFirstByte().getCount(), 1);
+      assertEquals(statistics.getRequestsInFlight(), 0);
+      assertEquals(statistics.getExchangesInFlight(), 1);
+   }
+
+   public void testConsumedContentIsRecorded() {
+      CompletableFuture<HttpResponse> response = client.doGet(URI, HttpRequest.HttpRequestChange.NO_CHANGE);
+      upstreamResponse.complete(new StaticHttpResponse(HttpStatusCode.OK, "Content"));
+
+      byte[] content = response.join().consumeContent(ByteArrayReadableByteChannelSlave::new).join();
+
+      assertEquals(new String(content), "Content");
+      assertEquals(statistics.getBytesRead(), 7);
+      assertEquals(statistics.getTimeToLastByte().getCount(), 1);
+      assertEquals(statistics.getExchangesInFlight(), 0);
+   }
+
+   public void testFailedResponseIsRecorded() {
+      CompletableFuture<HttpResponse> response = client.doGet(URI, HttpRequest.HttpRequestChange.NO_CHANGE);
+
+      upstreamResponse.completeExceptionally(new IOException("test"));
+
+      assertTrue(response.isCompletedExceptionally());
+      assertEquals(statistics.getFailureCount(), 1);
+      assertEquals(statistics.getExchangesInFlight(), 0);
+   }
+
+   public void testCompletionExceptionOfDelegateIsNotWrappedAgain() {
+      HttpClientMetrics metrics = mock(HttpClientMetrics.class);
+      HttpClientMetrics.ExchangeMetrics exchange = mock(HttpClientMetrics.ExchangeMetrics.class);
+      when(metrics.isEnabled()).thenReturn(true);
+      when(metrics.requestStarted(any(), any())).thenReturn(exchange);
+      client = new InstrumentedHttpClient(delegate, metrics);
+      IOException error = new IOException("test");
+      CompletableFuture<HttpResponse> response = client.doGet(URI, HttpRequest.HttpRequestChange.NO_CHANGE);
+
+      upstreamResponse.completeExceptionally(new CompletionException(error));
+
+      try {
+         response.join();
+         fail("response did not fail");
+      } catch (CompletionException e) {
+         assertSame(e.getCause(), error);
+      }
+      verify(exchange).failed(same(error), anyLong());
+   }
+
+   @SuppressWarnings("unchecked")
+   public void testWrittenBytesAreRecorded() throws IOException {
+      HttpRequest request = mock(HttpRequest.class);
+      when(delegate.doPost(any(), any())).thenAnswer(invocation -> {
+         ((HttpRequest.HttpRequestChange) invocation.getArguments()[1]).applyTo(request);
+         return upstreamResponse;
+      });
+      client.doPost(URI, upstreamRequest -> upstreamRequest.setByteProducer(output -> new AioSlave<Void>() {
+         @Override
+         public void onReady() {
+            try {
+               output.write(ByteBuffer.wrap("Content".getBytes()));
+            } catch (IOException e) {
+               throw new RuntimeException(e);
+            }
+         }
+
+         @Override
+         public Void onCompleted() {
+            return null;
+         }
+      }));
+      ArgumentCaptor<Function> producerFactory = ArgumentCaptor.forClass(Function.class);
+      verify(request).setByteProducer(producerFactory.capture());
+      WritableByteChannelMaster master = mock(WritableByteChannelMaster.class);
+      when(master.write(any(ByteBuffer.class))).thenReturn(7);
+
+      ((AioSlave<Void>) producerFactory.getValue().apply(master)).onReady();
+
+      assertEquals(statistics.getBytesWritten(), 7);
+   }
+
+   public void testDisabledMetricsPassRequestUnchanged() {
+      HttpRequest.HttpRequestChange change = mock(HttpRequest.HttpRequestChange.class);
+      statistics.setEnabled(false);
+
+      CompletableFuture<HttpResponse> response = client.doGet(URI, change);
+
+      verify(delegate).doGet(URI, change);
+      assertSame(response, upstreamResponse);
+      assertTrue(statistics.getMethodCounts().isEmpty());
+   }
+
+   @BeforeMethod
+   protected void setUp() {
+      delegate = mock(HttpClient.class);
+      upstreamResponse = new CompletableFuture<>();
+      when(delegate.doGet(any(), any())).thenReturn(upstreamResponse);
+      when(delegate.doPost(any(), any())).thenReturn(upstreamResponse);
+      statistics = new HttpClientStatistics();
+      client = new InstrumentedHttpClient(delegate, statistics);
+   }
+}
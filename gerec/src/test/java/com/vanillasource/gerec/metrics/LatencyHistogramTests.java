@@ -0,0 +1,139 @@
+/**
+ * Copyright (C) 2020 VanillaSource
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.vanillasource.gerec.metrics;
+
+import org.testng.annotations.Test;
+import org.testng.annotations.BeforeMethod;
+import static org.testng.Assert.*;
+import java.util.ArrayList;
+import java.util.List;
+
+@Test
+public class LatencyHistogramTests {
+   private LatencyHistogram histogram;
+
+   public void testEmptyHistogramHasNoCount() {
+      HistogramSnapshot snapshot = histogram.getSnapshot();
+
+      assertEquals(snapshot.getCount(), 0);
+      assertEquals(snapshot.getMax(), 0);
+      assertEquals(snapshot.getValueAtPercentile(99), 0);
+   }
+
+   public void testSmallValuesAreRecordedExactly() {
+      for (long value=0; value<64; value++) {
+         assertEquals(LatencyHistogram.lowestValueOf(LatencyHistogram.indexOf(value)), value);
+         assertEquals(LatencyHistogram.highestValueOf(LatencyHistogram.indexOf(value)), value);
+      }
+   }
+
+   public void testBucketsContainTheirValues() {
+      for (long value: new long[] { 64, 65, 127, 128, 1000, 123456789L, Long.MAX_VALUE / 3, Long.MAX_VALUE }) {
+         int index = LatencyHistogram.indexOf(value);
+
+         assertTrue(LatencyHistogram.lowestValueOf(index) <= value);
+         assertTrue(LatencyHistogram.highestValueOf(index) >= value);
+      }
+   }
+
+   public void testBucketsAreWithinRelativeError() {
+      for (long value=1; value>0 && value<Long.MAX_VALUE/2; value=value*3+1) {
+         int index = LatencyHistogram.indexOf(value);
+
+         assertTrue(LatencyHistogram.highestValueOf(index) - LatencyHistogram.lowestValueOf(index) <= value / 32);
+      }
+   }
+
+   public void testLargestValueIsInLastBucket() {
+      assertEquals(LatencyHistogram.indexOf(Long.MAX_VALUE), LatencyHistogram.BUCKET_COUNT - 1);
+   }
+
+   public void testNegativeValuesAreRecordedAsZero() {
+      histogram.record(-5);
+
+      assertEquals(histogram.getSnapshot().getCount(), 1);
+      assertEquals(histogram.getSnapshot().getMax(), 0);
+   }
+
+   public void testCountMaxAndMeanAreExact() {
+      histogram.record(100);
+      histogram.record(200);
+      histogram.record(300000);
+
+      HistogramSnapshot snapshot = histogram.getSnapshot();
+      assertEquals(snapshot.getCount(), 3);
+      assertEquals(snapshot.getMax(), 300000);
+      assertEquals(snapshot.getMean(), 100100.0, 0.001);
+   }
+
+   public void testPercentilesAreWithinRelativeError() {
+      for (long value=1; value<=10000; value++) {
+         histogram.record(value);
+      }
+
+      HistogramSnapshot snapshot = histogram.getSnapshot();
+      assertEquals(snapshot.getValueAtPercentile(50), 5000, 5000 / 32);
+      assertEquals(snapshot.getValueAtPercentile(99), 9900, 9900 / 32);
+      assertEquals(snapshot.getValueAtPercentile(100), 10000);
+   }
+
+   public void testPercentileIsNotAboveMax() {
+      histogram.record(1000);
+
+      assertEquals(histogram.getSnapshot().getValueAtPercentile(50), 1000);
+   }
+
+   @Test(expectedExceptions = IllegalArgumentException.class)
+   public void testPercentileAboveHundredIsRejected() {
+      histogram.getSnapshot().getValueAtPercentile(101);
+   }
+
+   public void testSnapshotDoesNotChangeWithLaterRecords() {
+      histogram.record(10);
+      HistogramSnapshot snapshot = histogram.getSnapshot();
+
+      histogram.record(20);
+
+      assertEquals(snapshot.getCount(), 1);
+   }
+
+   public void testConcurrentRecordsAreAllCounted() throws Exception {
+      List<Thread> threads = new ArrayList<>();
+      for (int i=0; i<4; i++) {
+         Thread thread = new Thread(() -> {
+            for (int j=0; j<10000; j++) {
+               histogram.record(j);
+            }
+         });
+         thread.start();
+         threads.add(thread);
+      }
+      for (Thread thread: threads) {
+         thread.join();
+      }
+
+      assertEquals(histogram.getSnapshot().getCount(), 40000);
+      assertEquals(histogram.getSnapshot().getMax(), 9999);
+   }
+
+   @BeforeMethod
+   protected void setUp() {
+      histogram = new LatencyHistogram();
+   }
+}
@@ -0,0 +1,400 @@
+/**
+ * Copyright (C) 2020 VanillaSource
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.vanillasource.gerec.navigation;
+
+import org.testng.annotations.Test;
+import org.testng.annotations.BeforeMethod;
+import static org.testng.Assert.*;
+import static org.mockito.Mockito.*;
+import com.vanillasource.gerec.AcceptMediaType;
+import com.vanillasource.gerec.ContentResponse;
+import com.vanillasource.gerec.HttpRequest;
+import com.vanillasource.gerec.Request;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Test
+public class NavigationContextTests {
+   private NavigationContext<String> context;
+
+   public void testAnyFinishesWithFirstResultFound() {
+      List<TestRequest> requests = requests(3);
+      CompletableFuture<Optional<String>> result = context.any(new ArrayList<>(requests), 3);
+
+      requests.get(1).finish("B");
+
+      assertEquals(result.join(), Optional.of("B"));
+   }
+
+   public void testAnyFollowsNoMoreThanMaxConcurrencyRequests() {
+      List<TestRequest> requests = requests(3);
+
+      context.any(new ArrayList<>(requests), 2);
+
+      assertTrue(requests.get(0).isSent());
+      assertTrue(requests.get(1).isSent());
+      assertFalse(requests.get(2).isSent());
+   }
+
+   public void testAnyDoesNotStartRequestsAfterResultFound() {
+      List<TestRequest> requests = requests(3);
+      context.any(new ArrayList<>(requests), 1);
+
+      requests.get(0).finish("A");
+
+      assertFalse(requests.get(1).isSent());
+   }
+
+   public void testAnyIgnoresRequestsInProgressAfterResultFound() {
+      List<TestRequest> requests = requests(2);
+      CompletableFuture<Optional<String>> result = context.any(new ArrayList<>(requests), 2);
+
+      requests.get(0).finish("A");
+      requests.get(1).finish("B");
+
+      assertEquals(result.join(), Optional.of("A"));
+   }
+
+   public void testAnyGoesBackIfNoResultFound() {
+      List<TestRequest> requests = requests(3);
+      CompletableFuture<Optional<String>> result = context.any(new ArrayList<>(requests), 2);
+
+      requests.get(0).back();
+      requests.get(1).back();
+      requests.get(2).back();
+
+      assertEquals(result.join(), Optional.empty());
+   }
+
+   public void testAnyDoesNotNavigateOutstandingResponsesAfterResultFound() {
+      List<TestRequest> requests = requests(2);
+      requests.get(1).delayed = true;
+      context.any(new ArrayList<>(requests), 2);
+
+      requests.get(0).finish("A");
+      requests.get(1).respond();
+
+      assertFalse(requests.get(1).navigated);
+   }
+
+   public void testAnyStopsBranchesPastTheirFirstHopAfterResultFound() {
+      List<TestRequest> requests = requests(2);
+      TestRequest secondHop = new TestRequest();
+      TestRequest thirdHop = new TestRequest();
+      requests.get(1).nextRequest = secondHop;
+      secondHop.delayed = true;
+      secondHop.nextRequest = thirdHop;
+      context.any(new ArrayList<>(requests), 2);
+
+      requests.get(0).finish("A");
+      secondHop.respond();
+
+      assertTrue(secondHop.isSent());
+      assertFalse(thirdHop.isSent());
+   }
+
+   public void testAllStopsBranchesAfterRequestFails() {
+      List<TestRequest> requests = requests(2);
+      TestRequest secondHop = new TestRequest();
+      TestRequest thirdHop = new TestRequest();
+      requests.get(1).nextRequest = secondHop;
+      secondHop.delayed = true;
+      secondHop.nextRequest = thirdHop;
+      CompletableFuture<Optional<String>> result = context.all(new ArrayList<>(requests), 2, String::concat);
+
+      requests.get(0).fail(new IOException("test"));
+      secondHop.respond();
+
+      assertTrue(result.isCompletedExceptionally());
+      assertFalse(thirdHop.isSent());
+   }
+
+   public void testAnyOfNoRequestsGoesBack() {
+      assertEquals(context.any(Collections.emptyList(), 2).join(), Optional.empty());
+   }
+
+   public void testAnyFailsIfRequestFails() {
+      List<TestRequest> requests = requests(2);
+      CompletableFuture<Optional<String>> result = context.any(new ArrayList<>(requests), 2);
+
+      requests.get(0).fail(new IOException("test"));
+
+      assertTrue(result.isCompletedExceptionally());
+   }
+
+   public void testAllMergesResultsInOrderOfRequests() {
+      List<TestRequest> requests = requests(3);
+      CompletableFuture<Optional<String>> result = context.all(new ArrayList<>(requests), 3, String::concat);
+
+      requests.get(2).finish("C");
+      requests.get(1).back();
+      requests.get(0).finish("A");
+
+      assertEquals(result.join(), Optional.of("AC"));
+   }
+
+   public void testAllFollowsRemainingRequestsWhenLaneIsFree() {
+      List<TestRequest> requests = requests(3);
+      CompletableFuture<Optional<String>> result = context.all(new ArrayList<>(requests), 1, String::concat);
+
+      requests.get(0).finish("A");
+      requests.get(1).finish("B");
+      requests.get(2).finish("C");
+
+      assertEquals(result.join(), Optional.of("ABC"));
+   }
+
+   public void testAllWithSynchronouslyCompletingRequestsDoesNotRecurse() {
+      List<Request> requests = new ArrayList<>();
+      for (int i=0; i<20000; i++) {
+         TestRequest request = new TestRequest();
+         request.finish("x");
+         requests.add(request);
+      }
+
+      Optional<String> result = context.all(requests, 2, (a, b) -> "x").join();
+
+      assertEquals(result, Optional.of("x"));
+   }
+
+   public void testFollowingSameGetTwiceWithoutMemoFetchesTwice() {
+      TestRequest request = new TestRequest();
+      request.back();
+
+      context.follow(request);
+      request.sent = false;
+      context.follow(request);
+
+      assertTrue(request.sent);
+   }
+
+   public void testFollowingSameGetTwiceWithMemoFetchesOnce() {
+      context = new NavigationContext<>(acceptType(), new NavigationMemo(), NavigationContext.DEFAULT_MAX_DEPTH);
+      TestRequest request = new TestRequest();
+      request.back();
+
+      context.follow(request);
+      request.sent = false;
+      context.follow(request);
+
+      assertFalse(request.sent);
+   }
+
+   public void testFollowingSamePostTwiceSendsTwice() {
+      TestRequest request = new TestRequest();
+      request.method = "POST";
+      request.back();
+
+      context.follow(request);
+      request.sent = false;
+      context.follow(request);
+
+      assertTrue(request.sent);
+   }
+
+   public void testRequestWithUnknownMethodIsNotRemembered() {
+      context = new NavigationContext<>(acceptType(), new NavigationMemo(), NavigationContext.DEFAULT_MAX_DEPTH);
+      TestRequest request = new TestRequest();
+      request.method = null;
+      request.back();
+
+      context.follow(request);
+      request.sent = false;
+      context.follow(request);
+
+      assertTrue(request.sent);
+   }
+
+   public void testFollowingUriAlreadyOnPathGoesBack() {
+      TestRequest request = new TestRequest();
+      request.nextRequest = request;
+
+      Optional<String> result = context.follow(request).join();
+
+      assertEquals(result, Optional.empty());
+      assertEquals(request.navigations, 1);
+   }
+
+   public void testFollowingUriAgainAfterPostReadsItAgain() {
+      TestRequest get = new TestRequest();
+      get.nextRequest = new TestRequest();
+      get.nextRequest.method = "POST";
+      get.nextRequest.nextRequest = new TestRequest(get.uri);
+      get.nextRequest.nextRequest.finish("updated");
+
+      Optional<String> result = context.follow(get).join();
+
+      assertEquals(result, Optional.of("updated"));
+      assertTrue(get.nextRequest.nextRequest.sent);
+   }
+
+   public void testFollowingUriAgainAfterPostWithMemoReadsItAgain() {
+      context = new NavigationContext<>(acceptType(), new NavigationMemo(), NavigationContext.DEFAULT_MAX_DEPTH);
+      TestRequest get = new TestRequest();
+      get.nextRequest = new TestRequest();
+      get.nextRequest.method = "POST";
+      get.nextRequest.nextRequest = new TestRequest(get.uri);
+      get.nextRequest.nextRequest.finish("updated");
+
+      Optional<String> result = context.follow(get).join();
+
+      assertEquals(result, Optional.of("updated"));
+      assertTrue(get.nextRequest.nextRequest.sent);
+   }
+
+   public void testNavigationDeeperThanMaxDepthFails() {
+      context = new NavigationContext<>(acceptType(), new NavigationMemo(), 3);
+      TestRequest request = new TestRequest();
+      request.nextRequest = new TestRequest();
+      request.nextRequest.nextRequest = new TestRequest();
+      request.nextRequest.nextRequest.nextRequest = new TestRequest();
+
+      CompletableFuture<Optional<String>> result = context.follow(request);
+
+      assertTrue(result.isCompletedExceptionally());
+      assertFalse(request.nextRequest.nextRequest.nextRequest.sent);
+   }
+
+   public void testNavigationWithinMaxDepthSucceeds() {
+      context = new NavigationContext<>(acceptType(), new NavigationMemo(), 3);
+      TestRequest request = new TestRequest();
+      request.nextRequest = new TestRequest();
+      request.nextRequest.nextRequest = new TestRequest();
+      request.nextRequest.nextRequest.finish("C");
+
+      assertEquals(context.follow(request).join(), Optional.of("C"));
+   }
+
+   @Test(expectedExceptions = IllegalArgumentException.class)
+   public void testZeroConcurrencyIsRejected() {
+      context.all(new ArrayList<>(requests(1)), 0, String::concat);
+   }
+
+   private List<TestRequest> requests(int count) {
+      List<TestRequest> requests = new ArrayList<>();
+      for (int i=0; i<count; i++) {
+         requests.add(new TestRequest());
+      }
+      return requests;
+   }
+
+   @SuppressWarnings("unchecked")
+   private AcceptMediaType<Function<NavigationContext<String>, CompletableFuture<Optional<String>>>> acceptType() {
+      return mock(AcceptMediaType.class);
+   }
+
+   @BeforeMethod
+   protected void setUp() {
+      context = new NavigationContext<>(acceptType());
+   }
+
+   private static final class TestRequest implements Request {
+      private static final AtomicInteger COUNT = new AtomicInteger();
+      private final URI uri;
+      private final CompletableFuture<Optional<String>> outcome = new CompletableFuture<>();
+      private final CompletableFuture<Object> response = new CompletableFuture<>();
+      private String method = "GET";
+      private TestRequest nextRequest;
+      private int navigations = 0;
+      private boolean delayed = false;
+      private boolean navigated = false;
+      private boolean sent = false;
+
+      private TestRequest(URI uri) {
+         this.uri = uri;
+      }
+
+      private TestRequest() {
+         this(URI.create("http://localhost/"+COUNT.incrementAndGet()));
+      }
+
+      public boolean isSent() {
+         return sent;
+      }
+
+      public void finish(String value) {
+         outcome.complete(Optional.of(value));
+      }
+
+      public void back() {
+         outcome.complete(Optional.empty());
+      }
+
+      public void fail(Throwable error) {
+         outcome.completeExceptionally(error);
+      }
+
+      public void respond() {
+         Function<NavigationContext<String>, CompletableFuture<Optional<String>>> rule = context -> {
+            navigated = true;
+            navigations++;
+            if (nextRequest != null) {
+               return context.follow(nextRequest);
+            }
+            CompletableFuture<Optional<String>> branch = new CompletableFuture<>();
+            outcome.whenComplete((value, exception) -> {
+               if (exception != null) {
+                  branch.completeExceptionally(exception);
+               } else {
+                  branch.complete(value);
+               }
+            });
+            return branch;
+         };
+         response.complete(rule);
+      }
+
+      @Override
+      @SuppressWarnings("unchecked")
+      public <T> CompletableFuture<T> send(AcceptMediaType<T> acceptType) {
+         sent = true;
+         if (!delayed) {
+            respond();
+         }
+         return (CompletableFuture<T>) response;
+      }
+
+      @Override
+      public <T> CompletableFuture<ContentResponse<T>> sendResponse(AcceptMediaType<T> acceptType, HttpRequest.HttpRequestChange change) {
+         throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public String getMethod() {
+         return method;
+      }
+
+      @Override
+      public URI getUri() {
+         return uri;
+      }
+
+      @Override
+      public byte[] suspend() {
+         throw new UnsupportedOperationException();
+      }
+   }
+}
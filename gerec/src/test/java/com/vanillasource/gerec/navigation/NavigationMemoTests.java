@@ -0,0 +1,161 @@
+/**
+ * Copyright (C) 2020 VanillaSource
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.vanillasource.gerec.navigation;
+
+import org.testng.annotations.Test;
+import org.testng.annotations.BeforeMethod;
+import static org.testng.Assert.*;
+import static org.mockito.Mockito.*;
+import com.vanillasource.gerec.AcceptMediaType;
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+@Test
+public class NavigationMemoTests {
+   private static final URI URI = java.net.URI.create("http://localhost/resource");
+   private AcceptMediaType<String> acceptType;
+   private long now;
+   private NavigationMemo memo;
+   private AtomicInteger fetchCount;
+   private CompletableFuture<String> fetched;
+
+   public void testContentIsFetchedOnFirstGet() {
+      CompletableFuture<String> content = memo.get(URI, acceptType, fetch());
+
+      fetched.complete("Content");
+
+      assertEquals(content.join(), "Content");
+      assertEquals(fetchCount.get(), 1);
+   }
+
+   public void testContentIsRememberedForSameUriAndType() {
+      memo.get(URI, acceptType, fetch());
+      fetched.complete("Content");
+
+      CompletableFuture<String> content = memo.get(URI, acceptType, fetch());
+
+      assertEquals(content.join(), "Content");
+      assertEquals(fetchCount.get(), 1);
+   }
+
+   public void testConcurrentGetsShareOneFetch() {
+      CompletableFuture<String> content1 = memo.get(URI, acceptType, fetch());
+      CompletableFuture<String> content2 = memo.get(URI, acceptType, fetch());
+
+      fetched.complete("Content");
+
+      assertEquals(content1.join(), "Content");
+      assertEquals(content2.join(), "Content");
+      assertEquals(fetchCount.get(), 1);
+   }
+
+   @SuppressWarnings("unchecked")
+   public void testDifferentAcceptTypesAreRememberedSeparately() {
+      memo.get(URI, acceptType, fetch());
+
+      memo.get(URI, mock(AcceptMediaType.class), fetch());
+
+      assertEquals(fetchCount.get(), 2);
+   }
+
+   public void testDifferentUrisAreRememberedSeparately() {
+      memo.get(URI, acceptType, fetch());
+
+      memo.get(java.net.URI.create("http://localhost/other"), acceptType, fetch());
+
+      assertEquals(fetchCount.get(), 2);
+   }
+
+   public void testFailedFetchIsNotRemembered() {
+      memo.get(URI, acceptType, fetch());
+      fetched.completeExceptionally(new IOException("test"));
+
+      memo.get(URI, acceptType, fetch());
+
+      assertEquals(fetchCount.get(), 2);
+   }
+
+   public void testContentIsFetchedAgainAfterTimeToLive() {
+      memo.get(URI, acceptType, fetch());
+      fetched.complete("Content");
+
+      now += 1000;
+      memo.get(URI, acceptType, fetch());
+
+      assertEquals(fetchCount.get(), 2);
+   }
+
+   public void testContentIsRememberedWithinTimeToLive() {
+      memo.get(URI, acceptType, fetch());
+      fetched.complete("Content");
+
+      now += 999;
+      memo.get(URI, acceptType, fetch());
+
+      assertEquals(fetchCount.get(), 1);
+   }
+
+   public void testCancellingOneCallerDoesNotAffectOthers() {
+      CompletableFuture<String> content1 = memo.get(URI, acceptType, fetch());
+      CompletableFuture<String> content2 = memo.get(URI, acceptType, fetch());
+
+      content1.cancel(false);
+      fetched.complete("Content");
+
+      assertEquals(content2.join(), "Content");
+   }
+
+   public void testExpiredEntriesArePurged() {
+      for (int i=0; i<300; i++) {
+         memo.get(java.net.URI.create("http://localhost/"+i), acceptType, fetch());
+         now += 10;
+      }
+
+      assertTrue(memo.size() < 300);
+   }
+
+   public void testClearForgetsContent() {
+      memo.get(URI, acceptType, fetch());
+
+      memo.clear();
+      memo.get(URI, acceptType, fetch());
+
+      assertEquals(fetchCount.get(), 2);
+   }
+
+   private Supplier<CompletableFuture<String>> fetch() {
+      return () -> {
+         fetchCount.incrementAndGet();
+         fetched = new CompletableFuture<>();
+         return fetched;
+      };
+   }
+
+   @BeforeMethod
+   @SuppressWarnings("unchecked")
+   protected void setUp() {
+      acceptType = mock(AcceptMediaType.class);
+      now = 0;
+      fetchCount = new AtomicInteger();
+      memo = new NavigationMemo(1000, () -> now);
+   }
+}
@@ -0,0 +1,121 @@
+/**
+ * Copyright (C) 2020 VanillaSource
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.vanillasource.gerec.reference;
+
+import org.testng.annotations.Test;
+import org.testng.annotations.BeforeMethod;
+import static org.testng.Assert.*;
+import static org.mockito.Mockito.*;
+import com.vanillasource.gerec.HttpRequest;
+import com.vanillasource.gerec.HttpResponse;
+import com.vanillasource.gerec.HttpStatusCode;
+import com.vanillasource.gerec.http.Headers;
+import com.vanillasource.gerec.cache.StaticHttpResponse;
+import com.vanillasource.aio.channel.ByteArrayReadableByteChannelSlave;
+import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+@Test
+public class CoalescingHttpClientTests {
+   private static final URI URI = java.net.URI.create("http://localhost/resource");
+   private HttpClient delegate;
+   private CompletableFuture<HttpResponse> upstreamResponse;
+   private CoalescingHttpClient client;
+
+   public void testConcurrentIdenticalGetsAreSentOnce() {
+      CompletableFuture<HttpResponse> response1 = client.doGet(URI, HttpRequest.HttpRequestChange.NO_CHANGE);
+      CompletableFuture<HttpResponse> response2 = client.doGet(URI, HttpRequest.HttpRequestChange.NO_CHANGE);
+
+      upstreamResponse.complete(new StaticHttpResponse(HttpStatusCode.OK, "Content"));
+
+      verify(delegate, times(1)).doGet(any(), any());
+      assertEquals(content(response1), "Content");
+      assertEquals(content(response2), "Content");
+      assertEquals(client.getUpstreamCount(), 1);
+      assertEquals(client.getCoalescedCount(), 1);
+   }
+
+   public void testContentCanBeConsumedByAllRequestsRepeatedly() {
+      CompletableFuture<HttpResponse> response1 = client.doGet(URI, HttpRequest.HttpRequestChange.NO_CHANGE);
+      CompletableFuture<HttpResponse> response2 = client.doGet(URI, HttpRequest.HttpRequestChange.NO_CHANGE);
+      upstreamResponse.complete(new StaticHttpResponse(HttpStatusCode.OK, "Content"));
+
+      content(response1);
+      content(response2);
+
+      assertEquals(content(response1), "Content");
+   }
+
+   public void testRequestsWithDifferentHeadersAreNotCoalesced() {
+      client.doGet(URI, request -> request.setHeader(Headers.AUTHORIZATION, "A"));
+      client.doGet(URI, request -> request.setHeader(Headers.AUTHORIZATION, "B"));
+
+      verify(delegate, times(2)).doGet(any(), any());
+   }
+
+   public void testGetAndHeadAreNotCoalesced() {
+      when(delegate.doHead(any(), any())).thenReturn(new CompletableFuture<>());
+      client.doGet(URI, HttpRequest.HttpRequestChange.NO_CHANGE);
+      client.doHead(URI, HttpRequest.HttpRequestChange.NO_CHANGE);
+
+      verify(delegate).doGet(any(), any());
+      verify(delegate).doHead(any(), any());
+   }
+
+   public void testRequestAfterCompletedRequestIsSent() {
+      client.doGet(URI, HttpRequest.HttpRequestChange.NO_CHANGE);
+      upstreamResponse.complete(new StaticHttpResponse(HttpStatusCode.OK, "Content"));
+
+      client.doGet(URI, HttpRequest.HttpRequestChange.NO_CHANGE);
+
+      verify(delegate, times(2)).doGet(any(), any());
+   }
+
+   @Test(expectedExceptions = CompletionException.class)
+   public void testFailureIsDeliveredToCoalescedRequests() {
+      client.doGet(URI, HttpRequest.HttpRequestChange.NO_CHANGE);
+      CompletableFuture<HttpResponse> response = client.doGet(URI, HttpRequest.HttpRequestChange.NO_CHANGE);
+
+      upstreamResponse.completeExceptionally(new IllegalStateException("test"));
+
+      response.join();
+   }
+
+   public void testPostsAreNotCoalesced() {
+      when(delegate.doPost(any(), any())).thenReturn(new CompletableFuture<>());
+
+      client.doPost(URI, HttpRequest.HttpRequestChange.NO_CHANGE);
+      client.doPost(URI, HttpRequest.HttpRequestChange.NO_CHANGE);
+
+      verify(delegate, times(2)).doPost(any(), any());
+   }
+
+   private String content(CompletableFuture<HttpResponse> response) {
+      return new String(response.join().consumeContent(ByteArrayReadableByteChannelSlave::new).join());
+   }
+
+   @BeforeMethod
+   protected void setUp() {
+      delegate = mock(HttpClient.class);
+      upstreamResponse = new CompletableFuture<>();
+      when(delegate.doGet(any(), any())).thenAnswer(invocation -> upstreamResponse);
+      client = new CoalescingHttpClient(delegate);
+   }
+}
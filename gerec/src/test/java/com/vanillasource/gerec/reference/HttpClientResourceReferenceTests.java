@@ -32,6 +32,11 @@ import static org.testng.Assert.*;
 import static org.mockito.Mockito.*;
 import java.net.URI;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.io.ByteArrayInputStream;
+import com.vanillasource.aio.AioSlave;
+import com.vanillasource.aio.channel.InputStreamReadableByteChannelMaster;
+import com.vanillasource.aio.channel.ReadableByteChannelMaster;
 
 @Test
 public class HttpClientResourceReferenceTests {
@@ -137,6 +142,26 @@ public class HttpClientResourceReferenceTests {
       assertEquals(retrievedContent, "TEST");
    }
 
+   @SuppressWarnings("unchecked")
+   public void testTooLargeErrorBodyIsIgnoredButErrorIsStillThrown() throws Exception {
+      when(client.doGet(any(), any())).thenReturn(CompletableFuture.completedFuture(response));
+      when(response.getStatusCode()).thenReturn(HttpStatusCode.NOT_FOUND);
+      doAnswer(invocation -> {
+         InputStreamReadableByteChannelMaster master = new InputStreamReadableByteChannelMaster(new ByteArrayInputStream(new byte[2*1024*1024]));
+         AioSlave<byte[]> slave = ((Function<ReadableByteChannelMaster, AioSlave<byte[]>>) invocation.getArguments()[0])
+            .apply(master);
+         return master.execute(slave, Runnable::run);
+      }).when(response).consumeContent(any(Function.class));
+
+      reference
+         .get(MediaTypes.textPlain())
+         .handle((content, exception) -> {
+            assertTrue(((CompletionException) exception).getCause() instanceof HttpErrorException);
+            return null;
+         })
+         .join();
+   }
+
    public void testHeadConsumesContent() throws Exception {
       when(client.doHead(any(), any())).thenReturn(CompletableFuture.completedFuture(response));
       when(response.getStatusCode()).thenReturn(HttpStatusCode.OK);
@@ -29,7 +29,14 @@ import com.vanillasource.aio.channel.ByteArrayWritableByteChannelSlave;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.Random;
+import java.util.Collections;
+import java.nio.ByteBuffer;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import static java.util.Arrays.asList;
+import java.util.Arrays;
 import static org.testng.Assert.*;
 
 @Test
@@ -48,6 +55,23 @@ public final class SuspendingHttpClientTests {
             new RecordedRequest("GET", "https://localhost:8086/api", header("Cache-Control","no-cache"), "CONTENT"));
    }
 
+   public void testUriOfSuspendedCallCanBeRead() throws Exception {
+      suspendingClient.doGet(new URI("https://localhost:8086/api"),
+            noCache().and(content("CONTENT")));
+
+      suspendingClient = new SuspendingHttpClient(suspendingClient.suspend());
+
+      assertEquals(suspendingClient.getUri(), new URI("https://localhost:8086/api"));
+   }
+
+   public void testMethodOfSuspendedCallCanBeRead() throws Exception {
+      suspendingClient.doPut(new URI("https://localhost:8086/api"), content("CONTENT"));
+
+      suspendingClient = new SuspendingHttpClient(suspendingClient.suspend());
+
+      assertEquals(suspendingClient.getMethod(), "PUT");
+   }
+
    public void testPostSuspendGetsExecutedCorrectly() throws Exception {
       suspendingClient.doPost(new URI("https://localhost:8086/api"),
             noCache().and(content("CONTENT")));
@@ -103,6 +127,135 @@ public final class SuspendingHttpClientTests {
             new RecordedRequest("PUT", "https://localhost:8086/api", header("Cache-Control","no-cache"), "CONTENT"));
    }
 
+   public void testCallSuspendedInLegacyFormatGetsExecutedCorrectly() throws Exception {
+      suspendingClient = new SuspendingHttpClient(legacySuspendedCall(4, "https://localhost:8086/api", "Cache-Control", "no-cache", "CONTENT"));
+
+      suspendingClient.execute(recordingClient);
+
+      assertEquals(recordingClient.lastRequest,
+            new RecordedRequest("POST", "https://localhost:8086/api", header("Cache-Control","no-cache"), "CONTENT"));
+   }
+
+   public void testUriAndMethodOfCallSuspendedInLegacyFormatCanBeRead() throws Exception {
+      suspendingClient = new SuspendingHttpClient(legacySuspendedCall(5, "https://localhost:8086/api", "Cache-Control", "no-cache", "CONTENT"));
+
+      assertEquals(suspendingClient.getUri(), new URI("https://localhost:8086/api"));
+      assertEquals(suspendingClient.getMethod(), "PUT");
+   }
+
+   public void testHeaderValuesLargerThan64KBAreSuspended() throws Exception {
+      String value = repeat("abcdefgh", 10000);
+      suspendingClient.doGet(new URI("https://localhost:8086/api"),
+            request -> request.setHeaderValues("X-Large", Collections.singletonList(value)));
+
+      suspendingClient = new SuspendingHttpClient(suspendingClient.suspend());
+      suspendingClient.execute(recordingClient);
+
+      assertEquals(recordingClient.lastRequest,
+            new RecordedRequest("GET", "https://localhost:8086/api", header("X-Large", value), ""));
+   }
+
+   public void testOnlyLastValuesOfHeaderAreSuspended() throws Exception {
+      suspendingClient.doGet(new URI("https://localhost:8086/api"),
+            request -> {
+               request.setHeaderValues("Cache-Control", Collections.singletonList("max-age=0"));
+               request.setHeaderValues("Cache-Control", Collections.singletonList("no-cache"));
+            });
+
+      suspendingClient = new SuspendingHttpClient(suspendingClient.suspend());
+      suspendingClient.execute(recordingClient);
+
+      assertEquals(recordingClient.lastRequest,
+            new RecordedRequest("GET", "https://localhost:8086/api", header("Cache-Control","no-cache"), ""));
+   }
+
+   public void testCommonHeaderNamesAreNotWrittenOut() throws Exception {
+      suspendingClient.doGet(new URI("https://localhost:8086/api"), noCache());
+
+      String suspendedCall = new String(suspendingClient.suspend(), StandardCharsets.ISO_8859_1);
+
+      assertFalse(suspendedCall.contains("Cache-Control"));
+   }
+
+   public void testLargeContentIsCompressedAndRestored() throws Exception {
+      String content = repeat("compressible content ", 10000);
+      suspendingClient = new SuspendingHttpClient(1024);
+      suspendingClient.doPost(new URI("https://localhost:8086/api"), content(content));
+
+      byte[] suspendedCall = suspendingClient.suspend();
+      suspendingClient = new SuspendingHttpClient(suspendedCall);
+      suspendingClient.execute(recordingClient);
+
+      assertTrue(suspendedCall.length < content.length() / 10);
+      assertEquals(recordingClient.lastRequest,
+            new RecordedRequest("POST", "https://localhost:8086/api", Collections.emptyMap(), content));
+   }
+
+   public void testIncompressibleContentIsRestored() throws Exception {
+      byte[] content = new byte[100000];
+      new Random(1).nextBytes(content);
+      suspendingClient = new SuspendingHttpClient(1024);
+      suspendingClient.doPost(new URI("https://localhost:8086/api"), request ->
+         request.setByteProducer(output -> new ByteArrayWritableByteChannelSlave(output, content), content.length));
+
+      suspendingClient = new SuspendingHttpClient(suspendingClient.suspend());
+      suspendingClient.execute(recordingClient);
+
+      assertEquals(recordingClient.lastRequest,
+            new RecordedRequest("POST", "https://localhost:8086/api", Collections.emptyMap(), new String(content)));
+   }
+
+   public void testCallCanBeResumedFromRegionOfBuffer() throws Exception {
+      suspendingClient.doPut(new URI("https://localhost:8086/api"), noCache().and(content("CONTENT")));
+      byte[] suspendedCall = suspendingClient.suspend();
+      ByteBuffer buffer = ByteBuffer.allocateDirect(suspendedCall.length + 20);
+      buffer.position(10);
+      buffer.put(suspendedCall);
+      buffer.flip().position(10);
+
+      suspendingClient = new SuspendingHttpClient(buffer);
+      suspendingClient.execute(recordingClient);
+
+      assertEquals(recordingClient.lastRequest,
+            new RecordedRequest("PUT", "https://localhost:8086/api", header("Cache-Control","no-cache"), "CONTENT"));
+      assertEquals(suspendingClient.suspend(), suspendedCall);
+   }
+
+   @Test(expectedExceptions = IllegalArgumentException.class)
+   public void testTruncatedSuspendedCallIsRejected() throws Exception {
+      suspendingClient.doPut(new URI("https://localhost:8086/api"), noCache().and(content("CONTENT")));
+      byte[] suspendedCall = suspendingClient.suspend();
+
+      suspendingClient = new SuspendingHttpClient(Arrays.copyOf(suspendedCall, suspendedCall.length - 5));
+      suspendingClient.execute(recordingClient);
+   }
+
+   private byte[] legacySuspendedCall(int actionCode, String uri, String headerName, String headerValue, String content) throws IOException {
+      ByteArrayOutputStream bos = new ByteArrayOutputStream();
+      DataOutputStream dos = new DataOutputStream(bos);
+      dos.writeByte(actionCode);
+      dos.writeUTF(uri);
+      dos.writeByte(10);
+      dos.writeUTF(headerName);
+      dos.writeInt(1);
+      dos.writeUTF(headerValue);
+      byte[] contentBytes = content.getBytes(StandardCharsets.UTF_8);
+      dos.writeByte(11);
+      dos.writeInt(contentBytes.length);
+      dos.write(contentBytes);
+      dos.writeByte(0x7F);
+      dos.close();
+      return bos.toByteArray();
+   }
+
+   private String repeat(String value, int times) {
+      StringBuilder builder = new StringBuilder();
+      for (int i=0; i<times; i++) {
+         builder.append(value);
+      }
+      return builder.toString();
+   }
+
    private Map<String, List<String>> header(String key, String value) {
       Map<String, List<String>> headers = new HashMap<>();
       headers.put(key.toUpperCase(), asList(value));